@@ -0,0 +1,84 @@
+package com.commo.hearingtest.audio;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.*;
+
+/**
+ * Measures what a test screen pays for audio once the shared engine is warm, on a real device.
+ */
+@RunWith(AndroidJUnit4.class)
+public class AudioEngineProviderTest {
+
+    private static final String TAG = "AudioEngineProviderTest";
+
+    @Test
+    public void warmEngineIsReusedAcrossScreens() throws Exception {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        AudioEngineProvider provider = AudioEngineProvider.get();
+
+        provider.warmUpAsync(context);
+        AudioEngine first = provider.acquire(context);
+        long startupNanos = provider.getWarmUpNanos();
+        provider.release();
+
+        // A second screen, e.g. a retake from the results page.
+        AudioEngine second = provider.acquire(context);
+        long transitionNanos = provider.getLastAcquireNanos();
+        provider.release();
+
+        Log.i(TAG, "startup " + startupNanos / 1000 + " us, transition " + transitionNanos / 1000 + " us");
+        assertSame(first, second);
+        assertTrue(startupNanos > 0);
+        // Reuse is a lock and a field read; anything near the cost of opening a track means it reopened.
+        assertTrue("transition took " + transitionNanos + " ns", transitionNanos < startupNanos);
+    }
+
+    @Test
+    public void outgoingScreenDoesNotSilenceTheIncomingOne() throws Exception {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        AudioEngineProvider provider = AudioEngineProvider.get();
+        AudioEngine outgoing = provider.acquire(context);
+        AudioEngine incoming = provider.acquire(context);
+        Stimulus tone = incoming.play(new short[incoming.getSampleRate() * 4]);
+
+        // The old screen is destroyed after the new one started playing.
+        provider.release();
+        Thread.sleep(200);
+        assertSame(outgoing, incoming);
+        assertFalse(tone.isCancelled());
+        assertTrue(incoming.isPlaying());
+
+        provider.release();
+        long deadline = System.nanoTime() + 1_000_000_000L;
+        while (incoming.isPlaying() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(tone.isCancelled());
+    }
+
+    @Test
+    public void reportsAchievedOutputLatency() throws Exception {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        AudioEngineProvider provider = AudioEngineProvider.get();
+        AudioEngine engine = provider.acquire(context);
+        try {
+            // Keep the stream running long enough for the track to publish timestamps.
+            engine.play(new short[engine.getSampleRate() * 2]);
+            Thread.sleep(500);
+            long measured = engine.measureOutputLatencyNanos();
+            Log.i(TAG, provider.getOutputDescription() + "; measured latency "
+                    + (measured < 0 ? "unavailable" : measured / 1000 + " us"));
+            assertTrue(engine.getBufferLatencyNanos() > 0);
+        } finally {
+            provider.release();
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.commo.hearingtest.chart;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.os.Debug;
+import android.util.Log;
+import android.view.View;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.commo.hearingtest.core.Audiogram;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Counts what {@link AudiogramView} allocates per frame with a kiosk-sized history overlaid.
+ */
+@RunWith(AndroidJUnit4.class)
+public class AudiogramViewTest {
+
+    private static final String TAG = "AudiogramViewTest";
+    private static final int SESSIONS = 300;
+    private static final int FRAMES = 120;
+    private static final int[] FREQUENCIES = {125, 250, 500, 1000, 2000, 4000, 6000, 8000};
+
+    @Test
+    public void drawingAFrameDoesNotAllocate() {
+        final int[] allocations = new int[1];
+        final long[] frameNanos = new long[1];
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+                AudiogramView view = new AudiogramView(context);
+                view.setLevelRange(-10, 120);
+                List<Audiogram> history = new ArrayList<Audiogram>();
+                for (int i = 0; i < SESSIONS; i++) {
+                    history.add(audiogram(i * 0.05));
+                }
+                view.setData(audiogram(15), history);
+                view.measure(View.MeasureSpec.makeMeasureSpec(1280, View.MeasureSpec.EXACTLY),
+                        View.MeasureSpec.makeMeasureSpec(720, View.MeasureSpec.EXACTLY));
+                view.layout(0, 0, 1280, 720);
+
+                Bitmap bitmap = Bitmap.createBitmap(1280, 720, Bitmap.Config.ARGB_8888);
+                Canvas canvas = new Canvas(bitmap);
+                // The first frame may fill caches in the framework; steady state is what counts.
+                view.draw(canvas);
+
+                Debug.resetThreadAllocCount();
+                Debug.startAllocCounting();
+                long start = System.nanoTime();
+                for (int frame = 0; frame < FRAMES; frame++) {
+                    view.draw(canvas);
+                }
+                frameNanos[0] = (System.nanoTime() - start) / FRAMES;
+                Debug.stopAllocCounting();
+                allocations[0] = Debug.getThreadAllocCount();
+                bitmap.recycle();
+            }
+        });
+
+        Log.i(TAG, allocations[0] + " allocations over " + FRAMES + " frames, "
+                + frameNanos[0] / 1000 + " us per software frame");
+        assertEquals("allocations over " + FRAMES + " frames", 0, allocations[0]);
+    }
+
+    private static Audiogram audiogram(double shiftDb) {
+        double[] left = new double[FREQUENCIES.length];
+        double[] right = new double[FREQUENCIES.length];
+        for (int i = 0; i < FREQUENCIES.length; i++) {
+            left[i] = 5 + i * 3 + shiftDb;
+            right[i] = i == FREQUENCIES.length - 1 ? Audiogram.NO_RESPONSE : i * 4 + shiftDb;
+        }
+        return new Audiogram(FREQUENCIES, left, right);
+    }
+}
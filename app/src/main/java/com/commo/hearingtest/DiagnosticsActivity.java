@@ -0,0 +1,90 @@
+package com.commo.hearingtest;
+
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.view.View;
+import android.widget.Button;
+import android.widget.TextView;
+import android.widget.Toast;
+
+import androidx.appcompat.app.AppCompatActivity;
+
+import com.commo.hearingtest.diagnostics.DiagnosticsProvider;
+import com.commo.hearingtest.metrics.AudioMetrics;
+
+/**
+ * Hidden screen (long-press the title on the main screen) showing the live audio metrics, with
+ * the switch that turns them and their periodic dump on or off.
+ */
+public class DiagnosticsActivity extends AppCompatActivity {
+
+    private static final long REFRESH_INTERVAL_MS = 1000;
+
+    private TextView tvReport;
+    private Button btnToggleMetrics;
+
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Runnable refresher = new Runnable() {
+        @Override
+        public void run() {
+            updateUI();
+            handler.postDelayed(this, REFRESH_INTERVAL_MS);
+        }
+    };
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_diagnostics);
+
+        tvReport = findViewById(R.id.tv_report);
+        btnToggleMetrics = findViewById(R.id.btn_toggle_metrics);
+        Button btnResetMetrics = findViewById(R.id.btn_reset_metrics);
+        Button btnDumpMetrics = findViewById(R.id.btn_dump_metrics);
+
+        btnToggleMetrics.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                DiagnosticsProvider diagnostics = DiagnosticsProvider.get();
+                diagnostics.setEnabled(DiagnosticsActivity.this, !diagnostics.isEnabled());
+                updateUI();
+            }
+        });
+        btnResetMetrics.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                AudioMetrics.get().reset();
+                updateUI();
+            }
+        });
+        btnDumpMetrics.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                DiagnosticsProvider diagnostics = DiagnosticsProvider.get();
+                diagnostics.dumpNow(DiagnosticsActivity.this);
+                Toast.makeText(DiagnosticsActivity.this,
+                        diagnostics.getDumpFile(DiagnosticsActivity.this).getPath() + "에 저장합니다.",
+                        Toast.LENGTH_SHORT).show();
+            }
+        });
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        handler.post(refresher);
+    }
+
+    @Override
+    protected void onPause() {
+        super.onPause();
+        handler.removeCallbacks(refresher);
+    }
+
+    private void updateUI() {
+        DiagnosticsProvider diagnostics = DiagnosticsProvider.get();
+        btnToggleMetrics.setText(diagnostics.isEnabled() ? "측정 끄기" : "측정 켜기");
+        tvReport.setText(diagnostics.report());
+    }
+}
@@ -0,0 +1,151 @@
+package com.commo.hearingtest;
+
+import android.content.Intent;
+import android.os.Bundle;
+import android.view.View;
+import android.widget.Button;
+import android.widget.TextView;
+
+import androidx.appcompat.app.AppCompatActivity;
+import androidx.lifecycle.ViewModelProvider;
+
+import com.commo.hearingtest.export.ExportViewModel;
+import com.commo.hearingtest.export.SessionExporter;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+
+/**
+ * Exports every saved session as CSV or JSON to a document the user picks. The export streams
+ * from the session store to the document in the background, so it takes the same memory for ten
+ * sessions as for a kiosk's whole history, and can be cancelled part way. It runs in an
+ * {@link ExportViewModel}, so rotating the screen does not stop it.
+ */
+public class ExportActivity extends AppCompatActivity {
+
+    private static final int REQUEST_CREATE_DOCUMENT = 1;
+    private static final String STATE_GZIP = "gzip";
+    private static final String STATE_PENDING_FORMAT = "pending_format";
+
+    private TextView tvSessionCount;
+    private TextView tvProgress;
+    private Button btnExportCsv;
+    private Button btnExportJson;
+    private Button btnGzip;
+    private Button btnCancel;
+
+    private ExportViewModel viewModel;
+    private boolean gzip;
+    // Survives the document picker even if this screen is recreated behind it.
+    private SessionExporter.Format pendingFormat;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_export);
+
+        tvSessionCount = findViewById(R.id.tv_session_count);
+        tvProgress = findViewById(R.id.tv_export_progress);
+        btnExportCsv = findViewById(R.id.btn_export_csv);
+        btnExportJson = findViewById(R.id.btn_export_json);
+        btnGzip = findViewById(R.id.btn_export_gzip);
+        btnCancel = findViewById(R.id.btn_cancel_export);
+
+        if (savedInstanceState != null) {
+            gzip = savedInstanceState.getBoolean(STATE_GZIP);
+            String format = savedInstanceState.getString(STATE_PENDING_FORMAT);
+            if (format != null) {
+                pendingFormat = SessionExporter.Format.valueOf(format);
+            }
+        }
+
+        btnExportCsv.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                pickDocument(SessionExporter.Format.CSV);
+            }
+        });
+        btnExportJson.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                pickDocument(SessionExporter.Format.JSON);
+            }
+        });
+        btnGzip.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                gzip = !gzip;
+                updateUI();
+            }
+        });
+        btnCancel.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                viewModel.cancelExport();
+            }
+        });
+
+        viewModel = new ViewModelProvider(this).get(ExportViewModel.class);
+        viewModel.setListener(new ExportViewModel.Listener() {
+            @Override
+            public void onExportChanged() {
+                updateUI();
+            }
+        });
+        viewModel.countSessions();
+        updateUI();
+    }
+
+    @Override
+    protected void onSaveInstanceState(Bundle outState) {
+        super.onSaveInstanceState(outState);
+        outState.putBoolean(STATE_GZIP, gzip);
+        if (pendingFormat != null) {
+            outState.putString(STATE_PENDING_FORMAT, pendingFormat.name());
+        }
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        // The export itself goes on across a rotation; the view model stops it when the user leaves.
+        viewModel.setListener(null);
+    }
+
+    private void pickDocument(SessionExporter.Format format) {
+        pendingFormat = format;
+        String baseName = "hearing-sessions-" + new SimpleDateFormat("yyyyMMdd-HHmm", Locale.US).format(new Date());
+        Intent intent = new Intent(Intent.ACTION_CREATE_DOCUMENT);
+        intent.addCategory(Intent.CATEGORY_OPENABLE);
+        intent.setType(SessionExporter.mimeType(format, gzip));
+        intent.putExtra(Intent.EXTRA_TITLE, SessionExporter.fileName(baseName, format, gzip));
+        startActivityForResult(intent, REQUEST_CREATE_DOCUMENT);
+    }
+
+    @Override
+    protected void onActivityResult(int requestCode, int resultCode, Intent data) {
+        super.onActivityResult(requestCode, resultCode, data);
+        if (requestCode != REQUEST_CREATE_DOCUMENT || resultCode != RESULT_OK
+                || data == null || data.getData() == null || pendingFormat == null) {
+            return;
+        }
+        viewModel.startExport(data.getData(), pendingFormat, gzip);
+        pendingFormat = null;
+    }
+
+    private void updateUI() {
+        boolean exporting = viewModel.isExporting();
+        btnExportCsv.setEnabled(!exporting);
+        btnExportJson.setEnabled(!exporting);
+        btnGzip.setEnabled(!exporting);
+        btnCancel.setVisibility(exporting ? View.VISIBLE : View.GONE);
+        btnGzip.setText(gzip ? "압축 (gzip): 켜짐" : "압축 (gzip): 꺼짐");
+        if (viewModel.getSessionCount() != null) {
+            tvSessionCount.setText(viewModel.getSessionCount());
+        }
+        if (viewModel.getStatus() != null) {
+            tvProgress.setText(viewModel.getStatus());
+        }
+    }
+}
@@ -3,11 +3,10 @@ package com.commo.hearingtest;
 import android.Manifest;
 import android.content.Intent;
 import android.content.pm.PackageManager;
-import android.media.AudioAttributes;
-import android.media.AudioFormat;
 import android.media.AudioManager;
-import android.media.AudioTrack;
 import android.os.Bundle;
+import android.os.Process;
+import android.text.TextUtils;
 import android.view.View;
 import android.widget.Button;
 import android.widget.TextView;
@@ -16,10 +15,41 @@ import android.widget.Toast;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.core.app.ActivityCompat;
 import androidx.core.content.ContextCompat;
+import androidx.lifecycle.ViewModelProvider;
+
+import com.commo.hearingtest.audio.AudioEngine;
+import com.commo.hearingtest.audio.AudioEngineViewModel;
+import com.commo.hearingtest.audio.AudioThreadFactory;
+import com.commo.hearingtest.audio.ResponseTimer;
+import com.commo.hearingtest.audio.Stimulus;
+import com.commo.hearingtest.calibration.CalibrationProvider;
+import com.commo.hearingtest.calibration.GainTable;
+import com.commo.hearingtest.core.Audiogram;
+import com.commo.hearingtest.core.Ear;
+import com.commo.hearingtest.core.FrequencyResponse;
+import com.commo.hearingtest.core.FrequencyTestResult;
+import com.commo.hearingtest.core.ReactionTimes;
+import com.commo.hearingtest.core.ThresholdSearch;
+import com.commo.hearingtest.diagnostics.FrameDropMonitor;
+import com.commo.hearingtest.dsp.ToneCache;
+import com.commo.hearingtest.kiosk.KioskProvider;
+import com.commo.hearingtest.noise.AmbientNoiseMonitor;
+import com.commo.hearingtest.noise.AudioRecordInput;
+import com.commo.hearingtest.protocol.ProtocolProvider;
+import com.commo.hearingtest.protocol.StandardProtocol;
+import com.commo.hearingtest.protocol.TestProtocol;
+import com.commo.hearingtest.store.SessionRecord;
+import com.commo.hearingtest.store.SessionStoreProvider;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
 
 public class FrequencyTestActivity extends AppCompatActivity {
 
     private static final int PERMISSION_REQUEST_CODE = 1002;
+    private static final int NOISE_PERMISSION_REQUEST_CODE = 1003;
+    private static final int MAX_NOISE_REPEATS = 3;
 
     private TextView tvInstructions;
     private TextView tvCurrentFrequency;
@@ -30,19 +60,41 @@ public class FrequencyTestActivity extends AppCompatActivity {
     private Button btnStartTest;
     private Button btnPlaySound;
     
-    private AudioTrack audioTrack;
+    private AudioEngine audioEngine;
     private AudioManager audioManager;
-    private boolean isTestRunning = false;
-    private int currentFrequency;
-    private int[] testFrequencies = {8000, 6000, 4000, 2000, 1000, 500, 250, 125}; // Hz
-    private int currentFrequencyIndex = 0;
-    private int lowestHeardFrequency = -1;
-    private int optimalFrequency = -1;
+    private GainTable gainTable;
+    private TestProtocol protocol = TestProtocol.standard();
+    private double maxLevelDbHl = StandardProtocol.MAX_LEVEL_DB_HL;
+    private ThresholdSearch thresholdSearch = StandardProtocol.newThresholdSearch(maxLevelDbHl);
+    private AmbientNoiseMonitor noiseMonitor;
+    private FrameDropMonitor frameDropMonitor;
+    private ResponseTimer responseTimer;
+    private final ResponseTouchListener responseTouches = new ResponseTouchListener();
+    private int noisyTrials;
+    // Re-presentations of the current trial because of noise, and the trials noise decided.
+    private int noiseRepeats;
+    private final Set<String> noiseMaskedTrials = new LinkedHashSet<String>();
+    private String participantId = SessionRecord.DEFAULT_USER;
+    private boolean kiosk;
+    private boolean autoStart;
+    // The kiosk hears when the first tone is actually heard, not when it is queued behind the gap.
+    private boolean kioskStartPending;
+    private Stimulus firstTone;
+    private Stimulus lastTone;
+    private boolean starting;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_frequency_test);
+        frameDropMonitor = new FrameDropMonitor(this);
+        kiosk = getIntent().getBooleanExtra("kiosk", false);
+        // The operator started this participant from the queue; begin as soon as audio is ready.
+        autoStart = kiosk && savedInstanceState == null;
+        String participant = getIntent().getStringExtra("participant_id");
+        if (participant != null) {
+            participantId = participant;
+        }
 
         initializeViews();
         setupClickListeners();
@@ -76,6 +128,14 @@ public class FrequencyTestActivity extends AppCompatActivity {
             } else {
                 Toast.makeText(this, "오디오 권한이 필요합니다.", Toast.LENGTH_SHORT).show();
             }
+        } else if (requestCode == NOISE_PERMISSION_REQUEST_CODE) {
+            if (grantResults.length > 0 && grantResults[0] == PackageManager.PERMISSION_GRANTED) {
+                if (thresholdSearch.isRunning()) {
+                    startNoiseMonitor();
+                }
+            } else {
+                Toast.makeText(this, "마이크 권한이 없어 주변 소음을 확인하지 않습니다.", Toast.LENGTH_SHORT).show();
+            }
         }
     }
 
@@ -91,31 +151,30 @@ public class FrequencyTestActivity extends AppCompatActivity {
     }
 
     private void initializeAudio() {
-        try {
-            audioManager = (AudioManager) getSystemService(AUDIO_SERVICE);
-            
-            int sampleRate = 44100;
-            int channelConfig = AudioFormat.CHANNEL_OUT_STEREO;
-            int audioFormat = AudioFormat.ENCODING_PCM_16BIT;
-            int bufferSize = AudioTrack.getMinBufferSize(sampleRate, channelConfig, audioFormat);
-
-            AudioAttributes audioAttributes = new AudioAttributes.Builder()
-                    .setUsage(AudioAttributes.USAGE_MEDIA)
-                    .setContentType(AudioAttributes.CONTENT_TYPE_MUSIC)
-                    .build();
-
-            audioTrack = new AudioTrack(audioAttributes,
-                    new AudioFormat.Builder()
-                            .setSampleRate(sampleRate)
-                            .setChannelMask(channelConfig)
-                            .setEncoding(audioFormat)
-                            .build(),
-                    bufferSize,
-                    AudioTrack.MODE_STREAM,
-                    AudioManager.AUDIO_SESSION_ID_GENERATE);
-        } catch (Exception e) {
-            Toast.makeText(this, "오디오 초기화 오류: " + e.getMessage(), Toast.LENGTH_SHORT).show();
-        }
+        if (audioEngine != null) return;
+        audioManager = (AudioManager) getSystemService(AUDIO_SERVICE);
+        // Opening the output may take a while; Start stays disabled until the engine is ready.
+        new ViewModelProvider(this).get(AudioEngineViewModel.class).requestEngine(
+                new AudioEngineViewModel.EngineCallback() {
+                    @Override
+                    public void onEngineReady(AudioEngine engine) {
+                        if (isDestroyed()) return;
+                        audioEngine = engine;
+                        responseTimer = new ResponseTimer(engine);
+                        updateUI();
+                        if (autoStart) {
+                            autoStart = false;
+                            startTest();
+                        }
+                    }
+
+                    @Override
+                    public void onEngineFailed(RuntimeException error) {
+                        if (isDestroyed()) return;
+                        Toast.makeText(FrequencyTestActivity.this, "오디오 초기화 오류: " + error.getMessage(),
+                                Toast.LENGTH_SHORT).show();
+                    }
+                });
     }
 
     private void setupClickListeners() {
@@ -146,7 +205,7 @@ public class FrequencyTestActivity extends AppCompatActivity {
                 @Override
                 public void onClick(View v) {
                     if (FrequencyTestActivity.this != null) {
-                        handleResponse(0); // Cannot hear
+                        handleResponse(FrequencyResponse.CANNOT_HEAR);
                     }
                 }
             });
@@ -157,7 +216,7 @@ public class FrequencyTestActivity extends AppCompatActivity {
                 @Override
                 public void onClick(View v) {
                     if (FrequencyTestActivity.this != null) {
-                        handleResponse(1); // Hear faintly
+                        handleResponse(FrequencyResponse.HEAR_FAINTLY);
                     }
                 }
             });
@@ -168,38 +227,88 @@ public class FrequencyTestActivity extends AppCompatActivity {
                 @Override
                 public void onClick(View v) {
                     if (FrequencyTestActivity.this != null) {
-                        handleResponse(2); // Hear clearly
+                        handleResponse(FrequencyResponse.HEAR_CLEARLY);
                     }
                 }
             });
         }
+
+        responseTouches.attach(btnCannotHear, btnHearFaintly, btnHearClearly);
     }
 
     private void startTest() {
-        isTestRunning = true;
-        currentFrequencyIndex = 0;
-        if (testFrequencies != null && testFrequencies.length > 0) {
-            currentFrequency = testFrequencies[currentFrequencyIndex];
+        if (starting || audioEngine == null) return;
+        starting = true;
+        updateUI();
+        // The protocols may still be loading; wait for them off the main thread.
+        ProtocolProvider.get().getAllAsync(this, new ProtocolProvider.LoadCallback() {
+            @Override
+            public void onLoaded(List<TestProtocol> protocols, TestProtocol current) {
+                protocol = current;
+                selectCalibration();
+            }
+        });
+    }
+
+    private void selectCalibration() {
+        // Headphones may have changed since the last test; the profile's table is already built,
+        // but the profiles may still be loading, so the selection is made off the main thread.
+        CalibrationProvider.get().selectAsync(this, new CalibrationProvider.SelectCallback() {
+            @Override
+            public void onSelected(GainTable selected) {
+                starting = false;
+                if (isDestroyed()) return;
+                gainTable = selected;
+                beginTest();
+            }
+        });
+    }
+
+    private void beginTest() {
+        maxLevelDbHl = protocol.maxLevelDbHl(gainTable);
+        thresholdSearch = protocol.newThresholdSearch(maxLevelDbHl);
+        noisyTrials = 0;
+        noiseRepeats = 0;
+        noiseMaskedTrials.clear();
+        if (responseTimer != null) {
+            responseTimer.reset();
+        }
+        thresholdSearch.start();
+        kioskStartPending = kiosk;
+        firstTone = null;
+        if (ContextCompat.checkSelfPermission(this, Manifest.permission.RECORD_AUDIO)
+                == PackageManager.PERMISSION_GRANTED) {
+            startNoiseMonitor();
+        } else {
+            ActivityCompat.requestPermissions(this,
+                    new String[]{Manifest.permission.RECORD_AUDIO}, NOISE_PERMISSION_REQUEST_CODE);
         }
-        lowestHeardFrequency = -1;
-        optimalFrequency = -1;
-        
         nextFrequency();
         updateUI();
     }
 
+    /** Tells the kiosk the participant's test is under way once their first tone has been played. */
+    private void reportKioskStart() {
+        if (!kioskStartPending || firstTone == null || !firstTone.hasStarted()) return;
+        kioskStartPending = false;
+        long onsetNanos = audioEngine.onsetNanoTime(firstTone);
+        KioskProvider.get().testStarted(participantId, onsetNanos >= 0 ? onsetNanos : System.nanoTime());
+        firstTone = null;
+    }
+
     private void nextFrequency() {
-        if (testFrequencies != null && currentFrequencyIndex < testFrequencies.length) {
-            currentFrequency = testFrequencies[currentFrequencyIndex];
+        if (!thresholdSearch.isFinished()) {
+            int currentFrequency = thresholdSearch.getCurrentFrequency();
+            String ear = thresholdSearch.getCurrentEar() == Ear.LEFT ? "왼쪽 귀" : "오른쪽 귀";
             if (tvInstructions != null) {
-                tvInstructions.setText("현재 주파수: " + currentFrequency + "Hz\n" +
+                tvInstructions.setText("현재 주파수: " + currentFrequency + "Hz (" + ear + ")\n" +
                         "소리 재생 버튼을 눌러 테스트음을 들어보세요.\n" +
                         "아래 버튼 중 해당하는 것을 선택하세요.");
             }
             if (tvCurrentFrequency != null) {
                 tvCurrentFrequency.setText(currentFrequency + " Hz");
             }
-            playCurrentFrequency();
+            playCurrentFrequency(protocol.getAutoPlayGapMs(), protocol.getAutoPlayJitterMs());
         } else {
             finishTest();
         }
@@ -207,127 +316,143 @@ public class FrequencyTestActivity extends AppCompatActivity {
     }
 
     private void playCurrentFrequency() {
-        if (audioTrack == null) return;
+        playCurrentFrequency(0, 0);
+    }
+
+    private void playCurrentFrequency(int gapMs, int jitterMs) {
+        if (audioEngine == null || gainTable == null) return;
 
         try {
-            // Generate test tone at current frequency
-            int duration = 2000; // 2 seconds
-            int sampleRate = 44100;
-            
-            short[] buffer = generateTone(currentFrequency, duration, sampleRate);
+            // Test tone at the level the threshold search asks for, in the ear under test
+            short[] buffer = ToneCache.shared().get(protocol.frequencyTone(
+                    thresholdSearch, gainTable, audioEngine.getSampleRate()));
             
             if (buffer != null) {
-                audioTrack.write(buffer, 0, buffer.length);
-                audioTrack.play();
+                // Replaces whatever is still playing, so repeated taps never queue up.
+                reportKioskStart();
+                Stimulus stimulus = Stimulus.of(buffer);
+                if (kioskStartPending) {
+                    firstTone = stimulus;
+                }
+                audioEngine.replace(stimulus, gapMs, jitterMs);
+                lastTone = stimulus;
+                if (responseTimer != null) {
+                    responseTimer.presented(stimulus);
+                }
+                if (noiseMonitor != null) {
+                    noiseMonitor.resetPeaks();
+                }
             }
         } catch (Exception e) {
             Toast.makeText(this, "소리 재생 오류: " + e.getMessage(), Toast.LENGTH_SHORT).show();
         }
     }
 
-    private short[] generateTone(int frequency, int duration, int sampleRate) {
-        int numSamples = duration * sampleRate / 1000;
-        short[] buffer = new short[numSamples * 2]; // Stereo
-        
-        double phase = 0;
-        double phaseIncrement = 2 * Math.PI * frequency / sampleRate;
-        
-        for (int i = 0; i < numSamples; i++) {
-            short sample = (short) (Short.MAX_VALUE * Math.sin(phase) * 0.4); // 40% volume
-            
-            buffer[i * 2] = sample;     // Left channel
-            buffer[i * 2 + 1] = sample; // Right channel
-            
-            phase += phaseIncrement;
-        }
-        
-        return buffer;
-    }
+    private void handleResponse(FrequencyResponse response) {
+        long responseNanos = responseTouches.takeResponseNanos();
+        if (!thresholdSearch.isRunning()) return;
+        reportKioskStart();
 
-    private void handleResponse(int response) {
-        if (!isTestRunning || testFrequencies == null) return;
-
-        // Record responses for analysis
-        switch (response) {
-            case 0: // Cannot hear
-                // Continue to next frequency
-                break;
-            case 1: // Hear faintly
-                if (lowestHeardFrequency == -1) {
-                    lowestHeardFrequency = currentFrequency;
-                }
-                break;
-            case 2: // Hear clearly
-                if (optimalFrequency == -1) {
-                    optimalFrequency = currentFrequency;
-                }
-                if (lowestHeardFrequency == -1) {
-                    lowestHeardFrequency = currentFrequency;
-                }
-                break;
+        // Noise can only hide a tone, so only a miss is in doubt. Present the tone again rather
+        // than let the room raise the threshold, but only a few times: in a room that stays loud
+        // the miss is recorded and the frequency is flagged on the results instead.
+        if (response == FrequencyResponse.CANNOT_HEAR && noiseMonitor != null
+                && noiseMonitor.isMasking(thresholdSearch.getCurrentFrequency(), thresholdSearch.getCurrentLevelDb())) {
+            if (noiseRepeats < MAX_NOISE_REPEATS) {
+                noiseRepeats++;
+                noisyTrials++;
+                Toast.makeText(this, "주변 소음이 커서 같은 소리를 다시 들려드립니다.", Toast.LENGTH_SHORT).show();
+                playCurrentFrequency(protocol.getAutoPlayGapMs(), protocol.getAutoPlayJitterMs());
+                return;
+            }
+            noiseMaskedTrials.add(thresholdSearch.getCurrentFrequency() + "Hz ("
+                    + (thresholdSearch.getCurrentEar() == Ear.LEFT ? "왼쪽" : "오른쪽") + ")");
+            Toast.makeText(this, "주변 소음이 계속되어 들리지 않음으로 기록합니다.", Toast.LENGTH_SHORT).show();
         }
+        noiseRepeats = 0;
 
-        currentFrequencyIndex++;
+        if (responseTimer != null) {
+            responseTimer.respond(responseNanos);
+        }
+        // Faint and clear both count as heard; the search itself finds how faint.
+        thresholdSearch.record(response != FrequencyResponse.CANNOT_HEAR);
         nextFrequency();
     }
 
-    private void finishTest() {
-        isTestRunning = false;
-        
-        // Analyze results
-        String analysis = analyzeResults();
-        
-        Intent resultIntent = new Intent(this, TestResultActivity.class);
-        resultIntent.putExtra("test_type", "주파수 감도 테스트");
-        resultIntent.putExtra("optimal_frequency", optimalFrequency);
-        resultIntent.putExtra("lowest_frequency", lowestHeardFrequency);
-        resultIntent.putExtra("analysis", analysis);
-        startActivity(resultIntent);
-        finish();
+    private void startNoiseMonitor() {
+        if (noiseMonitor != null) return;
+        AudioRecordInput input = AudioRecordInput.open();
+        if (input == null) return;
+        noiseMonitor = new AmbientNoiseMonitor(input, new AudioThreadFactory(Process.THREAD_PRIORITY_AUDIO));
+        noiseMonitor.start();
     }
 
-    private String analyzeResults() {
-        StringBuilder analysis = new StringBuilder();
-        
-        if (optimalFrequency != -1) {
-            analysis.append("최적 주파수: ").append(optimalFrequency).append("Hz\n");
-        } else {
-            analysis.append("최적 주파수: 감지되지 않음\n");
+    private void stopNoiseMonitor() {
+        if (noiseMonitor != null) {
+            noiseMonitor.release();
+            noiseMonitor = null;
         }
-        
-        if (lowestHeardFrequency != -1) {
-            analysis.append("감지 가능한 최저 주파수: ").append(lowestHeardFrequency).append("Hz\n");
-        } else {
-            analysis.append("감지 가능한 주파수: 없음\n");
+    }
+
+    private void finishTest() {
+        stopNoiseMonitor();
+        Audiogram audiogram = thresholdSearch.getAudiogram();
+        long timestamp = System.currentTimeMillis();
+        ReactionTimes reactionTimes = responseTimer != null ? responseTimer.getReactionTimes() : null;
+        SessionStoreProvider.get().save(this, SessionRecord.ofFrequencyTest(participantId,
+                timestamp, audiogram, thresholdSearch.getPresentationCount(), reactionTimes));
+        FrequencyTestResult result = FrequencyTestResult.fromAudiogram(audiogram, StandardProtocol.LEGACY_LEVEL_DB_HL);
+        double[] leftThresholds = new double[audiogram.getFrequencyCount()];
+        double[] rightThresholds = new double[audiogram.getFrequencyCount()];
+        for (int i = 0; i < audiogram.getFrequencyCount(); i++) {
+            leftThresholds[i] = audiogram.getThresholdDb(Ear.LEFT, i);
+            rightThresholds[i] = audiogram.getThresholdDb(Ear.RIGHT, i);
         }
-        
-        // Add age-based analysis
-        if (lowestHeardFrequency >= 4000) {
-            analysis.append("\n분석: 젊은 연령대의 정상적인 청력 범위입니다.");
-        } else if (lowestHeardFrequency >= 2000) {
-            analysis.append("\n분석: 성인 평균 수준의 청력입니다.");
-        } else if (lowestHeardFrequency >= 1000) {
-            analysis.append("\n분석: 고주파수 청력이 약간 감소되었을 수 있습니다.");
-        } else {
-            analysis.append("\n분석: 전반적인 청력 검진을 권장합니다.");
+
+        Intent resultIntent = new Intent(this, TestResultActivity.class);
+        resultIntent.putExtra("test_type", "주파수 감도 테스트");
+        resultIntent.putExtra("optimal_frequency", result.getOptimalFrequency());
+        resultIntent.putExtra("lowest_frequency", result.getLowestHeardFrequency());
+        resultIntent.putExtra("analysis", result.getAnalysis());
+        resultIntent.putExtra("frequencies", audiogram.getFrequencies());
+        resultIntent.putExtra("left_thresholds", leftThresholds);
+        resultIntent.putExtra("right_thresholds", rightThresholds);
+        resultIntent.putExtra("presentations", thresholdSearch.getPresentationCount());
+        resultIntent.putExtra("timestamp", timestamp);
+        resultIntent.putExtra("noisy_trials", noisyTrials);
+        if (!noiseMaskedTrials.isEmpty()) {
+            resultIntent.putExtra("noise_masked", TextUtils.join(", ", noiseMaskedTrials));
         }
-        
-        return analysis.toString();
+        resultIntent.putExtra("min_level_db", protocol.getMinLevelDbHl());
+        resultIntent.putExtra("max_level_db", maxLevelDbHl);
+        resultIntent.putExtra("calibration", gainTable.getProfile().getName());
+        resultIntent.putExtra("protocol", protocol.getName());
+        TestResultActivity.putReactionTimes(resultIntent, reactionTimes);
+        resultIntent.putExtra("participant_id", participantId);
+        resultIntent.putExtra("kiosk", kiosk);
+        if (kiosk) {
+            KioskProvider.get().testFinished(participantId);
+        }
+        startActivity(resultIntent);
+        finish();
     }
 
     private void updateUI() {
-        if (isTestRunning) {
+        if (thresholdSearch.isRunning()) {
             if (btnStartTest != null) btnStartTest.setVisibility(View.GONE);
             if (btnPlaySound != null) btnPlaySound.setVisibility(View.VISIBLE);
             if (btnCannotHear != null) btnCannotHear.setVisibility(View.VISIBLE);
             if (btnHearFaintly != null) btnHearFaintly.setVisibility(View.VISIBLE);
             if (btnHearClearly != null) btnHearClearly.setVisibility(View.VISIBLE);
-            if (tvProgress != null && testFrequencies != null) {
-                tvProgress.setText("진행률: " + (currentFrequencyIndex + 1) + "/" + testFrequencies.length);
+            if (tvProgress != null) {
+                tvProgress.setText("진행률: " + (thresholdSearch.getStepIndex() + 1) + "/" + thresholdSearch.getStepCount());
             }
             if (tvCurrentFrequency != null) tvCurrentFrequency.setVisibility(View.VISIBLE);
         } else {
-            if (btnStartTest != null) btnStartTest.setVisibility(View.VISIBLE);
+            if (btnStartTest != null) {
+                btnStartTest.setVisibility(View.VISIBLE);
+                btnStartTest.setEnabled(audioEngine != null && !starting);
+            }
             if (btnPlaySound != null) btnPlaySound.setVisibility(View.GONE);
             if (btnCannotHear != null) btnCannotHear.setVisibility(View.GONE);
             if (btnHearFaintly != null) btnHearFaintly.setVisibility(View.GONE);
@@ -335,22 +460,42 @@ public class FrequencyTestActivity extends AppCompatActivity {
             if (tvProgress != null) tvProgress.setText("");
             if (tvCurrentFrequency != null) tvCurrentFrequency.setVisibility(View.GONE);
             if (tvInstructions != null) {
-                tvInstructions.setText("주파수 감도 테스트\n\n연령대별 평균 주파수에서 시작하여\n점차 낮은 주파수로 테스트합니다.\n\n헤드폰이나 이어폰을 착용하고\n시작 버튼을 누르세요.");
+                tvInstructions.setText("주파수 감도 테스트\n\n각 귀에서 주파수별로\n들리는 가장 작은 소리를 찾습니다.\n\n헤드폰이나 이어폰을 착용하고\n시작 버튼을 누르세요.");
             }
         }
     }
 
+    @Override
+    protected void onResume() {
+        super.onResume();
+        frameDropMonitor.start();
+        // The microphone is released while in the background; pick the test's monitoring back up.
+        if (thresholdSearch.isRunning() && ContextCompat.checkSelfPermission(this,
+                Manifest.permission.RECORD_AUDIO) == PackageManager.PERMISSION_GRANTED) {
+            startNoiseMonitor();
+        }
+    }
+
+    @Override
+    protected void onPause() {
+        super.onPause();
+        frameDropMonitor.stop();
+        stopNoiseMonitor();
+    }
+
     @Override
     protected void onDestroy() {
         super.onDestroy();
-        if (audioTrack != null) {
-            try {
-                audioTrack.stop();
-                audioTrack.release();
-            } catch (Exception e) {
-                // 예외 무시
-            }
-            audioTrack = null;
+        stopNoiseMonitor();
+        if (kiosk && isFinishing()) {
+            // No-op if the results were shown; otherwise the participant left part way.
+            KioskProvider.get().testAbandoned(participantId);
+        }
+        // The engine is shared and outlives this screen; AudioEngineViewModel gives it back. The
+        // next screen may be playing through it already, so only this screen's sound is stopped.
+        if (audioEngine != null && lastTone != null && !isChangingConfigurations()) {
+            audioEngine.cancel(lastTone);
         }
+        audioEngine = null;
     }
 }
\ No newline at end of file
@@ -0,0 +1,37 @@
+package com.commo.hearingtest;
+
+import android.app.Application;
+
+import com.commo.hearingtest.audio.AudioEngineProvider;
+import com.commo.hearingtest.calibration.CalibrationProvider;
+import com.commo.hearingtest.diagnostics.DiagnosticsProvider;
+import com.commo.hearingtest.protocol.ProtocolProvider;
+import com.commo.hearingtest.store.SessionStoreProvider;
+import com.commo.hearingtest.sync.SyncProvider;
+
+public class HearingTestApplication extends Application {
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        // Before any audio starts, so a session that stutters is measured from its first tone.
+        DiagnosticsProvider.get().restore(this);
+        // Recovery after a crash happens here, long before a result needs saving.
+        SessionStoreProvider.get().openAsync(this);
+        // Uploads what an earlier process left pending, then each session as it is saved.
+        SyncProvider.get().startAsync(this);
+        // Profiles are parsed and their gain tables built once, before any test asks for them.
+        CalibrationProvider.get().loadAsync(this);
+        // Protocol files are validated here too, so a broken one is skipped before anyone picks it.
+        ProtocolProvider.get().loadAsync(this);
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        if (level >= TRIM_MEMORY_UI_HIDDEN) {
+            // No screen is visible; free the output stream unless a test still holds it.
+            AudioEngineProvider.get().shutdownIfIdle();
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.commo.hearingtest;
+
+import android.content.Intent;
+import android.os.Bundle;
+import android.view.View;
+import android.widget.Button;
+import android.widget.EditText;
+import android.widget.TextView;
+import android.widget.Toast;
+
+import androidx.appcompat.app.AppCompatActivity;
+
+import com.commo.hearingtest.kiosk.KioskProvider;
+
+import java.util.List;
+
+/**
+ * Screening-drive screen: the operator queues participants here and starts each one's frequency
+ * test. From a participant's results the next one is started directly; this screen shows the
+ * queue and how long changeovers take.
+ */
+public class KioskActivity extends AppCompatActivity {
+
+    private EditText etParticipantId;
+    private TextView tvQueue;
+    private TextView tvTurnover;
+    private Button btnStartNext;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_kiosk);
+
+        etParticipantId = findViewById(R.id.et_participant_id);
+        tvQueue = findViewById(R.id.tv_queue);
+        tvTurnover = findViewById(R.id.tv_turnover);
+        btnStartNext = findViewById(R.id.btn_start_next);
+        Button btnAddParticipant = findViewById(R.id.btn_add_participant);
+
+        btnAddParticipant.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                addParticipant();
+            }
+        });
+        btnStartNext.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                Intent intent = KioskProvider.get().startNext(KioskActivity.this);
+                if (intent != null) {
+                    startActivity(intent);
+                }
+                updateUI();
+            }
+        });
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        KioskProvider.get().prepareNext(this);
+        updateUI();
+    }
+
+    private void addParticipant() {
+        try {
+            String id = KioskProvider.get().add(this, etParticipantId.getText().toString());
+            etParticipantId.getText().clear();
+            Toast.makeText(this, id + " 님을 대기열에 추가했습니다.", Toast.LENGTH_SHORT).show();
+        } catch (IllegalArgumentException e) {
+            Toast.makeText(this, "이미 대기 중인 참가자입니다.", Toast.LENGTH_SHORT).show();
+        }
+        updateUI();
+    }
+
+    private void updateUI() {
+        KioskProvider kiosk = KioskProvider.get();
+        List<String> waiting = kiosk.getWaiting();
+        StringBuilder queue = new StringBuilder("대기 중: ").append(waiting.size()).append("명");
+        for (int i = 0; i < waiting.size(); i++) {
+            queue.append("\n").append(i + 1).append(". ").append(waiting.get(i));
+        }
+        tvQueue.setText(queue.toString());
+        tvTurnover.setText(kiosk.report());
+        btnStartNext.setEnabled(!waiting.isEmpty());
+        btnStartNext.setText(waiting.isEmpty() ? "다음 참가자 검사 시작" : waiting.get(0) + " 님 검사 시작");
+    }
+}
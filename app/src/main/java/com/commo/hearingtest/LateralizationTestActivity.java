@@ -0,0 +1,200 @@
+package com.commo.hearingtest;
+
+import android.content.Intent;
+import android.os.Bundle;
+import android.view.View;
+import android.widget.Button;
+import android.widget.TextView;
+import android.widget.Toast;
+
+import androidx.appcompat.app.AppCompatActivity;
+import androidx.lifecycle.ViewModelProvider;
+
+import com.commo.hearingtest.audio.AudioEngine;
+import com.commo.hearingtest.audio.AudioEngineViewModel;
+import com.commo.hearingtest.audio.Stimulus;
+import com.commo.hearingtest.calibration.CalibrationProvider;
+import com.commo.hearingtest.calibration.GainTable;
+import com.commo.hearingtest.core.LateralizationTest;
+import com.commo.hearingtest.dsp.Lateralizer;
+import com.commo.hearingtest.protocol.StandardProtocol;
+
+/**
+ * Lateralization test: tone bursts are pushed slightly to the left or right, first by a time
+ * difference between the ears and then by a level difference, and the listener names the side.
+ * Each cue's difference shrinks adaptively to the smallest one the listener can tell (see
+ * {@link LateralizationTest}). Every trial is rendered when it is presented.
+ */
+public class LateralizationTestActivity extends AppCompatActivity {
+
+    private static final LateralizationTest.Cue[] CUES = {LateralizationTest.Cue.ITD, LateralizationTest.Cue.ILD};
+
+    private TextView tvTitle;
+    private TextView tvInstructions;
+    private TextView tvProgress;
+    private Button btnLeft;
+    private Button btnRight;
+    private Button btnStartTest;
+    private Button btnPlaySound;
+
+    private AudioEngine audioEngine;
+    private GainTable gainTable;
+    private int cueIndex = -1;
+    private LateralizationTest test;
+    private Lateralizer lateralizer;
+    private final LateralizationTest[] finished = new LateralizationTest[CUES.length];
+    private short[] currentTrial;
+    private Stimulus lastTrial;
+    private boolean starting;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_left_right_test);
+
+        tvTitle = findViewById(R.id.tv_title);
+        tvInstructions = findViewById(R.id.tv_instructions);
+        tvProgress = findViewById(R.id.tv_progress);
+        btnLeft = findViewById(R.id.btn_left);
+        btnRight = findViewById(R.id.btn_right);
+        btnStartTest = findViewById(R.id.btn_start_test);
+        btnPlaySound = findViewById(R.id.btn_play_sound);
+        tvTitle.setText("방향 변별 테스트");
+        // Opening the output may take a while; Start stays disabled until the engine is ready.
+        new ViewModelProvider(this).get(AudioEngineViewModel.class).requestEngine(
+                new AudioEngineViewModel.EngineCallback() {
+                    @Override
+                    public void onEngineReady(AudioEngine engine) {
+                        if (isDestroyed()) return;
+                        audioEngine = engine;
+                        updateUI();
+                    }
+
+                    @Override
+                    public void onEngineFailed(RuntimeException error) {
+                        if (isDestroyed()) return;
+                        Toast.makeText(LateralizationTestActivity.this, "오디오 초기화 오류: " + error.getMessage(),
+                                Toast.LENGTH_SHORT).show();
+                    }
+                });
+
+        btnStartTest.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                startTest();
+            }
+        });
+        btnPlaySound.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                play(0, 0);
+            }
+        });
+        btnLeft.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                handleAnswer(true);
+            }
+        });
+        btnRight.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                handleAnswer(false);
+            }
+        });
+        updateUI();
+    }
+
+    private void startTest() {
+        if (starting || audioEngine == null) return;
+        starting = true;
+        updateUI();
+        // The profiles may still be loading; select the headphones' table off the main thread.
+        CalibrationProvider.get().selectAsync(this, new CalibrationProvider.SelectCallback() {
+            @Override
+            public void onSelected(GainTable selected) {
+                starting = false;
+                if (isDestroyed() || audioEngine == null) return;
+                gainTable = selected;
+                cueIndex = -1;
+                nextCue();
+            }
+        });
+    }
+
+    private void nextCue() {
+        cueIndex++;
+        if (cueIndex >= CUES.length) {
+            test = null;
+            finishTest();
+            return;
+        }
+        test = new LateralizationTest(CUES[cueIndex]);
+        lateralizer = StandardProtocol.lateralizer(test.getCue(), audioEngine.getSampleRate());
+        test.start();
+        presentTrial();
+    }
+
+    private void presentTrial() {
+        currentTrial = StandardProtocol.lateralizationTrial(test, lateralizer, gainTable);
+        play(StandardProtocol.AUTO_PLAY_GAP_MS, StandardProtocol.AUTO_PLAY_JITTER_MS);
+        updateUI();
+    }
+
+    private void play(int gapMs, int jitterMs) {
+        if (audioEngine == null || currentTrial == null) return;
+        lastTrial = Stimulus.of(currentTrial);
+        audioEngine.replace(lastTrial, gapMs, jitterMs);
+    }
+
+    private void handleAnswer(boolean selectedLeft) {
+        if (test == null || !test.isRunning()) return;
+        if (test.answer(selectedLeft)) {
+            finished[cueIndex] = test;
+            nextCue();
+        } else {
+            presentTrial();
+        }
+    }
+
+    private void finishTest() {
+        LateralizationTest itd = finished[0];
+        LateralizationTest ild = finished[1];
+        Intent resultIntent = new Intent(this, TestResultActivity.class);
+        resultIntent.putExtra("test_type", "방향 변별 테스트");
+        resultIntent.putExtra("itd_jnd_us", itd.getJnd());
+        resultIntent.putExtra("ild_jnd_db", ild.getJnd());
+        resultIntent.putExtra("itd_trials", itd.getTrialCount());
+        resultIntent.putExtra("ild_trials", ild.getTrialCount());
+        startActivity(resultIntent);
+        finish();
+    }
+
+    private void updateUI() {
+        boolean running = test != null && test.isRunning();
+        btnStartTest.setVisibility(running ? View.GONE : View.VISIBLE);
+        btnStartTest.setEnabled(audioEngine != null && !starting);
+        btnPlaySound.setVisibility(running ? View.VISIBLE : View.GONE);
+        btnLeft.setVisibility(running ? View.VISIBLE : View.GONE);
+        btnRight.setVisibility(running ? View.VISIBLE : View.GONE);
+        if (running) {
+            tvInstructions.setText((test.getCue() == LateralizationTest.Cue.ITD ? "1/2 시간차" : "2/2 크기차")
+                    + "\n\n양쪽 귀에서 모두 소리가 들립니다.\n소리가 조금이라도 치우친 방향을 선택하세요.\n잘 모르겠으면 짐작해서 고르세요.");
+            tvProgress.setText("시도: " + test.getCurrentTrialNumber() + " (최대 " + LateralizationTest.MAX_TRIALS + ")");
+        } else {
+            tvProgress.setText("");
+            tvInstructions.setText("방향 변별 테스트\n\n소리가 왼쪽과 오른쪽 중 어느 쪽으로\n치우쳤는지 구별할 수 있는 가장 작은 차이를 찾습니다.\n\n헤드폰이나 이어폰을 착용하고 테스트를 시작하세요.");
+        }
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        // The engine is shared and outlives this screen; AudioEngineViewModel gives it back. The
+        // next screen may be playing through it already, so only this screen's sound is stopped.
+        if (audioEngine != null && lastTrial != null && !isChangingConfigurations()) {
+            audioEngine.cancel(lastTrial);
+        }
+        audioEngine = null;
+    }
+}
@@ -3,10 +3,7 @@ package com.commo.hearingtest;
 import android.Manifest;
 import android.content.Intent;
 import android.content.pm.PackageManager;
-import android.media.AudioAttributes;
-import android.media.AudioFormat;
 import android.media.AudioManager;
-import android.media.AudioTrack;
 import android.os.Bundle;
 import android.view.View;
 import android.widget.Button;
@@ -16,8 +13,25 @@ import android.widget.Toast;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.core.app.ActivityCompat;
 import androidx.core.content.ContextCompat;
+import androidx.lifecycle.ViewModelProvider;
 
-import java.util.Random;
+import com.commo.hearingtest.audio.AudioEngine;
+import com.commo.hearingtest.audio.AudioEngineViewModel;
+import com.commo.hearingtest.audio.ResponseTimer;
+import com.commo.hearingtest.audio.Stimulus;
+import com.commo.hearingtest.calibration.CalibrationProvider;
+import com.commo.hearingtest.calibration.GainTable;
+import com.commo.hearingtest.core.LeftRightTest;
+import com.commo.hearingtest.core.LeftRightTestResult;
+import com.commo.hearingtest.core.ReactionTimes;
+import com.commo.hearingtest.diagnostics.FrameDropMonitor;
+import com.commo.hearingtest.dsp.ToneCache;
+import com.commo.hearingtest.protocol.ProtocolProvider;
+import com.commo.hearingtest.protocol.TestProtocol;
+import com.commo.hearingtest.store.SessionRecord;
+import com.commo.hearingtest.store.SessionStoreProvider;
+
+import java.util.List;
 
 public class LeftRightTestActivity extends AppCompatActivity {
 
@@ -30,19 +44,22 @@ public class LeftRightTestActivity extends AppCompatActivity {
     private Button btnStartTest;
     private Button btnPlaySound;
     
-    private AudioTrack audioTrack;
+    private AudioEngine audioEngine;
+    private Stimulus lastSound;
     private AudioManager audioManager;
-    private boolean isTestRunning = false;
-    private int currentTestNumber = 0;
-    private int correctAnswers = 0;
-    private int totalTests = 5;
-    private boolean currentSoundIsLeft = false;
-    private Random random = new Random();
+    private TestProtocol protocol = TestProtocol.standard();
+    private LeftRightTest leftRightTest = protocol.newLeftRightTest();
+    private GainTable gainTable;
+    private FrameDropMonitor frameDropMonitor;
+    private ResponseTimer responseTimer;
+    private final ResponseTouchListener responseTouches = new ResponseTouchListener();
+    private boolean starting;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_left_right_test);
+        frameDropMonitor = new FrameDropMonitor(this);
 
         initializeViews();
         setupClickListeners();
@@ -89,27 +106,26 @@ public class LeftRightTestActivity extends AppCompatActivity {
     }
 
     private void initializeAudio() {
+        if (audioEngine != null) return;
         audioManager = (AudioManager) getSystemService(AUDIO_SERVICE);
-        
-        int sampleRate = 44100;
-        int channelConfig = AudioFormat.CHANNEL_OUT_STEREO;
-        int audioFormat = AudioFormat.ENCODING_PCM_16BIT;
-        int bufferSize = AudioTrack.getMinBufferSize(sampleRate, channelConfig, audioFormat);
-
-        AudioAttributes audioAttributes = new AudioAttributes.Builder()
-                .setUsage(AudioAttributes.USAGE_MEDIA)
-                .setContentType(AudioAttributes.CONTENT_TYPE_MUSIC)
-                .build();
-
-        audioTrack = new AudioTrack(audioAttributes,
-                new AudioFormat.Builder()
-                        .setSampleRate(sampleRate)
-                        .setChannelMask(channelConfig)
-                        .setEncoding(audioFormat)
-                        .build(),
-                bufferSize,
-                AudioTrack.MODE_STREAM,
-                AudioManager.AUDIO_SESSION_ID_GENERATE);
+        // Opening the output may take a while; Start stays disabled until the engine is ready.
+        new ViewModelProvider(this).get(AudioEngineViewModel.class).requestEngine(
+                new AudioEngineViewModel.EngineCallback() {
+                    @Override
+                    public void onEngineReady(AudioEngine engine) {
+                        if (isDestroyed()) return;
+                        audioEngine = engine;
+                        responseTimer = new ResponseTimer(engine);
+                        updateUI();
+                    }
+
+                    @Override
+                    public void onEngineFailed(RuntimeException error) {
+                        if (isDestroyed()) return;
+                        Toast.makeText(LeftRightTestActivity.this, "오디오 초기화 오류: " + error.getMessage(),
+                                Toast.LENGTH_SHORT).show();
+                    }
+                });
     }
 
     private void setupClickListeners() {
@@ -140,23 +156,52 @@ public class LeftRightTestActivity extends AppCompatActivity {
                 handleAnswer(false); // false for right
             }
         });
+
+        responseTouches.attach(btnLeft, btnRight);
     }
 
     private void startTest() {
-        isTestRunning = true;
-        currentTestNumber = 0;
-        correctAnswers = 0;
+        if (starting || audioEngine == null) return;
+        starting = true;
+        updateUI();
+        // The protocols may still be loading; wait for them off the main thread.
+        ProtocolProvider.get().getAllAsync(this, new ProtocolProvider.LoadCallback() {
+            @Override
+            public void onLoaded(List<TestProtocol> protocols, TestProtocol current) {
+                protocol = current;
+                selectCalibration();
+            }
+        });
+    }
+
+    private void selectCalibration() {
+        // The profiles may still be loading; select the headphones' table off the main thread.
+        CalibrationProvider.get().selectAsync(this, new CalibrationProvider.SelectCallback() {
+            @Override
+            public void onSelected(GainTable selected) {
+                starting = false;
+                if (isDestroyed()) return;
+                gainTable = selected;
+                beginTest();
+            }
+        });
+    }
+
+    private void beginTest() {
+        leftRightTest = protocol.newLeftRightTest();
+        if (responseTimer != null) {
+            responseTimer.reset();
+        }
+        leftRightTest.start();
         nextTest();
         updateUI();
     }
 
     private void nextTest() {
-        if (currentTestNumber < totalTests) {
-            currentTestNumber++;
-            currentSoundIsLeft = random.nextBoolean();
-            tvInstructions.setText("테스트 " + currentTestNumber + "/" + totalTests + 
-                    "\n소리 재생 버튼을 눌러 소리를 들어보세요.\n그 후 소리가 들린 방향을 선택하세요.");
-            playTestSound();
+        if (leftRightTest.isRunning()) {
+            tvInstructions.setText("테스트 " + leftRightTest.getCurrentTestNumber() + "/" + leftRightTest.getTotalTests() +
+                    "\n소리 재생 버튼을 눌러 소리를 들어보세요.\n반대쪽 귀의 잡음은 무시하고\n삐 소리가 들린 방향을 선택하세요.");
+            playTestSound(protocol.getAutoPlayGapMs(), protocol.getAutoPlayJitterMs());
         } else {
             finishTest();
         }
@@ -164,75 +209,59 @@ public class LeftRightTestActivity extends AppCompatActivity {
     }
 
     private void playTestSound() {
-        if (audioTrack == null) return;
-
-        // Generate a test tone
-        int duration = 1000; // 1 second
-        int sampleRate = 44100;
-        int frequency = 1000; // 1kHz test tone
-        
-        short[] buffer = generateTone(frequency, duration, sampleRate, currentSoundIsLeft);
-        
-        audioTrack.write(buffer, 0, buffer.length);
-        audioTrack.play();
+        playTestSound(0, 0);
     }
 
-    private short[] generateTone(int frequency, int duration, int sampleRate, boolean leftChannel) {
-        int numSamples = duration * sampleRate / 1000;
-        short[] buffer = new short[numSamples * 2]; // Stereo
-        
-        double phase = 0;
-        double phaseIncrement = 2 * Math.PI * frequency / sampleRate;
-        
-        for (int i = 0; i < numSamples; i++) {
-            short sample = (short) (Short.MAX_VALUE * Math.sin(phase) * 0.3); // 30% volume
-            
-            if (leftChannel) {
-                buffer[i * 2] = sample;     // Left channel
-                buffer[i * 2 + 1] = 0;      // Right channel (silent)
-            } else {
-                buffer[i * 2] = 0;          // Left channel (silent)
-                buffer[i * 2 + 1] = sample; // Right channel
-            }
-            
-            phase += phaseIncrement;
-        }
+    private void playTestSound(int gapMs, int jitterMs) {
+        if (audioEngine == null || gainTable == null) return;
+
+        // Cached tone, with fresh masking noise in the other ear.
+        Stimulus stimulus = protocol.leftRightStimulus(leftRightTest, gainTable, ToneCache.shared(),
+                audioEngine.getSampleRate(), System.nanoTime());
         
-        return buffer;
+        // Replaces whatever is still playing, so repeated taps never queue up.
+        audioEngine.replace(stimulus, gapMs, jitterMs);
+        lastSound = stimulus;
+        responseTimer.presented(stimulus);
     }
 
     private void handleAnswer(boolean selectedLeft) {
-        if (!isTestRunning) return;
+        long responseNanos = responseTouches.takeResponseNanos();
+        if (!leftRightTest.isRunning()) return;
 
-        if (selectedLeft == currentSoundIsLeft) {
-            correctAnswers++;
+        if (responseTimer != null) {
+            responseTimer.respond(responseNanos);
         }
-
+        leftRightTest.answer(selectedLeft);
         nextTest();
     }
 
     private void finishTest() {
-        isTestRunning = false;
-        double accuracy = (double) correctAnswers / totalTests * 100;
-        
+        LeftRightTestResult result = leftRightTest.getResult();
+        ReactionTimes reactionTimes = responseTimer != null ? responseTimer.getReactionTimes() : null;
+        SessionStoreProvider.get().save(this, SessionRecord.ofLeftRightTest(SessionRecord.DEFAULT_USER,
+                System.currentTimeMillis(), result, reactionTimes));
+
         Intent resultIntent = new Intent(this, TestResultActivity.class);
         resultIntent.putExtra("test_type", "좌우 청력 테스트");
-        resultIntent.putExtra("accuracy", accuracy);
-        resultIntent.putExtra("correct_answers", correctAnswers);
-        resultIntent.putExtra("total_tests", totalTests);
+        resultIntent.putExtra("accuracy", result.getAccuracy());
+        resultIntent.putExtra("correct_answers", result.getCorrectAnswers());
+        resultIntent.putExtra("total_tests", result.getTotalTests());
+        TestResultActivity.putReactionTimes(resultIntent, reactionTimes);
         startActivity(resultIntent);
         finish();
     }
 
     private void updateUI() {
-        if (isTestRunning) {
+        if (leftRightTest.isRunning()) {
             btnStartTest.setVisibility(View.GONE);
             btnPlaySound.setVisibility(View.VISIBLE);
             btnLeft.setVisibility(View.VISIBLE);
             btnRight.setVisibility(View.VISIBLE);
-            tvProgress.setText("진행률: " + currentTestNumber + "/" + totalTests);
+            tvProgress.setText("진행률: " + leftRightTest.getCurrentTestNumber() + "/" + leftRightTest.getTotalTests());
         } else {
             btnStartTest.setVisibility(View.VISIBLE);
+            btnStartTest.setEnabled(audioEngine != null && !starting);
             btnPlaySound.setVisibility(View.GONE);
             btnLeft.setVisibility(View.GONE);
             btnRight.setVisibility(View.GONE);
@@ -241,12 +270,26 @@ public class LeftRightTestActivity extends AppCompatActivity {
         }
     }
 
+    @Override
+    protected void onResume() {
+        super.onResume();
+        frameDropMonitor.start();
+    }
+
+    @Override
+    protected void onPause() {
+        super.onPause();
+        frameDropMonitor.stop();
+    }
+
     @Override
     protected void onDestroy() {
         super.onDestroy();
-        if (audioTrack != null) {
-            audioTrack.stop();
-            audioTrack.release();
+        // The engine is shared and outlives this screen; AudioEngineViewModel gives it back. The
+        // next screen may be playing through it already, so only this screen's sound is stopped.
+        if (audioEngine != null && lastSound != null && !isChangingConfigurations()) {
+            audioEngine.cancel(lastSound);
         }
+        audioEngine = null;
     }
 }
\ No newline at end of file
@@ -4,13 +4,29 @@ import android.content.Intent;
 import android.os.Bundle;
 import android.view.View;
 import android.widget.Button;
+import android.widget.TextView;
 
 import androidx.appcompat.app.AppCompatActivity;
 
+import com.commo.hearingtest.audio.AudioEngineProvider;
+import com.commo.hearingtest.protocol.ProtocolProvider;
+import com.commo.hearingtest.protocol.TestProtocol;
+
+import java.util.List;
+
 public class MainActivity extends AppCompatActivity {
 
     private Button btnLeftRightTest;
     private Button btnFrequencyTest;
+    private Button btnSweepTest;
+    private Button btnLateralizationTest;
+    private Button btnProtocol;
+    private Button btnExport;
+    private Button btnKiosk;
+    private TextView tvTitle;
+    // Null until the protocols have loaded.
+    private List<TestProtocol> protocols;
+    private TestProtocol currentProtocol;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -18,12 +34,29 @@ public class MainActivity extends AppCompatActivity {
         setContentView(R.layout.activity_main);
 
         initializeViews();
+        showProtocol();
         setupClickListeners();
     }
 
+    @Override
+    protected void onStart() {
+        super.onStart();
+        // Open the shared audio output in the background so a test can start playing at once.
+        AudioEngineProvider.get().warmUpAsync(this);
+        // Headphones may have changed while away; have the selected protocol's first tones ready.
+        ProtocolProvider.get().prerenderAsync(this);
+        updateProtocolButton();
+    }
+
     private void initializeViews() {
         btnLeftRightTest = findViewById(R.id.btn_left_right_test);
         btnFrequencyTest = findViewById(R.id.btn_frequency_test);
+        btnSweepTest = findViewById(R.id.btn_sweep_test);
+        btnLateralizationTest = findViewById(R.id.btn_lateralization_test);
+        btnProtocol = findViewById(R.id.btn_protocol);
+        btnExport = findViewById(R.id.btn_export);
+        btnKiosk = findViewById(R.id.btn_kiosk);
+        tvTitle = findViewById(R.id.tv_title);
     }
 
     private void setupClickListeners() {
@@ -42,5 +75,78 @@ public class MainActivity extends AppCompatActivity {
                 startActivity(intent);
             }
         });
+
+        btnSweepTest.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                Intent intent = new Intent(MainActivity.this, SweepTestActivity.class);
+                startActivity(intent);
+            }
+        });
+
+        btnLateralizationTest.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                Intent intent = new Intent(MainActivity.this, LateralizationTestActivity.class);
+                startActivity(intent);
+            }
+        });
+
+        btnProtocol.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                selectNextProtocol();
+            }
+        });
+
+        btnKiosk.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                startActivity(new Intent(MainActivity.this, KioskActivity.class));
+            }
+        });
+
+        btnExport.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                startActivity(new Intent(MainActivity.this, ExportActivity.class));
+            }
+        });
+
+        // Hidden on purpose: the diagnostics screen is for operators, not listeners.
+        tvTitle.setOnLongClickListener(new View.OnLongClickListener() {
+            @Override
+            public boolean onLongClick(View v) {
+                startActivity(new Intent(MainActivity.this, DiagnosticsActivity.class));
+                return true;
+            }
+        });
+    }
+
+    private void selectNextProtocol() {
+        if (protocols == null || protocols.isEmpty()) return;
+        int index = protocols.indexOf(currentProtocol);
+        currentProtocol = protocols.get((index + 1) % protocols.size());
+        ProtocolProvider.get().select(this, currentProtocol);
+        showProtocol();
+    }
+
+    private void updateProtocolButton() {
+        // The protocols may still be loading; the button waits for them rather than the screen.
+        ProtocolProvider.get().getAllAsync(this, new ProtocolProvider.LoadCallback() {
+            @Override
+            public void onLoaded(List<TestProtocol> loaded, TestProtocol current) {
+                if (isDestroyed()) return;
+                protocols = loaded;
+                currentProtocol = current;
+                showProtocol();
+            }
+        });
+    }
+
+    private void showProtocol() {
+        btnProtocol.setEnabled(protocols != null);
+        btnProtocol.setText(currentProtocol != null
+                ? "검사 프로토콜: " + currentProtocol.getName() : "검사 프로토콜 불러오는 중...");
     }
 }
\ No newline at end of file
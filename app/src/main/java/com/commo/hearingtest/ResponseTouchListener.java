@@ -0,0 +1,43 @@
+package com.commo.hearingtest;
+
+import android.view.MotionEvent;
+import android.view.View;
+
+/**
+ * Remembers when an answer button was first touched, so reaction times run to the finger
+ * landing rather than to the click, which only fires when it lifts.
+ *
+ * <p>{@link MotionEvent#getEventTime()} is on the {@code SystemClock.uptimeMillis()} clock, which
+ * is CLOCK_MONOTONIC like {@link System#nanoTime()} and the audio presentation timestamps, so
+ * the times compare directly; the event time is only millisecond resolution.
+ */
+final class ResponseTouchListener implements View.OnTouchListener {
+
+    private long downNanos = -1;
+
+    void attach(View... buttons) {
+        for (View button : buttons) {
+            if (button != null) {
+                button.setOnTouchListener(this);
+            }
+        }
+    }
+
+    @Override
+    public boolean onTouch(View v, MotionEvent event) {
+        if (event.getActionMasked() == MotionEvent.ACTION_DOWN) {
+            downNanos = event.getEventTime() * 1_000_000L;
+        }
+        return false; // Let the button handle the click as usual.
+    }
+
+    /**
+     * Time of the touch that led to the click being handled, or now if the click came without
+     * one (a keyboard or accessibility action). Each touch is used once.
+     */
+    long takeResponseNanos() {
+        long nanos = downNanos >= 0 ? downNanos : System.nanoTime();
+        downNanos = -1;
+        return nanos;
+    }
+}
@@ -0,0 +1,247 @@
+package com.commo.hearingtest;
+
+import android.content.Intent;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.view.MotionEvent;
+import android.view.View;
+import android.widget.Button;
+import android.widget.TextView;
+import android.widget.Toast;
+
+import androidx.appcompat.app.AppCompatActivity;
+import androidx.lifecycle.ViewModelProvider;
+
+import com.commo.hearingtest.audio.AudioEngine;
+import com.commo.hearingtest.audio.AudioEngineViewModel;
+import com.commo.hearingtest.audio.Stimulus;
+import com.commo.hearingtest.audio.SweepSource;
+import com.commo.hearingtest.calibration.CalibrationProvider;
+import com.commo.hearingtest.calibration.GainTable;
+import com.commo.hearingtest.core.Audiogram;
+import com.commo.hearingtest.core.BekesySweep;
+import com.commo.hearingtest.core.Ear;
+import com.commo.hearingtest.core.FrequencyTestResult;
+import com.commo.hearingtest.protocol.StandardProtocol;
+import com.commo.hearingtest.store.SessionRecord;
+import com.commo.hearingtest.store.SessionStoreProvider;
+
+/**
+ * Continuous sweep test: a tone glides from 125 Hz to 8 kHz in each ear while the listener holds
+ * the button for as long as they hear it, and the level tracks their threshold all the way
+ * (see {@link BekesySweep}). The result is a third-octave audiogram.
+ */
+public class SweepTestActivity extends AppCompatActivity {
+
+    private static final long PROGRESS_INTERVAL_MS = 200;
+    private static final Ear[] EARS = {Ear.LEFT, Ear.RIGHT};
+
+    private TextView tvInstructions;
+    private TextView tvProgress;
+    private TextView tvCurrentFrequency;
+    private Button btnStartTest;
+    private Button btnHold;
+
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private AudioEngine audioEngine;
+    private GainTable gainTable;
+    private double maxLevelDbHl;
+    private int earIndex = -1;
+    private SweepSource source;
+    private Stimulus stimulus;
+    private final double[][] thresholds = new double[EARS.length][];
+    private int reversals;
+    private boolean starting;
+
+    private final Runnable progressUpdater = new Runnable() {
+        @Override
+        public void run() {
+            if (source == null) return;
+            if (source.isDone()) {
+                onSweepDone();
+            } else if (stimulus.isCancelled()) {
+                // Output was taken away, e.g. by another screen; the sweep cannot resume.
+                source = null;
+                Toast.makeText(SweepTestActivity.this, "테스트가 중단되었습니다.", Toast.LENGTH_SHORT).show();
+                updateUI();
+            } else {
+                updateProgress();
+                handler.postDelayed(this, PROGRESS_INTERVAL_MS);
+            }
+        }
+    };
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_sweep_test);
+
+        tvInstructions = findViewById(R.id.tv_instructions);
+        tvProgress = findViewById(R.id.tv_progress);
+        tvCurrentFrequency = findViewById(R.id.tv_current_frequency);
+        btnStartTest = findViewById(R.id.btn_start_test);
+        btnHold = findViewById(R.id.btn_hold);
+        // Opening the output may take a while; Start stays disabled until the engine is ready.
+        new ViewModelProvider(this).get(AudioEngineViewModel.class).requestEngine(
+                new AudioEngineViewModel.EngineCallback() {
+                    @Override
+                    public void onEngineReady(AudioEngine engine) {
+                        if (isDestroyed()) return;
+                        audioEngine = engine;
+                        updateUI();
+                    }
+
+                    @Override
+                    public void onEngineFailed(RuntimeException error) {
+                        if (isDestroyed()) return;
+                        Toast.makeText(SweepTestActivity.this, "오디오 초기화 오류: " + error.getMessage(),
+                                Toast.LENGTH_SHORT).show();
+                    }
+                });
+
+        btnStartTest.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                startTest();
+            }
+        });
+        btnHold.setOnTouchListener(new View.OnTouchListener() {
+            @Override
+            public boolean onTouch(View v, MotionEvent event) {
+                switch (event.getActionMasked()) {
+                    case MotionEvent.ACTION_DOWN:
+                        setHeard(true);
+                        return true;
+                    case MotionEvent.ACTION_UP:
+                        v.performClick();
+                        setHeard(false);
+                        return true;
+                    case MotionEvent.ACTION_CANCEL:
+                        setHeard(false);
+                        return true;
+                    default:
+                        return false;
+                }
+            }
+        });
+        updateUI();
+    }
+
+    private void setHeard(boolean heard) {
+        if (source != null) {
+            source.setHeard(heard);
+        }
+        btnHold.setPressed(heard);
+    }
+
+    private void startTest() {
+        if (starting || audioEngine == null) return;
+        starting = true;
+        updateUI();
+        // The profiles may still be loading; select the headphones' table off the main thread.
+        CalibrationProvider.get().selectAsync(this, new CalibrationProvider.SelectCallback() {
+            @Override
+            public void onSelected(GainTable selected) {
+                starting = false;
+                if (isDestroyed() || audioEngine == null) return;
+                gainTable = selected;
+                beginTest();
+            }
+        });
+    }
+
+    private void beginTest() {
+        maxLevelDbHl = Math.min(StandardProtocol.MAX_LEVEL_DB_HL,
+                gainTable.getMaxLevelDbHl(BekesySweep.THIRD_OCTAVE_FREQUENCIES));
+        reversals = 0;
+        earIndex = -1;
+        nextEar();
+    }
+
+    private void nextEar() {
+        earIndex++;
+        if (earIndex >= EARS.length) {
+            source = null;
+            finishTest();
+            return;
+        }
+        BekesySweep sweep = BekesySweep.chirp(audioEngine.getSampleRate(),
+                Math.min(StandardProtocol.START_LEVEL_DB_HL, maxLevelDbHl),
+                StandardProtocol.MIN_LEVEL_DB_HL, maxLevelDbHl);
+        source = new SweepSource(sweep, gainTable, EARS[earIndex]);
+        stimulus = new Stimulus(source);
+        audioEngine.replace(stimulus, StandardProtocol.AUTO_PLAY_GAP_MS, 0);
+        handler.post(progressUpdater);
+        updateUI();
+    }
+
+    private void onSweepDone() {
+        BekesySweep sweep = source.getSweep();
+        thresholds[earIndex] = sweep.getThresholdsDb(BekesySweep.THIRD_OCTAVE_FREQUENCIES);
+        reversals += sweep.getReversalCount();
+        nextEar();
+    }
+
+    private void updateProgress() {
+        BekesySweep sweep = source.getSweep();
+        tvCurrentFrequency.setText(String.format("%.0f Hz", source.getCurrentFrequency()));
+        tvProgress.setText(String.format("%s: %d%%", source.getEar() == Ear.LEFT ? "왼쪽 귀" : "오른쪽 귀",
+                (int) (sweep.getProgress() * 100)));
+    }
+
+    private void finishTest() {
+        int[] frequencies = BekesySweep.THIRD_OCTAVE_FREQUENCIES;
+        Audiogram audiogram = new Audiogram(frequencies, thresholds[0], thresholds[1]);
+        long timestamp = System.currentTimeMillis();
+        SessionStoreProvider.get().save(this, SessionRecord.ofFrequencyTest(SessionRecord.DEFAULT_USER,
+                timestamp, audiogram, reversals));
+        FrequencyTestResult result = FrequencyTestResult.fromAudiogram(audiogram, StandardProtocol.LEGACY_LEVEL_DB_HL);
+
+        Intent resultIntent = new Intent(this, TestResultActivity.class);
+        resultIntent.putExtra("test_type", "연속 스윕 테스트");
+        resultIntent.putExtra("optimal_frequency", result.getOptimalFrequency());
+        resultIntent.putExtra("lowest_frequency", result.getLowestHeardFrequency());
+        resultIntent.putExtra("analysis", result.getAnalysis());
+        resultIntent.putExtra("frequencies", frequencies);
+        resultIntent.putExtra("left_thresholds", thresholds[0]);
+        resultIntent.putExtra("right_thresholds", thresholds[1]);
+        resultIntent.putExtra("reversals", reversals);
+        resultIntent.putExtra("timestamp", timestamp);
+        resultIntent.putExtra("min_level_db", StandardProtocol.MIN_LEVEL_DB_HL);
+        resultIntent.putExtra("max_level_db", maxLevelDbHl);
+        resultIntent.putExtra("calibration", gainTable.getProfile().getName());
+        startActivity(resultIntent);
+        finish();
+    }
+
+    private void updateUI() {
+        boolean running = source != null;
+        btnStartTest.setVisibility(running ? View.GONE : View.VISIBLE);
+        btnStartTest.setEnabled(audioEngine != null && !starting);
+        btnHold.setVisibility(running ? View.VISIBLE : View.GONE);
+        tvCurrentFrequency.setVisibility(running ? View.VISIBLE : View.GONE);
+        if (running) {
+            tvInstructions.setText((EARS[earIndex] == Ear.LEFT ? "왼쪽 귀" : "오른쪽 귀")
+                    + "로 소리가 점점 높아집니다.\n소리가 들리는 동안 버튼을 누르고 있고,\n들리지 않으면 손을 떼세요.");
+        } else {
+            tvProgress.setText("");
+            tvInstructions.setText("연속 스윕 테스트\n\n낮은 음에서 높은 음까지 소리가 이어지며\n한 귀당 약 3분 걸립니다.\n\n헤드폰이나 이어폰을 착용하고\n시작 버튼을 누르세요.");
+        }
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        handler.removeCallbacks(progressUpdater);
+        if (source != null) {
+            source.finish();
+        }
+        // The engine is shared and outlives this screen; AudioEngineViewModel gives it back. The
+        // next screen may be playing through it already, so only this screen's sound is stopped.
+        if (audioEngine != null && stimulus != null && !isChangingConfigurations()) {
+            audioEngine.cancel(stimulus);
+        }
+        audioEngine = null;
+    }
+}
@@ -8,28 +8,82 @@ import android.widget.TextView;
 
 import androidx.appcompat.app.AppCompatActivity;
 
+import com.commo.hearingtest.analytics.AudiogramTrends;
+import com.commo.hearingtest.analytics.RunningTrend;
+import com.commo.hearingtest.calibration.CalibrationProfile;
+import com.commo.hearingtest.chart.AudiogramView;
+import com.commo.hearingtest.core.Audiogram;
+import com.commo.hearingtest.core.Ear;
+import com.commo.hearingtest.core.LeftRightTestResult;
+import com.commo.hearingtest.core.ReactionTimes;
+import com.commo.hearingtest.kiosk.KioskProvider;
+import com.commo.hearingtest.store.SessionRecord;
+import com.commo.hearingtest.store.SessionStoreProvider;
+
+import java.util.ArrayList;
+import java.util.List;
+
 public class TestResultActivity extends AppCompatActivity {
 
+    // Earlier sessions overlaid on the chart.
+    private static final int HISTORY_LIMIT = 500;
+
     private TextView tvTestType;
     private TextView tvResults;
+    private AudiogramView audiogramView;
     private TextView tvAnalysis;
+    private View layoutTrend;
+    private TextView tvTrend;
     private Button btnBackToMain;
     private Button btnRetakeTest;
+    private String participantId = SessionRecord.DEFAULT_USER;
+    private boolean kiosk;
+
+    /** Adds the reaction time summary shown under the results; does nothing if the test was not timed. */
+    static void putReactionTimes(Intent intent, ReactionTimes times) {
+        if (times == null || times.getMeasuredCount() == 0) return;
+        intent.putExtra("reaction_median_ms", times.getMedianMs());
+        intent.putExtra("reaction_anticipations", times.getAnticipationCount());
+        intent.putExtra("reaction_estimated", times.getMeasuredCount() - times.getTimestampedCount());
+    }
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_test_result);
+        kiosk = getIntent().getBooleanExtra("kiosk", false);
+        String participant = getIntent().getStringExtra("participant_id");
+        if (participant != null) {
+            participantId = participant;
+        }
 
         initializeViews();
         displayResults();
         setupClickListeners();
+        if (kiosk) {
+            // While this participant reads their results, get the device ready for the next one.
+            KioskProvider.get().prepareNext(this);
+        }
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        if (kiosk) {
+            // The queue may have changed on the kiosk screen.
+            String next = KioskProvider.get().peekNext();
+            btnRetakeTest.setText(next != null ? "다음 참가자: " + next : "참가자 추가");
+            btnBackToMain.setText("대기열로");
+        }
     }
 
     private void initializeViews() {
         tvTestType = findViewById(R.id.tv_test_type);
         tvResults = findViewById(R.id.tv_results);
+        audiogramView = findViewById(R.id.audiogram_view);
         tvAnalysis = findViewById(R.id.tv_analysis);
+        layoutTrend = findViewById(R.id.layout_trend);
+        tvTrend = findViewById(R.id.tv_trend);
         btnBackToMain = findViewById(R.id.btn_back_to_main);
         btnRetakeTest = findViewById(R.id.btn_retake_test);
     }
@@ -42,12 +96,14 @@ public class TestResultActivity extends AppCompatActivity {
             testType = "테스트";
         }
         
-        tvTestType.setText(testType + " 결과");
+        tvTestType.setText((kiosk ? participantId + " · " : "") + testType + " 결과");
 
         if ("좌우 청력 테스트".equals(testType)) {
             displayLeftRightResults(intent);
-        } else if ("주파수 감도 테스트".equals(testType)) {
+        } else if ("주파수 감도 테스트".equals(testType) || "연속 스윕 테스트".equals(testType)) {
             displayFrequencyResults(intent);
+        } else if ("방향 변별 테스트".equals(testType)) {
+            displayLateralizationResults(intent);
         }
     }
 
@@ -56,21 +112,32 @@ public class TestResultActivity extends AppCompatActivity {
         int correctAnswers = intent.getIntExtra("correct_answers", 0);
         int totalTests = intent.getIntExtra("total_tests", 0);
 
-        String results = String.format("정확도: %.1f%%\n정답: %d/%d", accuracy, correctAnswers, totalTests);
-        tvResults.setText(results);
+        StringBuilder results = new StringBuilder(
+                String.format("정확도: %.1f%%\n정답: %d/%d", accuracy, correctAnswers, totalTests));
+        appendReactionTimes(results, intent);
+        tvResults.setText(results.toString());
 
-        String analysis;
-        if (accuracy >= 80) {
-            analysis = "우수한 좌우 청력 분별능력을 보여줍니다.\n좌우 귀의 청력이 균형적으로 잘 작동하고 있습니다.";
-        } else if (accuracy >= 60) {
-            analysis = "보통 수준의 좌우 청력 분별능력입니다.\n좀 더 집중해서 다시 테스트해보시거나\n헤드폰/이어폰 상태를 확인해보세요.";
-        } else {
-            analysis = "좌우 청력 분별에 어려움이 있을 수 있습니다.\n조용한 환경에서 다시 테스트하거나\n청력 전문의 상담을 권장합니다.";
-        }
-        
+        String analysis = LeftRightTestResult.analysisFor(accuracy);
         tvAnalysis.setText(analysis);
     }
 
+    private void displayLateralizationResults(Intent intent) {
+        double itdJnd = intent.getDoubleExtra("itd_jnd_us", Double.NaN);
+        double ildJnd = intent.getDoubleExtra("ild_jnd_db", Double.NaN);
+
+        StringBuilder results = new StringBuilder();
+        results.append("시간차 변별 역치 (500 Hz): ")
+                .append(Double.isNaN(itdJnd) ? "측정 실패" : String.format("%.0f µs", itdJnd))
+                .append("\n시도: ").append(intent.getIntExtra("itd_trials", 0)).append("회");
+        results.append("\n\n크기차 변별 역치 (4 kHz): ")
+                .append(Double.isNaN(ildJnd) ? "측정 실패" : String.format("%.1f dB", ildJnd))
+                .append("\n시도: ").append(intent.getIntExtra("ild_trials", 0)).append("회");
+        tvResults.setText(results.toString());
+
+        tvAnalysis.setText("정상 청력에서 변별 역치는 보통 시간차 10~30 µs, 크기차 1~2 dB 정도입니다.\n"
+                + "값이 크게 벗어나면 두 귀의 청력 차이를 확인해 보세요.");
+    }
+
     private void displayFrequencyResults(Intent intent) {
         int optimalFrequency = intent.getIntExtra("optimal_frequency", -1);
         int lowestFrequency = intent.getIntExtra("lowest_frequency", -1);
@@ -88,16 +155,145 @@ public class TestResultActivity extends AppCompatActivity {
             results.append("측정된 주파수가 없습니다.\n볼륨을 높이고 다시 시도해보세요.");
         }
 
+        int[] frequencies = intent.getIntArrayExtra("frequencies");
+        double[] leftThresholds = intent.getDoubleArrayExtra("left_thresholds");
+        double[] rightThresholds = intent.getDoubleArrayExtra("right_thresholds");
+        if (frequencies != null && leftThresholds != null && rightThresholds != null) {
+            results.append("\n\n청력 역치 (왼쪽 / 오른쪽, dB HL)");
+            for (int i = 0; i < frequencies.length; i++) {
+                results.append("\n").append(frequencies[i]).append("Hz: ")
+                        .append(formatThreshold(leftThresholds[i])).append(" / ")
+                        .append(formatThreshold(rightThresholds[i]));
+            }
+            if (intent.hasExtra("reversals")) {
+                results.append("\n반전 횟수: ").append(intent.getIntExtra("reversals", 0));
+            } else {
+                results.append("\n제시 횟수: ").append(intent.getIntExtra("presentations", 0));
+            }
+            int noisyTrials = intent.getIntExtra("noisy_trials", 0);
+            if (noisyTrials > 0) {
+                results.append("\n주변 소음으로 다시 들은 횟수: ").append(noisyTrials);
+            }
+            String noiseMasked = intent.getStringExtra("noise_masked");
+            if (noiseMasked != null) {
+                results.append("\n⚠️ 주변 소음으로 확인하지 못한 주파수: ").append(noiseMasked);
+            }
+            String calibration = intent.getStringExtra("calibration");
+            if (calibration != null) {
+                results.append("\n보정 프로필: ").append(CalibrationProfile.NOMINAL_NAME.equals(calibration)
+                        ? "없음 (기본값)" : calibration);
+            }
+            String protocol = intent.getStringExtra("protocol");
+            if (protocol != null) {
+                results.append("\n검사 프로토콜: ").append(protocol);
+            }
+            appendReactionTimes(results, intent);
+            showAudiogram(intent, new Audiogram(frequencies, leftThresholds, rightThresholds));
+            loadTrends();
+        }
+
         tvResults.setText(results.toString());
         tvAnalysis.setText(analysis != null ? analysis : "추가 분석 정보가 없습니다.");
     }
 
+    private void showAudiogram(Intent intent, final Audiogram audiogram) {
+        if (audiogramView == null) return;
+        audiogramView.setLevelRange(intent.getDoubleExtra("min_level_db", -10),
+                intent.getDoubleExtra("max_level_db", 90));
+        audiogramView.setData(audiogram, null);
+        audiogramView.setVisibility(View.VISIBLE);
+
+        final long timestamp = intent.getLongExtra("timestamp", -1);
+        SessionStoreProvider.get().loadHistory(this, participantId, HISTORY_LIMIT,
+                new SessionStoreProvider.HistoryCallback() {
+                    @Override
+                    public void onHistory(List<SessionRecord> sessions) {
+                        if (isDestroyed()) return;
+                        List<Audiogram> history = new ArrayList<Audiogram>(sessions.size());
+                        for (SessionRecord session : sessions) {
+                            // This session is already saved; it is drawn as the current one.
+                            if (session.getTimestampMillis() != timestamp) {
+                                history.add(session.getAudiogram());
+                            }
+                        }
+                        audiogramView.setData(audiogram, history);
+                    }
+                });
+    }
+
+    private void loadTrends() {
+        SessionStoreProvider.get().loadTrends(this, participantId,
+                new SessionStoreProvider.TrendsCallback() {
+                    @Override
+                    public void onTrends(AudiogramTrends trends) {
+                        if (!isDestroyed()) {
+                            displayTrends(trends);
+                        }
+                    }
+                });
+    }
+
+    private void displayTrends(AudiogramTrends trends) {
+        if (layoutTrend == null || tvTrend == null) return;
+
+        StringBuilder text = new StringBuilder();
+        if (trends.getSessionCount() < 2) {
+            text.append("이전 검사 기록이 쌓이면 장기 변화를 보여드립니다.");
+        } else {
+            text.append("누적 검사: ").append(trends.getSessionCount()).append("회");
+            for (Ear ear : Ear.values()) {
+                text.append("\n\n").append(ear == Ear.LEFT ? "왼쪽 귀" : "오른쪽 귀");
+                if (trends.hasSignificantShift(ear)) {
+                    text.append("\n⚠️ 유의한 청력 역치 변화가 감지되었습니다.");
+                }
+                for (int frequency : trends.getFrequencies()) {
+                    RunningTrend trend = trends.getTrend(ear, frequency);
+                    if (trend == null || trend.getCount() < 2) continue;
+                    text.append("\n").append(frequency).append("Hz: 평균 ")
+                            .append(String.format("%.0f dB", trend.getMean()))
+                            .append(String.format(", 처음 대비 %+.0f dB", trend.getShiftFromBaseline()));
+                    double slope = trend.getSlopePerYear();
+                    if (!Double.isNaN(slope)) {
+                        text.append(String.format(", 연 %+.1f dB", slope));
+                    }
+                }
+            }
+        }
+        tvTrend.setText(text.toString());
+        layoutTrend.setVisibility(View.VISIBLE);
+    }
+
+    private void appendReactionTimes(StringBuilder results, Intent intent) {
+        if (!intent.hasExtra("reaction_median_ms")) return;
+        results.append("\n반응 시간 (중앙값): ")
+                .append(String.format("%.0f ms", intent.getDoubleExtra("reaction_median_ms", 0)));
+        if (intent.getIntExtra("reaction_estimated", 0) > 0) {
+            results.append(" (일부 추정값)");
+        }
+        int anticipations = intent.getIntExtra("reaction_anticipations", 0);
+        if (anticipations > 0) {
+            results.append("\n너무 빠른 응답 (추측 의심): ").append(anticipations).append("회");
+        }
+    }
+
+    private String formatThreshold(double thresholdDb) {
+        if (Double.isNaN(thresholdDb)) {
+            return "-";
+        }
+        if (Double.isInfinite(thresholdDb)) {
+            return "반응 없음";
+        }
+        return String.format("%.0f dB", thresholdDb);
+    }
+
     private void setupClickListeners() {
         if (btnBackToMain != null) {
             btnBackToMain.setOnClickListener(new View.OnClickListener() {
                 @Override
                 public void onClick(View v) {
-                    if (TestResultActivity.this != null) {
+                    if (kiosk) {
+                        returnToQueue();
+                    } else if (TestResultActivity.this != null) {
                         Intent intent = new Intent(TestResultActivity.this, MainActivity.class);
                         intent.setFlags(Intent.FLAG_ACTIVITY_CLEAR_TOP);
                         startActivity(intent);
@@ -111,7 +307,9 @@ public class TestResultActivity extends AppCompatActivity {
             btnRetakeTest.setOnClickListener(new View.OnClickListener() {
                 @Override
                 public void onClick(View v) {
-                    if (TestResultActivity.this != null) {
+                    if (kiosk) {
+                        startNextParticipant();
+                    } else if (TestResultActivity.this != null) {
                         String testType = getIntent().getStringExtra("test_type");
                         if (testType == null) {
                             testType = "";
@@ -121,6 +319,10 @@ public class TestResultActivity extends AppCompatActivity {
                         
                         if ("좌우 청력 테스트".equals(testType)) {
                             activityClass = LeftRightTestActivity.class;
+                        } else if ("연속 스윕 테스트".equals(testType)) {
+                            activityClass = SweepTestActivity.class;
+                        } else if ("방향 변별 테스트".equals(testType)) {
+                            activityClass = LateralizationTestActivity.class;
                         } else {
                             activityClass = FrequencyTestActivity.class;
                         }
@@ -133,4 +335,21 @@ public class TestResultActivity extends AppCompatActivity {
             });
         }
     }
+
+    private void startNextParticipant() {
+        Intent intent = KioskProvider.get().startNext(this);
+        if (intent == null) {
+            returnToQueue();
+            return;
+        }
+        startActivity(intent);
+        finish();
+    }
+
+    private void returnToQueue() {
+        Intent intent = new Intent(this, KioskActivity.class);
+        intent.setFlags(Intent.FLAG_ACTIVITY_CLEAR_TOP);
+        startActivity(intent);
+        finish();
+    }
 }
\ No newline at end of file
@@ -0,0 +1,181 @@
+package com.commo.hearingtest.audio;
+
+import android.content.Context;
+import android.os.Process;
+import android.util.Log;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Process-wide owner of the single {@link AudioEngine}.
+ *
+ * <p>Opening an {@code AudioTrack} is the slowest part of starting a test, so the engine is
+ * opened once, off the main thread, and then shared by every test screen. Screens hold a lease
+ * through {@link AudioEngineViewModel}; giving the last lease back only silences the engine, so
+ * the next screen (or a retake) reuses the open output stream. The engine is closed only when the
+ * app is hidden with no screen holding it.
+ *
+ * <p>The engine runs at the device's native rate ({@link AudioOutputConfig}) on a low-latency
+ * track where the device allows it; tones must be synthesized at {@link AudioEngine#getSampleRate()}.
+ */
+public final class AudioEngineProvider {
+
+    private static final String TAG = "AudioEngineProvider";
+
+    private static final AudioEngineProvider INSTANCE = new AudioEngineProvider();
+
+    private final ExecutorService warmUpExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(final Runnable task) {
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                    task.run();
+                }
+            }, "audio-warmup");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private AudioEngine engine;
+    private Future<AudioEngine> pendingEngine;
+    private int leases;
+    private long warmUpNanos = -1;
+    private long lastAcquireNanos = -1;
+    private String outputDescription = "not opened";
+
+    private AudioEngineProvider() {
+    }
+
+    public static AudioEngineProvider get() {
+        return INSTANCE;
+    }
+
+    /** Starts opening the engine in the background if it is not open or opening already. */
+    public synchronized void warmUpAsync(Context context) {
+        if (engine == null && pendingEngine == null) {
+            pendingEngine = submitOpen(context.getApplicationContext());
+        }
+    }
+
+    /**
+     * Returns the shared engine, taking a lease on it. If warm-up is still running this waits for
+     * it rather than opening a second output stream.
+     */
+    public AudioEngine acquire(Context context) {
+        long start = System.nanoTime();
+        Future<AudioEngine> opening;
+        synchronized (this) {
+            leases++;
+            if (engine == null && pendingEngine == null) {
+                pendingEngine = submitOpen(context.getApplicationContext());
+            }
+            opening = pendingEngine;
+        }
+        AudioEngine acquired;
+        try {
+            acquired = opening != null ? opening.get() : null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while opening audio", e);
+        } catch (ExecutionException e) {
+            synchronized (this) {
+                leases--;
+                if (pendingEngine == opening) {
+                    pendingEngine = null;
+                }
+            }
+            throw new IllegalStateException("Audio engine failed to open", e.getCause());
+        }
+        synchronized (this) {
+            if (acquired != null && pendingEngine == opening) {
+                engine = acquired;
+                pendingEngine = null;
+            }
+            lastAcquireNanos = System.nanoTime() - start;
+            Log.i(TAG, "Engine acquired in " + lastAcquireNanos / 1000 + " us"
+                    + (opening == null ? " (reused)" : " (after warm-up)"));
+            return engine;
+        }
+    }
+
+    /**
+     * Gives back a lease from {@link #acquire}. The last lease silences the engine, which stays
+     * open; while another screen still holds one, its sound plays on.
+     */
+    public synchronized void release() {
+        if (leases > 0) {
+            leases--;
+        }
+        if (leases == 0 && engine != null) {
+            engine.stop();
+        }
+    }
+
+    /** Closes the engine if no screen holds it, e.g. once the app is no longer visible. */
+    public synchronized void shutdownIfIdle() {
+        if (leases == 0 && pendingEngine != null && pendingEngine.isDone()) {
+            // Warmed up but never acquired.
+            try {
+                engine = pendingEngine.get();
+            } catch (InterruptedException | ExecutionException e) {
+                Log.w(TAG, "Discarding failed warm-up", e);
+            }
+            pendingEngine = null;
+        }
+        if (leases == 0 && engine != null) {
+            engine.release();
+            engine = null;
+            Log.i(TAG, "Engine closed while idle");
+        }
+    }
+
+    /** Screens holding a lease now; 0 between screens unless one failed to give its lease back. */
+    public synchronized int getLeaseCount() {
+        return leases;
+    }
+
+    /** Time the last background open took, or -1 if the engine has not been opened yet. */
+    public synchronized long getWarmUpNanos() {
+        return warmUpNanos;
+    }
+
+    /** Time the last {@link #acquire} spent before returning, including any wait for warm-up. */
+    public synchronized long getLastAcquireNanos() {
+        return lastAcquireNanos;
+    }
+
+    /** Requested and granted output format of the current engine, for diagnostics. */
+    public synchronized String getOutputDescription() {
+        return outputDescription;
+    }
+
+    private Future<AudioEngine> submitOpen(final Context appContext) {
+        return warmUpExecutor.submit(new Callable<AudioEngine>() {
+            @Override
+            public AudioEngine call() {
+                long start = System.nanoTime();
+                AudioOutputConfig config = AudioOutputConfig.query(appContext);
+                AudioTrackSink sink = AudioTrackSink.open(config);
+                AudioEngine opened = new AudioEngine(sink, AudioThreadFactory.urgentAudio());
+                opened.start();
+                long elapsed = System.nanoTime() - start;
+                String description = "device " + config + "; track " + sink
+                        + " (" + opened.getBufferLatencyNanos() / 1000 + " us buffered)";
+                synchronized (AudioEngineProvider.this) {
+                    warmUpNanos = elapsed;
+                    outputDescription = description;
+                }
+                Log.i(TAG, "Engine opened in " + elapsed / 1000 + " us: " + description);
+                return opened;
+            }
+        });
+    }
+}
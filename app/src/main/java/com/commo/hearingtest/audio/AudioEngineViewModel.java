@@ -0,0 +1,114 @@
+package com.commo.hearingtest.audio;
+
+import android.app.Application;
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.lifecycle.AndroidViewModel;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Holds a test screen's lease on the shared {@link AudioEngine}. Being a ViewModel, it survives
+ * configuration changes, so rotating the screen keeps playing through the same engine.
+ *
+ * <p>The lease is taken off the main thread: opening the output can take a while, and the
+ * screen is told through an {@link EngineCallback} once the engine is ready.
+ */
+public class AudioEngineViewModel extends AndroidViewModel {
+
+    /** Told on the main thread once the shared engine is open, or why it could not be opened. */
+    public interface EngineCallback {
+        void onEngineReady(AudioEngine engine);
+
+        void onEngineFailed(RuntimeException error);
+    }
+
+    private static final ExecutorService ACQUIRE_EXECUTOR = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable task) {
+            Thread thread = new Thread(task, "audio-acquire");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private AudioEngine engine;
+    private EngineCallback callback;
+    private boolean acquiring;
+    private boolean cleared;
+
+    public AudioEngineViewModel(Application application) {
+        super(application);
+    }
+
+    /**
+     * Delivers the shared engine to {@code callback}, acquiring it in the background on first use.
+     * Call on the main thread; a screen recreated while the engine opens passes its own callback,
+     * which replaces the old screen's.
+     */
+    public void requestEngine(EngineCallback callback) {
+        if (engine != null) {
+            callback.onEngineReady(engine);
+            return;
+        }
+        this.callback = callback;
+        if (acquiring) return;
+        acquiring = true;
+        final Application application = getApplication();
+        ACQUIRE_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                AudioEngine acquired = null;
+                RuntimeException error = null;
+                try {
+                    acquired = AudioEngineProvider.get().acquire(application);
+                } catch (RuntimeException e) {
+                    error = e;
+                }
+                final AudioEngine result = acquired;
+                final RuntimeException failure = error;
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        deliver(result, failure);
+                    }
+                });
+            }
+        });
+    }
+
+    private void deliver(AudioEngine acquired, RuntimeException error) {
+        acquiring = false;
+        if (cleared) {
+            // The screen went away while the engine opened; give the lease straight back.
+            if (acquired != null) {
+                AudioEngineProvider.get().release();
+            }
+            return;
+        }
+        EngineCallback target = callback;
+        callback = null;
+        if (acquired != null) {
+            engine = acquired;
+            if (target != null) {
+                target.onEngineReady(acquired);
+            }
+        } else if (target != null) {
+            target.onEngineFailed(error);
+        }
+    }
+
+    @Override
+    protected void onCleared() {
+        cleared = true;
+        callback = null;
+        if (engine != null) {
+            AudioEngineProvider.get().release();
+            engine = null;
+        }
+    }
+}
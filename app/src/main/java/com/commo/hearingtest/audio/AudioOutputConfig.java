@@ -0,0 +1,74 @@
+package com.commo.hearingtest.audio;
+
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.media.AudioManager;
+
+/**
+ * The device's native output format, as reported by {@link AudioManager}. Synthesizing at the
+ * native rate and writing in multiples of the native burst keeps tones off the resampler and
+ * out of the mixer's deep buffers.
+ */
+public final class AudioOutputConfig {
+
+    /** Used when the device does not report a native rate. */
+    public static final int DEFAULT_SAMPLE_RATE = 44100;
+    /** Used when the device does not report a native burst size. */
+    public static final int DEFAULT_FRAMES_PER_BURST = 256;
+
+    private final int sampleRate;
+    private final int framesPerBurst;
+    private final boolean lowLatencyFeature;
+
+    public AudioOutputConfig(int sampleRate, int framesPerBurst, boolean lowLatencyFeature) {
+        this.sampleRate = sampleRate;
+        this.framesPerBurst = framesPerBurst;
+        this.lowLatencyFeature = lowLatencyFeature;
+    }
+
+    public static AudioOutputConfig query(Context context) {
+        AudioManager audioManager = (AudioManager) context.getSystemService(Context.AUDIO_SERVICE);
+        int sampleRate = DEFAULT_SAMPLE_RATE;
+        int framesPerBurst = DEFAULT_FRAMES_PER_BURST;
+        if (audioManager != null) {
+            sampleRate = parsePositive(audioManager.getProperty(AudioManager.PROPERTY_OUTPUT_SAMPLE_RATE),
+                    DEFAULT_SAMPLE_RATE);
+            framesPerBurst = parsePositive(audioManager.getProperty(AudioManager.PROPERTY_OUTPUT_FRAMES_PER_BUFFER),
+                    DEFAULT_FRAMES_PER_BURST);
+        }
+        boolean lowLatency = context.getPackageManager() != null
+                && context.getPackageManager().hasSystemFeature(PackageManager.FEATURE_AUDIO_LOW_LATENCY);
+        return new AudioOutputConfig(sampleRate, framesPerBurst, lowLatency);
+    }
+
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    public int getFramesPerBurst() {
+        return framesPerBurst;
+    }
+
+    /** Whether the device advertises android.hardware.audio.low_latency. */
+    public boolean hasLowLatencyFeature() {
+        return lowLatencyFeature;
+    }
+
+    private static int parsePositive(String value, int fallback) {
+        if (value == null) {
+            return fallback;
+        }
+        try {
+            int parsed = Integer.parseInt(value.trim());
+            return parsed > 0 ? parsed : fallback;
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return sampleRate + " Hz, burst " + framesPerBurst + " frames"
+                + (lowLatencyFeature ? ", low-latency feature" : "");
+    }
+}
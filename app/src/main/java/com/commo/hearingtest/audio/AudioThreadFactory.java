@@ -0,0 +1,36 @@
+package com.commo.hearingtest.audio;
+
+import android.os.Process;
+
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Creates audio threads that raise their own scheduling priority before running, since
+ * {@link Process#setThreadPriority(int)} only applies to the calling thread.
+ */
+public final class AudioThreadFactory implements ThreadFactory {
+
+    private final int priority;
+
+    public AudioThreadFactory(int priority) {
+        this.priority = priority;
+    }
+
+    /** Factory for threads that must keep the output device fed. */
+    public static AudioThreadFactory urgentAudio() {
+        return new AudioThreadFactory(Process.THREAD_PRIORITY_URGENT_AUDIO);
+    }
+
+    @Override
+    public Thread newThread(final Runnable task) {
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                Process.setThreadPriority(priority);
+                task.run();
+            }
+        });
+        thread.setDaemon(true);
+        return thread;
+    }
+}
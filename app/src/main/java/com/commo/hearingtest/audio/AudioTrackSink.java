@@ -0,0 +1,188 @@
+package com.commo.hearingtest.audio;
+
+import android.media.AudioAttributes;
+import android.media.AudioFormat;
+import android.media.AudioManager;
+import android.media.AudioTimestamp;
+import android.media.AudioTrack;
+import android.util.Log;
+
+import com.commo.hearingtest.metrics.AudioMetrics;
+
+/**
+ * {@link AudioSink} backed by a 16-bit stereo streaming {@link AudioTrack}.
+ *
+ * <p>{@link #open(AudioOutputConfig)} first asks for a low-latency track at the device's native
+ * rate with a buffer of two native bursts, or four on a device that does not advertise the
+ * low-latency audio feature, whose fast path is not certified to keep up with two. If the device
+ * refuses, it falls back to a regular track at the same rate, and finally to the default 44.1 kHz
+ * track.
+ */
+public final class AudioTrackSink implements AudioSink {
+
+    private static final String TAG = "AudioTrackSink";
+    private static final int CHANNEL_CONFIG = AudioFormat.CHANNEL_OUT_STEREO;
+    private static final int ENCODING = AudioFormat.ENCODING_PCM_16BIT;
+    private static final int BYTES_PER_FRAME = 4;
+    private static final int LOW_LATENCY_BURSTS = 2;
+    private static final int UNCERTIFIED_LOW_LATENCY_BURSTS = 4;
+
+    private final AudioTrack audioTrack;
+    private final int sampleRate;
+    private final boolean lowLatency;
+    private final AudioTimestamp audioTimestamp = new AudioTimestamp();
+    private final AudioMetrics metrics = AudioMetrics.get();
+
+    private AudioTrackSink(AudioTrack audioTrack, int sampleRate) {
+        this.audioTrack = audioTrack;
+        this.sampleRate = sampleRate;
+        this.lowLatency = audioTrack.getPerformanceMode() == AudioTrack.PERFORMANCE_MODE_LOW_LATENCY;
+    }
+
+    /** Opens the lowest-latency track the device supports for {@code config}. */
+    public static AudioTrackSink open(AudioOutputConfig config) {
+        AudioTrack track = tryOpenLowLatency(config);
+        if (track == null) {
+            track = tryOpenStandard(config.getSampleRate());
+        }
+        if (track == null && config.getSampleRate() != AudioOutputConfig.DEFAULT_SAMPLE_RATE) {
+            track = tryOpenStandard(AudioOutputConfig.DEFAULT_SAMPLE_RATE);
+        }
+        if (track == null) {
+            throw new IllegalStateException("No audio output available");
+        }
+        return new AudioTrackSink(track, track.getSampleRate());
+    }
+
+    private static AudioTrack tryOpenLowLatency(AudioOutputConfig config) {
+        int sampleRate = config.getSampleRate();
+        int minBufferBytes = AudioTrack.getMinBufferSize(sampleRate, CHANNEL_CONFIG, ENCODING);
+        if (minBufferBytes <= 0) {
+            return null;
+        }
+        AudioTrack track;
+        try {
+            track = new AudioTrack.Builder()
+                    .setAudioAttributes(attributes())
+                    .setAudioFormat(format(sampleRate))
+                    .setBufferSizeInBytes(minBufferBytes)
+                    .setTransferMode(AudioTrack.MODE_STREAM)
+                    .setPerformanceMode(AudioTrack.PERFORMANCE_MODE_LOW_LATENCY)
+                    .build();
+        } catch (UnsupportedOperationException | IllegalArgumentException e) {
+            Log.w(TAG, "Low-latency track refused at " + sampleRate + " Hz", e);
+            return null;
+        }
+        if (track.getState() != AudioTrack.STATE_INITIALIZED) {
+            track.release();
+            return null;
+        }
+        if (track.getPerformanceMode() != AudioTrack.PERFORMANCE_MODE_LOW_LATENCY) {
+            // The device handed us a normal track; keep it, but there is nothing to trim.
+            return track;
+        }
+        // The capacity stays at the minimum buffer; only the portion in use shrinks.
+        int bursts = config.hasLowLatencyFeature() ? LOW_LATENCY_BURSTS : UNCERTIFIED_LOW_LATENCY_BURSTS;
+        int target = bursts * config.getFramesPerBurst();
+        if (target * BYTES_PER_FRAME < minBufferBytes) {
+            track.setBufferSizeInFrames(target);
+        }
+        return track;
+    }
+
+    private static AudioTrack tryOpenStandard(int sampleRate) {
+        int bufferSize = AudioTrack.getMinBufferSize(sampleRate, CHANNEL_CONFIG, ENCODING);
+        if (bufferSize <= 0) {
+            return null;
+        }
+        try {
+            AudioTrack track = new AudioTrack(attributes(), format(sampleRate), bufferSize,
+                    AudioTrack.MODE_STREAM, AudioManager.AUDIO_SESSION_ID_GENERATE);
+            if (track.getState() == AudioTrack.STATE_INITIALIZED) {
+                return track;
+            }
+            track.release();
+        } catch (IllegalArgumentException e) {
+            Log.w(TAG, "Track refused at " + sampleRate + " Hz", e);
+        }
+        return null;
+    }
+
+    private static AudioAttributes attributes() {
+        return new AudioAttributes.Builder()
+                .setUsage(AudioAttributes.USAGE_MEDIA)
+                .setContentType(AudioAttributes.CONTENT_TYPE_MUSIC)
+                .build();
+    }
+
+    private static AudioFormat format(int sampleRate) {
+        return new AudioFormat.Builder()
+                .setSampleRate(sampleRate)
+                .setChannelMask(CHANNEL_CONFIG)
+                .setEncoding(ENCODING)
+                .build();
+    }
+
+    @Override
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    @Override
+    public int getBufferSizeFrames() {
+        return audioTrack.getBufferSizeInFrames();
+    }
+
+    /** Whether the device granted the low-latency (fast mixer) path. */
+    public boolean isLowLatency() {
+        return lowLatency;
+    }
+
+    @Override
+    public void start() {
+        audioTrack.play();
+    }
+
+    @Override
+    public int write(short[] data, int offset, int length) {
+        int written = audioTrack.write(data, offset, length);
+        if (metrics.isEnabled()) {
+            // The track keeps the running total; this only mirrors it.
+            metrics.getUnderruns().set(audioTrack.getUnderrunCount());
+        }
+        return written;
+    }
+
+    @Override
+    public boolean getTimestamp(FrameTimestamp out) {
+        synchronized (audioTimestamp) {
+            if (!audioTrack.getTimestamp(audioTimestamp)) {
+                return false;
+            }
+            out.framePosition = audioTimestamp.framePosition;
+            out.nanoTime = audioTimestamp.nanoTime;
+            return true;
+        }
+    }
+
+    @Override
+    public void stop() {
+        try {
+            audioTrack.pause();
+            audioTrack.flush();
+        } catch (IllegalStateException e) {
+            // Track was never initialized; nothing queued to drop.
+        }
+    }
+
+    @Override
+    public void release() {
+        audioTrack.release();
+    }
+
+    @Override
+    public String toString() {
+        return sampleRate + " Hz, " + (lowLatency ? "low-latency" : "standard")
+                + ", buffer " + getBufferSizeFrames() + " frames";
+    }
+}
@@ -0,0 +1,201 @@
+package com.commo.hearingtest.calibration;
+
+import android.content.Context;
+import android.media.AudioDeviceInfo;
+import android.media.AudioManager;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Process-wide owner of the headphone calibration profiles in {@code files/calibration/*.cal}.
+ *
+ * <p>Profiles are parsed, and their {@link GainTable}s built, once on a background thread when
+ * the app starts. Each test then asks {@link #selectAsync} for the table of the headphones
+ * currently connected, which costs a device query and a list scan. A profile whose {@code device} matches
+ * the output's product name wins; otherwise a profile without a device, otherwise the
+ * {@link CalibrationProfile#nominal() nominal} one.
+ */
+public final class CalibrationProvider {
+
+    private static final String TAG = "CalibrationProvider";
+    private static final String DIRECTORY = "calibration";
+    private static final String EXTENSION = ".cal";
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /** Receives the selected gain table on the main thread. */
+    public interface SelectCallback {
+        void onSelected(GainTable gainTable);
+    }
+
+    private static final CalibrationProvider INSTANCE = new CalibrationProvider();
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable task) {
+            Thread thread = new Thread(task, "calibration-load");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+    // Separate from the loader, so a selection waiting for a reload never blocks that reload.
+    private final ExecutorService selectExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable task) {
+            Thread thread = new Thread(task, "calibration-select");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final GainTable nominal = CalibrationProfile.nominal().createGainTable();
+
+    private Future<List<GainTable>> pendingTables;
+
+    private CalibrationProvider() {
+    }
+
+    public static CalibrationProvider get() {
+        return INSTANCE;
+    }
+
+    /** Starts loading the profiles in the background if they are not loaded or loading already. */
+    public synchronized void loadAsync(Context context) {
+        if (pendingTables == null) {
+            reload(context);
+        }
+    }
+
+    /** Loads the profiles again, e.g. after a new profile file was installed. */
+    public synchronized void reload(Context context) {
+        final File directory = new File(context.getApplicationContext().getFilesDir(), DIRECTORY);
+        pendingTables = executor.submit(new Callable<List<GainTable>>() {
+            @Override
+            public List<GainTable> call() {
+                return loadTables(directory);
+            }
+        });
+    }
+
+    /**
+     * Delivers the gain table for the headphones connected now to {@code callback} on the main
+     * thread, once the background load has finished. For screens, which must not wait on it.
+     */
+    public void selectAsync(Context context, final SelectCallback callback) {
+        loadAsync(context);
+        final Context appContext = context.getApplicationContext();
+        selectExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final GainTable gainTable = select(appContext);
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        callback.onSelected(gainTable);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Gain table for the headphones connected now. Waits for the background load if it is still
+     * running, so call it off the main thread; falls back to the nominal table if loading failed.
+     */
+    public GainTable select(Context context) {
+        loadAsync(context);
+        Future<List<GainTable>> loading;
+        synchronized (this) {
+            loading = pendingTables;
+        }
+        List<GainTable> tables;
+        try {
+            tables = loading.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return nominal;
+        } catch (ExecutionException e) {
+            Log.e(TAG, "Calibration profiles unavailable", e.getCause());
+            return nominal;
+        }
+        List<String> products = connectedHeadphones(context);
+        for (GainTable table : tables) {
+            for (String product : products) {
+                if (table.getProfile().matchesDevice(product)) {
+                    return table;
+                }
+            }
+        }
+        for (GainTable table : tables) {
+            if (table.getProfile().getDeviceName() == null) {
+                return table;
+            }
+        }
+        Log.i(TAG, "No calibration for " + products + "; levels are nominal");
+        return nominal;
+    }
+
+    private static List<GainTable> loadTables(File directory) {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return Collections.emptyList();
+        }
+        List<GainTable> tables = new ArrayList<GainTable>();
+        for (File file : files) {
+            String fileName = file.getName();
+            if (!fileName.endsWith(EXTENSION)) continue;
+            String fallbackName = fileName.substring(0, fileName.length() - EXTENSION.length());
+            try {
+                Reader reader = new InputStreamReader(new FileInputStream(file), UTF_8);
+                try {
+                    tables.add(CalibrationProfile.parse(reader, fallbackName).createGainTable());
+                } finally {
+                    reader.close();
+                }
+            } catch (IOException e) {
+                Log.w(TAG, "Skipping unreadable profile " + fileName, e);
+            }
+        }
+        Log.i(TAG, "Loaded " + tables.size() + " calibration profiles");
+        return tables;
+    }
+
+    private static List<String> connectedHeadphones(Context context) {
+        List<String> products = new ArrayList<String>();
+        AudioManager audioManager = (AudioManager) context.getSystemService(Context.AUDIO_SERVICE);
+        if (audioManager == null) {
+            return products;
+        }
+        for (AudioDeviceInfo device : audioManager.getDevices(AudioManager.GET_DEVICES_OUTPUTS)) {
+            switch (device.getType()) {
+                case AudioDeviceInfo.TYPE_WIRED_HEADPHONES:
+                case AudioDeviceInfo.TYPE_WIRED_HEADSET:
+                case AudioDeviceInfo.TYPE_USB_HEADSET:
+                case AudioDeviceInfo.TYPE_BLUETOOTH_A2DP:
+                    if (device.getProductName() != null) {
+                        products.add(device.getProductName().toString());
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+        return products;
+    }
+}
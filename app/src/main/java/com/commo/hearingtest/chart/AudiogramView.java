@@ -0,0 +1,322 @@
+package com.commo.hearingtest.chart;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.util.AttributeSet;
+import android.view.MotionEvent;
+import android.view.ScaleGestureDetector;
+import android.view.View;
+
+import com.commo.hearingtest.core.Audiogram;
+import com.commo.hearingtest.core.Ear;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Audiogram chart: the current session per ear (right red O, left blue X, by clinical
+ * convention) over faded lines for earlier sessions, on log-frequency and inverted-level axes.
+ * Pinch to zoom into part of the chart.
+ *
+ * <p>All geometry is built when the data, size or zoom changes: grid and history go into float
+ * arrays drawn with one {@code drawLines} call each, the current session into cached
+ * {@link Path}s, and axis labels into strings. {@link #onDraw} only issues draw calls, so it does
+ * not allocate and stays on the hardware-accelerated path however many sessions are overlaid.
+ */
+public class AudiogramView extends View {
+
+    private static final float MAX_ZOOM = 6f;
+    private static final int LEFT_COLOR = Color.BLUE;
+    private static final int RIGHT_COLOR = Color.RED;
+    private static final int HISTORY_ALPHA = 40;
+
+    private final float density;
+    private final Paint gridPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint labelPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint[] historyPaints = new Paint[2];
+    private final Paint[] currentPaints = new Paint[2];
+    private final Path[] currentPaths = {new Path(), new Path()};
+    private final Matrix zoom = new Matrix();
+    private final ScaleGestureDetector scaleDetector;
+
+    private AudiogramChart chart = new AudiogramChart(-10, 120);
+    private Audiogram current;
+    private List<Audiogram> history = Collections.emptyList();
+
+    // Geometry in unzoomed plot coordinates, rebuilt when the data or size changes.
+    private float[] gridSource = new float[0];
+    private final float[][] historySource = {new float[0], new float[0]};
+    private final int[] historyFloats = new int[2];
+    private final float[][] currentLines = {new float[0], new float[0]};
+    private final int[] currentLineFloats = new int[2];
+    private final float[][] currentPoints = {new float[0], new float[0]};
+    private final int[] currentPointFloats = new int[2];
+    private final float[][] noResponsePoints = {new float[0], new float[0]};
+    private final int[] noResponseFloats = new int[2];
+    private String[] frequencyLabels = new String[0];
+    private float[] frequencyLabelX = new float[0];
+    private String[] levelLabels = new String[0];
+    private float[] levelLabelY = new float[0];
+
+    // The same geometry through the zoom, which is what onDraw draws.
+    private float[] gridDisplay = new float[0];
+    private final float[][] historyDisplay = {new float[0], new float[0]};
+    private float[] frequencyLabelXDisplay = new float[0];
+    private float[] levelLabelYDisplay = new float[0];
+
+    private float plotLeft;
+    private float plotTop;
+    private float plotRight;
+    private float plotBottom;
+    private float zoomScale = 1f;
+    private float zoomX;
+    private float zoomY;
+    private float lastFocusX;
+    private float lastFocusY;
+
+    public AudiogramView(Context context) {
+        this(context, null);
+    }
+
+    public AudiogramView(Context context, AttributeSet attrs) {
+        super(context, attrs);
+        density = context.getResources().getDisplayMetrics().density;
+
+        gridPaint.setColor(Color.LTGRAY);
+        gridPaint.setStrokeWidth(density);
+        labelPaint.setColor(Color.DKGRAY);
+        labelPaint.setTextSize(11 * density);
+        labelPaint.setTextAlign(Paint.Align.CENTER);
+        for (Ear ear : Ear.values()) {
+            int color = ear == Ear.LEFT ? LEFT_COLOR : RIGHT_COLOR;
+            Paint historyPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+            historyPaint.setColor(color);
+            historyPaint.setAlpha(HISTORY_ALPHA);
+            historyPaint.setStrokeWidth(density);
+            historyPaints[ear.ordinal()] = historyPaint;
+            Paint currentPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+            currentPaint.setColor(color);
+            currentPaint.setStyle(Paint.Style.STROKE);
+            currentPaint.setStrokeWidth(2 * density);
+            currentPaints[ear.ordinal()] = currentPaint;
+        }
+
+        scaleDetector = new ScaleGestureDetector(context, new ScaleGestureDetector.SimpleOnScaleGestureListener() {
+            @Override
+            public boolean onScaleBegin(ScaleGestureDetector detector) {
+                lastFocusX = detector.getFocusX();
+                lastFocusY = detector.getFocusY();
+                return true;
+            }
+
+            @Override
+            public boolean onScale(ScaleGestureDetector detector) {
+                zoomBy(detector.getScaleFactor(), detector.getFocusX(), detector.getFocusY());
+                return true;
+            }
+        });
+    }
+
+    /** Plots levels from {@code minLevelDb} at the top to {@code maxLevelDb} at the bottom. */
+    public void setLevelRange(double minLevelDb, double maxLevelDb) {
+        chart = new AudiogramChart(minLevelDb, maxLevelDb);
+        rebuild();
+    }
+
+    /** Sets the session to highlight and the earlier sessions to draw behind it. */
+    public void setData(Audiogram current, List<Audiogram> history) {
+        this.current = current;
+        this.history = history == null ? Collections.<Audiogram>emptyList() : new ArrayList<Audiogram>(history);
+        rebuild();
+    }
+
+    /** Resets the zoom to the whole chart. */
+    public void resetZoom() {
+        resetZoomState();
+        applyZoom();
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        plotLeft = getPaddingLeft() + 36 * density;
+        plotTop = getPaddingTop() + 8 * density;
+        plotRight = w - getPaddingRight() - 12 * density;
+        plotBottom = h - getPaddingBottom() - 24 * density;
+        resetZoomState();
+        rebuild();
+    }
+
+    private void resetZoomState() {
+        zoomScale = 1f;
+        zoomX = 0f;
+        zoomY = 0f;
+    }
+
+    private void rebuild() {
+        if (plotRight <= plotLeft || plotBottom <= plotTop) return;
+        chart.setBounds(plotLeft, plotTop, plotRight, plotBottom);
+
+        gridSource = new float[chart.gridFloats()];
+        chart.appendGrid(gridSource, 0);
+        gridDisplay = new float[gridSource.length];
+
+        int frequencyCount = AudiogramChart.GRID_FREQUENCIES.length;
+        frequencyLabels = new String[frequencyCount];
+        frequencyLabelX = new float[frequencyCount];
+        for (int i = 0; i < frequencyCount; i++) {
+            int frequency = AudiogramChart.GRID_FREQUENCIES[i];
+            frequencyLabels[i] = frequency >= 1000 ? frequency / 1000 + "k" : String.valueOf(frequency);
+            frequencyLabelX[i] = chart.xForFrequency(frequency);
+        }
+        frequencyLabelXDisplay = new float[frequencyCount];
+        int levelCount = chart.getGridLevelCount();
+        levelLabels = new String[levelCount];
+        levelLabelY = new float[levelCount];
+        for (int i = 0; i < levelCount; i++) {
+            double level = chart.getGridLevelDb(i);
+            levelLabels[i] = String.valueOf((int) level);
+            levelLabelY[i] = chart.yForLevel(level);
+        }
+        levelLabelYDisplay = new float[levelCount];
+
+        int historyCapacity = 0;
+        for (Audiogram audiogram : history) {
+            historyCapacity += AudiogramChart.segmentFloats(audiogram);
+        }
+        for (Ear ear : Ear.values()) {
+            int e = ear.ordinal();
+            float[] lines = new float[historyCapacity];
+            int offset = 0;
+            for (Audiogram audiogram : history) {
+                offset = chart.appendSegments(audiogram, ear, lines, offset);
+            }
+            historySource[e] = lines;
+            historyFloats[e] = offset;
+            historyDisplay[e] = new float[historyCapacity];
+
+            if (current != null) {
+                currentLines[e] = new float[AudiogramChart.segmentFloats(current)];
+                currentLineFloats[e] = chart.appendSegments(current, ear, currentLines[e], 0);
+                currentPoints[e] = new float[AudiogramChart.pointFloats(current)];
+                currentPointFloats[e] = chart.appendPoints(current, ear, false, currentPoints[e], 0);
+                noResponsePoints[e] = new float[AudiogramChart.pointFloats(current)];
+                noResponseFloats[e] = chart.appendPoints(current, ear, true, noResponsePoints[e], 0);
+            } else {
+                currentLineFloats[e] = 0;
+                currentPointFloats[e] = 0;
+                noResponseFloats[e] = 0;
+            }
+        }
+        applyZoom();
+    }
+
+    private void zoomBy(float factor, float focusX, float focusY) {
+        float scale = Math.max(1f, Math.min(MAX_ZOOM, zoomScale * factor));
+        float applied = scale / zoomScale;
+        // Keep the point under the fingers in place, and follow the fingers as they move.
+        zoomX = focusX - (lastFocusX - zoomX) * applied;
+        zoomY = focusY - (lastFocusY - zoomY) * applied;
+        zoomScale = scale;
+        lastFocusX = focusX;
+        lastFocusY = focusY;
+        applyZoom();
+    }
+
+    private void applyZoom() {
+        // The chart may not be dragged away from any edge of the plot area.
+        zoomX = Math.min(plotLeft * (1 - zoomScale), Math.max(plotRight * (1 - zoomScale), zoomX));
+        zoomY = Math.min(plotTop * (1 - zoomScale), Math.max(plotBottom * (1 - zoomScale), zoomY));
+        zoom.setScale(zoomScale, zoomScale);
+        zoom.postTranslate(zoomX, zoomY);
+
+        zoom.mapPoints(gridDisplay, 0, gridSource, 0, gridSource.length / 2);
+        for (int e = 0; e < 2; e++) {
+            zoom.mapPoints(historyDisplay[e], 0, historySource[e], 0, historyFloats[e] / 2);
+            buildCurrentPath(e);
+        }
+        for (int i = 0; i < frequencyLabelX.length; i++) {
+            frequencyLabelXDisplay[i] = frequencyLabelX[i] * zoomScale + zoomX;
+        }
+        for (int i = 0; i < levelLabelY.length; i++) {
+            levelLabelYDisplay[i] = levelLabelY[i] * zoomScale + zoomY;
+        }
+        invalidate();
+    }
+
+    /** Line and markers for one ear, with markers kept at their drawn size whatever the zoom. */
+    private void buildCurrentPath(int e) {
+        Path path = currentPaths[e];
+        path.rewind();
+        float[] lines = currentLines[e];
+        for (int i = 0; i < currentLineFloats[e]; i += 4) {
+            path.moveTo(lines[i] * zoomScale + zoomX, lines[i + 1] * zoomScale + zoomY);
+            path.lineTo(lines[i + 2] * zoomScale + zoomX, lines[i + 3] * zoomScale + zoomY);
+        }
+        float r = 5 * density;
+        float[] points = currentPoints[e];
+        for (int i = 0; i < currentPointFloats[e]; i += 2) {
+            float x = points[i] * zoomScale + zoomX;
+            float y = points[i + 1] * zoomScale + zoomY;
+            if (e == Ear.RIGHT.ordinal()) {
+                path.addCircle(x, y, r, Path.Direction.CW);
+            } else {
+                path.moveTo(x - r, y - r);
+                path.lineTo(x + r, y + r);
+                path.moveTo(x - r, y + r);
+                path.lineTo(x + r, y - r);
+            }
+        }
+        // No response: a downward arrow at the bottom of the range.
+        float[] missing = noResponsePoints[e];
+        for (int i = 0; i < noResponseFloats[e]; i += 2) {
+            float x = missing[i] * zoomScale + zoomX;
+            float y = missing[i + 1] * zoomScale + zoomY;
+            path.moveTo(x, y - 2 * r);
+            path.lineTo(x, y);
+            path.moveTo(x - r, y - r);
+            path.lineTo(x, y);
+            path.lineTo(x + r, y - r);
+        }
+    }
+
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        scaleDetector.onTouchEvent(event);
+        return true;
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+        if (plotRight <= plotLeft) return;
+
+        int saved = canvas.save();
+        canvas.clipRect(plotLeft, plotTop, plotRight, plotBottom);
+        canvas.drawLines(gridDisplay, 0, gridDisplay.length, gridPaint);
+        for (int e = 0; e < 2; e++) {
+            canvas.drawLines(historyDisplay[e], 0, historyFloats[e], historyPaints[e]);
+        }
+        for (int e = 0; e < 2; e++) {
+            canvas.drawPath(currentPaths[e], currentPaints[e]);
+        }
+        canvas.restoreToCount(saved);
+
+        float textHeight = labelPaint.getTextSize();
+        for (int i = 0; i < frequencyLabels.length; i++) {
+            float x = frequencyLabelXDisplay[i];
+            if (x < plotLeft || x > plotRight) continue;
+            canvas.drawText(frequencyLabels[i], x, plotBottom + textHeight + 4 * density, labelPaint);
+        }
+        for (int i = 0; i < levelLabels.length; i++) {
+            float y = levelLabelYDisplay[i];
+            if (y < plotTop || y > plotBottom) continue;
+            canvas.drawText(levelLabels[i], plotLeft - 18 * density, y + textHeight / 3, labelPaint);
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package com.commo.hearingtest.diagnostics;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Process;
+import android.util.Log;
+
+import com.commo.hearingtest.audio.AudioEngineProvider;
+import com.commo.hearingtest.dsp.ToneCache;
+import com.commo.hearingtest.metrics.AudioMetrics;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Process-wide switch for {@link AudioMetrics}, and the periodic dump of its report to
+ * {@code files/diagnostics/metrics.log} so operators can attach it to a bug report.
+ *
+ * <p>The switch is remembered across launches. While it is on, the report is appended every
+ * {@link #DUMP_INTERVAL_SECONDS} on a background thread; the file is rotated to
+ * {@code metrics.log.1} once it passes {@link #MAX_FILE_BYTES}, so at most two files are kept.
+ */
+public final class DiagnosticsProvider {
+
+    public static final int DUMP_INTERVAL_SECONDS = 60;
+    public static final long MAX_FILE_BYTES = 256 * 1024;
+
+    private static final String TAG = "DiagnosticsProvider";
+    private static final String DIRECTORY = "diagnostics";
+    private static final String FILE_NAME = "metrics.log";
+    private static final String PREFERENCES = "diagnostics";
+    private static final String KEY_ENABLED = "metrics_enabled";
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final DiagnosticsProvider INSTANCE = new DiagnosticsProvider();
+
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(final Runnable task) {
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                    task.run();
+                }
+            }, "metrics-dump");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private ScheduledFuture<?> periodicDump;
+
+    private DiagnosticsProvider() {
+    }
+
+    public static DiagnosticsProvider get() {
+        return INSTANCE;
+    }
+
+    /** Turns metrics back on at app start if they were on when the app last ran. */
+    public void restore(Context context) {
+        apply(context, preferences(context).getBoolean(KEY_ENABLED, false));
+    }
+
+    public void setEnabled(Context context, boolean enabled) {
+        preferences(context).edit().putBoolean(KEY_ENABLED, enabled).apply();
+        apply(context, enabled);
+    }
+
+    public boolean isEnabled() {
+        return AudioMetrics.get().isEnabled();
+    }
+
+    /** The metrics with the output configuration and tone cache state, as dumped to the file. */
+    public String report() {
+        AudioEngineProvider engines = AudioEngineProvider.get();
+        ToneCache tones = ToneCache.shared();
+        StringBuilder report = new StringBuilder();
+        report.append("time=").append(new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.US).format(new Date()))
+                .append('\n');
+        report.append("output=").append(engines.getOutputDescription()).append('\n');
+        report.append("warmup_us=").append(engines.getWarmUpNanos() / 1000)
+                .append(" last_acquire_us=").append(engines.getLastAcquireNanos() / 1000).append('\n');
+        report.append("tone_cache entries=").append(tones.size())
+                .append(" hits=").append(tones.getHitCount())
+                .append(" misses=").append(tones.getMissCount()).append('\n');
+        report.append(AudioMetrics.get().report());
+        return report.toString();
+    }
+
+    /** Appends the report to the dump file now, in the background. */
+    public void dumpNow(Context context) {
+        final File file = getDumpFile(context);
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                dump(file);
+            }
+        });
+    }
+
+    public File getDumpFile(Context context) {
+        return new File(new File(context.getApplicationContext().getFilesDir(), DIRECTORY), FILE_NAME);
+    }
+
+    private synchronized void apply(Context context, boolean enabled) {
+        AudioMetrics.get().setEnabled(enabled);
+        if (enabled && periodicDump == null) {
+            final File file = getDumpFile(context);
+            periodicDump = executor.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    dump(file);
+                }
+            }, DUMP_INTERVAL_SECONDS, DUMP_INTERVAL_SECONDS, TimeUnit.SECONDS);
+        } else if (!enabled && periodicDump != null) {
+            periodicDump.cancel(false);
+            periodicDump = null;
+        }
+    }
+
+    private void dump(File file) {
+        String report = report();
+        try {
+            File directory = file.getParentFile();
+            if (!directory.isDirectory() && !directory.mkdirs()) {
+                throw new IOException("Cannot create " + directory);
+            }
+            if (file.length() > MAX_FILE_BYTES) {
+                File previous = new File(directory, FILE_NAME + ".1");
+                if (previous.exists() && !previous.delete() || !file.renameTo(previous)) {
+                    throw new IOException("Cannot rotate " + file);
+                }
+            }
+            Writer writer = new OutputStreamWriter(new FileOutputStream(file, true), UTF_8);
+            try {
+                writer.write(report);
+                writer.write('\n');
+            } finally {
+                writer.close();
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Metrics dump failed", e);
+        }
+    }
+
+    private static SharedPreferences preferences(Context context) {
+        return context.getApplicationContext().getSharedPreferences(PREFERENCES, Context.MODE_PRIVATE);
+    }
+}
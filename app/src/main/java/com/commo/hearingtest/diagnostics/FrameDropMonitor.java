@@ -0,0 +1,48 @@
+package com.commo.hearingtest.diagnostics;
+
+import android.app.Activity;
+import android.view.Choreographer;
+
+import com.commo.hearingtest.metrics.AudioMetrics;
+import com.commo.hearingtest.metrics.FrameDropCounter;
+
+/**
+ * Feeds a screen's frame times into {@link AudioMetrics} while it is in the foreground. Call
+ * {@link #start()} from {@code onResume} and {@link #stop()} from {@code onPause}; nothing is
+ * registered with the {@link Choreographer} unless metrics are enabled.
+ */
+public final class FrameDropMonitor implements Choreographer.FrameCallback {
+
+    private static final float DEFAULT_REFRESH_RATE = 60f;
+
+    private final FrameDropCounter counter;
+    private boolean running;
+
+    public FrameDropMonitor(Activity activity) {
+        float refreshRate = activity.getWindowManager().getDefaultDisplay().getRefreshRate();
+        if (refreshRate <= 0) {
+            refreshRate = DEFAULT_REFRESH_RATE;
+        }
+        this.counter = new FrameDropCounter((long) (1_000_000_000L / refreshRate), AudioMetrics.get());
+    }
+
+    public void start() {
+        if (running || !AudioMetrics.get().isEnabled()) return;
+        running = true;
+        counter.reset();
+        Choreographer.getInstance().postFrameCallback(this);
+    }
+
+    public void stop() {
+        if (!running) return;
+        running = false;
+        Choreographer.getInstance().removeFrameCallback(this);
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        if (!running) return;
+        counter.onFrame(frameTimeNanos);
+        Choreographer.getInstance().postFrameCallback(this);
+    }
+}
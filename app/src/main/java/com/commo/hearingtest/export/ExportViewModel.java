@@ -0,0 +1,225 @@
+package com.commo.hearingtest.export;
+
+import android.app.Application;
+import android.content.ContentResolver;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.provider.DocumentsContract;
+import android.util.Log;
+
+import androidx.lifecycle.AndroidViewModel;
+
+import com.commo.hearingtest.store.SessionStore;
+import com.commo.hearingtest.store.SessionStoreProvider;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Runs the export screen's {@link SessionExporter} and counts the saved sessions. Being a
+ * ViewModel, it survives configuration changes, so rotating the screen neither stops an export
+ * nor keeps the old screen alive for it; the export stops only when the user cancels or leaves.
+ *
+ * <p>The work runs on a background thread holding only the application context, and the screen
+ * hears of progress through a {@link Listener} on the main thread. A document left incomplete by
+ * a cancel or a failure is deleted, so the user is never left with a truncated file.
+ */
+public class ExportViewModel extends AndroidViewModel {
+
+    private static final String TAG = "ExportViewModel";
+
+    /** Told on the main thread whenever the count, the progress or the outcome changes. */
+    public interface Listener {
+        void onExportChanged();
+    }
+
+    private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(final Runnable task) {
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                    task.run();
+                }
+            }, "session-export");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private Listener listener;
+    private String sessionCount;
+    private String status;
+    private boolean exporting;
+    // Set by the export thread; either side may see the other's write first, so both check.
+    private volatile SessionExporter exporter;
+    private volatile boolean cancelRequested;
+
+    public ExportViewModel(Application application) {
+        super(application);
+    }
+
+    /** The screen to tell about changes, or null when it goes away. Call on the main thread. */
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    /** The saved session count as shown to the user, or null until it has been read. */
+    public String getSessionCount() {
+        return sessionCount;
+    }
+
+    /** Progress or outcome of the last export, or null if there was none. */
+    public String getStatus() {
+        return status;
+    }
+
+    public boolean isExporting() {
+        return exporting;
+    }
+
+    /** Reads the number of saved sessions in the background, once. */
+    public void countSessions() {
+        if (sessionCount != null) return;
+        final Application application = getApplication();
+        EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                String count;
+                try {
+                    SessionStore store = SessionStoreProvider.get().getStore(application);
+                    store.flush();
+                    count = String.format(Locale.getDefault(), "저장된 검사 기록: %,d 건", store.size());
+                } catch (IOException e) {
+                    Log.e(TAG, "Session store unavailable", e);
+                    count = "검사 기록을 읽을 수 없습니다.";
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                final String result = count;
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        sessionCount = result;
+                        notifyListener();
+                    }
+                });
+            }
+        });
+    }
+
+    /** Exports every saved session to {@code uri}. Call on the main thread, not while exporting. */
+    public void startExport(final Uri uri, final SessionExporter.Format format, final boolean gzip) {
+        if (exporting) return;
+        exporting = true;
+        exporter = null;
+        cancelRequested = false;
+        status = "내보내기 준비 중...";
+        notifyListener();
+        final Application application = getApplication();
+        EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                String message;
+                try {
+                    SessionStore store = SessionStoreProvider.get().getStore(application);
+                    // Sessions still queued for the writer belong in the export too.
+                    store.flush();
+                    SessionExporter started = new SessionExporter(store, format, gzip);
+                    exporter = started;
+                    if (cancelRequested) {
+                        started.cancel();
+                    }
+                    OutputStream out = application.getContentResolver().openOutputStream(uri);
+                    if (out == null) {
+                        throw new IOException("Cannot open " + uri);
+                    }
+                    long start = System.nanoTime();
+                    int exported = started.exportTo(out, new SessionExporter.ProgressListener() {
+                        @Override
+                        public void onProgress(int exported, int total) {
+                            final String progress = String.format(Locale.getDefault(),
+                                    "%,d / %,d 건 내보내는 중...", exported, total);
+                            mainHandler.post(new Runnable() {
+                                @Override
+                                public void run() {
+                                    if (exporting) {
+                                        status = progress;
+                                        notifyListener();
+                                    }
+                                }
+                            });
+                        }
+                    });
+                    Log.i(TAG, "Exported " + exported + " sessions as " + format + " in "
+                            + (System.nanoTime() - start) / 1_000_000 + " ms");
+                    message = String.format(Locale.getDefault(), "%,d 건을 내보냈습니다.", exported);
+                } catch (InterruptedIOException e) {
+                    deleteDocument(application.getContentResolver(), uri);
+                    message = "내보내기를 취소했습니다.";
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    deleteDocument(application.getContentResolver(), uri);
+                    message = "내보내기를 취소했습니다.";
+                } catch (IOException e) {
+                    Log.e(TAG, "Export failed", e);
+                    deleteDocument(application.getContentResolver(), uri);
+                    message = "내보내기에 실패했습니다.";
+                }
+                final String result = message;
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        exporter = null;
+                        exporting = false;
+                        status = result;
+                        notifyListener();
+                    }
+                });
+            }
+        });
+    }
+
+    /** Stops the export in progress; the incomplete document is deleted. */
+    public void cancelExport() {
+        cancelRequested = true;
+        SessionExporter running = exporter;
+        if (running != null) {
+            running.cancel();
+        }
+    }
+
+    @Override
+    protected void onCleared() {
+        // The user left the screen for good, not just rotated it.
+        listener = null;
+        cancelExport();
+    }
+
+    private void notifyListener() {
+        if (listener != null) {
+            listener.onExportChanged();
+        }
+    }
+
+    private static void deleteDocument(ContentResolver resolver, Uri uri) {
+        try {
+            DocumentsContract.deleteDocument(resolver, uri);
+        } catch (FileNotFoundException e) {
+            // Never created, or already gone.
+        } catch (SecurityException | UnsupportedOperationException e) {
+            Log.w(TAG, "Cannot delete incomplete export " + uri, e);
+        }
+    }
+}
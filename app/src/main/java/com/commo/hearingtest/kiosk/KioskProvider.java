@@ -0,0 +1,162 @@
+package com.commo.hearingtest.kiosk;
+
+import android.content.Context;
+import android.content.Intent;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import com.commo.hearingtest.FrequencyTestActivity;
+import com.commo.hearingtest.audio.AudioEngineProvider;
+import com.commo.hearingtest.metrics.Histogram;
+import com.commo.hearingtest.protocol.ProtocolProvider;
+import com.commo.hearingtest.store.SessionStoreProvider;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Process-wide owner of the {@link ParticipantQueue} for screening drives, where one device tests
+ * a queue of people back to back with the frequency test.
+ *
+ * <p>A changeover reuses everything that outlives a screen: the shared audio engine stays open, and
+ * while a participant's results are shown {@link #prepareNext} makes sure the output is warm and
+ * the selected protocol's opening tones are back in the tone cache, so the next test plays its
+ * first tone without opening or rendering anything. Each participant's results are saved under
+ * their id; numbered ids continue across processes, so a restarted app never gives a second person
+ * an id that already has results. Reset and turnover times are measured by the queue, and any audio
+ * lease still held when the next participant starts is counted and logged as a leak.
+ */
+public final class KioskProvider {
+
+    private static final String TAG = "KioskProvider";
+    private static final String PREFERENCES = "kiosk";
+    private static final String KEY_NEXT_NUMBER = "next_number";
+
+    private static final KioskProvider INSTANCE = new KioskProvider();
+
+    private final ParticipantQueue queue = new ParticipantQueue();
+    private int leakedLeases;
+
+    private KioskProvider() {
+    }
+
+    public static KioskProvider get() {
+        return INSTANCE;
+    }
+
+    /** Queues a participant under {@code participantId}, or the next free number if it is blank. */
+    public synchronized String add(Context context, String participantId) {
+        if (participantId == null || participantId.trim().isEmpty()) {
+            SharedPreferences preferences = context.getSharedPreferences(PREFERENCES, Context.MODE_PRIVATE);
+            queue.continueNumberingFrom(preferences.getInt(KEY_NEXT_NUMBER, 1));
+            String id = queue.addNumbered();
+            // Saved long before the participant's results are, which is all the ordering needed.
+            preferences.edit().putInt(KEY_NEXT_NUMBER, queue.getNextNumber()).apply();
+            return id;
+        }
+        return queue.add(participantId);
+    }
+
+    public synchronized boolean remove(String participantId) {
+        return queue.remove(participantId);
+    }
+
+    public synchronized List<String> getWaiting() {
+        return queue.getWaiting();
+    }
+
+    /** The next participant to be tested, or null if nobody is waiting. */
+    public synchronized String peekNext() {
+        return queue.peekNext();
+    }
+
+    /**
+     * Gets the device ready for the next participant in the background: opens the audio output
+     * if it was closed and renders the selected protocol's opening tones for the headphones
+     * connected now. Cheap if everything is ready already.
+     */
+    public void prepareNext(Context context) {
+        AudioEngineProvider.get().warmUpAsync(context);
+        ProtocolProvider.get().prerenderAsync(context);
+        SessionStoreProvider.get().openAsync(context);
+    }
+
+    /**
+     * Takes the next participant off the queue and returns the intent that starts their test,
+     * or null if nobody is waiting.
+     */
+    public Intent startNext(Context context) {
+        long now = System.nanoTime();
+        int leases = AudioEngineProvider.get().getLeaseCount();
+        String participant;
+        synchronized (this) {
+            if (queue.getCurrent() != null) {
+                // Their test screen is gone without finishing, e.g. the process was backgrounded.
+                queue.abandon(now);
+            }
+            if (leases > 0) {
+                leakedLeases += leases;
+                Log.w(TAG, leases + " audio engine leases still held between participants");
+            }
+            participant = queue.begin(now);
+        }
+        if (participant == null) return null;
+        Intent intent = new Intent(context, FrequencyTestActivity.class);
+        intent.putExtra("participant_id", participant);
+        intent.putExtra("kiosk", true);
+        return intent;
+    }
+
+    /**
+     * {@code participant}'s first tone reached the output at {@code onsetNanos} on the
+     * {@link System#nanoTime()} clock; ends the reset.
+     */
+    public void testStarted(String participant, long onsetNanos) {
+        String summary;
+        synchronized (this) {
+            if (!participant.equals(queue.getCurrent())) return;
+            long count = queue.getResetNanos().getCount();
+            queue.started(onsetNanos);
+            if (queue.getResetNanos().getCount() == count) return;
+            summary = queue.toString();
+        }
+        Log.i(TAG, participant + " started: " + summary);
+    }
+
+    /** {@code participant}'s results are shown. */
+    public synchronized void testFinished(String participant) {
+        if (participant.equals(queue.getCurrent())) {
+            queue.finish(System.nanoTime());
+        }
+    }
+
+    /** {@code participant} left their test before the results. */
+    public synchronized void testAbandoned(String participant) {
+        if (participant.equals(queue.getCurrent())) {
+            queue.abandon(System.nanoTime());
+        }
+    }
+
+    /** Participants so far and changeover times, for the kiosk screen. */
+    public synchronized String report() {
+        Histogram reset = queue.getResetNanos();
+        Histogram turnover = queue.getTurnoverNanos();
+        StringBuilder text = new StringBuilder();
+        text.append("완료: ").append(queue.getCompletedCount()).append("명");
+        if (queue.getAbandonedCount() > 0) {
+            text.append(", 중단: ").append(queue.getAbandonedCount()).append("명");
+        }
+        if (reset.getCount() > 0) {
+            text.append(String.format(Locale.getDefault(), "\n검사 준비 시간: 중앙값 %.0f ms, 최대 %.0f ms",
+                    reset.getPercentile(0.5) / 1e6, reset.getMax() / 1e6));
+        }
+        if (turnover.getCount() > 0) {
+            text.append(String.format(Locale.getDefault(), "\n참가자 교대 시간: 중앙값 %.1f초, 95%% %.1f초",
+                    turnover.getPercentile(0.5) / 1e9, turnover.getPercentile(0.95) / 1e9));
+        }
+        if (leakedLeases > 0) {
+            text.append("\n⚠️ 해제되지 않은 오디오 자원: ").append(leakedLeases).append("건");
+        }
+        return text.toString();
+    }
+}
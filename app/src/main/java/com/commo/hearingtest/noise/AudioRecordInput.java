@@ -0,0 +1,81 @@
+package com.commo.hearingtest.noise;
+
+import android.media.AudioFormat;
+import android.media.AudioRecord;
+import android.media.MediaRecorder;
+import android.util.Log;
+
+/**
+ * {@link NoiseInput} backed by a mono 16-bit {@link AudioRecord} on the voice recognition
+ * source, which Android keeps free of automatic gain control and noise suppression, so levels
+ * stay comparable between rooms.
+ */
+public final class AudioRecordInput implements NoiseInput {
+
+    private static final String TAG = "AudioRecordInput";
+    private static final int CHANNEL_CONFIG = AudioFormat.CHANNEL_IN_MONO;
+    private static final int ENCODING = AudioFormat.ENCODING_PCM_16BIT;
+    private static final int[] SAMPLE_RATES = {48000, 44100, 16000};
+    // Room for several hops, so a late monitor thread does not drop audio.
+    private static final int BUFFER_HOPS = 4;
+
+    private final AudioRecord record;
+    private final int sampleRate;
+
+    private AudioRecordInput(AudioRecord record, int sampleRate) {
+        this.record = record;
+        this.sampleRate = sampleRate;
+    }
+
+    /**
+     * Opens the microphone at the first rate it supports, or returns null if it cannot be opened,
+     * e.g. without the RECORD_AUDIO permission.
+     */
+    public static AudioRecordInput open() {
+        for (int sampleRate : SAMPLE_RATES) {
+            int minBufferBytes = AudioRecord.getMinBufferSize(sampleRate, CHANNEL_CONFIG, ENCODING);
+            if (minBufferBytes <= 0) continue;
+            int bufferBytes = Math.max(minBufferBytes, BUFFER_HOPS * OctaveBandAnalyzer.HOP_SIZE * 2);
+            try {
+                AudioRecord record = new AudioRecord(MediaRecorder.AudioSource.VOICE_RECOGNITION,
+                        sampleRate, CHANNEL_CONFIG, ENCODING, bufferBytes);
+                if (record.getState() == AudioRecord.STATE_INITIALIZED) {
+                    return new AudioRecordInput(record, sampleRate);
+                }
+                record.release();
+            } catch (IllegalArgumentException | SecurityException e) {
+                Log.w(TAG, "Microphone refused at " + sampleRate + " Hz", e);
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    @Override
+    public void start() {
+        record.startRecording();
+    }
+
+    @Override
+    public int read(short[] data, int offset, int length) {
+        return record.read(data, offset, length);
+    }
+
+    @Override
+    public void stop() {
+        try {
+            record.stop();
+        } catch (IllegalStateException e) {
+            // Never started; nothing to stop.
+        }
+    }
+
+    @Override
+    public void release() {
+        record.release();
+    }
+}
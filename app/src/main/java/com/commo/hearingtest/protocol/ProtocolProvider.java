@@ -0,0 +1,245 @@
+package com.commo.hearingtest.protocol;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.commo.hearingtest.audio.AudioOutputConfig;
+import com.commo.hearingtest.calibration.CalibrationProvider;
+import com.commo.hearingtest.calibration.GainTable;
+import com.commo.hearingtest.dsp.ToneCache;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Process-wide owner of the test protocols: those bundled in {@code assets/protocols/*.protocol}
+ * and any installed later in {@code files/protocols/}, which replace a bundled one of the same
+ * name. A protocol's id is its file name.
+ *
+ * <p>Protocols are parsed and validated once on a background thread when the app starts. The
+ * selected one is remembered across launches, and {@link #prerenderAsync} renders its opening
+ * tones into {@link ToneCache#shared()} for the connected headphones, so changing protocol needs
+ * neither a new release nor any work when a test starts. A missing or broken selection falls
+ * back to {@link TestProtocol#standard()}. Screens get the protocols through {@link #getAllAsync},
+ * which never waits on the main thread.
+ */
+public final class ProtocolProvider {
+
+    private static final String TAG = "ProtocolProvider";
+    private static final String DIRECTORY = "protocols";
+    private static final String EXTENSION = ".protocol";
+    private static final String PREFERENCES = "protocol";
+    private static final String KEY_SELECTED = "selected";
+    private static final String DEFAULT_ID = "full";
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /** Told on the main thread about the loaded protocols and the selected one. */
+    public interface LoadCallback {
+        void onLoaded(List<TestProtocol> protocols, TestProtocol current);
+    }
+
+    private static final ProtocolProvider INSTANCE = new ProtocolProvider();
+
+    // One thread, so a prerender always runs after the load submitted before it.
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable task) {
+            Thread thread = new Thread(task, "protocol-load");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    // Separate from the loader, so a query waiting for a load never blocks the load itself.
+    private final ExecutorService queryExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable task) {
+            Thread thread = new Thread(task, "protocol-query");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private Future<List<TestProtocol>> pendingProtocols;
+
+    private ProtocolProvider() {
+    }
+
+    public static ProtocolProvider get() {
+        return INSTANCE;
+    }
+
+    /** Starts loading the protocols in the background if they are not loaded or loading already. */
+    public synchronized void loadAsync(Context context) {
+        if (pendingProtocols == null) {
+            reload(context);
+        }
+    }
+
+    /** Loads the protocols again, e.g. after a new protocol file was installed. */
+    public synchronized void reload(Context context) {
+        final Context appContext = context.getApplicationContext();
+        pendingProtocols = executor.submit(new Callable<List<TestProtocol>>() {
+            @Override
+            public List<TestProtocol> call() {
+                return loadProtocols(appContext);
+            }
+        });
+    }
+
+    /**
+     * Every valid protocol, bundled ones first. Waits for the background load if it is still
+     * running, so call it off the main thread; screens use {@link #getAllAsync}.
+     */
+    public List<TestProtocol> getAll(Context context) {
+        loadAsync(context);
+        Future<List<TestProtocol>> loading;
+        synchronized (this) {
+            loading = pendingProtocols;
+        }
+        return await(loading);
+    }
+
+    /** Delivers every protocol and the selected one to {@code callback} once they are loaded. */
+    public void getAllAsync(Context context, final LoadCallback callback) {
+        final Context appContext = context.getApplicationContext();
+        queryExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final List<TestProtocol> protocols = getAll(appContext);
+                final TestProtocol current = current(appContext, protocols);
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        callback.onLoaded(protocols, current);
+                    }
+                });
+            }
+        });
+    }
+
+    private static List<TestProtocol> await(Future<List<TestProtocol>> loading) {
+        try {
+            return loading.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Collections.emptyList();
+        } catch (ExecutionException e) {
+            Log.e(TAG, "Protocols unavailable", e.getCause());
+            return Collections.emptyList();
+        }
+    }
+
+    /** The selected protocol, or the standard one if it is not available. Call off the main thread. */
+    public TestProtocol current(Context context) {
+        return current(context, getAll(context));
+    }
+
+    private static TestProtocol current(Context context, List<TestProtocol> protocols) {
+        String selected = preferences(context).getString(KEY_SELECTED, DEFAULT_ID);
+        for (TestProtocol protocol : protocols) {
+            if (protocol.getId().equals(selected)) {
+                return protocol;
+            }
+        }
+        return TestProtocol.standard();
+    }
+
+    /** Makes {@code protocol} the one tests run from now on and prerenders its tones. */
+    public void select(Context context, TestProtocol protocol) {
+        preferences(context).edit().putString(KEY_SELECTED, protocol.getId()).apply();
+        prerenderAsync(context);
+    }
+
+    /**
+     * Renders the selected protocol's opening tones into the shared cache, for the headphones
+     * connected now and the output's native rate (the rate the engine opens at unless the device
+     * refuses it, in which case the tones are simply rendered at test start as before).
+     */
+    public synchronized void prerenderAsync(Context context) {
+        loadAsync(context);
+        final Context appContext = context.getApplicationContext();
+        // Queued behind this load, so it is done by the time the prerender runs; waiting for a
+        // reload queued later would block the only loader thread.
+        final Future<List<TestProtocol>> loading = pendingProtocols;
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                long start = System.nanoTime();
+                TestProtocol protocol = current(appContext, await(loading));
+                GainTable gainTable = CalibrationProvider.get().select(appContext);
+                int sampleRate = AudioOutputConfig.query(appContext).getSampleRate();
+                int rendered = protocol.prerender(ToneCache.shared(), gainTable, sampleRate);
+                Log.i(TAG, "Prerendered " + rendered + " tones of " + protocol + " in "
+                        + (System.nanoTime() - start) / 1000 + " us");
+            }
+        });
+    }
+
+    private static SharedPreferences preferences(Context context) {
+        return context.getApplicationContext().getSharedPreferences(PREFERENCES, Context.MODE_PRIVATE);
+    }
+
+    private static List<TestProtocol> loadProtocols(Context context) {
+        Map<String, TestProtocol> protocols = new LinkedHashMap<String, TestProtocol>();
+        String[] assets = null;
+        try {
+            assets = context.getAssets().list(DIRECTORY);
+        } catch (IOException e) {
+            Log.w(TAG, "No bundled protocols", e);
+        }
+        if (assets != null) {
+            for (String fileName : assets) {
+                if (!fileName.endsWith(EXTENSION)) continue;
+                try {
+                    add(protocols, fileName, context.getAssets().open(DIRECTORY + "/" + fileName));
+                } catch (IOException e) {
+                    Log.w(TAG, "Skipping bundled protocol " + fileName, e);
+                }
+            }
+        }
+        File[] files = new File(context.getFilesDir(), DIRECTORY).listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (!file.getName().endsWith(EXTENSION)) continue;
+                try {
+                    add(protocols, file.getName(), new FileInputStream(file));
+                } catch (IOException e) {
+                    Log.w(TAG, "Skipping invalid protocol " + file.getName(), e);
+                }
+            }
+        }
+        Log.i(TAG, "Loaded " + protocols.size() + " protocols");
+        return Collections.unmodifiableList(new ArrayList<TestProtocol>(protocols.values()));
+    }
+
+    private static void add(Map<String, TestProtocol> protocols, String fileName, InputStream in) throws IOException {
+        String id = fileName.substring(0, fileName.length() - EXTENSION.length());
+        Reader reader = new InputStreamReader(in, UTF_8);
+        try {
+            protocols.put(id, TestProtocol.parse(reader, id));
+        } finally {
+            reader.close();
+        }
+    }
+}
@@ -0,0 +1,233 @@
+package com.commo.hearingtest.store;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.util.Log;
+
+import com.commo.hearingtest.analytics.AudiogramTrends;
+import com.commo.hearingtest.analytics.TrendTracker;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Process-wide owner of the {@link SessionStore} in the app's files directory.
+ *
+ * <p>The store is opened (including any crash recovery) on a background thread as soon as the
+ * app starts. Saving a result never touches the disk on the calling thread: the record is
+ * handed to the store's writer once it is open. A {@link TrendTracker} is attached at open, so
+ * every saved frequency test updates its user's trends as it is written.
+ */
+public final class SessionStoreProvider {
+
+    private static final String TAG = "SessionStoreProvider";
+    private static final String DIRECTORY = "sessions";
+    private static final String TRENDS_FILE = "trends.bin";
+
+    /** Receives trends on the main thread. */
+    public interface TrendsCallback {
+        void onTrends(AudiogramTrends trends);
+    }
+
+    /** Receives a user's frequency-test sessions, oldest first, on the main thread. */
+    public interface HistoryCallback {
+        void onHistory(List<SessionRecord> sessions);
+    }
+
+    private static final SessionStoreProvider INSTANCE = new SessionStoreProvider();
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable task) {
+            Thread thread = new Thread(task, "session-store-open");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+    private final ThreadFactory writerThreads = new ThreadFactory() {
+        @Override
+        public Thread newThread(final Runnable task) {
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                    task.run();
+                }
+            });
+            thread.setDaemon(true);
+            return thread;
+        }
+    };
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private Future<SessionStore> pendingStore;
+    private TrendTracker trendTracker;
+    private long openNanos = -1;
+
+    private SessionStoreProvider() {
+    }
+
+    public static SessionStoreProvider get() {
+        return INSTANCE;
+    }
+
+    /** Starts opening the store in the background if that has not started yet. */
+    public synchronized void openAsync(Context context) {
+        if (pendingStore == null) {
+            final File directory = new File(context.getApplicationContext().getFilesDir(), DIRECTORY);
+            pendingStore = executor.submit(new Callable<SessionStore>() {
+                @Override
+                public SessionStore call() throws IOException {
+                    long start = System.nanoTime();
+                    SessionStore store = SessionStore.open(directory, writerThreads);
+                    TrendTracker tracker = TrendTracker.attach(store, new File(directory, TRENDS_FILE));
+                    long elapsed = System.nanoTime() - start;
+                    synchronized (SessionStoreProvider.this) {
+                        openNanos = elapsed;
+                        trendTracker = tracker;
+                    }
+                    Log.i(TAG, "Opened " + store.size() + " sessions in " + elapsed / 1000 + " us"
+                            + " (reindexed " + store.getReindexedRecords()
+                            + ", discarded " + store.getDiscardedBytes() + " bytes"
+                            + ", replayed " + tracker.getReplayedSessions() + " into trends)");
+                    return store;
+                }
+            });
+        }
+    }
+
+    /** Saves {@code record} without blocking the caller. Failures are logged. */
+    public void save(Context context, final SessionRecord record) {
+        openAsync(context);
+        final Future<SessionStore> opening;
+        synchronized (this) {
+            opening = pendingStore;
+        }
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    opening.get().append(record);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (ExecutionException e) {
+                    Log.e(TAG, "Session store unavailable; result not saved", e.getCause());
+                }
+            }
+        });
+    }
+
+    /**
+     * Delivers {@code userId}'s trends, including every result saved before this call, to
+     * {@code callback} on the main thread. Nothing is delivered if the store failed to open.
+     */
+    public void loadTrends(Context context, final String userId, final TrendsCallback callback) {
+        openAsync(context);
+        final Future<SessionStore> opening;
+        synchronized (this) {
+            opening = pendingStore;
+        }
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final AudiogramTrends trends;
+                try {
+                    opening.get().flush();
+                    synchronized (SessionStoreProvider.this) {
+                        trends = trendTracker.getTrends(userId);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                } catch (ExecutionException e) {
+                    Log.e(TAG, "Session store unavailable; no trends", e.getCause());
+                    return;
+                }
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        callback.onTrends(trends);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Delivers {@code userId}'s latest {@code limit} frequency-test sessions, including every result
+     * saved before this call, to {@code callback} on the main thread.
+     */
+    public void loadHistory(Context context, final String userId, final int limit,
+                            final HistoryCallback callback) {
+        openAsync(context);
+        final Future<SessionStore> opening;
+        synchronized (this) {
+            opening = pendingStore;
+        }
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final List<SessionRecord> sessions = new ArrayList<SessionRecord>();
+                try {
+                    SessionStore store = opening.get();
+                    store.flush();
+                    List<SessionEntry> entries = store.findByUser(userId);
+                    for (int i = entries.size() - 1; i >= 0 && sessions.size() < limit; i--) {
+                        if (entries.get(i).getType() == SessionRecord.Type.FREQUENCY) {
+                            sessions.add(store.read(entries.get(i)));
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                } catch (ExecutionException e) {
+                    Log.e(TAG, "Session store unavailable; no history", e.getCause());
+                    return;
+                } catch (IOException e) {
+                    Log.e(TAG, "Failed to read history", e);
+                    return;
+                }
+                Collections.reverse(sessions);
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        callback.onHistory(sessions);
+                    }
+                });
+            }
+        });
+    }
+
+    /** Returns the open store, waiting for the background open. Call off the main thread. */
+    public SessionStore getStore(Context context) throws IOException {
+        openAsync(context);
+        Future<SessionStore> opening;
+        synchronized (this) {
+            opening = pendingStore;
+        }
+        try {
+            return opening.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while opening the session store", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Session store failed to open", e.getCause());
+        }
+    }
+
+    /** Time the background open took, or -1 if it has not finished. */
+    public synchronized long getOpenNanos() {
+        return openNanos;
+    }
+}
@@ -0,0 +1,30 @@
+package com.commo.hearingtest.sync;
+
+import android.app.job.JobParameters;
+import android.app.job.JobService;
+
+/**
+ * Retries an upload that failed, once JobScheduler sees a network; scheduled by
+ * {@link SyncProvider}. The job may start a fresh process, which picks up from the persisted
+ * sync cursor. A run that fails again is rescheduled with the job's backoff.
+ */
+public class SyncJobService extends JobService {
+
+    @Override
+    public boolean onStartJob(final JobParameters params) {
+        SyncProvider.get().syncAsync(this, new SyncProvider.Callback() {
+            @Override
+            public void onSyncFinished(boolean success) {
+                jobFinished(params, !success);
+            }
+        });
+        return true; // Still running on the sync threads.
+    }
+
+    @Override
+    public boolean onStopJob(JobParameters params) {
+        // The network went away mid-run; the sync's own retries may still finish it, but ask
+        // to run again in case they do not.
+        return true;
+    }
+}
@@ -0,0 +1,221 @@
+package com.commo.hearingtest.sync;
+
+import android.app.job.JobInfo;
+import android.app.job.JobScheduler;
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Process;
+import android.util.Log;
+
+import com.commo.hearingtest.R;
+import com.commo.hearingtest.store.SessionEntry;
+import com.commo.hearingtest.store.SessionRecord;
+import com.commo.hearingtest.store.SessionStore;
+import com.commo.hearingtest.store.SessionStoreProvider;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Process-wide owner of the {@link SessionSync} that uploads every saved session to the clinic
+ * server configured in {@code R.string.sync_server_url}; an empty URL turns upload off.
+ *
+ * <p>When the app starts, the sync is attached to the session store on a background thread and
+ * uploads whatever an earlier process left pending. After that every session is uploaded as soon
+ * as it is durable. A run that still fails after its retries hands over to {@link SyncJobService},
+ * which JobScheduler runs with backoff once a network is available, even if this process has
+ * died in the meantime. Sessions the server refuses for good are not retried: the sync skips and
+ * lists them, and they are logged here and counted in {@link #getRejectedSessions}.
+ */
+public final class SyncProvider {
+
+    private static final String TAG = "SyncProvider";
+    private static final String CURSOR_FILE = "sync.cursor";
+    private static final String PREFERENCES = "sync";
+    private static final String KEY_DEVICE_ID = "device_id";
+    private static final int RETRY_JOB_ID = 23;
+    private static final long RETRY_BACKOFF_MILLIS = 60_000;
+
+    /** Told on a background thread whether everything pending was uploaded. */
+    public interface Callback {
+        void onSyncFinished(boolean success);
+    }
+
+    private static final SyncProvider INSTANCE = new SyncProvider();
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable task) {
+            Thread thread = new Thread(task, "sync-control");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+    private final ThreadFactory uploadThreads = new ThreadFactory() {
+        @Override
+        public Thread newThread(final Runnable task) {
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                    task.run();
+                }
+            }, "session-sync");
+            thread.setDaemon(true);
+            return thread;
+        }
+    };
+
+    private SessionSync sync;
+    private boolean started;
+
+    private SyncProvider() {
+    }
+
+    public static SyncProvider get() {
+        return INSTANCE;
+    }
+
+    /** Attaches the sync to the session store in the background and uploads what is pending. */
+    public synchronized void startAsync(Context context) {
+        if (started) return;
+        started = true;
+        final Context appContext = context.getApplicationContext();
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (attach(appContext) != null) {
+                    syncInBackground(appContext, null);
+                }
+            }
+        });
+    }
+
+    /**
+     * Uploads everything pending and reports the outcome; used by {@link SyncJobService}. A
+     * process started by the job attaches here first.
+     */
+    public void syncAsync(Context context, final Callback callback) {
+        final Context appContext = context.getApplicationContext();
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (attach(appContext) == null) {
+                    callback.onSyncFinished(true); // Nothing to do without a server.
+                    return;
+                }
+                syncInBackground(appContext, callback);
+            }
+        });
+    }
+
+    /** Sessions saved but not yet acknowledged by the server, or 0 if upload is off. */
+    public synchronized int getPendingSessions() {
+        return sync != null ? sync.getPendingSessions() : 0;
+    }
+
+    /** Sessions the server refused and this process skipped, or 0 if upload is off. */
+    public synchronized long getRejectedSessions() {
+        return sync != null ? sync.getRejectedSessions() : 0;
+    }
+
+    // Runs on the control thread.
+    private SessionSync attach(final Context context) {
+        synchronized (this) {
+            if (sync != null) return sync;
+        }
+        String server = context.getString(R.string.sync_server_url).trim();
+        if (server.isEmpty()) return null;
+        URL endpoint;
+        SessionStore store;
+        try {
+            endpoint = new URL(server);
+            store = SessionStoreProvider.get().getStore(context);
+        } catch (MalformedURLException e) {
+            Log.e(TAG, "Invalid sync server " + server, e);
+            return null;
+        } catch (IOException e) {
+            Log.e(TAG, "Session store unavailable; nothing to sync", e);
+            return null;
+        }
+        SessionSync opened = SessionSync.open(store, new File(context.getFilesDir(), CURSOR_FILE), endpoint,
+                deviceId(context), uploadThreads);
+        synchronized (this) {
+            sync = opened;
+        }
+        store.addListener(new SessionStore.Listener() {
+            @Override
+            public void onAppended(SessionEntry entry, SessionRecord record) {
+                // On the store's writer thread; only queues the upload.
+                syncInBackground(context, null);
+            }
+        });
+        Log.i(TAG, opened.getPendingSessions() + " sessions pending upload to " + endpoint);
+        return opened;
+    }
+
+    private void syncInBackground(final Context context, final Callback callback) {
+        final Future<Integer> run;
+        synchronized (this) {
+            run = sync.requestSync();
+        }
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                boolean success = false;
+                try {
+                    Integer uploaded = run.get();
+                    success = true;
+                    if (uploaded > 0) {
+                        Log.i(TAG, "Uploaded " + uploaded + " sessions");
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof BatchRejectedException) {
+                        // Sending them again cannot help; the rest was uploaded, so nothing is left to retry.
+                        Log.e(TAG, "Sessions rejected by the server and skipped", e.getCause());
+                        success = true;
+                    } else {
+                        Log.w(TAG, "Upload failed; retrying when the network allows", e.getCause());
+                        scheduleRetry(context);
+                    }
+                }
+                if (callback != null) {
+                    callback.onSyncFinished(success);
+                }
+            }
+        });
+    }
+
+    private static void scheduleRetry(Context context) {
+        JobScheduler scheduler = context.getSystemService(JobScheduler.class);
+        if (scheduler == null || scheduler.getPendingJob(RETRY_JOB_ID) != null) return;
+        JobInfo job = new JobInfo.Builder(RETRY_JOB_ID, new ComponentName(context, SyncJobService.class))
+                .setRequiredNetworkType(JobInfo.NETWORK_TYPE_ANY)
+                .setBackoffCriteria(RETRY_BACKOFF_MILLIS, JobInfo.BACKOFF_POLICY_EXPONENTIAL)
+                .setPersisted(true)
+                .build();
+        scheduler.schedule(job);
+    }
+
+    private static synchronized String deviceId(Context context) {
+        SharedPreferences preferences = context.getSharedPreferences(PREFERENCES, Context.MODE_PRIVATE);
+        String id = preferences.getString(KEY_DEVICE_ID, null);
+        if (id == null) {
+            id = UUID.randomUUID().toString();
+            // Committed, not applied: the server knows the device by this id from the first upload.
+            preferences.edit().putString(KEY_DEVICE_ID, id).commit();
+        }
+        return id;
+    }
+}
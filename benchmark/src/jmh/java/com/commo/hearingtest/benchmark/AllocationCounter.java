@@ -0,0 +1,48 @@
+package com.commo.hearingtest.benchmark;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Reports heap bytes allocated per benchmark call as the {@code allocatedBytesPerCall} counter.
+ * The GC profiler's normalized figure is per sample, which hides a per-call buffer allocation
+ * behind a small number.
+ */
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.EVENTS)
+public class AllocationCounter {
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private long bytes;
+    private long calls;
+    private long before;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+        bytes = 0;
+        calls = 0;
+    }
+
+    @Setup(Level.Invocation)
+    public void beforeCall() {
+        before = THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    @TearDown(Level.Invocation)
+    public void afterCall() {
+        bytes += THREADS.getThreadAllocatedBytes(Thread.currentThread().getId()) - before;
+        calls++;
+    }
+
+    public double allocatedBytesPerCall() {
+        return calls == 0 ? 0 : (double) bytes / calls;
+    }
+}
@@ -0,0 +1,56 @@
+package com.commo.hearingtest.benchmark;
+
+import com.commo.hearingtest.dsp.ToneSynthesizer;
+
+/**
+ * Alternative synthesis strategies that were considered for the audio hot path. They only exist
+ * here, so the shipped synthesizer can be compared with them on every device class.
+ */
+final class CandidateToneGenerators {
+
+    private static final int TABLE_BITS = 12;
+    private static final int TABLE_SIZE = 1 << TABLE_BITS;
+    private static final int FRACTION_BITS = 32 - TABLE_BITS;
+    private static final short[] Q15_TABLE = new short[TABLE_SIZE + 1];
+
+    static {
+        for (int i = 0; i <= TABLE_SIZE; i++) {
+            Q15_TABLE[i] = (short) Math.round(Math.sin(2 * Math.PI * i / TABLE_SIZE) * Short.MAX_VALUE);
+        }
+    }
+
+    private CandidateToneGenerators() {
+    }
+
+    /**
+     * Integer-only synthesis: 32-bit phase, Q15 table, 15-bit interpolation and a Q15 level.
+     * No ramps. Writes {@code frames} stereo frames.
+     */
+    static void fixedPoint(short[] out, int frames, double frequency, int sampleRate,
+                           int leftLevelQ15, int rightLevelQ15) {
+        int increment = (int) (long) (frequency / sampleRate * 4294967296.0);
+        int phase = 0;
+        for (int i = 0; i < frames; i++) {
+            int index = phase >>> FRACTION_BITS;
+            int fraction = (phase >>> (FRACTION_BITS - 15)) & 0x7fff;
+            int a = Q15_TABLE[index];
+            int sample = a + (((Q15_TABLE[index + 1] - a) * fraction) >> 15);
+            out[i * 2] = (short) ((sample * leftLevelQ15) >> 15);
+            out[i * 2 + 1] = (short) ((sample * rightLevelQ15) >> 15);
+            phase += increment;
+        }
+    }
+
+    /** Float PCM for an ENCODING_PCM_FLOAT track, using the shipped wavetable. No ramps. */
+    static void floatPcm(float[] out, int frames, double frequency, int sampleRate,
+                         float leftLevel, float rightLevel) {
+        long increment = ToneSynthesizer.phaseIncrement(frequency, sampleRate);
+        long phase = 0;
+        for (int i = 0; i < frames; i++) {
+            float sample = ToneSynthesizer.sine(phase);
+            out[i * 2] = sample * leftLevel;
+            out[i * 2 + 1] = sample * rightLevel;
+            phase += increment;
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.commo.hearingtest.benchmark;
+
+import com.commo.hearingtest.dsp.Lateralizer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of rendering one lateralization trial, in us per trial, stepping the ITD across the
+ * range as an adaptive run would. A trial is rendered in the gap before it is played, so the
+ * budget is that gap rather than the audio callback: well under 50 ms. Each call also reports
+ * {@code allocatedBytesPerCall}, which should be zero.
+ *
+ * <p>Run with {@code ./gradlew :benchmark:jmh}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+public class LateralizationBenchmark {
+
+    static final int SAMPLE_RATE = 48000;
+
+    @Param({"500", "1000"})
+    public int durationMs;
+
+    private Lateralizer lateralizer;
+    private short[] out;
+    private int trial;
+
+    @Setup
+    public void setUp() {
+        lateralizer = new Lateralizer(500, durationMs, SAMPLE_RATE);
+        out = new short[lateralizer.getFrameCount() * 2];
+    }
+
+    @Benchmark
+    public short[] trial(AllocationCounter allocation) {
+        double itdMicros = (trial++ % 21 - 10) * Lateralizer.MAX_ITD_MICROS / 10;
+        lateralizer.render(itdMicros, 0.3f, 0.25f, out);
+        return out;
+    }
+}
@@ -0,0 +1,56 @@
+package com.commo.hearingtest.benchmark;
+
+/**
+ * The tone generators the test screens used before the wavetable synthesizer, kept verbatim as
+ * the baseline every replacement is measured against.
+ */
+final class LegacyToneGenerator {
+
+    private LegacyToneGenerator() {
+    }
+
+    /** FrequencyTestActivity.generateTone: same tone in both channels at 40%. */
+    static short[] generateStereoTone(int frequency, int duration, int sampleRate) {
+        int numSamples = duration * sampleRate / 1000;
+        short[] buffer = new short[numSamples * 2]; // Stereo
+
+        double phase = 0;
+        double phaseIncrement = 2 * Math.PI * frequency / sampleRate;
+
+        for (int i = 0; i < numSamples; i++) {
+            short sample = (short) (Short.MAX_VALUE * Math.sin(phase) * 0.4); // 40% volume
+
+            buffer[i * 2] = sample;     // Left channel
+            buffer[i * 2 + 1] = sample; // Right channel
+
+            phase += phaseIncrement;
+        }
+
+        return buffer;
+    }
+
+    /** LeftRightTestActivity.generateTone: tone in one channel at 30%, silence in the other. */
+    static short[] generatePannedTone(int frequency, int duration, int sampleRate, boolean leftChannel) {
+        int numSamples = duration * sampleRate / 1000;
+        short[] buffer = new short[numSamples * 2]; // Stereo
+
+        double phase = 0;
+        double phaseIncrement = 2 * Math.PI * frequency / sampleRate;
+
+        for (int i = 0; i < numSamples; i++) {
+            short sample = (short) (Short.MAX_VALUE * Math.sin(phase) * 0.3); // 30% volume
+
+            if (leftChannel) {
+                buffer[i * 2] = sample;     // Left channel
+                buffer[i * 2 + 1] = 0;      // Right channel (silent)
+            } else {
+                buffer[i * 2] = 0;          // Left channel (silent)
+                buffer[i * 2 + 1] = sample; // Right channel
+            }
+
+            phase += phaseIncrement;
+        }
+
+        return buffer;
+    }
+}
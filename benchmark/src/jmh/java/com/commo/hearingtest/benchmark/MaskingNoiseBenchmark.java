@@ -0,0 +1,77 @@
+package com.commo.hearingtest.benchmark;
+
+import com.commo.hearingtest.audio.AudioEngine;
+import com.commo.hearingtest.audio.MaskedToneSource;
+import com.commo.hearingtest.audio.PcmSource;
+import com.commo.hearingtest.audio.SampleSource;
+import com.commo.hearingtest.core.Ear;
+import com.commo.hearingtest.dsp.MaskingNoise;
+import com.commo.hearingtest.dsp.ToneSpec;
+import com.commo.hearingtest.dsp.ToneSynthesizer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the left/right test's render path with masking, in ns per output frame, one engine
+ * chunk per call: the cached probe tone copied out alone ({@code NONE}) and with narrow-band or
+ * speech-shaped noise synthesized and mixed into the other ear. The real-time budget is
+ * 1e9 / sample rate ns per frame (about 21 us at 48 kHz). Each call also reports
+ * {@code allocatedBytesPerCall}, which should be zero.
+ *
+ * <p>Run with {@code ./gradlew :benchmark:jmh}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@OperationsPerInvocation(AudioEngine.CHUNK_FRAMES)
+@State(Scope.Thread)
+public class MaskingNoiseBenchmark {
+
+    static final int SAMPLE_RATE = 48000;
+
+    @Param({"NONE", "NARROW_BAND", "SPEECH_SHAPED"})
+    public String masking;
+
+    private ToneSpec spec;
+    private short[] tone;
+    private short[] out;
+    private SampleSource source;
+    private long seed;
+
+    @Setup
+    public void setUp() {
+        // A long tone, so building the next source is a negligible part of the measurement.
+        spec = ToneSpec.of(1000, 60000, 0.3f, ToneSpec.CHANNEL_LEFT, SAMPLE_RATE);
+        tone = ToneSynthesizer.render(spec);
+        out = new short[AudioEngine.CHUNK_FRAMES * 2];
+        // Warm the speech bank's gain cache outside the measurement.
+        MaskingNoise.speechShaped(SAMPLE_RATE, 0);
+        restart();
+    }
+
+    @Benchmark
+    public short[] chunk(AllocationCounter allocation) {
+        if (source.read(out, 0, AudioEngine.CHUNK_FRAMES) < AudioEngine.CHUNK_FRAMES) {
+            restart();
+        }
+        return out;
+    }
+
+    private void restart() {
+        if ("NONE".equals(masking)) {
+            source = new PcmSource(tone);
+            return;
+        }
+        MaskingNoise noise = MaskingNoise.of(MaskingNoise.Type.valueOf(masking), 1000, SAMPLE_RATE, seed++);
+        source = new MaskedToneSource(tone, noise, Ear.RIGHT, 0.01f, spec.getRampFrames());
+    }
+}
@@ -0,0 +1,52 @@
+package com.commo.hearingtest.benchmark;
+
+import com.commo.hearingtest.noise.OctaveBandAnalyzer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the ambient noise monitor's octave-band analysis, in us per analysis frame: each call
+ * feeds one hop of microphone samples, which completes one frame. The real-time budget is
+ * {@link OctaveBandAnalyzer#HOP_SIZE} / sample rate, about 21 ms at 48 kHz. Each call also
+ * reports {@code allocatedBytesPerCall}, which should be zero.
+ *
+ * <p>Run with {@code ./gradlew :benchmark:jmh}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+public class OctaveBandBenchmark {
+
+    static final int SAMPLE_RATE = 48000;
+
+    private OctaveBandAnalyzer analyzer;
+    private short[] hop;
+
+    @Setup
+    public void setUp() {
+        analyzer = new OctaveBandAnalyzer(SAMPLE_RATE);
+        hop = new short[OctaveBandAnalyzer.HOP_SIZE];
+        Random random = new Random(1);
+        for (int i = 0; i < hop.length; i++) {
+            hop[i] = (short) (random.nextGaussian() * 1000);
+        }
+        // Fill the window, so every measured call ends in exactly one frame.
+        while (analyzer.getFrameCount() == 0) {
+            analyzer.process(hop, 0, hop.length);
+        }
+    }
+
+    @Benchmark
+    public int frame(AllocationCounter allocation) {
+        return analyzer.process(hop, 0, hop.length);
+    }
+}
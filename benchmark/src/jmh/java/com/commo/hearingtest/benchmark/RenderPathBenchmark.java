@@ -0,0 +1,102 @@
+package com.commo.hearingtest.benchmark;
+
+import com.commo.hearingtest.audio.AudioEngine;
+import com.commo.hearingtest.audio.PcmRingBuffer;
+import com.commo.hearingtest.audio.SampleSource;
+import com.commo.hearingtest.audio.Stimulus;
+import com.commo.hearingtest.audio.StimulusScheduler;
+import com.commo.hearingtest.dsp.ToneSpec;
+import com.commo.hearingtest.dsp.ToneSynthesizer;
+import com.commo.hearingtest.metrics.AudioMetrics;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-chunk work of the audio threads, in ns per sample: the scheduler copying a stimulus into
+ * the chunk, the render thread writing it to the ring, and the output thread reading it back.
+ * Calls are far too short for per-call allocation counting; use the GC profiler's
+ * {@code gc.alloc.rate.norm}, which should stay at zero.
+ *
+ * <p>{@code metrics} times each chunk into {@link AudioMetrics} the way the engine does when
+ * diagnostics are on; with it off the two runs should be indistinguishable.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@OperationsPerInvocation(RenderPathBenchmark.CHUNK_SAMPLES)
+@State(Scope.Thread)
+public class RenderPathBenchmark {
+
+    static final int CHUNK_SAMPLES = AudioEngine.CHUNK_FRAMES * 2;
+
+    private final short[] chunk = new short[CHUNK_SAMPLES];
+    private final short[] out = new short[CHUNK_SAMPLES];
+    private final PcmRingBuffer ring = new PcmRingBuffer(4096);
+    private final StimulusScheduler.RenderListener listener = new StimulusScheduler.RenderListener() {
+        @Override
+        public void onFlush() {
+            ring.discardPending();
+        }
+
+        @Override
+        public void onOnset(Stimulus stimulus, int frameOffset) {
+        }
+    };
+    private final AudioMetrics audioMetrics = AudioMetrics.get();
+    private StimulusScheduler scheduler;
+
+    @Param({"false", "true"})
+    public boolean metrics;
+
+    @Setup
+    public void setUp() {
+        audioMetrics.setEnabled(metrics);
+        short[] tone = ToneSynthesizer.render(ToneSpec.of(1000, 2000, 0.4f, ToneSpec.CHANNEL_BOTH, 44100));
+        scheduler = new StimulusScheduler(44100, new Random(1));
+        scheduler.replace(new Stimulus(new LoopingSource(tone)));
+    }
+
+    @Benchmark
+    public int renderChunk() {
+        long renderStart = audioMetrics.isEnabled() ? System.nanoTime() : 0;
+        int frames = scheduler.render(chunk, 0, AudioEngine.CHUNK_FRAMES, listener);
+        if (renderStart != 0) {
+            audioMetrics.getRenderChunkNanos().record(System.nanoTime() - renderStart);
+        }
+        ring.write(chunk, 0, frames * 2);
+        return ring.read(out, 0, frames * 2);
+    }
+
+    /** Plays a buffer forever so the scheduler never runs dry during measurement. */
+    private static final class LoopingSource implements SampleSource {
+        private final short[] pcm;
+        private int position;
+
+        LoopingSource(short[] pcm) {
+            this.pcm = pcm;
+        }
+
+        @Override
+        public int read(short[] dst, int offset, int frames) {
+            int remaining = frames * 2;
+            while (remaining > 0) {
+                int n = Math.min(remaining, pcm.length - position);
+                System.arraycopy(pcm, position, dst, offset, n);
+                offset += n;
+                remaining -= n;
+                position = (position + n) % pcm.length;
+            }
+            return frames;
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.commo.hearingtest.benchmark;
+
+import com.commo.hearingtest.core.Audiogram;
+import com.commo.hearingtest.core.LeftRightTestResult;
+import com.commo.hearingtest.store.SessionEntry;
+import com.commo.hearingtest.store.SessionRecord;
+import com.commo.hearingtest.store.SessionStore;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time from opening a saved history to showing one user's latest sessions, in ms per call: the
+ * store is opened, the user's entries are looked up and the newest 20 are read and decoded, as
+ * the history screen does on a cold start. The budget is about 100 ms for 50,000 sessions, so
+ * the screen appears without a visible wait.
+ *
+ * <p>Run with {@code ./gradlew :benchmark:jmh}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Thread)
+public class SessionStoreOpenBenchmark {
+
+    static final int USERS = 500;
+    static final int SHOWN = 20;
+
+    private static final ThreadFactory THREADS = new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r);
+            thread.setDaemon(true);
+            return thread;
+        }
+    };
+
+    @Param({"5000", "50000"})
+    public int sessions;
+
+    private File directory;
+
+    @Setup
+    public void setUp() throws Exception {
+        directory = Files.createTempDirectory("store-benchmark").toFile();
+        Audiogram audiogram = new Audiogram(new int[]{250, 1000, 4000},
+                new double[]{-40, -42.5, Audiogram.NO_RESPONSE}, new double[]{-38, Double.NaN, -20});
+        SessionStore store = SessionStore.open(directory, THREADS, false);
+        for (int i = 0; i < sessions; i++) {
+            String user = "user" + (i % USERS);
+            store.append(i % 2 == 0
+                    ? SessionRecord.ofFrequencyTest(user, i, audiogram, 37)
+                    : SessionRecord.ofLeftRightTest(user, i, new LeftRightTestResult(4, 5)));
+        }
+        store.flush();
+        store.close();
+    }
+
+    @TearDown
+    public void tearDown() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    @Benchmark
+    public int openAndShowHistory() throws IOException {
+        SessionStore store = SessionStore.open(directory, THREADS);
+        try {
+            List<SessionEntry> history = store.findByUser("user42");
+            int found = 0;
+            for (int i = Math.max(0, history.size() - SHOWN); i < history.size(); i++) {
+                if (store.read(history.get(i)) != null) {
+                    found++;
+                }
+            }
+            return found;
+        } finally {
+            store.close();
+        }
+    }
+}
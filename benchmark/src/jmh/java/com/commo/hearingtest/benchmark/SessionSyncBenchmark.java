@@ -0,0 +1,163 @@
+package com.commo.hearingtest.benchmark;
+
+import com.commo.hearingtest.core.LeftRightTestResult;
+import com.commo.hearingtest.store.SessionRecord;
+import com.commo.hearingtest.store.SessionStore;
+import com.commo.hearingtest.sync.SessionSync;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Upload throughput of {@link SessionSync}, in sessions per second, against a stand-in clinic
+ * server on loopback. Each call uploads the whole store from an empty cursor. With
+ * {@code flakiness} p the server answers 503 with probability p and drops the acknowledgement of
+ * a stored batch with probability p more, so the figure includes the retries and the backoff
+ * (1 to 20 ms here) a poor link costs.
+ *
+ * <p>Run with {@code ./gradlew :benchmark:jmh}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@OperationsPerInvocation(SessionSyncBenchmark.SESSIONS)
+@State(Scope.Thread)
+public class SessionSyncBenchmark {
+
+    static final int SESSIONS = 1000;
+
+    private static final ThreadFactory THREADS = new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r);
+            thread.setDaemon(true);
+            return thread;
+        }
+    };
+
+    @Param({"0", "0.3"})
+    public double flakiness;
+
+    @Param({"50", "100"})
+    public int batchSessions;
+
+    private File directory;
+    private File cursorFile;
+    private SessionStore store;
+    private StandInServer server;
+    private long seed;
+
+    @Setup
+    public void setUp() throws Exception {
+        directory = Files.createTempDirectory("sync-benchmark").toFile();
+        cursorFile = new File(directory, "sync.cursor");
+        store = SessionStore.open(new File(directory, "sessions"), THREADS, false);
+        for (int i = 0; i < SESSIONS; i++) {
+            store.append(SessionRecord.ofLeftRightTest("user" + i % 50, i * 1000L,
+                    new LeftRightTestResult(i % 6, 5)));
+        }
+        store.flush();
+        server = new StandInServer(flakiness);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        server.http.stop(0);
+        store.close();
+        deleteRecursively(directory);
+    }
+
+    @Benchmark
+    public int sync() throws IOException {
+        // Start from an empty cursor, so every call uploads the whole store.
+        if (cursorFile.exists() && !cursorFile.delete()) {
+            throw new IOException("Cannot delete " + cursorFile);
+        }
+        SessionSync sync = new SessionSync(store, cursorFile, server.url(), "device-1", THREADS,
+                batchSessions, 30, 1, 20, new Random(seed++));
+        try {
+            int uploaded = sync.syncNow();
+            if (uploaded != SESSIONS) {
+                throw new IllegalStateException("Uploaded " + uploaded + " of " + SESSIONS);
+            }
+            return uploaded;
+        } finally {
+            sync.close();
+        }
+    }
+
+    private static void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        file.delete();
+    }
+
+    /** Reads each batch to the end and acknowledges it, failing as configured. */
+    private static final class StandInServer implements HttpHandler {
+        final HttpServer http;
+        final double flakiness;
+        final Random random = new Random(7);
+
+        StandInServer(double flakiness) throws IOException {
+            this.flakiness = flakiness;
+            http = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+            http.createContext("/sessions", this);
+            http.start();
+        }
+
+        URL url() throws IOException {
+            return new URL("http", InetAddress.getLoopbackAddress().getHostAddress(),
+                    http.getAddress().getPort(), "/sessions");
+        }
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            try {
+                InputStream body = exchange.getRequestBody();
+                byte[] buffer = new byte[8192];
+                while (body.read(buffer) >= 0) {
+                    // Discard; the sync's cost is what is measured.
+                }
+                double roll;
+                synchronized (random) {
+                    roll = random.nextDouble();
+                }
+                if (roll < flakiness) {
+                    exchange.sendResponseHeaders(503, -1);
+                    return;
+                }
+                if (roll < 2 * flakiness) {
+                    return; // Stored, but the acknowledgement never arrives.
+                }
+                exchange.sendResponseHeaders(204, -1);
+            } finally {
+                exchange.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.commo.hearingtest.benchmark;
+
+import com.commo.hearingtest.audio.AudioEngine;
+import com.commo.hearingtest.audio.SweepSource;
+import com.commo.hearingtest.calibration.CalibrationProfile;
+import com.commo.hearingtest.calibration.GainTable;
+import com.commo.hearingtest.core.BekesySweep;
+import com.commo.hearingtest.core.Ear;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of streaming the continuous sweep, in ns per output frame, one engine chunk per call. The
+ * real-time budget is 1e9 / sample rate ns per frame (about 21 us at 48 kHz), and the real-time
+ * factor is that budget over the measured figure. It should stay above 20 here, since a low-end
+ * phone is a few times slower than a desktop. Each call also reports
+ * {@code allocatedBytesPerCall}, which should be zero.
+ *
+ * <p>Run with {@code ./gradlew :benchmark:jmh}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@OperationsPerInvocation(AudioEngine.CHUNK_FRAMES)
+@State(Scope.Thread)
+public class SweepSynthesisBenchmark {
+
+    @Param({"44100", "48000"})
+    public int sampleRate;
+
+    private GainTable gainTable;
+    private SweepSource source;
+    private short[] out;
+    private int chunks;
+
+    @Setup
+    public void setUp() {
+        gainTable = CalibrationProfile.nominal().createGainTable();
+        out = new short[AudioEngine.CHUNK_FRAMES * 2];
+        restart();
+    }
+
+    @Benchmark
+    public short[] chunk(AllocationCounter allocation) {
+        if (source.isDone()) {
+            // Rare; a sweep lasts some 30000 chunks.
+            restart();
+        }
+        // Press and release every second or so, as a listener tracking their threshold would.
+        if (++chunks % 200 == 0) {
+            source.setHeard((chunks / 200) % 2 == 1);
+        }
+        source.read(out, 0, AudioEngine.CHUNK_FRAMES);
+        return out;
+    }
+
+    private void restart() {
+        source = new SweepSource(BekesySweep.chirp(sampleRate, 40, -10, 90), gainTable, Ear.LEFT);
+    }
+}
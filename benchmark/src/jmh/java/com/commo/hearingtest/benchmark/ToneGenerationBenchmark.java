@@ -0,0 +1,111 @@
+package com.commo.hearingtest.benchmark;
+
+import com.commo.hearingtest.dsp.ToneCache;
+import com.commo.hearingtest.dsp.ToneSpec;
+import com.commo.hearingtest.dsp.ToneSynthesizer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of producing one 2 s test tone, reported in ns per output sample, for every frequency of
+ * the frequency test and for both the stereo (frequency test) and one-ear (left/right test)
+ * layouts. Each call also reports {@code allocatedBytesPerCall}.
+ *
+ * <p>Run with {@code ./gradlew :benchmark:jmh}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@OperationsPerInvocation(ToneGenerationBenchmark.SAMPLES)
+@State(Scope.Thread)
+public class ToneGenerationBenchmark {
+
+    static final int SAMPLE_RATE = 44100;
+    static final int DURATION_MS = 2000;
+    static final int FRAMES = DURATION_MS * SAMPLE_RATE / 1000;
+    static final int SAMPLES = FRAMES * 2;
+
+    @Param({"8000", "6000", "4000", "2000", "1000", "500", "250", "125"})
+    public int frequency;
+
+    /** STEREO is the frequency test's tone; LEFT and RIGHT are the left/right test's panned tone. */
+    @Param({"STEREO", "LEFT", "RIGHT"})
+    public String layout;
+
+    private ToneSpec spec;
+    private ToneCache cache;
+    private short[] out;
+    private float[] floatOut;
+    private float leftLevel;
+    private float rightLevel;
+
+    @Setup
+    public void setUp() {
+        int channelMask;
+        float level;
+        if ("STEREO".equals(layout)) {
+            channelMask = ToneSpec.CHANNEL_BOTH;
+            level = 0.4f;
+        } else {
+            channelMask = "LEFT".equals(layout) ? ToneSpec.CHANNEL_LEFT : ToneSpec.CHANNEL_RIGHT;
+            level = 0.3f;
+        }
+        spec = ToneSpec.of(frequency, DURATION_MS, level, channelMask, SAMPLE_RATE);
+        leftLevel = spec.getLeftLevel();
+        rightLevel = spec.getRightLevel();
+        out = new short[SAMPLES];
+        floatOut = new float[SAMPLES];
+        cache = new ToneCache(4, SAMPLES);
+        cache.get(spec);
+    }
+
+    /** What the activities did before: Math.sin per sample into a fresh buffer. */
+    @Benchmark
+    public short[] legacy(AllocationCounter allocation) {
+        if ("STEREO".equals(layout)) {
+            return LegacyToneGenerator.generateStereoTone(frequency, DURATION_MS, SAMPLE_RATE);
+        }
+        return LegacyToneGenerator.generatePannedTone(frequency, DURATION_MS, SAMPLE_RATE, "LEFT".equals(layout));
+    }
+
+    /** Wavetable synthesis into a fresh buffer, i.e. a tone cache miss. */
+    @Benchmark
+    public short[] wavetable(AllocationCounter allocation) {
+        return ToneSynthesizer.render(spec);
+    }
+
+    /** Wavetable synthesis into a reused buffer, isolating the synthesis cost. */
+    @Benchmark
+    public short[] wavetableInto(AllocationCounter allocation) {
+        ToneSynthesizer.renderInto(spec, out, 0);
+        return out;
+    }
+
+    @Benchmark
+    public short[] fixedPoint(AllocationCounter allocation) {
+        CandidateToneGenerators.fixedPoint(out, FRAMES, frequency, SAMPLE_RATE,
+                Math.round(leftLevel * Short.MAX_VALUE), Math.round(rightLevel * Short.MAX_VALUE));
+        return out;
+    }
+
+    @Benchmark
+    public float[] floatPcm(AllocationCounter allocation) {
+        CandidateToneGenerators.floatPcm(floatOut, FRAMES, frequency, SAMPLE_RATE, leftLevel, rightLevel);
+        return floatOut;
+    }
+
+    /** What a repeated presentation costs now: a cache hit. */
+    @Benchmark
+    public short[] cached(AllocationCounter allocation) {
+        return cache.get(spec);
+    }
+}
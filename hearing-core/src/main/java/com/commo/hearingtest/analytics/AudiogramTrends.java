@@ -0,0 +1,151 @@
+package com.commo.hearingtest.analytics;
+
+import com.commo.hearingtest.core.Audiogram;
+import com.commo.hearingtest.core.Ear;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * One user's threshold history, reduced to a {@link RunningTrend} per frequency and ear.
+ *
+ * <p>Time is measured in years since the user's first session. Frequencies without a numeric
+ * threshold in a session (not tested, or no response) are skipped for that session.
+ *
+ * <p>A significant threshold shift is flagged for an ear when either
+ * <ul>
+ *   <li>the shifts from baseline at {@link #STS_FREQUENCIES} average {@link #STS_AVERAGE_DB}
+ *       or more (the OSHA criterion, over whichever of those frequencies were measured), or</li>
+ *   <li>any single frequency has shifted by {@link #STS_SINGLE_DB} or more (NIOSH).</li>
+ * </ul>
+ */
+public final class AudiogramTrends {
+
+    public static final int[] STS_FREQUENCIES = {2000, 3000, 4000};
+    public static final double STS_AVERAGE_DB = 10;
+    public static final double STS_SINGLE_DB = 15;
+    static final double MILLIS_PER_YEAR = 365.25 * 24 * 3600 * 1000;
+
+    private final TreeMap<Integer, RunningTrend[]> trends = new TreeMap<Integer, RunningTrend[]>();
+    private long originMillis;
+    private long latestMillis;
+    private int sessionCount;
+
+    /** Folds one session's audiogram into the trends. */
+    public void add(long timestampMillis, Audiogram audiogram) {
+        if (sessionCount == 0) {
+            originMillis = timestampMillis;
+        }
+        sessionCount++;
+        latestMillis = Math.max(latestMillis, timestampMillis);
+        double years = (timestampMillis - originMillis) / MILLIS_PER_YEAR;
+        for (int i = 0; i < audiogram.getFrequencyCount(); i++) {
+            for (Ear ear : Ear.values()) {
+                double threshold = audiogram.getThresholdDb(ear, i);
+                if (Double.isNaN(threshold) || Double.isInfinite(threshold)) continue;
+                trendsAt(audiogram.getFrequency(i))[ear.ordinal()].add(years, threshold);
+            }
+        }
+    }
+
+    public int getSessionCount() {
+        return sessionCount;
+    }
+
+    public long getFirstSessionMillis() {
+        return originMillis;
+    }
+
+    public long getLatestSessionMillis() {
+        return latestMillis;
+    }
+
+    /** Frequencies with at least one measurement in either ear, ascending. */
+    public int[] getFrequencies() {
+        int[] frequencies = new int[trends.size()];
+        int i = 0;
+        for (Integer frequency : trends.keySet()) {
+            frequencies[i++] = frequency;
+        }
+        return frequencies;
+    }
+
+    /** Trend at {@code frequency}, or null if it was never measured. Do not modify. */
+    public RunningTrend getTrend(Ear ear, int frequency) {
+        RunningTrend[] pair = trends.get(frequency);
+        return pair == null || pair[ear.ordinal()].getCount() == 0 ? null : pair[ear.ordinal()];
+    }
+
+    public boolean hasSignificantShift(Ear ear) {
+        double sum = 0;
+        int measured = 0;
+        for (int frequency : STS_FREQUENCIES) {
+            RunningTrend trend = getTrend(ear, frequency);
+            if (trend != null) {
+                sum += trend.getShiftFromBaseline();
+                measured++;
+            }
+        }
+        if (measured > 0 && sum / measured >= STS_AVERAGE_DB) {
+            return true;
+        }
+        for (RunningTrend[] pair : trends.values()) {
+            RunningTrend trend = pair[ear.ordinal()];
+            if (trend.getCount() > 0 && trend.getShiftFromBaseline() >= STS_SINGLE_DB) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public AudiogramTrends copy() {
+        AudiogramTrends copy = new AudiogramTrends();
+        copy.originMillis = originMillis;
+        copy.latestMillis = latestMillis;
+        copy.sessionCount = sessionCount;
+        for (Map.Entry<Integer, RunningTrend[]> entry : trends.entrySet()) {
+            RunningTrend[] pair = entry.getValue();
+            copy.trends.put(entry.getKey(), new RunningTrend[]{pair[0].copy(), pair[1].copy()});
+        }
+        return copy;
+    }
+
+    void write(DataOutput out) throws IOException {
+        out.writeLong(originMillis);
+        out.writeLong(latestMillis);
+        out.writeInt(sessionCount);
+        out.writeInt(trends.size());
+        for (Map.Entry<Integer, RunningTrend[]> entry : trends.entrySet()) {
+            out.writeInt(entry.getKey());
+            entry.getValue()[0].write(out);
+            entry.getValue()[1].write(out);
+        }
+    }
+
+    static AudiogramTrends read(DataInput in) throws IOException {
+        AudiogramTrends trends = new AudiogramTrends();
+        trends.originMillis = in.readLong();
+        trends.latestMillis = in.readLong();
+        trends.sessionCount = in.readInt();
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            int frequency = in.readInt();
+            RunningTrend left = RunningTrend.read(in);
+            RunningTrend right = RunningTrend.read(in);
+            trends.trends.put(frequency, new RunningTrend[]{left, right});
+        }
+        return trends;
+    }
+
+    private RunningTrend[] trendsAt(int frequency) {
+        RunningTrend[] pair = trends.get(frequency);
+        if (pair == null) {
+            pair = new RunningTrend[]{new RunningTrend(), new RunningTrend()};
+            trends.put(frequency, pair);
+        }
+        return pair;
+    }
+}
@@ -0,0 +1,111 @@
+package com.commo.hearingtest.analytics;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Mean, variance and least-squares slope of a threshold over time, updated one measurement at
+ * a time with Welford's method. Nothing is kept per measurement, so the cost of
+ * {@link #add(double, double)} and the memory used never grow with the history.
+ */
+public final class RunningTrend {
+
+    private long count;
+    private double meanX;
+    private double meanY;
+    private double m2Y;
+    private double sXX;
+    private double sXY;
+    private double baselineY = Double.NaN;
+    private double latestY = Double.NaN;
+
+    /** Adds threshold {@code y} in dB measured at time {@code x} in years. */
+    public void add(double x, double y) {
+        count++;
+        double dx = x - meanX;
+        meanX += dx / count;
+        double dy = y - meanY;
+        meanY += dy / count;
+        m2Y += dy * (y - meanY);
+        sXX += dx * (x - meanX);
+        sXY += dx * (y - meanY);
+        if (count == 1) {
+            baselineY = y;
+        }
+        latestY = y;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getMean() {
+        return count == 0 ? Double.NaN : meanY;
+    }
+
+    /** Sample variance; NaN with fewer than two measurements. */
+    public double getVariance() {
+        return count < 2 ? Double.NaN : m2Y / (count - 1);
+    }
+
+    public double getStandardDeviation() {
+        return Math.sqrt(getVariance());
+    }
+
+    /** Least-squares slope in dB per year; NaN until measurements span some time. */
+    public double getSlopePerYear() {
+        return sXX > 0 ? sXY / sXX : Double.NaN;
+    }
+
+    /** The first measurement, against which shifts are judged. */
+    public double getBaseline() {
+        return baselineY;
+    }
+
+    public double getLatest() {
+        return latestY;
+    }
+
+    /** Latest minus baseline; positive means hearing got worse. */
+    public double getShiftFromBaseline() {
+        return latestY - baselineY;
+    }
+
+    RunningTrend copy() {
+        RunningTrend copy = new RunningTrend();
+        copy.count = count;
+        copy.meanX = meanX;
+        copy.meanY = meanY;
+        copy.m2Y = m2Y;
+        copy.sXX = sXX;
+        copy.sXY = sXY;
+        copy.baselineY = baselineY;
+        copy.latestY = latestY;
+        return copy;
+    }
+
+    void write(DataOutput out) throws IOException {
+        out.writeLong(count);
+        out.writeDouble(meanX);
+        out.writeDouble(meanY);
+        out.writeDouble(m2Y);
+        out.writeDouble(sXX);
+        out.writeDouble(sXY);
+        out.writeDouble(baselineY);
+        out.writeDouble(latestY);
+    }
+
+    static RunningTrend read(DataInput in) throws IOException {
+        RunningTrend trend = new RunningTrend();
+        trend.count = in.readLong();
+        trend.meanX = in.readDouble();
+        trend.meanY = in.readDouble();
+        trend.m2Y = in.readDouble();
+        trend.sXX = in.readDouble();
+        trend.sXY = in.readDouble();
+        trend.baselineY = in.readDouble();
+        trend.latestY = in.readDouble();
+        return trend;
+    }
+}
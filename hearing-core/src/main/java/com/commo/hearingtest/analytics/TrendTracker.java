@@ -0,0 +1,165 @@
+package com.commo.hearingtest.analytics;
+
+import com.commo.hearingtest.store.SessionEntry;
+import com.commo.hearingtest.store.SessionRecord;
+import com.commo.hearingtest.store.SessionStore;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Keeps {@link AudiogramTrends} per user up to date as sessions are saved.
+ *
+ * <p>The tracker listens to a {@link SessionStore} and folds each new frequency-test session
+ * into its user's trends as soon as the record is durable. The aggregates are snapshotted to a
+ * small file every {@link #SNAPSHOT_INTERVAL} sessions, along with the store sequence they
+ * cover. On open, only the sessions after the snapshot are replayed, so the history is never
+ * rescanned; losing the snapshot just means one full replay.
+ */
+public final class TrendTracker {
+
+    static final int SNAPSHOT_INTERVAL = 16;
+    private static final int MAGIC = 0x48545452; // "HTTR"
+    // 2: thresholds in dB HL; older snapshots are in dBFS and get replayed.
+    private static final int VERSION = 2;
+
+    private final File snapshotFile;
+    private final Map<String, AudiogramTrends> users = new HashMap<String, AudiogramTrends>();
+    private int nextSequence;
+    private int unsavedSessions;
+    private int replayedSessions;
+
+    private final SessionStore.Listener listener = new SessionStore.Listener() {
+        @Override
+        public void onAppended(SessionEntry entry, SessionRecord record) {
+            synchronized (TrendTracker.this) {
+                if (entry.getSequence() < nextSequence) return; // Already replayed on open.
+                apply(record);
+                nextSequence = entry.getSequence() + 1;
+                if (++unsavedSessions >= SNAPSHOT_INTERVAL) {
+                    saveSnapshotQuietly();
+                }
+            }
+        }
+    };
+
+    private TrendTracker(File snapshotFile) {
+        this.snapshotFile = snapshotFile;
+    }
+
+    /**
+     * Loads the snapshot in {@code snapshotFile}, replays the sessions saved after it, and keeps
+     * tracking {@code store} from then on.
+     */
+    public static TrendTracker attach(SessionStore store, File snapshotFile) throws IOException {
+        TrendTracker tracker = new TrendTracker(snapshotFile);
+        synchronized (tracker) {
+            tracker.loadSnapshot();
+            store.addListener(tracker.listener);
+            // Records indexed from here on arrive through the listener, which waits for us.
+            int size = store.size();
+            if (tracker.nextSequence > size) {
+                // Snapshot is ahead of a store that lost records; start over.
+                tracker.users.clear();
+                tracker.nextSequence = 0;
+            }
+            for (int sequence = tracker.nextSequence; sequence < size; sequence++) {
+                tracker.apply(store.read(store.getEntry(sequence)));
+                tracker.replayedSessions++;
+            }
+            tracker.nextSequence = size;
+            if (tracker.replayedSessions > 0) {
+                tracker.saveSnapshot();
+            }
+        }
+        return tracker;
+    }
+
+    /** A copy of {@code userId}'s trends; empty if the user has no frequency-test sessions. */
+    public synchronized AudiogramTrends getTrends(String userId) {
+        AudiogramTrends trends = users.get(userId);
+        return trends == null ? new AudiogramTrends() : trends.copy();
+    }
+
+    /** Sessions replayed from the store when this tracker was attached. */
+    public synchronized int getReplayedSessions() {
+        return replayedSessions;
+    }
+
+    /** Writes the current aggregates so the next attach has nothing to replay. */
+    public synchronized void saveSnapshot() throws IOException {
+        File temp = new File(snapshotFile.getPath() + ".tmp");
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(nextSequence);
+            out.writeInt(users.size());
+            for (Map.Entry<String, AudiogramTrends> user : users.entrySet()) {
+                out.writeUTF(user.getKey());
+                user.getValue().write(out);
+            }
+        } finally {
+            out.close();
+        }
+        if (!temp.renameTo(snapshotFile)) {
+            throw new IOException("Cannot replace " + snapshotFile);
+        }
+        unsavedSessions = 0;
+    }
+
+    private void apply(SessionRecord record) {
+        if (record.getType() != SessionRecord.Type.FREQUENCY) return;
+        AudiogramTrends trends = users.get(record.getUserId());
+        if (trends == null) {
+            trends = new AudiogramTrends();
+            users.put(record.getUserId(), trends);
+        }
+        trends.add(record.getTimestampMillis(), record.getAudiogram());
+    }
+
+    private void saveSnapshotQuietly() {
+        try {
+            saveSnapshot();
+        } catch (IOException e) {
+            // Not fatal: the next attach replays from the last good snapshot.
+        }
+    }
+
+    private void loadSnapshot() {
+        DataInputStream in;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(snapshotFile)));
+        } catch (FileNotFoundException e) {
+            return;
+        }
+        try {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) return;
+            int covered = in.readInt();
+            int count = in.readInt();
+            Map<String, AudiogramTrends> loaded = new HashMap<String, AudiogramTrends>();
+            for (int i = 0; i < count; i++) {
+                String userId = in.readUTF();
+                loaded.put(userId, AudiogramTrends.read(in));
+            }
+            users.putAll(loaded);
+            nextSequence = covered;
+        } catch (IOException e) {
+            // Unreadable snapshot: replay everything.
+        } finally {
+            try {
+                in.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+}
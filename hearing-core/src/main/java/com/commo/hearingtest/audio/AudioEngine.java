@@ -0,0 +1,310 @@
+package com.commo.hearingtest.audio;
+
+import com.commo.hearingtest.metrics.AudioMetrics;
+
+import java.util.Random;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Owns an {@link AudioSink} and feeds it from two dedicated threads, so callers never block on
+ * audio output.
+ *
+ * <ul>
+ *   <li>The render thread asks the {@link StimulusScheduler} for small chunks and copies them
+ *       into a preallocated {@link PcmRingBuffer}.</li>
+ *   <li>The output thread drains the ring into the sink; only this thread ever blocks in
+ *       {@link AudioSink#write}. It also stamps each stimulus with the sink frame at which its
+ *       first sample was written.</li>
+ * </ul>
+ *
+ * All public commands only post to the scheduler and wake the render thread. Replacing or
+ * stopping discards whatever is still in the ring, so a new stimulus starts within
+ * {@link #getMaxOnsetLatencyFrames()} no matter how quickly commands arrive. Neither audio thread
+ * allocates once running.
+ *
+ * <p>While {@link AudioMetrics} is enabled, the render thread times each chunk and the output
+ * thread times each blocking write and, about twice a second, checks the sink's timestamps
+ * against the nominal sample rate.
+ */
+public final class AudioEngine {
+
+    public static final int CHUNK_FRAMES = 256;
+    private static final int RING_CAPACITY_SAMPLES = 4096; // 2048 stereo frames
+    private static final long IDLE_PARK_NANOS = 50_000_000L;
+    private static final long DRIFT_POLL_NANOS = 500_000_000L;
+
+    private final AudioSink sink;
+    private final StimulusScheduler scheduler;
+    private final PcmRingBuffer ring = new PcmRingBuffer(RING_CAPACITY_SAMPLES);
+    private final OnsetQueue onsets = new OnsetQueue();
+    private final FrameTimestamp timestamp = new FrameTimestamp();
+    private final AudioMetrics metrics = AudioMetrics.get();
+    private final long chunkNanos;
+    private final Thread renderThread;
+    private final Thread outputThread;
+
+    private boolean started;
+    private volatile boolean running;
+    private volatile long framesWritten;
+
+    public AudioEngine(AudioSink sink, ThreadFactory threadFactory) {
+        this(sink, threadFactory, new Random());
+    }
+
+    public AudioEngine(AudioSink sink, ThreadFactory threadFactory, Random jitterRandom) {
+        this.sink = sink;
+        this.scheduler = new StimulusScheduler(sink.getSampleRate(), jitterRandom);
+        this.chunkNanos = CHUNK_FRAMES * 1_000_000_000L / sink.getSampleRate();
+        this.renderThread = threadFactory.newThread(new Runnable() {
+            @Override
+            public void run() {
+                renderLoop();
+            }
+        });
+        this.outputThread = threadFactory.newThread(new Runnable() {
+            @Override
+            public void run() {
+                outputLoop();
+            }
+        });
+        renderThread.setName("audio-render");
+        outputThread.setName("audio-output");
+    }
+
+    public void start() {
+        if (started) return;
+        started = true;
+        running = true;
+        sink.start();
+        renderThread.start();
+        outputThread.start();
+    }
+
+    public int getSampleRate() {
+        return sink.getSampleRate();
+    }
+
+    /** Plays a prerendered interleaved stereo buffer, replacing anything currently playing. */
+    public Stimulus play(short[] pcm) {
+        return play(new PcmSource(pcm));
+    }
+
+    /** Plays {@code source}, replacing anything currently playing. Never blocks. */
+    public Stimulus play(SampleSource source) {
+        Stimulus stimulus = new Stimulus(source);
+        replace(stimulus);
+        return stimulus;
+    }
+
+    /** Cancels everything and starts {@code stimulus} as soon as possible. Never blocks. */
+    public void replace(Stimulus stimulus) {
+        scheduler.replace(stimulus);
+        LockSupport.unpark(renderThread);
+    }
+
+    /** Cancels everything and starts {@code stimulus} after minGapMs plus up to jitterMs. */
+    public void replace(Stimulus stimulus, int minGapMs, int jitterMs) {
+        scheduler.replace(stimulus, minGapMs, jitterMs);
+        LockSupport.unpark(renderThread);
+    }
+
+    /** Queues {@code stimulus} minGapMs plus up to jitterMs after the previous one ends. */
+    public void enqueue(Stimulus stimulus, int minGapMs, int jitterMs) {
+        scheduler.enqueue(stimulus, minGapMs, jitterMs);
+        LockSupport.unpark(renderThread);
+    }
+
+    /** Silences output as soon as possible. Never blocks. */
+    public void stop() {
+        scheduler.cancelAll();
+        LockSupport.unpark(renderThread);
+    }
+
+    /**
+     * Stops {@code stimulus} as soon as possible if it is still playing or queued, leaving any
+     * other stimulus alone. Never blocks.
+     */
+    public void cancel(Stimulus stimulus) {
+        scheduler.cancel(stimulus);
+        LockSupport.unpark(renderThread);
+    }
+
+    /** True while a stimulus or gap is pending or its samples are still queued for output. */
+    public boolean isPlaying() {
+        return !scheduler.isIdle() || ring.availableToRead() > 0;
+    }
+
+    /** Frames handed to the sink so far; onset frames are positions in this stream. */
+    public long getFramesWritten() {
+        return framesWritten;
+    }
+
+    /**
+     * Upper bound on the delay between a command and the onset of its stimulus in the sink
+     * stream: the chunk being written when the command arrives, the chunk being rendered, and
+     * the sink's own buffer.
+     */
+    public int getMaxOnsetLatencyFrames() {
+        return 2 * CHUNK_FRAMES + sink.getBufferSizeFrames();
+    }
+
+    /**
+     * Maps a sink frame position, e.g. {@link Stimulus#getOnsetFrame()}, to the
+     * {@link System#nanoTime()} at which it is (or was) presented at the output.
+     *
+     * @return the presentation time, or -1 if the sink cannot report a timestamp yet
+     */
+    public long frameToNanoTime(long frame) {
+        synchronized (timestamp) {
+            if (frame < 0 || !sink.getTimestamp(timestamp)) {
+                return -1;
+            }
+            return timestamp.nanoTime
+                    + (frame - timestamp.framePosition) * 1_000_000_000L / sink.getSampleRate();
+        }
+    }
+
+    /**
+     * When {@code stimulus} is (or was) heard at the output: its onset frame mapped through the
+     * sink's timestamps, or failing those the time its onset was written plus the buffer latency.
+     *
+     * @return the onset on the {@link System#nanoTime()} clock, or -1 if it has not reached the sink
+     */
+    public long onsetNanoTime(Stimulus stimulus) {
+        long onsetNanos = frameToNanoTime(stimulus.getOnsetFrame());
+        if (onsetNanos < 0 && stimulus.getOnsetWriteNanos() >= 0) {
+            onsetNanos = stimulus.getOnsetWriteNanos() + getBufferLatencyNanos();
+        }
+        return onsetNanos;
+    }
+
+    /**
+     * Measured output latency: how long a frame handed to the sink now takes to be heard, from
+     * the sink's presentation timestamps. Only meaningful while audio is streaming.
+     *
+     * @return nanoseconds, or -1 if the sink has no timestamp yet
+     */
+    public long measureOutputLatencyNanos() {
+        long presented = frameToNanoTime(framesWritten);
+        return presented < 0 ? -1 : Math.max(0, presented - System.nanoTime());
+    }
+
+    /** Latency implied by the sink's buffer alone, for when no timestamp is available. */
+    public long getBufferLatencyNanos() {
+        return sink.getBufferSizeFrames() * 1_000_000_000L / sink.getSampleRate();
+    }
+
+    /**
+     * Stops both threads; the output thread releases the sink on its way out, so this returns
+     * without waiting for a pending write to finish.
+     */
+    public void release() {
+        if (!started) {
+            sink.release();
+            return;
+        }
+        running = false;
+        scheduler.cancelAll();
+        LockSupport.unpark(renderThread);
+        LockSupport.unpark(outputThread);
+    }
+
+    Thread getRenderThread() {
+        return renderThread;
+    }
+
+    Thread getOutputThread() {
+        return outputThread;
+    }
+
+    private void renderLoop() {
+        short[] chunk = new short[CHUNK_FRAMES * 2];
+        StimulusScheduler.RenderListener listener = new StimulusScheduler.RenderListener() {
+            @Override
+            public void onFlush() {
+                ring.discardPending();
+            }
+
+            @Override
+            public void onOnset(Stimulus stimulus, int frameOffset) {
+                onsets.offer(stimulus, ring.getWritePosition() + frameOffset * 2);
+            }
+        };
+        while (running) {
+            if (ring.availableToWrite() < chunk.length) {
+                // Still apply commands while the ring is full, so a replace flushes it at once.
+                scheduler.render(chunk, 0, 0, listener);
+                if (ring.availableToWrite() < chunk.length) {
+                    // The output thread frees a chunk roughly every chunkNanos.
+                    LockSupport.parkNanos(this, chunkNanos / 2);
+                    continue;
+                }
+            }
+            long renderStart = metrics.isEnabled() ? System.nanoTime() : 0;
+            int frames = scheduler.render(chunk, 0, CHUNK_FRAMES, listener);
+            if (renderStart != 0 && frames > 0) {
+                metrics.getRenderChunkNanos().record(System.nanoTime() - renderStart);
+            }
+            if (frames > 0) {
+                ring.write(chunk, 0, frames * 2);
+                LockSupport.unpark(outputThread);
+            } else {
+                LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+            }
+        }
+    }
+
+    private void outputLoop() {
+        short[] chunk = new short[CHUNK_FRAMES * 2];
+        // Drift reference: a timestamp taken while streaming, or none (-1).
+        FrameTimestamp driftNow = new FrameTimestamp();
+        long driftFrame = -1;
+        long driftNanos = 0;
+        long nextDriftPoll = 0;
+        try {
+            while (running) {
+                int samples = ring.read(chunk, 0, chunk.length);
+                if (samples == 0) {
+                    LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                    continue;
+                }
+                LockSupport.unpark(renderThread);
+                long written = framesWritten;
+                onsets.resolve(ring.getReadPosition() - samples, samples, written);
+                long writeStart = metrics.isEnabled() ? System.nanoTime() : 0;
+                if (sink.write(chunk, 0, samples) < 0) {
+                    break;
+                }
+                framesWritten = written + samples / 2;
+                if (writeStart == 0) {
+                    driftFrame = -1;
+                    continue;
+                }
+                long now = System.nanoTime();
+                metrics.getWriteBlockedNanos().record(now - writeStart);
+                if (now - nextDriftPoll < 0) continue;
+                // A poll long overdue means output went idle; the track's clock stopped with it.
+                if (now - nextDriftPoll > DRIFT_POLL_NANOS) {
+                    driftFrame = -1;
+                }
+                nextDriftPoll = now + DRIFT_POLL_NANOS;
+                if (!sink.getTimestamp(driftNow)) continue;
+                if (driftFrame < 0 || driftNow.framePosition <= driftFrame) {
+                    driftFrame = driftNow.framePosition;
+                    driftNanos = driftNow.nanoTime;
+                    continue;
+                }
+                long drift = driftNow.nanoTime - driftNanos
+                        - (driftNow.framePosition - driftFrame) * 1_000_000_000L / sink.getSampleRate();
+                metrics.getTimestampDriftNanos().record(Math.abs(drift));
+                metrics.getLastTimestampDriftNanos().set(drift);
+            }
+        } finally {
+            running = false;
+            LockSupport.unpark(renderThread);
+            sink.stop();
+            sink.release();
+        }
+    }
+}
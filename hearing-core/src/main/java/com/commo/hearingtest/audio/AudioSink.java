@@ -0,0 +1,35 @@
+package com.commo.hearingtest.audio;
+
+/**
+ * Destination for interleaved stereo 16-bit PCM. Only the audio output thread writes to a sink;
+ * {@link #getTimestamp} may be called from any thread.
+ */
+public interface AudioSink {
+
+    int getSampleRate();
+
+    /** Frames the sink buffers internally before they reach the output. */
+    int getBufferSizeFrames();
+
+    void start();
+
+    /**
+     * Blocks until {@code length} samples have been queued, or the sink fails.
+     *
+     * @return the number of samples written, or a negative error code
+     */
+    int write(short[] data, int offset, int length);
+
+    /**
+     * Fills {@code out} with the most recent presentation timestamp, where frame positions count
+     * frames written since {@link #start()}.
+     *
+     * @return false if no timestamp is available yet
+     */
+    boolean getTimestamp(FrameTimestamp out);
+
+    /** Stops playback and drops anything queued but not yet played. */
+    void stop();
+
+    void release();
+}
@@ -0,0 +1,11 @@
+package com.commo.hearingtest.audio;
+
+/**
+ * A sink frame position paired with the {@link System#nanoTime()} at which that frame was
+ * presented at the output. Mutable so the audio path can reuse one instance.
+ */
+public final class FrameTimestamp {
+
+    public long framePosition;
+    public long nanoTime;
+}
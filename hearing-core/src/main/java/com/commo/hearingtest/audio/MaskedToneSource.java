@@ -0,0 +1,64 @@
+package com.commo.hearingtest.audio;
+
+import com.commo.hearingtest.core.Ear;
+import com.commo.hearingtest.dsp.MaskingNoise;
+import com.commo.hearingtest.dsp.ToneSynthesizer;
+
+/**
+ * Plays a prerendered probe tone with masking noise in the other ear, so a tone loud enough to
+ * cross the head is masked there instead of being heard on the wrong side.
+ *
+ * <p>The tone buffer is only read, as in {@link PcmSource}, and can stay shared in the tone cache.
+ * The noise is synthesized on the render thread as it is read and added to the masked channel,
+ * saturating at full scale. It lasts exactly as long as the tone and fades in and out over
+ * {@code rampFrames} with the same raised cosine. {@link #read} does not allocate.
+ */
+public final class MaskedToneSource implements SampleSource {
+
+    private static final long QUARTER_CYCLE = 1L << 62;
+    private static final long HALF_CYCLE = 1L << 63;
+
+    private final short[] tonePcm;
+    private final MaskingNoise noise;
+    private final int noiseChannel;
+    private final float noiseScale;
+    private final int totalFrames;
+    private final int rampFrames;
+    private final long rampIncrement;
+    private int frame;
+
+    /**
+     * @param maskedEar ear that gets the noise
+     * @param noiseRms  RMS of the noise, 0..1 of full scale
+     */
+    public MaskedToneSource(short[] tonePcm, MaskingNoise noise, Ear maskedEar, float noiseRms, int rampFrames) {
+        if (tonePcm.length % 2 != 0) {
+            throw new IllegalArgumentException("Stereo buffer must hold whole frames");
+        }
+        this.tonePcm = tonePcm;
+        this.noise = noise;
+        this.noiseChannel = maskedEar == Ear.LEFT ? 0 : 1;
+        this.noiseScale = noiseRms * Short.MAX_VALUE;
+        this.totalFrames = tonePcm.length / 2;
+        this.rampFrames = Math.max(1, Math.min(rampFrames, totalFrames / 2));
+        this.rampIncrement = Long.divideUnsigned(HALF_CYCLE, this.rampFrames);
+    }
+
+    @Override
+    public int read(short[] out, int offset, int frames) {
+        int n = Math.min(frames, totalFrames - frame);
+        if (n <= 0) return 0;
+        System.arraycopy(tonePcm, frame * 2, out, offset, n * 2);
+        int pos = offset + noiseChannel;
+        for (int i = 0; i < n; i++, frame++, pos += 2) {
+            float gain = noiseScale;
+            int fromEdge = Math.min(frame, totalFrames - 1 - frame);
+            if (fromEdge < rampFrames) {
+                gain *= 0.5f - 0.5f * ToneSynthesizer.sine(rampIncrement * fromEdge + QUARTER_CYCLE);
+            }
+            int sample = out[pos] + Math.round(noise.next() * gain);
+            out[pos] = (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, sample));
+        }
+        return n;
+    }
+}
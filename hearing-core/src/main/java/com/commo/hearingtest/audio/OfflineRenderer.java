@@ -0,0 +1,118 @@
+package com.commo.hearingtest.audio;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Renders a session into an {@link AudioSink} on the calling thread, as fast as the sink accepts
+ * it, with the same {@link StimulusScheduler} the {@link AudioEngine} uses.
+ *
+ * <p>Where the engine follows the wall clock, the renderer follows the caller: commands take
+ * effect at the current end of the output, and {@link #advance} renders a stated stretch of time,
+ * padding with silence once nothing is scheduled. A session driven through the same commands with
+ * the same jitter seed therefore renders to the same samples every time, gaps included. Onset
+ * frames are set as stimuli start, exactly as the engine would report them.
+ *
+ * <p>Output is rendered in {@link AudioEngine#CHUNK_FRAMES} chunks into one reused buffer, so
+ * memory does not grow with the length of the session. Not thread-safe.
+ */
+public final class OfflineRenderer {
+
+    private final AudioSink sink;
+    private final StimulusScheduler scheduler;
+    private final short[] chunk = new short[AudioEngine.CHUNK_FRAMES * 2];
+    private final StimulusScheduler.RenderListener listener = new StimulusScheduler.RenderListener() {
+        @Override
+        public void onFlush() {
+            // Everything rendered so far has already been written.
+        }
+
+        @Override
+        public void onOnset(Stimulus stimulus, int frameOffset) {
+            stimulus.markOnset(framesRendered + frameOffset);
+        }
+    };
+
+    private long framesRendered;
+
+    /** Starts {@code sink}; the renderer releases it in {@link #release()}. */
+    public OfflineRenderer(AudioSink sink, Random jitterRandom) {
+        this.sink = sink;
+        this.scheduler = new StimulusScheduler(sink.getSampleRate(), jitterRandom);
+        sink.start();
+    }
+
+    public int getSampleRate() {
+        return sink.getSampleRate();
+    }
+
+    /** Frames written to the sink so far; onset frames are positions in this stream. */
+    public long getFramesRendered() {
+        return framesRendered;
+    }
+
+    public void replace(Stimulus stimulus) {
+        scheduler.replace(stimulus);
+    }
+
+    /** Cancels everything and starts {@code stimulus} after minGapMs plus up to jitterMs. */
+    public void replace(Stimulus stimulus, int minGapMs, int jitterMs) {
+        scheduler.replace(stimulus, minGapMs, jitterMs);
+    }
+
+    /** Queues {@code stimulus} minGapMs plus up to jitterMs after the previous one ends. */
+    public void enqueue(Stimulus stimulus, int minGapMs, int jitterMs) {
+        scheduler.enqueue(stimulus, minGapMs, jitterMs);
+    }
+
+    public void stop() {
+        scheduler.cancelAll();
+    }
+
+    /** Renders the next {@code durationMs} of output: whatever is scheduled, then silence. */
+    public void advance(int durationMs) throws IOException {
+        advanceFrames((long) durationMs * sink.getSampleRate() / 1000);
+    }
+
+    public void advanceFrames(long frames) throws IOException {
+        long remaining = frames;
+        while (remaining > 0) {
+            int requested = (int) Math.min(AudioEngine.CHUNK_FRAMES, remaining);
+            int rendered = scheduler.render(chunk, 0, requested, listener);
+            if (rendered < requested) {
+                Arrays.fill(chunk, rendered * 2, requested * 2, (short) 0);
+            }
+            write(requested);
+            remaining -= requested;
+        }
+    }
+
+    /**
+     * Renders until everything scheduled, gaps included, has played.
+     *
+     * @return the number of frames rendered
+     */
+    public long drain() throws IOException {
+        long start = framesRendered;
+        int rendered;
+        while ((rendered = scheduler.render(chunk, 0, AudioEngine.CHUNK_FRAMES, listener)) > 0) {
+            write(rendered);
+        }
+        return framesRendered - start;
+    }
+
+    /** Stops and releases the sink, which for a file sink finalizes it. */
+    public void release() {
+        sink.stop();
+        sink.release();
+    }
+
+    private void write(int frames) throws IOException {
+        int result = sink.write(chunk, 0, frames * 2);
+        if (result < 0) {
+            throw new IOException("Sink failed with error " + result + " after " + framesRendered + " frames");
+        }
+        framesRendered += frames;
+    }
+}
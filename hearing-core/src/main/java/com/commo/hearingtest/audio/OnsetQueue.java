@@ -0,0 +1,59 @@
+package com.commo.hearingtest.audio;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Fixed-size SPSC queue that carries stimulus onsets, as absolute ring-buffer sample positions,
+ * from the render thread to the output thread. The output thread resolves each onset to a sink
+ * frame once the chunk containing it is written, or drops it if the ring discarded it.
+ */
+final class OnsetQueue {
+
+    private static final int CAPACITY = 64;
+    private static final int MASK = CAPACITY - 1;
+
+    private final long[] positions = new long[CAPACITY];
+    private final Stimulus[] stimuli = new Stimulus[CAPACITY];
+    private final AtomicLong head = new AtomicLong(); // next slot to read, consumer-owned
+    private final AtomicLong tail = new AtomicLong(); // next slot to write, producer-owned
+
+    /** Producer side. Returns false if the queue is full, which only happens if output has stalled. */
+    boolean offer(Stimulus stimulus, long ringPosition) {
+        long t = tail.get();
+        if (t - head.get() == CAPACITY) {
+            return false;
+        }
+        int slot = (int) (t & MASK);
+        positions[slot] = ringPosition;
+        stimuli[slot] = stimulus;
+        tail.lazySet(t + 1);
+        return true;
+    }
+
+    /**
+     * Consumer side: resolves onsets in the chunk that covers ring samples
+     * [{@code chunkStart}, {@code chunkStart + samples}), which will be written to the sink at
+     * {@code sinkFrame}. Onsets before the chunk were discarded and count as cancelled.
+     */
+    void resolve(long chunkStart, int samples, long sinkFrame) {
+        long h = head.get();
+        long t = tail.get();
+        long chunkEnd = chunkStart + samples;
+        while (h < t) {
+            int slot = (int) (h & MASK);
+            long position = positions[slot];
+            if (position >= chunkEnd) {
+                break;
+            }
+            Stimulus stimulus = stimuli[slot];
+            stimuli[slot] = null;
+            if (position < chunkStart) {
+                stimulus.markCancelled();
+            } else {
+                stimulus.markOnset(sinkFrame + (position - chunkStart) / 2, System.nanoTime());
+            }
+            h++;
+        }
+        head.lazySet(h);
+    }
+}
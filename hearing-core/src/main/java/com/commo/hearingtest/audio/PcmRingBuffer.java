@@ -0,0 +1,105 @@
+package com.commo.hearingtest.audio;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free single-producer/single-consumer ring buffer of PCM samples.
+ *
+ * <p>Positions are absolute sample counts that only grow; each side owns one of them and
+ * publishes it with a release store, so neither side ever waits on the other. The producer can
+ * discard everything it has written but the consumer has not read yet ({@link #discardPending()});
+ * the consumer applies the discard on its next {@link #read}, so newer data written after the
+ * discard is never lost.
+ */
+public final class PcmRingBuffer {
+
+    private final short[] buffer;
+    private final int capacity;
+    private final int mask;
+
+    private final AtomicLong writePosition = new AtomicLong();
+    private final AtomicLong readPosition = new AtomicLong();
+    private final AtomicLong discardPosition = new AtomicLong();
+
+    // Consumer-owned.
+    private long discardedSamples;
+
+    /** @param capacity number of samples; must be a power of two */
+    public PcmRingBuffer(int capacity) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+        }
+        this.buffer = new short[capacity];
+        this.capacity = capacity;
+        this.mask = capacity - 1;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /** Producer side: number of samples that can be written without overwriting unread data. */
+    public int availableToWrite() {
+        return capacity - (int) (writePosition.get() - readPosition.get());
+    }
+
+    /** Producer side: copies as many samples as fit and returns how many were written. */
+    public int write(short[] src, int offset, int length) {
+        long write = writePosition.get();
+        int count = Math.min(length, capacity - (int) (write - readPosition.get()));
+        if (count <= 0) {
+            return 0;
+        }
+        int start = (int) (write & mask);
+        int first = Math.min(count, capacity - start);
+        System.arraycopy(src, offset, buffer, start, first);
+        System.arraycopy(src, offset + first, buffer, 0, count - first);
+        writePosition.lazySet(write + count);
+        return count;
+    }
+
+    /** Producer side: drops everything written so far that the consumer has not read yet. */
+    public void discardPending() {
+        discardPosition.lazySet(writePosition.get());
+    }
+
+    /** Producer side: absolute number of samples written since creation. */
+    public long getWritePosition() {
+        return writePosition.get();
+    }
+
+    /** Consumer side: number of samples ready to be read. */
+    public int availableToRead() {
+        long read = Math.max(readPosition.get(), discardPosition.get());
+        return (int) (writePosition.get() - read);
+    }
+
+    /** Consumer side: copies up to {@code length} samples and returns how many were read. */
+    public int read(short[] dst, int offset, int length) {
+        long read = readPosition.get();
+        long discard = discardPosition.get();
+        if (discard > read) {
+            discardedSamples += discard - read;
+            read = discard;
+        }
+        int count = (int) Math.min(length, writePosition.get() - read);
+        if (count > 0) {
+            int start = (int) (read & mask);
+            int first = Math.min(count, capacity - start);
+            System.arraycopy(buffer, start, dst, offset, first);
+            System.arraycopy(buffer, 0, dst, offset + first, count - first);
+        }
+        readPosition.lazySet(read + count);
+        return count;
+    }
+
+    /** Consumer side: absolute number of samples consumed, whether read or discarded. */
+    public long getReadPosition() {
+        return readPosition.get();
+    }
+
+    /** Consumer side: total samples dropped by {@link #discardPending()}. */
+    public long getDiscardedSamples() {
+        return discardedSamples;
+    }
+}
@@ -0,0 +1,26 @@
+package com.commo.hearingtest.audio;
+
+/**
+ * Plays a prerendered interleaved stereo buffer, typically one handed out by the tone cache.
+ * The buffer is only read, so it can be shared by any number of sources.
+ */
+public final class PcmSource implements SampleSource {
+
+    private final short[] pcm;
+    private int position;
+
+    public PcmSource(short[] pcm) {
+        if (pcm.length % 2 != 0) {
+            throw new IllegalArgumentException("Stereo buffer must hold whole frames");
+        }
+        this.pcm = pcm;
+    }
+
+    @Override
+    public int read(short[] out, int offset, int frames) {
+        int samples = Math.min(frames * 2, pcm.length - position);
+        System.arraycopy(pcm, position, out, offset, samples);
+        position += samples;
+        return samples / 2;
+    }
+}
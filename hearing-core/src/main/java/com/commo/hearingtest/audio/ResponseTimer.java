@@ -0,0 +1,74 @@
+package com.commo.hearingtest.audio;
+
+import com.commo.hearingtest.core.ReactionTimes;
+
+/**
+ * Times each answer of a test against the acoustic onset of the tone it answers, on the
+ * {@link System#nanoTime()} clock, and collects the results in {@link ReactionTimes}.
+ *
+ * <p>The onset is the stimulus's onset frame mapped through the sink's presentation timestamps
+ * ({@link AudioEngine#frameToNanoTime(long)}), so the device's real output latency is already
+ * taken out. A sink without timestamps falls back to the time the onset was written plus the
+ * sink's buffer latency, and the trial is marked as estimated. The mapping is made when the
+ * answer arrives, by which time the onset has normally been played and the timestamp covers it.
+ *
+ * <p>An answer is timed against the latest presentation that has started, so replaying a tone
+ * and answering before the replay is heard still times against what the listener heard. Call
+ * from one thread, normally the UI thread.
+ */
+public final class ResponseTimer {
+
+    private final AudioEngine engine;
+    private ReactionTimes times = new ReactionTimes();
+    private Stimulus current;
+    private Stimulus lastStarted;
+
+    public ResponseTimer(AudioEngine engine) {
+        this.engine = engine;
+    }
+
+    /** Notes that {@code stimulus} was just handed to the engine for the current trial. */
+    public void presented(Stimulus stimulus) {
+        if (current != null && current.hasStarted()) {
+            lastStarted = current;
+        }
+        current = stimulus;
+    }
+
+    /**
+     * Records the answer to the current trial, given at {@code responseNanos} on the
+     * {@link System#nanoTime()} clock, and moves on to the next trial.
+     *
+     * @return the reaction time in ms, or NaN if no tone of this trial had started
+     */
+    public double respond(long responseNanos) {
+        Stimulus heard = current != null && current.hasStarted() ? current : lastStarted;
+        double latencyMs = Double.NaN;
+        boolean timestamped = false;
+        if (heard != null) {
+            long onsetNanos = engine.frameToNanoTime(heard.getOnsetFrame());
+            timestamped = onsetNanos >= 0;
+            if (!timestamped && heard.getOnsetWriteNanos() >= 0) {
+                onsetNanos = heard.getOnsetWriteNanos() + engine.getBufferLatencyNanos();
+            }
+            if (onsetNanos >= 0) {
+                latencyMs = (responseNanos - onsetNanos) / 1e6;
+            }
+        }
+        times.add(latencyMs, timestamped);
+        current = null;
+        lastStarted = null;
+        return latencyMs;
+    }
+
+    public ReactionTimes getReactionTimes() {
+        return times;
+    }
+
+    /** Starts a new test: forgets the presentations and the times recorded so far. */
+    public void reset() {
+        times = new ReactionTimes();
+        current = null;
+        lastStarted = null;
+    }
+}
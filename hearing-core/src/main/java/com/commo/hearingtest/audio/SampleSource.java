@@ -0,0 +1,15 @@
+package com.commo.hearingtest.audio;
+
+/**
+ * Pull-based source of interleaved stereo 16-bit PCM, read by the audio render thread.
+ * Implementations must not allocate in {@link #read}.
+ */
+public interface SampleSource {
+
+    /**
+     * Writes up to {@code frames} stereo frames into {@code out} at {@code offset}.
+     *
+     * @return the number of frames written; fewer than requested means the source is finished
+     */
+    int read(short[] out, int offset, int frames);
+}
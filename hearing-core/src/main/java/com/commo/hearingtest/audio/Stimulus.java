@@ -0,0 +1,103 @@
+package com.commo.hearingtest.audio;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * One presentation of a sound through the {@link StimulusScheduler}. A stimulus is single-use:
+ * its source is consumed as it plays.
+ *
+ * <p>Once the first sample reaches the sink, {@link #getOnsetFrame()} holds its position in the
+ * sink's frame stream, which {@link AudioEngine#frameToNanoTime(long)} maps onto the monotonic
+ * clock, and {@link #getOnsetWriteNanos()} the time that chunk was handed to the sink, for
+ * sinks that cannot report timestamps.
+ */
+public final class Stimulus {
+
+    private static final AtomicLong NEXT_ID = new AtomicLong();
+
+    static final long NOT_STARTED = -1;
+
+    private final long id = NEXT_ID.incrementAndGet();
+    private final SampleSource source;
+    private volatile long onsetFrame = NOT_STARTED;
+    private volatile long onsetWriteNanos = NOT_STARTED;
+    private volatile boolean cancelled;
+    private volatile boolean finished;
+
+    // Render-thread only.
+    private boolean onsetRendered;
+
+    public Stimulus(SampleSource source) {
+        this.source = source;
+    }
+
+    public static Stimulus of(short[] pcm) {
+        return new Stimulus(new PcmSource(pcm));
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    SampleSource getSource() {
+        return source;
+    }
+
+    /** Sink frame position of the first sample, or -1 if it has not reached the sink yet. */
+    public long getOnsetFrame() {
+        return onsetFrame;
+    }
+
+    /**
+     * {@link System#nanoTime()} when the chunk holding the first sample was handed to the sink,
+     * or -1 if it has not been, or the stimulus was rendered offline.
+     */
+    public long getOnsetWriteNanos() {
+        return onsetWriteNanos;
+    }
+
+    public boolean hasStarted() {
+        return onsetFrame != NOT_STARTED;
+    }
+
+    /** True if the stimulus was replaced or stopped before it finished rendering. */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /** True once the whole stimulus has been rendered. */
+    public boolean isFinished() {
+        return finished;
+    }
+
+    boolean isOnsetRendered() {
+        return onsetRendered;
+    }
+
+    void markOnsetRendered() {
+        onsetRendered = true;
+    }
+
+    void markOnset(long frame) {
+        onsetFrame = frame;
+    }
+
+    void markOnset(long frame, long writeNanos) {
+        // Written first, so a reader that sees the onset frame also sees its write time.
+        onsetWriteNanos = writeNanos;
+        onsetFrame = frame;
+    }
+
+    void markCancelled() {
+        cancelled = true;
+    }
+
+    void markFinished() {
+        finished = true;
+    }
+
+    @Override
+    public String toString() {
+        return "Stimulus#" + id;
+    }
+}
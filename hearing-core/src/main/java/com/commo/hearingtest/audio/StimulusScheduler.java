@@ -0,0 +1,219 @@
+package com.commo.hearingtest.audio;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Decides which stimulus plays when. Any thread may post commands; only the render thread calls
+ * {@link #render}, which applies pending commands and then fills the chunk.
+ *
+ * <ul>
+ *   <li>{@link #replace} cancels everything queued or playing and starts the new stimulus
+ *       (optionally after a jittered gap). The caller must also discard audio it has already
+ *       buffered, which {@link #render} signals through {@link RenderListener#onFlush()}.</li>
+ *   <li>{@link #enqueue} appends a stimulus that starts a jittered gap after the previous one
+ *       ends, or after the gap from now when nothing is playing.</li>
+ *   <li>{@link #cancel} drops one stimulus if it is still playing or queued, and leaves the
+ *       rest alone, so a screen can silence its own sound without cutting off a newer one.</li>
+ * </ul>
+ */
+public final class StimulusScheduler {
+
+    /** Render-thread callbacks, invoked from inside {@link #render}. */
+    public interface RenderListener {
+        /** Everything rendered so far but not yet played must be dropped. */
+        void onFlush();
+
+        /** {@code stimulus} starts at {@code frameOffset} within the chunk being rendered. */
+        void onOnset(Stimulus stimulus, int frameOffset);
+    }
+
+    private static final int REPLACE = 0;
+    private static final int ENQUEUE = 1;
+    private static final int CANCEL = 2;
+    private static final int CANCEL_ONE = 3;
+
+    private final int sampleRate;
+    private final Random jitterRandom;
+    private final ConcurrentLinkedQueue<Command> commands = new ConcurrentLinkedQueue<Command>();
+
+    // Render-thread state.
+    private final ArrayDeque<Command> queue = new ArrayDeque<Command>(16);
+    private Stimulus current;
+    private int gapFramesRemaining;
+    private volatile boolean idle = true;
+
+    public StimulusScheduler(int sampleRate, Random jitterRandom) {
+        this.sampleRate = sampleRate;
+        this.jitterRandom = jitterRandom;
+    }
+
+    public void replace(Stimulus stimulus) {
+        replace(stimulus, 0, 0);
+    }
+
+    /** Cancels everything and starts {@code stimulus} after a gap of minGapMs plus up to jitterMs. */
+    public void replace(Stimulus stimulus, int minGapMs, int jitterMs) {
+        post(new Command(REPLACE, stimulus, gapFrames(minGapMs, jitterMs)));
+    }
+
+    /** Queues {@code stimulus} a gap of minGapMs plus up to jitterMs after the previous one. */
+    public void enqueue(Stimulus stimulus, int minGapMs, int jitterMs) {
+        post(new Command(ENQUEUE, stimulus, gapFrames(minGapMs, jitterMs)));
+    }
+
+    public void cancelAll() {
+        post(new Command(CANCEL, null, 0));
+    }
+
+    /**
+     * Cancels {@code stimulus} if it is playing or queued; a no-op once it has finished or been
+     * replaced.
+     */
+    public void cancel(Stimulus stimulus) {
+        post(new Command(CANCEL_ONE, stimulus, 0));
+    }
+
+    /** True when nothing is playing, waiting or queued, including commands not yet applied. */
+    public boolean isIdle() {
+        return idle && commands.isEmpty();
+    }
+
+    /**
+     * Render thread only. Applies pending commands, then writes up to {@code frames} stereo
+     * frames, padding gaps with silence.
+     *
+     * @return frames written; 0 means there is nothing left to play
+     */
+    public int render(short[] out, int offset, int frames, RenderListener listener) {
+        applyCommands(listener);
+        int written = 0;
+        while (written < frames) {
+            if (current == null && gapFramesRemaining == 0 && !advance()) {
+                break;
+            }
+            int position = offset + written * 2;
+            if (gapFramesRemaining > 0) {
+                int silent = Math.min(gapFramesRemaining, frames - written);
+                Arrays.fill(out, position, position + silent * 2, (short) 0);
+                gapFramesRemaining -= silent;
+                written += silent;
+                continue;
+            }
+            if (!current.isOnsetRendered()) {
+                current.markOnsetRendered();
+                listener.onOnset(current, written);
+            }
+            int requested = frames - written;
+            int read = current.getSource().read(out, position, requested);
+            written += read;
+            if (read < requested) {
+                current.markFinished();
+                current = null;
+            }
+        }
+        idle = current == null && gapFramesRemaining == 0 && queue.isEmpty();
+        return written;
+    }
+
+    private void applyCommands(RenderListener listener) {
+        Command command;
+        while ((command = commands.poll()) != null) {
+            switch (command.type) {
+                case REPLACE:
+                    cancelEverything();
+                    queue.addLast(command);
+                    listener.onFlush();
+                    break;
+                case ENQUEUE:
+                    queue.addLast(command);
+                    break;
+                case CANCEL:
+                    cancelEverything();
+                    listener.onFlush();
+                    break;
+                case CANCEL_ONE:
+                    if (cancelOne(command.stimulus)) {
+                        listener.onFlush();
+                    }
+                    break;
+            }
+        }
+    }
+
+    /** Moves the next queued stimulus into place; its gap is rendered before it starts. */
+    private boolean advance() {
+        Command next = queue.pollFirst();
+        if (next == null) {
+            return false;
+        }
+        current = next.stimulus;
+        gapFramesRemaining = next.gapFrames;
+        return true;
+    }
+
+    private void cancelEverything() {
+        if (current != null) {
+            current.markCancelled();
+            current = null;
+        }
+        gapFramesRemaining = 0;
+        Command queued;
+        while ((queued = queue.pollFirst()) != null) {
+            queued.stimulus.markCancelled();
+        }
+    }
+
+    /** Cancels {@code stimulus}; true if it was the one playing, whose buffered audio must go. */
+    private boolean cancelOne(Stimulus stimulus) {
+        if (current == stimulus) {
+            current.markCancelled();
+            current = null;
+            gapFramesRemaining = 0;
+            return true;
+        }
+        Iterator<Command> queued = queue.iterator();
+        while (queued.hasNext()) {
+            Command command = queued.next();
+            if (command.stimulus == stimulus) {
+                stimulus.markCancelled();
+                queued.remove();
+                break;
+            }
+        }
+        return false;
+    }
+
+    private void post(Command command) {
+        idle = false;
+        commands.add(command);
+    }
+
+    private int gapFrames(int minGapMs, int jitterMs) {
+        if (minGapMs < 0 || jitterMs < 0) {
+            throw new IllegalArgumentException("Gap and jitter must not be negative");
+        }
+        int gapMs = minGapMs;
+        if (jitterMs > 0) {
+            synchronized (jitterRandom) {
+                gapMs += jitterRandom.nextInt(jitterMs + 1);
+            }
+        }
+        return (int) ((long) gapMs * sampleRate / 1000);
+    }
+
+    private static final class Command {
+        final int type;
+        final Stimulus stimulus;
+        final int gapFrames;
+
+        Command(int type, Stimulus stimulus, int gapFrames) {
+            this.type = type;
+            this.stimulus = stimulus;
+            this.gapFrames = gapFrames;
+        }
+    }
+}
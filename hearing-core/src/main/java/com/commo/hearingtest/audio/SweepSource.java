@@ -0,0 +1,166 @@
+package com.commo.hearingtest.audio;
+
+import com.commo.hearingtest.calibration.GainTable;
+import com.commo.hearingtest.core.BekesySweep;
+import com.commo.hearingtest.core.Ear;
+import com.commo.hearingtest.dsp.ToneSpec;
+import com.commo.hearingtest.dsp.ToneSynthesizer;
+
+/**
+ * Streams the tone of a {@link BekesySweep} to one ear, synthesized chunk by chunk as the engine
+ * pulls it, so no buffer for the whole sweep ever exists.
+ *
+ * <p>Each {@link #read} advances the sweep by the frames it renders, with the button state last
+ * set through {@link #setHeard}; the sweep's level therefore follows the audio actually written,
+ * one chunk behind the button. Within a read the phase increment grows by the sweep's constant
+ * per-frame ratio and the amplitude moves linearly to the level reached at its end, so neither
+ * pitch nor loudness steps between chunks. The phase is the same 64-bit accumulator as
+ * {@link ToneSynthesizer}'s and runs on across reads.
+ *
+ * <p>The tone fades in over {@link ToneSpec#DEFAULT_RAMP_MS}, and fades out over the same time
+ * once the sweep ends or {@link #finish()} is called, after which the source reports itself done.
+ */
+public final class SweepSource implements SampleSource {
+
+    private static final long QUARTER_CYCLE = 1L << 62;
+    private static final long HALF_CYCLE = 1L << 63;
+
+    private final BekesySweep sweep;
+    private final GainTable gainTable;
+    private final Ear ear;
+    private final int rampFrames;
+    private final long rampIncrement;
+
+    // Render-thread state.
+    private long phase;
+    private float amplitude;
+    private int onsetFramesDone;
+    private int releaseFramesDone;
+    private double releaseIncrement;
+
+    private volatile boolean heard;
+    private volatile boolean finishRequested;
+    private volatile boolean done;
+    private volatile double currentFrequency;
+    private volatile double currentLevelDb;
+
+    public SweepSource(BekesySweep sweep, GainTable gainTable, Ear ear) {
+        this.sweep = sweep;
+        this.gainTable = gainTable;
+        this.ear = ear;
+        this.rampFrames = Math.max(1, ToneSpec.DEFAULT_RAMP_MS * sweep.getSampleRate() / 1000);
+        this.rampIncrement = Long.divideUnsigned(HALF_CYCLE, rampFrames);
+        this.currentFrequency = sweep.getFrequency();
+        this.currentLevelDb = sweep.getLevelDb();
+        this.amplitude = amplitudeAt(sweep.getFrequency(), sweep.getLevelDb());
+    }
+
+    /** Any thread: whether the listener is holding the button. */
+    public void setHeard(boolean heard) {
+        this.heard = heard;
+    }
+
+    /** Any thread: fades the tone out and ends the sweep early. */
+    public void finish() {
+        finishRequested = true;
+    }
+
+    /** True once the fade-out has been rendered; the sweep may then be read from any thread. */
+    public boolean isDone() {
+        return done;
+    }
+
+    public BekesySweep getSweep() {
+        return sweep;
+    }
+
+    public Ear getEar() {
+        return ear;
+    }
+
+    /** Frequency at the end of the last rendered chunk, for display. */
+    public double getCurrentFrequency() {
+        return currentFrequency;
+    }
+
+    /** Level at the end of the last rendered chunk, for display. */
+    public double getCurrentLevelDb() {
+        return currentLevelDb;
+    }
+
+    @Override
+    public int read(short[] out, int offset, int frames) {
+        if (done || frames <= 0) return 0;
+        if (!finishRequested && !sweep.isFinished()) {
+            return renderSweep(out, offset, frames);
+        }
+        return renderRelease(out, offset, frames);
+    }
+
+    private int renderSweep(short[] out, int offset, int frames) {
+        double startFrequency = sweep.getFrequency();
+        int n = sweep.advance(frames, heard);
+        double ratio = sweep.getFrequencyRatioPerFrame();
+        float target = amplitudeAt(sweep.getFrequency(), sweep.getLevelDb());
+        float step = (target - amplitude) / n;
+        double increment = startFrequency / sweep.getSampleRate() * 0x1p64;
+        float left = ear == Ear.LEFT ? 1f : 0f;
+        float right = 1f - left;
+        int pos = offset;
+        for (int i = 0; i < n; i++) {
+            float gain = amplitude * Short.MAX_VALUE;
+            if (onsetFramesDone < rampFrames) {
+                gain *= 0.5f - 0.5f * ToneSynthesizer.sine(rampIncrement * onsetFramesDone + QUARTER_CYCLE);
+                onsetFramesDone++;
+            }
+            float sample = ToneSynthesizer.sine(phase) * gain;
+            out[pos] = (short) Math.round(sample * left);
+            out[pos + 1] = (short) Math.round(sample * right);
+            pos += 2;
+            phase += (long) increment;
+            increment *= ratio;
+            amplitude += step;
+        }
+        amplitude = target;
+        releaseIncrement = increment;
+        currentFrequency = sweep.getFrequency();
+        currentLevelDb = sweep.getLevelDb();
+        if (n < frames) {
+            // The sweep ended inside this chunk; fade out right after it.
+            return n + renderRelease(out, offset + n * 2, frames - n);
+        }
+        return n;
+    }
+
+    private int renderRelease(short[] out, int offset, int frames) {
+        if (releaseIncrement == 0) {
+            releaseIncrement = sweep.getFrequency() / sweep.getSampleRate() * 0x1p64;
+        }
+        long increment = (long) releaseIncrement;
+        float left = ear == Ear.LEFT ? 1f : 0f;
+        float right = 1f - left;
+        // Fade from wherever the onset ramp had got to.
+        int startFrame = rampFrames - Math.min(onsetFramesDone, rampFrames);
+        int n = Math.min(frames, rampFrames - startFrame - releaseFramesDone);
+        int pos = offset;
+        for (int i = 0; i < n; i++) {
+            int k = startFrame + releaseFramesDone + i;
+            float gain = amplitude * Short.MAX_VALUE
+                    * (0.5f + 0.5f * ToneSynthesizer.sine(rampIncrement * k + QUARTER_CYCLE));
+            float sample = ToneSynthesizer.sine(phase) * gain;
+            out[pos] = (short) Math.round(sample * left);
+            out[pos + 1] = (short) Math.round(sample * right);
+            pos += 2;
+            phase += increment;
+        }
+        releaseFramesDone += n;
+        if (startFrame + releaseFramesDone >= rampFrames) {
+            done = true;
+        }
+        return n;
+    }
+
+    private float amplitudeAt(double frequency, double levelDbHl) {
+        return gainTable.amplitudeFor(ear, frequency, levelDbHl);
+    }
+}
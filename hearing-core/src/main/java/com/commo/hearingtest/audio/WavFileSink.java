@@ -0,0 +1,188 @@
+package com.commo.hearingtest.audio;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Sink that writes 16-bit stereo PCM to a WAV file instead of a device.
+ *
+ * <p>Samples are staged in one direct buffer of {@link #BUFFER_FRAMES} frames and written to a
+ * {@link FileChannel} whenever it fills, so memory use does not grow with the length of the
+ * render. The RIFF and data sizes in the header are rewritten on every {@link #stop()} and on
+ * {@link #release()}, so the file is valid at each stop even if the process dies later.
+ *
+ * <p>A file has no presentation clock: {@link #getTimestamp} never reports one, and frame
+ * positions are simply offsets into the file's data. Use {@link OfflineRenderer} to render a
+ * session deterministically, with every gap included.
+ */
+public final class WavFileSink implements AudioSink {
+
+    public static final int HEADER_BYTES = 44;
+    public static final int BUFFER_FRAMES = 8192;
+    /** Error returned by {@link #write} once the file has failed or would outgrow 4 GiB. */
+    public static final int ERROR_IO = -1;
+
+    private static final int CHANNELS = 2;
+    private static final int BYTES_PER_FRAME = CHANNELS * 2;
+    private static final long MAX_DATA_BYTES = 0xFFFFFFFFL - (HEADER_BYTES - 8);
+
+    private final File file;
+    private final int sampleRate;
+    private final RandomAccessFile output;
+    private final FileChannel channel;
+    private final ByteBuffer bytes = ByteBuffer.allocateDirect(BUFFER_FRAMES * BYTES_PER_FRAME)
+            .order(ByteOrder.LITTLE_ENDIAN);
+    private final ShortBuffer samples = bytes.asShortBuffer();
+    private final ByteBuffer header = ByteBuffer.allocateDirect(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+
+    private long dataBytes;
+    private boolean failed;
+    private boolean released;
+
+    private WavFileSink(File file, int sampleRate, RandomAccessFile output) {
+        this.file = file;
+        this.sampleRate = sampleRate;
+        this.output = output;
+        this.channel = output.getChannel();
+    }
+
+    /** Creates or truncates {@code file} and writes an empty WAV header. */
+    public static WavFileSink create(File file, int sampleRate) throws IOException {
+        if (sampleRate <= 0) {
+            throw new IllegalArgumentException("Sample rate must be positive: " + sampleRate);
+        }
+        RandomAccessFile output = new RandomAccessFile(file, "rw");
+        WavFileSink sink = new WavFileSink(file, sampleRate, output);
+        try {
+            output.setLength(0);
+            sink.writeHeader();
+        } catch (IOException e) {
+            output.close();
+            throw e;
+        }
+        return sink;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    @Override
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    @Override
+    public int getBufferSizeFrames() {
+        return BUFFER_FRAMES;
+    }
+
+    @Override
+    public void start() {
+    }
+
+    @Override
+    public int write(short[] data, int offset, int length) {
+        if (failed || released || length % CHANNELS != 0) {
+            return ERROR_IO;
+        }
+        if (dataBytes + (long) length * 2 > MAX_DATA_BYTES) {
+            failed = true;
+            return ERROR_IO;
+        }
+        int written = 0;
+        try {
+            while (written < length) {
+                int count = Math.min(samples.remaining(), length - written);
+                samples.put(data, offset + written, count);
+                written += count;
+                if (!samples.hasRemaining()) {
+                    drain();
+                }
+            }
+        } catch (IOException e) {
+            failed = true;
+            return ERROR_IO;
+        }
+        dataBytes += (long) length * 2;
+        return length;
+    }
+
+    @Override
+    public boolean getTimestamp(FrameTimestamp out) {
+        return false;
+    }
+
+    /** Frames accepted so far, including any still staged in the buffer. */
+    public long getFramesWritten() {
+        return dataBytes / BYTES_PER_FRAME;
+    }
+
+    /** Nothing is ever dropped: staged samples are flushed and the header brought up to date. */
+    @Override
+    public void stop() {
+        if (failed || released) return;
+        try {
+            drain();
+            writeHeader();
+        } catch (IOException e) {
+            failed = true;
+        }
+    }
+
+    @Override
+    public void release() {
+        if (released) return;
+        stop();
+        released = true;
+        try {
+            output.close();
+        } catch (IOException e) {
+            failed = true;
+        }
+    }
+
+    /** True if a write, flush or close failed; the file is then incomplete. */
+    public boolean hasFailed() {
+        return failed;
+    }
+
+    private void drain() throws IOException {
+        bytes.limit(samples.position() * 2).position(0);
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+        bytes.clear();
+        samples.clear();
+    }
+
+    private void writeHeader() throws IOException {
+        header.clear();
+        header.put((byte) 'R').put((byte) 'I').put((byte) 'F').put((byte) 'F');
+        header.putInt((int) (HEADER_BYTES - 8 + dataBytes));
+        header.put((byte) 'W').put((byte) 'A').put((byte) 'V').put((byte) 'E');
+        header.put((byte) 'f').put((byte) 'm').put((byte) 't').put((byte) ' ');
+        header.putInt(16);
+        header.putShort((short) 1); // PCM
+        header.putShort((short) CHANNELS);
+        header.putInt(sampleRate);
+        header.putInt(sampleRate * BYTES_PER_FRAME);
+        header.putShort((short) BYTES_PER_FRAME);
+        header.putShort((short) 16);
+        header.put((byte) 'd').put((byte) 'a').put((byte) 't').put((byte) 'a');
+        header.putInt((int) dataBytes);
+        header.flip();
+        long position = 0;
+        while (header.hasRemaining()) {
+            position += channel.write(header, position);
+        }
+        if (channel.position() < HEADER_BYTES) {
+            channel.position(HEADER_BYTES);
+        }
+    }
+}
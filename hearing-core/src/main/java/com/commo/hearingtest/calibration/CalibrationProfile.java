@@ -0,0 +1,176 @@
+package com.commo.hearingtest.calibration;
+
+import com.commo.hearingtest.core.Ear;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Calibration of one headphone model: for each ear, the level in dBFS at which a tone at each
+ * measured frequency is at 0 dB HL. Between measured frequencies the reference is interpolated
+ * linearly in log frequency; beyond them it is held flat.
+ *
+ * <p>Profiles are plain text so they can be written by hand from sound level meter readings:
+ *
+ * <pre>
+ * # comment
+ * name=Sennheiser HD 280 Pro
+ * device=HD 280 Pro
+ * # frequency  left dBFS  right dBFS at 0 dB HL
+ * 1000  -82.5  -83.0
+ * </pre>
+ *
+ * {@code device} is matched against the product name the output device reports; a profile
+ * without it applies to any device that has no profile of its own.
+ */
+public final class CalibrationProfile {
+
+    /** Reference for uncalibrated output. It keeps the level range of the earlier dBFS scale. */
+    public static final double NOMINAL_REFERENCE_DBFS = -80;
+    public static final String NOMINAL_NAME = "uncalibrated";
+
+    private final String name;
+    private final String deviceName;
+    private final int[] frequencies;
+    private final double[] leftReferenceDbFs;
+    private final double[] rightReferenceDbFs;
+
+    public CalibrationProfile(String name, String deviceName, int[] frequencies,
+                              double[] leftReferenceDbFs, double[] rightReferenceDbFs) {
+        if (frequencies.length == 0) {
+            throw new IllegalArgumentException("Need at least one frequency");
+        }
+        if (leftReferenceDbFs.length != frequencies.length || rightReferenceDbFs.length != frequencies.length) {
+            throw new IllegalArgumentException("Need one reference per frequency and ear");
+        }
+        for (int i = 0; i < frequencies.length; i++) {
+            if (frequencies[i] <= 0 || (i > 0 && frequencies[i] <= frequencies[i - 1])) {
+                throw new IllegalArgumentException("Frequencies must be positive and ascending");
+            }
+            if (Double.isNaN(leftReferenceDbFs[i]) || Double.isNaN(rightReferenceDbFs[i])) {
+                throw new IllegalArgumentException("Missing reference at " + frequencies[i] + " Hz");
+            }
+        }
+        this.name = name;
+        this.deviceName = deviceName;
+        this.frequencies = frequencies.clone();
+        this.leftReferenceDbFs = leftReferenceDbFs.clone();
+        this.rightReferenceDbFs = rightReferenceDbFs.clone();
+    }
+
+    /** Flat {@link #NOMINAL_REFERENCE_DBFS} on both ears, for headphones nobody has measured. */
+    public static CalibrationProfile nominal() {
+        return new CalibrationProfile(NOMINAL_NAME, null, new int[]{1000},
+                new double[]{NOMINAL_REFERENCE_DBFS}, new double[]{NOMINAL_REFERENCE_DBFS});
+    }
+
+    /** Reads a profile in the text format above; {@code fallbackName} is used if it has no name. */
+    public static CalibrationProfile parse(Reader reader, String fallbackName) throws IOException {
+        BufferedReader lines = new BufferedReader(reader);
+        String name = fallbackName;
+        String deviceName = null;
+        List<double[]> rows = new ArrayList<double[]>();
+        String line;
+        int lineNumber = 0;
+        while ((line = lines.readLine()) != null) {
+            lineNumber++;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) continue;
+            int equals = line.indexOf('=');
+            if (equals > 0) {
+                String key = line.substring(0, equals).trim();
+                String value = line.substring(equals + 1).trim();
+                if ("name".equals(key)) {
+                    name = value;
+                } else if ("device".equals(key)) {
+                    deviceName = value.isEmpty() ? null : value;
+                }
+                continue;
+            }
+            String[] fields = line.split("\\s+");
+            if (fields.length != 3) {
+                throw new IOException("Line " + lineNumber + ": expected frequency, left and right");
+            }
+            try {
+                rows.add(new double[]{Double.parseDouble(fields[0]),
+                        Double.parseDouble(fields[1]), Double.parseDouble(fields[2])});
+            } catch (NumberFormatException e) {
+                throw new IOException("Line " + lineNumber + ": " + e.getMessage());
+            }
+        }
+        int[] frequencies = new int[rows.size()];
+        double[] left = new double[rows.size()];
+        double[] right = new double[rows.size()];
+        for (int i = 0; i < rows.size(); i++) {
+            frequencies[i] = (int) Math.round(rows.get(i)[0]);
+            left[i] = rows.get(i)[1];
+            right[i] = rows.get(i)[2];
+        }
+        try {
+            return new CalibrationProfile(name, deviceName, frequencies, left, right);
+        } catch (IllegalArgumentException e) {
+            throw new IOException(name + ": " + e.getMessage());
+        }
+    }
+
+    /** Writes this profile in the format {@link #parse} reads. */
+    public void write(Writer writer) throws IOException {
+        writer.write("name=" + name + "\n");
+        if (deviceName != null) {
+            writer.write("device=" + deviceName + "\n");
+        }
+        writer.write("# frequency  left dBFS  right dBFS at 0 dB HL\n");
+        for (int i = 0; i < frequencies.length; i++) {
+            writer.write(String.format(Locale.US, "%d %.2f %.2f%n",
+                    frequencies[i], leftReferenceDbFs[i], rightReferenceDbFs[i]));
+        }
+        writer.flush();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /** Product name this profile is for, or null if it is a fallback for any device. */
+    public String getDeviceName() {
+        return deviceName;
+    }
+
+    public boolean matchesDevice(String productName) {
+        return deviceName != null && productName != null && deviceName.equalsIgnoreCase(productName.trim());
+    }
+
+    public int[] getFrequencies() {
+        return frequencies.clone();
+    }
+
+    /** Level in dBFS of a 0 dB HL tone at {@code frequency} in {@code ear}. */
+    public double getReferenceDbFs(Ear ear, double frequency) {
+        double[] reference = ear == Ear.LEFT ? leftReferenceDbFs : rightReferenceDbFs;
+        int last = frequencies.length - 1;
+        if (frequency <= frequencies[0]) return reference[0];
+        if (frequency >= frequencies[last]) return reference[last];
+        int upper = 1;
+        while (frequencies[upper] < frequency) {
+            upper++;
+        }
+        double lowLog = Math.log(frequencies[upper - 1]);
+        double t = (Math.log(frequency) - lowLog) / (Math.log(frequencies[upper]) - lowLog);
+        return reference[upper - 1] + t * (reference[upper] - reference[upper - 1]);
+    }
+
+    /** Precomputes the lookup table that stimuli are levelled through. */
+    public GainTable createGainTable() {
+        return new GainTable(this);
+    }
+
+    @Override
+    public String toString() {
+        return name + (deviceName != null ? " (" + deviceName + ")" : "");
+    }
+}
@@ -0,0 +1,92 @@
+package com.commo.hearingtest.calibration;
+
+import com.commo.hearingtest.core.Ear;
+
+/**
+ * A {@link CalibrationProfile} sampled onto a fixed log-frequency grid, as linear gains.
+ *
+ * <p>Built once per profile load. Turning a level in dB HL into an amplitude is then a table
+ * lookup, one interpolation and one multiply, so stimuli can be specified in dB HL without
+ * evaluating the calibration curve per tone, or per sample for stimuli whose frequency moves.
+ */
+public final class GainTable {
+
+    /** Highest level played, leaving headroom below full scale. */
+    public static final double CEILING_DBFS = -6;
+    static final int POINTS_PER_OCTAVE = 24;
+    // The grid is anchored at 1 kHz so the octave and half-octave audiometric frequencies fall on
+    // table points exactly; it reaches down to about 20 Hz and up to about 20 kHz.
+    static final double ANCHOR_FREQUENCY = 1000;
+    static final int ANCHOR_INDEX = 136;
+    static final int SIZE = ANCHOR_INDEX + 104 + 1;
+
+    private static final double LOG2_ANCHOR = Math.log(ANCHOR_FREQUENCY) / Math.log(2);
+
+    private final CalibrationProfile profile;
+    // Indexed by Ear ordinal: amplitude (0..1 of full scale) of a 0 dB HL tone.
+    private final double[][] referenceGain = new double[2][];
+    private final double[][] referenceDbFs = new double[2][];
+
+    GainTable(CalibrationProfile profile) {
+        this.profile = profile;
+        for (Ear ear : Ear.values()) {
+            double[] gain = new double[SIZE];
+            double[] dbFs = new double[SIZE];
+            for (int i = 0; i < SIZE; i++) {
+                double frequency = ANCHOR_FREQUENCY * Math.pow(2, (double) (i - ANCHOR_INDEX) / POINTS_PER_OCTAVE);
+                dbFs[i] = profile.getReferenceDbFs(ear, frequency);
+                gain[i] = Math.pow(10, dbFs[i] / 20);
+            }
+            referenceGain[ear.ordinal()] = gain;
+            referenceDbFs[ear.ordinal()] = dbFs;
+        }
+    }
+
+    public CalibrationProfile getProfile() {
+        return profile;
+    }
+
+    /**
+     * Amplitude (0..1 of full scale) that plays {@code frequency} at {@code levelDbHl} in
+     * {@code ear}, clipped to full scale.
+     */
+    public float amplitudeFor(Ear ear, double frequency, double levelDbHl) {
+        double amplitude = gainAt(ear, frequency) * Math.pow(10, levelDbHl / 20);
+        return (float) Math.min(1.0, amplitude);
+    }
+
+    /** Amplitude of a 0 dB HL tone at {@code frequency}; scale by the level's linear gain. */
+    public double gainAt(Ear ear, double frequency) {
+        return interpolate(referenceGain[ear.ordinal()], frequency);
+    }
+
+    /** Level in dBFS of a 0 dB HL tone at {@code frequency}. */
+    public double getReferenceDbFs(Ear ear, double frequency) {
+        return interpolate(referenceDbFs[ear.ordinal()], frequency);
+    }
+
+    /** Highest level in dB HL that stays under {@link #CEILING_DBFS} at {@code frequency}. */
+    public double getMaxLevelDbHl(Ear ear, double frequency) {
+        return CEILING_DBFS - getReferenceDbFs(ear, frequency);
+    }
+
+    /** Highest level in dB HL that stays under the ceiling at every frequency, in both ears. */
+    public double getMaxLevelDbHl(int[] frequencies) {
+        double max = Double.POSITIVE_INFINITY;
+        for (int frequency : frequencies) {
+            for (Ear ear : Ear.values()) {
+                max = Math.min(max, getMaxLevelDbHl(ear, frequency));
+            }
+        }
+        return max;
+    }
+
+    private double interpolate(double[] table, double frequency) {
+        double position = (Math.log(frequency) / Math.log(2) - LOG2_ANCHOR) * POINTS_PER_OCTAVE + ANCHOR_INDEX;
+        if (position <= 0) return table[0];
+        if (position >= SIZE - 1) return table[SIZE - 1];
+        int index = (int) position;
+        double t = position - index;
+        return table[index] + t * (table[index + 1] - table[index]);
+    }
+}
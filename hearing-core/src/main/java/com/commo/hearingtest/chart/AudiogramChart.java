@@ -0,0 +1,150 @@
+package com.commo.hearingtest.chart;
+
+import com.commo.hearingtest.core.Audiogram;
+import com.commo.hearingtest.core.Ear;
+
+/**
+ * Maps an audiogram onto a plot area: frequency on a log (octave) axis left to right, level
+ * increasing downwards, so better hearing plots higher as on a clinical audiogram.
+ *
+ * <p>Geometry is written into caller-supplied {@code float} arrays in the {@code x0, y0, x1, y1}
+ * layout that {@code Canvas.drawLines} takes, so a view can build it once per data change and
+ * draw it every frame without allocating. None of the {@code append} methods allocate.
+ */
+public final class AudiogramChart {
+
+    /** Octave frequencies with a grid line and label. */
+    public static final int[] GRID_FREQUENCIES = {125, 250, 500, 1000, 2000, 4000, 8000};
+    public static final double GRID_STEP_DB = 10;
+
+    private final double minLevelDb;
+    private final double maxLevelDb;
+    private final double minLog2;
+    private final double octaves;
+    private float left;
+    private float top;
+    private float right;
+    private float bottom;
+
+    /** A chart covering {@code minLevelDb} (top) to {@code maxLevelDb} (bottom). */
+    public AudiogramChart(double minLevelDb, double maxLevelDb) {
+        if (!(maxLevelDb > minLevelDb)) {
+            throw new IllegalArgumentException("Empty level range");
+        }
+        this.minLevelDb = minLevelDb;
+        this.maxLevelDb = maxLevelDb;
+        this.minLog2 = log2(GRID_FREQUENCIES[0]);
+        this.octaves = log2(GRID_FREQUENCIES[GRID_FREQUENCIES.length - 1]) - minLog2;
+    }
+
+    public void setBounds(float left, float top, float right, float bottom) {
+        this.left = left;
+        this.top = top;
+        this.right = right;
+        this.bottom = bottom;
+    }
+
+    public double getMinLevelDb() {
+        return minLevelDb;
+    }
+
+    public double getMaxLevelDb() {
+        return maxLevelDb;
+    }
+
+    public float xForFrequency(double frequency) {
+        return (float) (left + (right - left) * (log2(frequency) - minLog2) / octaves);
+    }
+
+    /** Vertical position of {@code levelDb}, clamped to the plot area. */
+    public float yForLevel(double levelDb) {
+        double clamped = Math.max(minLevelDb, Math.min(maxLevelDb, levelDb));
+        return (float) (top + (bottom - top) * (clamped - minLevelDb) / (maxLevelDb - minLevelDb));
+    }
+
+    /** Levels with a horizontal grid line, multiples of {@link #GRID_STEP_DB} within the range. */
+    public int getGridLevelCount() {
+        return (int) (Math.floor(maxLevelDb / GRID_STEP_DB) - Math.ceil(minLevelDb / GRID_STEP_DB)) + 1;
+    }
+
+    public double getGridLevelDb(int index) {
+        return (Math.ceil(minLevelDb / GRID_STEP_DB) + index) * GRID_STEP_DB;
+    }
+
+    /** Floats {@link #appendGrid} writes. */
+    public int gridFloats() {
+        return 4 * (GRID_FREQUENCIES.length + getGridLevelCount());
+    }
+
+    /** Writes the grid lines at {@code offset} and returns the offset after them. */
+    public int appendGrid(float[] out, int offset) {
+        for (int frequency : GRID_FREQUENCIES) {
+            float x = xForFrequency(frequency);
+            offset = put(out, offset, x, top, x, bottom);
+        }
+        for (int i = 0; i < getGridLevelCount(); i++) {
+            float y = yForLevel(getGridLevelDb(i));
+            offset = put(out, offset, left, y, right, y);
+        }
+        return offset;
+    }
+
+    /** Most floats {@link #appendSegments} can write for {@code audiogram}. */
+    public static int segmentFloats(Audiogram audiogram) {
+        return 4 * Math.max(0, audiogram.getFrequencyCount() - 1);
+    }
+
+    /**
+     * Writes a line between each pair of neighbouring frequencies that both have a measured
+     * threshold in {@code ear}; untested frequencies and no-response points break the line.
+     * Returns the offset after the last segment.
+     */
+    public int appendSegments(Audiogram audiogram, Ear ear, float[] out, int offset) {
+        for (int i = 1; i < audiogram.getFrequencyCount(); i++) {
+            double from = audiogram.getThresholdDb(ear, i - 1);
+            double to = audiogram.getThresholdDb(ear, i);
+            if (!isMeasured(from) || !isMeasured(to)) continue;
+            offset = put(out, offset,
+                    xForFrequency(audiogram.getFrequency(i - 1)), yForLevel(from),
+                    xForFrequency(audiogram.getFrequency(i)), yForLevel(to));
+        }
+        return offset;
+    }
+
+    /** Most floats {@link #appendPoints} can write for {@code audiogram}. */
+    public static int pointFloats(Audiogram audiogram) {
+        return 2 * audiogram.getFrequencyCount();
+    }
+
+    /**
+     * Writes {@code x, y} for each threshold in {@code ear} that was measured or, if
+     * {@code noResponse}, for each frequency with no response (placed at the bottom of the chart).
+     * Returns the offset after the last point.
+     */
+    public int appendPoints(Audiogram audiogram, Ear ear, boolean noResponse, float[] out, int offset) {
+        for (int i = 0; i < audiogram.getFrequencyCount(); i++) {
+            double threshold = audiogram.getThresholdDb(ear, i);
+            boolean wanted = noResponse ? threshold == Audiogram.NO_RESPONSE : isMeasured(threshold);
+            if (!wanted) continue;
+            out[offset++] = xForFrequency(audiogram.getFrequency(i));
+            out[offset++] = yForLevel(threshold);
+        }
+        return offset;
+    }
+
+    private static boolean isMeasured(double thresholdDb) {
+        return !Double.isNaN(thresholdDb) && !Double.isInfinite(thresholdDb);
+    }
+
+    private static int put(float[] out, int offset, float x0, float y0, float x1, float y1) {
+        out[offset] = x0;
+        out[offset + 1] = y0;
+        out[offset + 2] = x1;
+        out[offset + 3] = y1;
+        return offset + 4;
+    }
+
+    private static double log2(double value) {
+        return Math.log(value) / Math.log(2);
+    }
+}
@@ -0,0 +1,69 @@
+package com.commo.hearingtest.core;
+
+import java.util.Arrays;
+
+/**
+ * Thresholds in dB per frequency and ear, frequencies ascending.
+ *
+ * <p>A threshold is {@link #NO_RESPONSE} if the listener never responded, even at the
+ * procedure's maximum level, and NaN if the frequency was not tested or gave no reliable result.
+ */
+public final class Audiogram {
+
+    public static final double NO_RESPONSE = Double.POSITIVE_INFINITY;
+
+    private final int[] frequencies;
+    private final double[] leftThresholdsDb;
+    private final double[] rightThresholdsDb;
+
+    public Audiogram(int[] frequencies, double[] leftThresholdsDb, double[] rightThresholdsDb) {
+        if (leftThresholdsDb.length != frequencies.length || rightThresholdsDb.length != frequencies.length) {
+            throw new IllegalArgumentException("Need one threshold per frequency and ear");
+        }
+        for (int i = 1; i < frequencies.length; i++) {
+            if (frequencies[i] <= frequencies[i - 1]) {
+                throw new IllegalArgumentException("Frequencies must be ascending");
+            }
+        }
+        this.frequencies = frequencies.clone();
+        this.leftThresholdsDb = leftThresholdsDb.clone();
+        this.rightThresholdsDb = rightThresholdsDb.clone();
+    }
+
+    public int[] getFrequencies() {
+        return frequencies.clone();
+    }
+
+    public int getFrequencyCount() {
+        return frequencies.length;
+    }
+
+    public int getFrequency(int index) {
+        return frequencies[index];
+    }
+
+    public double getThresholdDb(Ear ear, int index) {
+        return ear == Ear.LEFT ? leftThresholdsDb[index] : rightThresholdsDb[index];
+    }
+
+    /** Threshold at {@code frequency} in Hz, or NaN if it is not part of this audiogram. */
+    public double getThresholdAtFrequency(Ear ear, int frequency) {
+        int index = Arrays.binarySearch(frequencies, frequency);
+        return index < 0 ? Double.NaN : getThresholdDb(ear, index);
+    }
+
+    /** Threshold of the better ear, which is what a tone played to both ears is heard with. */
+    public double getBinauralThresholdDb(int index) {
+        double left = leftThresholdsDb[index];
+        double right = rightThresholdsDb[index];
+        if (Double.isNaN(left)) return right;
+        if (Double.isNaN(right)) return left;
+        return Math.min(left, right);
+    }
+
+    @Override
+    public String toString() {
+        return "Audiogram " + Arrays.toString(frequencies) + " L" + Arrays.toString(leftThresholdsDb)
+                + " R" + Arrays.toString(rightThresholdsDb);
+    }
+}
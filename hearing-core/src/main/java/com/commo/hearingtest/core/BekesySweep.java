@@ -0,0 +1,215 @@
+package com.commo.hearingtest.core;
+
+/**
+ * Békésy tracking: the level falls at a fixed rate while the listener holds the button and rises
+ * while they do not, as the frequency glides from {@code startHz} to {@code endHz} on a log scale
+ * (a fixed frequency if the two are equal). The threshold at a frequency is the mean of the
+ * midpoints between consecutive reversals near it.
+ *
+ * <p>Time is counted in audio frames and advanced by whoever renders the tone, so the level
+ * always matches what was actually played. {@link #advance} does not allocate; reversals and a
+ * coarse level trace go into arrays sized for the sweep up front. Not thread-safe: the render
+ * thread owns a running sweep, and results may be read once it has finished.
+ */
+public final class BekesySweep {
+
+    public static final double DEFAULT_START_HZ = 125;
+    public static final double DEFAULT_END_HZ = 8000;
+    /** Six octaves in three minutes per ear; both ears take about as long as the stepped test. */
+    public static final double DEFAULT_DURATION_SECONDS = 180;
+    public static final double DEFAULT_RATE_DB_PER_SECOND = 2.5;
+    /** Third-octave centers from 125 Hz to 8 kHz, where the sweep reports thresholds. */
+    public static final int[] THIRD_OCTAVE_FREQUENCIES = {
+            125, 160, 200, 250, 315, 400, 500, 630, 800, 1000, 1250,
+            1600, 2000, 2500, 3150, 4000, 5000, 6300, 8000};
+    /** Midpoints within this many octaves of a frequency count towards its threshold. */
+    public static final double WINDOW_HALF_WIDTH_OCTAVES = 1.0 / 6;
+
+    // Nobody presses and releases more than ten times a second; reversals past this are dropped.
+    static final int MAX_REVERSALS_PER_SECOND = 20;
+    static final int TRACE_POINTS_PER_SECOND = 4;
+
+    private final int sampleRate;
+    private final double startHz;
+    private final double logRatio;
+    private final long totalFrames;
+    private final double minLevelDb;
+    private final double maxLevelDb;
+    private final double dbPerFrame;
+
+    private final long[] reversalFrames;
+    private final double[] reversalLevels;
+    private int reversalCount;
+    private final long[] traceFrames;
+    private final double[] traceLevels;
+    private final boolean[] traceHeard;
+    private int traceCount;
+    private final long traceInterval;
+
+    private long frame;
+    private double levelDb;
+    private boolean heard;
+
+    public BekesySweep(int sampleRate, double startHz, double endHz, double durationSeconds,
+                       double startLevelDb, double minLevelDb, double maxLevelDb, double rateDbPerSecond) {
+        if (startHz <= 0 || endHz <= 0 || durationSeconds <= 0 || rateDbPerSecond <= 0) {
+            throw new IllegalArgumentException("Frequencies, duration and rate must be positive");
+        }
+        if (minLevelDb > maxLevelDb) {
+            throw new IllegalArgumentException("minLevelDb above maxLevelDb");
+        }
+        this.sampleRate = sampleRate;
+        this.startHz = startHz;
+        this.logRatio = Math.log(endHz / startHz);
+        this.totalFrames = Math.round(durationSeconds * sampleRate);
+        this.minLevelDb = minLevelDb;
+        this.maxLevelDb = maxLevelDb;
+        this.dbPerFrame = rateDbPerSecond / sampleRate;
+        this.levelDb = Math.max(minLevelDb, Math.min(maxLevelDb, startLevelDb));
+        int seconds = (int) Math.ceil(durationSeconds);
+        this.reversalFrames = new long[seconds * MAX_REVERSALS_PER_SECOND + 1];
+        this.reversalLevels = new double[reversalFrames.length];
+        this.traceFrames = new long[seconds * TRACE_POINTS_PER_SECOND + 2];
+        this.traceLevels = new double[traceFrames.length];
+        this.traceHeard = new boolean[traceFrames.length];
+        this.traceInterval = sampleRate / TRACE_POINTS_PER_SECOND;
+    }
+
+    /** Log sweep over {@link #DEFAULT_START_HZ}..{@link #DEFAULT_END_HZ} with the default pacing. */
+    public static BekesySweep chirp(int sampleRate, double startLevelDb, double minLevelDb, double maxLevelDb) {
+        return new BekesySweep(sampleRate, DEFAULT_START_HZ, DEFAULT_END_HZ, DEFAULT_DURATION_SECONDS,
+                startLevelDb, minLevelDb, maxLevelDb, DEFAULT_RATE_DB_PER_SECOND);
+    }
+
+    /** Tracks the threshold of one fixed tone for {@code durationSeconds}. */
+    public static BekesySweep trackedTone(int sampleRate, double frequency, double durationSeconds,
+                                          double startLevelDb, double minLevelDb, double maxLevelDb) {
+        return new BekesySweep(sampleRate, frequency, frequency, durationSeconds,
+                startLevelDb, minLevelDb, maxLevelDb, DEFAULT_RATE_DB_PER_SECOND);
+    }
+
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    public long getTotalFrames() {
+        return totalFrames;
+    }
+
+    public long getFramesElapsed() {
+        return frame;
+    }
+
+    public boolean isFinished() {
+        return frame >= totalFrames;
+    }
+
+    /** Fraction of the sweep done, 0..1. */
+    public double getProgress() {
+        return (double) frame / totalFrames;
+    }
+
+    /** Frequency being played now. */
+    public double getFrequency() {
+        return frequencyAt(frame);
+    }
+
+    public double frequencyAt(long atFrame) {
+        return startHz * Math.exp(logRatio * Math.min(atFrame, totalFrames) / totalFrames);
+    }
+
+    /** Ratio between the frequencies of consecutive frames; 1 for a tracked tone. */
+    public double getFrequencyRatioPerFrame() {
+        return Math.exp(logRatio / totalFrames);
+    }
+
+    /** Level being played now. */
+    public double getLevelDb() {
+        return levelDb;
+    }
+
+    /**
+     * Moves the sweep on by up to {@code frames}, with the button {@code heard} (held) or not
+     * throughout. A change of button state is a reversal at the current frequency and level.
+     *
+     * @return the frames actually advanced; fewer than asked once the sweep ends
+     */
+    public int advance(int frames, boolean heard) {
+        int n = (int) Math.min(frames, totalFrames - frame);
+        if (n <= 0) return 0;
+        if (heard != this.heard) {
+            if (reversalCount < reversalFrames.length) {
+                reversalFrames[reversalCount] = frame;
+                reversalLevels[reversalCount] = levelDb;
+                reversalCount++;
+            }
+            this.heard = heard;
+        }
+        if (frame % traceInterval + n >= traceInterval || frame == 0) {
+            if (traceCount < traceFrames.length) {
+                traceFrames[traceCount] = frame;
+                traceLevels[traceCount] = levelDb;
+                traceHeard[traceCount] = heard;
+                traceCount++;
+            }
+        }
+        double delta = (heard ? -dbPerFrame : dbPerFrame) * n;
+        levelDb = Math.max(minLevelDb, Math.min(maxLevelDb, levelDb + delta));
+        frame += n;
+        return n;
+    }
+
+    public int getReversalCount() {
+        return reversalCount;
+    }
+
+    public double getReversalFrequency(int index) {
+        return frequencyAt(reversalFrames[index]);
+    }
+
+    public double getReversalLevelDb(int index) {
+        return reversalLevels[index];
+    }
+
+    /**
+     * Threshold near {@code frequency}: the mean reversal midpoint within
+     * {@link #WINDOW_HALF_WIDTH_OCTAVES}. Positive infinity if the sweep passed the frequency at
+     * the top of its range without the button ever being held; NaN if it was not measured.
+     */
+    public double getThresholdDb(double frequency) {
+        double sum = 0;
+        int count = 0;
+        for (int i = 0; i + 1 < reversalCount; i++) {
+            long midFrame = (reversalFrames[i] + reversalFrames[i + 1]) / 2;
+            if (isNear(frequencyAt(midFrame), frequency)) {
+                sum += (reversalLevels[i] + reversalLevels[i + 1]) / 2;
+                count++;
+            }
+        }
+        if (count > 0) {
+            return sum / count;
+        }
+        boolean passed = false;
+        for (int i = 0; i < traceCount; i++) {
+            if (!isNear(frequencyAt(traceFrames[i]), frequency)) continue;
+            if (traceHeard[i] || traceLevels[i] < maxLevelDb) {
+                return Double.NaN;
+            }
+            passed = true;
+        }
+        return passed ? Double.POSITIVE_INFINITY : Double.NaN;
+    }
+
+    /** Thresholds at each of {@code frequencies}, as {@link #getThresholdDb} reports them. */
+    public double[] getThresholdsDb(int[] frequencies) {
+        double[] thresholds = new double[frequencies.length];
+        for (int i = 0; i < frequencies.length; i++) {
+            thresholds[i] = getThresholdDb(frequencies[i]);
+        }
+        return thresholds;
+    }
+
+    private static boolean isNear(double a, double b) {
+        return Math.abs(Math.log(a / b)) <= WINDOW_HALF_WIDTH_OCTAVES * Math.log(2) + 1e-9;
+    }
+}
@@ -0,0 +1,6 @@
+package com.commo.hearingtest.core;
+
+public enum Ear {
+    LEFT,
+    RIGHT
+}
@@ -0,0 +1,8 @@
+package com.commo.hearingtest.core;
+
+/** The three answers offered after each tone of the frequency test. */
+public enum FrequencyResponse {
+    CANNOT_HEAR,
+    HEAR_FAINTLY,
+    HEAR_CLEARLY
+}
@@ -0,0 +1,101 @@
+package com.commo.hearingtest.core;
+
+/**
+ * Sequencing and scoring of the frequency sensitivity test, free of any Android types.
+ *
+ * <p>Frequencies are presented from high to low, one response each. The first frequency heard
+ * at all becomes the lowest detected frequency, and the first heard clearly becomes the optimal
+ * frequency; both stay -1 if never reached.
+ */
+public final class FrequencyTest {
+
+    /** Default sweep, from the frequencies younger listeners lose first down to 125 Hz. */
+    public static final int[] DEFAULT_FREQUENCIES = {8000, 6000, 4000, 2000, 1000, 500, 250, 125};
+
+    private final int[] frequencies;
+    private boolean running;
+    private int index;
+    private int lowestHeardFrequency = -1;
+    private int optimalFrequency = -1;
+
+    public FrequencyTest() {
+        this(DEFAULT_FREQUENCIES);
+    }
+
+    public FrequencyTest(int[] frequencies) {
+        if (frequencies.length == 0) {
+            throw new IllegalArgumentException("No test frequencies");
+        }
+        this.frequencies = frequencies.clone();
+    }
+
+    /** Starts (or restarts) the sweep at the first frequency. */
+    public void start() {
+        running = true;
+        index = 0;
+        lowestHeardFrequency = -1;
+        optimalFrequency = -1;
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    /** True once every frequency has been answered. */
+    public boolean isFinished() {
+        return index >= frequencies.length;
+    }
+
+    /** Frequency to present now, in Hz, or -1 once finished. */
+    public int getCurrentFrequency() {
+        return isFinished() ? -1 : frequencies[index];
+    }
+
+    /** Zero-based position in the sweep; equals {@link #getFrequencyCount()} once finished. */
+    public int getCurrentIndex() {
+        return index;
+    }
+
+    public int getFrequencyCount() {
+        return frequencies.length;
+    }
+
+    /**
+     * Records the answer for the current frequency and moves to the next one. Ignored unless the
+     * test is running.
+     *
+     * @return true if the sweep has finished with this answer
+     */
+    public boolean respond(FrequencyResponse response) {
+        if (!running || isFinished()) return isFinished();
+
+        int frequency = frequencies[index];
+        switch (response) {
+            case CANNOT_HEAR:
+                break;
+            case HEAR_FAINTLY:
+                if (lowestHeardFrequency == -1) {
+                    lowestHeardFrequency = frequency;
+                }
+                break;
+            case HEAR_CLEARLY:
+                if (optimalFrequency == -1) {
+                    optimalFrequency = frequency;
+                }
+                if (lowestHeardFrequency == -1) {
+                    lowestHeardFrequency = frequency;
+                }
+                break;
+        }
+
+        index++;
+        if (isFinished()) {
+            running = false;
+        }
+        return isFinished();
+    }
+
+    public FrequencyTestResult getResult() {
+        return new FrequencyTestResult(optimalFrequency, lowestHeardFrequency);
+    }
+}
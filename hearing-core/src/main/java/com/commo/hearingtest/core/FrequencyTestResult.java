@@ -0,0 +1,98 @@
+package com.commo.hearingtest.core;
+
+/** Outcome of a {@link FrequencyTest}; frequencies are in Hz, or -1 if none was heard. */
+public final class FrequencyTestResult {
+
+    /** Age-based classification, from the lowest detected frequency. */
+    public enum Category {
+        YOUNG_NORMAL,
+        ADULT_AVERAGE,
+        HIGH_FREQUENCY_DECLINE,
+        CHECKUP_RECOMMENDED
+    }
+
+    /** How far above threshold a tone must be to be heard clearly rather than faintly. */
+    public static final double CLEAR_MARGIN_DB = 10;
+
+    private final int optimalFrequency;
+    private final int lowestHeardFrequency;
+
+    public FrequencyTestResult(int optimalFrequency, int lowestHeardFrequency) {
+        this.optimalFrequency = optimalFrequency;
+        this.lowestHeardFrequency = lowestHeardFrequency;
+    }
+
+    /**
+     * The result the fixed frequency walk would have produced at {@code presentationLevelDb}:
+     * frequencies are visited high to low and count as heard when the better ear's threshold is
+     * at or below the level, and as heard clearly when it is {@link #CLEAR_MARGIN_DB} below.
+     */
+    public static FrequencyTestResult fromAudiogram(Audiogram audiogram, double presentationLevelDb) {
+        int optimal = -1;
+        int lowestHeard = -1;
+        for (int i = audiogram.getFrequencyCount() - 1; i >= 0; i--) {
+            double threshold = audiogram.getBinauralThresholdDb(i);
+            if (Double.isNaN(threshold) || threshold > presentationLevelDb) continue;
+            if (lowestHeard == -1) {
+                lowestHeard = audiogram.getFrequency(i);
+            }
+            if (optimal == -1 && threshold <= presentationLevelDb - CLEAR_MARGIN_DB) {
+                optimal = audiogram.getFrequency(i);
+            }
+        }
+        return new FrequencyTestResult(optimal, lowestHeard);
+    }
+
+    public int getOptimalFrequency() {
+        return optimalFrequency;
+    }
+
+    public int getLowestHeardFrequency() {
+        return lowestHeardFrequency;
+    }
+
+    public Category getCategory() {
+        if (lowestHeardFrequency >= 4000) {
+            return Category.YOUNG_NORMAL;
+        } else if (lowestHeardFrequency >= 2000) {
+            return Category.ADULT_AVERAGE;
+        } else if (lowestHeardFrequency >= 1000) {
+            return Category.HIGH_FREQUENCY_DECLINE;
+        }
+        return Category.CHECKUP_RECOMMENDED;
+    }
+
+    /** The analysis text shown on the result screen. */
+    public String getAnalysis() {
+        StringBuilder analysis = new StringBuilder();
+
+        if (optimalFrequency != -1) {
+            analysis.append("최적 주파수: ").append(optimalFrequency).append("Hz\n");
+        } else {
+            analysis.append("최적 주파수: 감지되지 않음\n");
+        }
+
+        if (lowestHeardFrequency != -1) {
+            analysis.append("감지 가능한 최저 주파수: ").append(lowestHeardFrequency).append("Hz\n");
+        } else {
+            analysis.append("감지 가능한 주파수: 없음\n");
+        }
+
+        switch (getCategory()) {
+            case YOUNG_NORMAL:
+                analysis.append("\n분석: 젊은 연령대의 정상적인 청력 범위입니다.");
+                break;
+            case ADULT_AVERAGE:
+                analysis.append("\n분석: 성인 평균 수준의 청력입니다.");
+                break;
+            case HIGH_FREQUENCY_DECLINE:
+                analysis.append("\n분석: 고주파수 청력이 약간 감소되었을 수 있습니다.");
+                break;
+            default:
+                analysis.append("\n분석: 전반적인 청력 검진을 권장합니다.");
+                break;
+        }
+
+        return analysis.toString();
+    }
+}
@@ -0,0 +1,128 @@
+package com.commo.hearingtest.core;
+
+/**
+ * Modified Hughson-Westlake ascending method ("down 10, up 5").
+ *
+ * <p>Each response lowers the level by {@code stepDownDb} and each miss raises it by
+ * {@code stepUpDb}. A presentation right after a miss is ascending. The threshold is the first
+ * level heard on {@code requiredHits} ascending presentations. The search also ends when the
+ * maximum level is missed {@code requiredHits} times (no response), when the minimum level is
+ * heard that often (threshold at the floor), or after {@code maxPresentations} with no reliable
+ * threshold.
+ *
+ * <p>Levels are kept on a grid of {@code stepUpDb} above the minimum, so hits are counted per
+ * grid slot without allocating.
+ */
+public final class HughsonWestlake implements ThresholdProcedure {
+
+    public static final double DEFAULT_STEP_DOWN_DB = 10;
+    public static final double DEFAULT_STEP_UP_DB = 5;
+    public static final int DEFAULT_REQUIRED_HITS = 2;
+    public static final int DEFAULT_MAX_PRESENTATIONS = 30;
+
+    private final double minLevelDb;
+    private final double stepUpDb;
+    private final int stepDownSlots;
+    private final int requiredHits;
+    private final int maxPresentations;
+    private final int[] ascendingHits;
+    private final int topSlot;
+
+    private int slot;
+    private boolean ascending;
+    private int presentations;
+    private int missesAtMax;
+    private int hitsAtMin;
+    private boolean finished;
+    private double thresholdDb = Double.NaN;
+
+    public HughsonWestlake(double startLevelDb, double minLevelDb, double maxLevelDb) {
+        this(startLevelDb, minLevelDb, maxLevelDb, DEFAULT_STEP_DOWN_DB, DEFAULT_STEP_UP_DB,
+                DEFAULT_REQUIRED_HITS, DEFAULT_MAX_PRESENTATIONS);
+    }
+
+    public HughsonWestlake(double startLevelDb, double minLevelDb, double maxLevelDb,
+                           double stepDownDb, double stepUpDb, int requiredHits, int maxPresentations) {
+        if (maxLevelDb <= minLevelDb || stepUpDb <= 0 || stepDownDb < stepUpDb
+                || requiredHits <= 0 || maxPresentations <= 0) {
+            throw new IllegalArgumentException("Invalid Hughson-Westlake rules");
+        }
+        this.minLevelDb = minLevelDb;
+        this.stepUpDb = stepUpDb;
+        this.stepDownSlots = (int) Math.round(stepDownDb / stepUpDb);
+        this.requiredHits = requiredHits;
+        this.maxPresentations = maxPresentations;
+        this.topSlot = (int) Math.floor((maxLevelDb - minLevelDb) / stepUpDb);
+        this.ascendingHits = new int[topSlot + 1];
+        this.slot = clamp((int) Math.round((startLevelDb - minLevelDb) / stepUpDb));
+    }
+
+    /** Factory using the default rules between {@code minLevelDb} and {@code maxLevelDb}. */
+    public static ThresholdProcedure.Factory factory(final double minLevelDb, final double maxLevelDb) {
+        return new ThresholdProcedure.Factory() {
+            @Override
+            public ThresholdProcedure create(double startLevelDb) {
+                return new HughsonWestlake(startLevelDb, minLevelDb, maxLevelDb);
+            }
+        };
+    }
+
+    @Override
+    public double getNextLevelDb() {
+        return minLevelDb + slot * stepUpDb;
+    }
+
+    @Override
+    public void record(boolean heard) {
+        if (finished) return;
+        presentations++;
+
+        if (heard) {
+            if (ascending && ++ascendingHits[slot] >= requiredHits) {
+                finish(getNextLevelDb());
+                return;
+            }
+            if (slot == 0 && ++hitsAtMin >= requiredHits) {
+                finish(minLevelDb);
+                return;
+            }
+            slot = clamp(slot - stepDownSlots);
+            ascending = false;
+        } else {
+            if (slot == topSlot && ++missesAtMax >= requiredHits) {
+                finish(Audiogram.NO_RESPONSE);
+                return;
+            }
+            slot = clamp(slot + 1);
+            ascending = true;
+        }
+
+        if (presentations >= maxPresentations) {
+            finish(Double.NaN);
+        }
+    }
+
+    @Override
+    public boolean isFinished() {
+        return finished;
+    }
+
+    @Override
+    public double getThresholdDb() {
+        return thresholdDb;
+    }
+
+    @Override
+    public int getPresentationCount() {
+        return presentations;
+    }
+
+    private void finish(double threshold) {
+        finished = true;
+        thresholdDb = threshold;
+    }
+
+    private int clamp(int s) {
+        return Math.max(0, Math.min(topSlot, s));
+    }
+}
@@ -0,0 +1,134 @@
+package com.commo.hearingtest.core;
+
+import java.util.Random;
+
+/**
+ * Sequencing of the lateralization test, free of any Android types: tone bursts are pushed to a
+ * randomly chosen side by an interaural time or level difference, the listener names the side,
+ * and a {@link TransformedStaircase} shrinks the difference until it finds the just-noticeable
+ * difference (JND).
+ *
+ * <p>ITDs are tested at {@link #ITD_FREQUENCY}, low enough that the ongoing phase carries the
+ * difference unambiguously; ILDs at {@link #ILD_FREQUENCY}, where the head shadow makes level the
+ * natural cue.
+ */
+public final class LateralizationTest {
+
+    public enum Cue {
+        /** Interaural time difference, in microseconds. */
+        ITD,
+        /** Interaural level difference, in dB. */
+        ILD
+    }
+
+    public static final int ITD_FREQUENCY = 500;
+    public static final int ILD_FREQUENCY = 4000;
+
+    // Start well above typical JNDs (about 10-20 us and 1 dB) but inside what a head produces.
+    static final double ITD_START_MICROS = 400;
+    static final double ITD_MIN_MICROS = 1;
+    static final double ITD_MAX_MICROS = 800;
+    static final double ILD_START_DB = 8;
+    static final double ILD_MIN_DB = 0.05;
+    static final double ILD_MAX_DB = 16;
+    static final double INITIAL_FACTOR = 2;
+    static final double FINAL_FACTOR = Math.pow(2, 1 / 3.0);
+    public static final int REVERSALS = 10;
+    static final int DISCARDED_REVERSALS = 4;
+    public static final int MAX_TRIALS = 80;
+
+    private final Cue cue;
+    private final Random random;
+    private TransformedStaircase staircase;
+    private boolean running;
+    private boolean currentSideLeft;
+
+    public LateralizationTest(Cue cue) {
+        this(cue, new Random());
+    }
+
+    public LateralizationTest(Cue cue, Random random) {
+        this.cue = cue;
+        this.random = random;
+    }
+
+    public static int frequencyFor(Cue cue) {
+        return cue == Cue.ITD ? ITD_FREQUENCY : ILD_FREQUENCY;
+    }
+
+    /** Starts (or restarts) the test and draws the side of the first trial. */
+    public void start() {
+        staircase = cue == Cue.ITD
+                ? new TransformedStaircase(ITD_START_MICROS, ITD_MIN_MICROS, ITD_MAX_MICROS,
+                        INITIAL_FACTOR, FINAL_FACTOR, REVERSALS, DISCARDED_REVERSALS, MAX_TRIALS)
+                : new TransformedStaircase(ILD_START_DB, ILD_MIN_DB, ILD_MAX_DB,
+                        INITIAL_FACTOR, FINAL_FACTOR, REVERSALS, DISCARDED_REVERSALS, MAX_TRIALS);
+        running = true;
+        currentSideLeft = random.nextBoolean();
+    }
+
+    public Cue getCue() {
+        return cue;
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    public boolean isFinished() {
+        return staircase != null && !running;
+    }
+
+    /** One-based number of the current trial. */
+    public int getCurrentTrialNumber() {
+        return staircase == null ? 0 : staircase.getTrialCount() + 1;
+    }
+
+    public boolean isCurrentSideLeft() {
+        return currentSideLeft;
+    }
+
+    /** Size of the current trial's difference, in microseconds or dB. */
+    public double getCurrentDifference() {
+        return staircase.getValue();
+    }
+
+    /** The current difference signed towards its side: positive means the right ear leads or is louder. */
+    public double getSignedDifference() {
+        return currentSideLeft ? -staircase.getValue() : staircase.getValue();
+    }
+
+    /**
+     * Scores the answer for the current trial and draws the next one. Ignored unless the test is
+     * running.
+     *
+     * @return true if the test is now finished
+     */
+    public boolean answer(boolean selectedLeft) {
+        if (!running) return isFinished();
+        staircase.record(selectedLeft == currentSideLeft);
+        if (staircase.isFinished()) {
+            running = false;
+        } else {
+            currentSideLeft = random.nextBoolean();
+        }
+        return isFinished();
+    }
+
+    /** The JND in microseconds or dB; NaN if the track never settled. */
+    public double getJnd() {
+        return staircase == null ? Double.NaN : staircase.getThreshold();
+    }
+
+    public int getTrialCount() {
+        return staircase == null ? 0 : staircase.getTrialCount();
+    }
+
+    public int getCorrectAnswers() {
+        return staircase == null ? 0 : staircase.getCorrectAnswers();
+    }
+
+    public int getReversalCount() {
+        return staircase == null ? 0 : staircase.getReversalCount();
+    }
+}
@@ -0,0 +1,97 @@
+package com.commo.hearingtest.core;
+
+import java.util.Random;
+
+/**
+ * Sequencing and scoring of the left/right test, free of any Android types.
+ *
+ * <p>Each trial presents a tone to a randomly chosen ear and the listener names the side.
+ */
+public final class LeftRightTest {
+
+    public static final int DEFAULT_TRIALS = 5;
+    /** Frequency of the test tone, in Hz. */
+    public static final int TONE_FREQUENCY = 1000;
+
+    private final int totalTests;
+    private final Random random;
+    private boolean running;
+    private int currentTestNumber;
+    private int correctAnswers;
+    private boolean currentSoundIsLeft;
+
+    public LeftRightTest() {
+        this(DEFAULT_TRIALS, new Random());
+    }
+
+    public LeftRightTest(int totalTests, Random random) {
+        if (totalTests <= 0) {
+            throw new IllegalArgumentException("totalTests must be positive");
+        }
+        this.totalTests = totalTests;
+        this.random = random;
+    }
+
+    /** Starts (or restarts) the test and draws the side of the first trial. */
+    public void start() {
+        running = true;
+        currentTestNumber = 0;
+        correctAnswers = 0;
+        nextTrial();
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    public boolean isFinished() {
+        return currentTestNumber >= totalTests && !running;
+    }
+
+    /** One-based number of the current trial. */
+    public int getCurrentTestNumber() {
+        return currentTestNumber;
+    }
+
+    public int getTotalTests() {
+        return totalTests;
+    }
+
+    public int getCorrectAnswers() {
+        return correctAnswers;
+    }
+
+    /** Side of the tone for the current trial. */
+    public boolean isCurrentSoundLeft() {
+        return currentSoundIsLeft;
+    }
+
+    /**
+     * Scores the answer for the current trial and draws the next one. Ignored unless the test
+     * is running.
+     *
+     * @return true if this was the last trial
+     */
+    public boolean answer(boolean selectedLeft) {
+        if (!running) return isFinished();
+
+        if (selectedLeft == currentSoundIsLeft) {
+            correctAnswers++;
+        }
+        nextTrial();
+        return isFinished();
+    }
+
+    public LeftRightTestResult getResult() {
+        return new LeftRightTestResult(correctAnswers, totalTests);
+    }
+
+    private void nextTrial() {
+        if (currentTestNumber < totalTests) {
+            currentTestNumber++;
+            currentSoundIsLeft = random.nextBoolean();
+        } else {
+            running = false;
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.commo.hearingtest.core;
+
+/** Outcome of a {@link LeftRightTest}. */
+public final class LeftRightTestResult {
+
+    /** Classification by accuracy: 80% and up, 60% and up, below 60%. */
+    public enum Category {
+        GOOD,
+        AVERAGE,
+        POOR
+    }
+
+    private final int correctAnswers;
+    private final int totalTests;
+
+    public LeftRightTestResult(int correctAnswers, int totalTests) {
+        this.correctAnswers = correctAnswers;
+        this.totalTests = totalTests;
+    }
+
+    public int getCorrectAnswers() {
+        return correctAnswers;
+    }
+
+    public int getTotalTests() {
+        return totalTests;
+    }
+
+    /** Percentage of correct answers, 0 to 100. */
+    public double getAccuracy() {
+        return totalTests == 0 ? 0 : (double) correctAnswers / totalTests * 100;
+    }
+
+    public Category getCategory() {
+        return categoryFor(getAccuracy());
+    }
+
+    /** The analysis text shown on the result screen. */
+    public String getAnalysis() {
+        return analysisFor(getAccuracy());
+    }
+
+    public static Category categoryFor(double accuracy) {
+        if (accuracy >= 80) {
+            return Category.GOOD;
+        } else if (accuracy >= 60) {
+            return Category.AVERAGE;
+        }
+        return Category.POOR;
+    }
+
+    /** Analysis text for an accuracy percentage. */
+    public static String analysisFor(double accuracy) {
+        switch (categoryFor(accuracy)) {
+            case GOOD:
+                return "우수한 좌우 청력 분별능력을 보여줍니다.\n좌우 귀의 청력이 균형적으로 잘 작동하고 있습니다.";
+            case AVERAGE:
+                return "보통 수준의 좌우 청력 분별능력입니다.\n좀 더 집중해서 다시 테스트해보시거나\n헤드폰/이어폰 상태를 확인해보세요.";
+            default:
+                return "좌우 청력 분별에 어려움이 있을 수 있습니다.\n조용한 환경에서 다시 테스트하거나\n청력 전문의 상담을 권장합니다.";
+        }
+    }
+}
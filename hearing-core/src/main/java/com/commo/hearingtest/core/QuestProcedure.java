@@ -0,0 +1,162 @@
+package com.commo.hearingtest.core;
+
+/**
+ * Bayesian threshold search in the style of QUEST (Watson and Pelli).
+ *
+ * <p>Keeps a posterior over candidate thresholds on a grid from the minimum to the maximum
+ * level, starting from a Gaussian prior around the start level. Each presentation is placed at
+ * the posterior mean, snapped to the grid, and each response multiplies the posterior by the
+ * likelihood of a yes/no psychometric function
+ * {@code guess + (1 - guess - lapse) / (1 + exp(-(level - threshold) / spread))}.
+ *
+ * <p>The search stops once the posterior standard deviation falls to {@code stopSdDb} (after at
+ * least {@code minPresentations}) or after {@code maxPresentations}; the threshold is the
+ * posterior mean. If the listener never responded and the mean ended up within two spreads of
+ * the maximum level, the result is {@link Audiogram#NO_RESPONSE}.
+ */
+public final class QuestProcedure implements ThresholdProcedure {
+
+    public static final double DEFAULT_PRIOR_SD_DB = 15;
+    public static final double DEFAULT_GRID_STEP_DB = 1;
+    public static final double DEFAULT_SPREAD_DB = 2;
+    public static final double DEFAULT_GUESS_RATE = 0.02;
+    public static final double DEFAULT_LAPSE_RATE = 0.02;
+    public static final double DEFAULT_STOP_SD_DB = 2.5;
+    public static final int DEFAULT_MIN_PRESENTATIONS = 4;
+    public static final int DEFAULT_MAX_PRESENTATIONS = 20;
+
+    private final double minLevelDb;
+    private final double maxLevelDb;
+    private final double gridStepDb;
+    private final double spreadDb;
+    private final double guessRate;
+    private final double lapseRate;
+    private final double stopSdDb;
+    private final int minPresentations;
+    private final int maxPresentations;
+    /** Log posterior per grid threshold, shifted so the maximum is 0. */
+    private final double[] logPosterior;
+
+    private double mean;
+    private double sd;
+    private int presentations;
+    private int hits;
+    private boolean finished;
+    private double thresholdDb = Double.NaN;
+
+    public QuestProcedure(double startLevelDb, double minLevelDb, double maxLevelDb) {
+        this(startLevelDb, DEFAULT_PRIOR_SD_DB, minLevelDb, maxLevelDb, DEFAULT_GRID_STEP_DB,
+                DEFAULT_SPREAD_DB, DEFAULT_GUESS_RATE, DEFAULT_LAPSE_RATE, DEFAULT_STOP_SD_DB,
+                DEFAULT_MIN_PRESENTATIONS, DEFAULT_MAX_PRESENTATIONS);
+    }
+
+    public QuestProcedure(double priorMeanDb, double priorSdDb, double minLevelDb, double maxLevelDb,
+                          double gridStepDb, double spreadDb, double guessRate, double lapseRate,
+                          double stopSdDb, int minPresentations, int maxPresentations) {
+        if (maxLevelDb <= minLevelDb || gridStepDb <= 0 || priorSdDb <= 0 || spreadDb <= 0
+                || guessRate < 0 || lapseRate < 0 || guessRate + lapseRate >= 1
+                || maxPresentations < minPresentations || maxPresentations <= 0) {
+            throw new IllegalArgumentException("Invalid QUEST settings");
+        }
+        this.minLevelDb = minLevelDb;
+        this.maxLevelDb = maxLevelDb;
+        this.gridStepDb = gridStepDb;
+        this.spreadDb = spreadDb;
+        this.guessRate = guessRate;
+        this.lapseRate = lapseRate;
+        this.stopSdDb = stopSdDb;
+        this.minPresentations = minPresentations;
+        this.maxPresentations = maxPresentations;
+        this.logPosterior = new double[(int) Math.floor((maxLevelDb - minLevelDb) / gridStepDb) + 1];
+        for (int i = 0; i < logPosterior.length; i++) {
+            double z = (levelAt(i) - priorMeanDb) / priorSdDb;
+            logPosterior[i] = -0.5 * z * z;
+        }
+        updateMoments();
+    }
+
+    /** Factory using the default settings between {@code minLevelDb} and {@code maxLevelDb}. */
+    public static ThresholdProcedure.Factory factory(final double minLevelDb, final double maxLevelDb) {
+        return new ThresholdProcedure.Factory() {
+            @Override
+            public ThresholdProcedure create(double startLevelDb) {
+                return new QuestProcedure(startLevelDb, minLevelDb, maxLevelDb);
+            }
+        };
+    }
+
+    @Override
+    public double getNextLevelDb() {
+        return levelAt(indexOf(mean));
+    }
+
+    @Override
+    public void record(boolean heard) {
+        if (finished) return;
+        double level = getNextLevelDb();
+        presentations++;
+        if (heard) hits++;
+
+        double max = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < logPosterior.length; i++) {
+            double p = guessRate + (1 - guessRate - lapseRate)
+                    / (1 + Math.exp(-(level - levelAt(i)) / spreadDb));
+            logPosterior[i] += Math.log(heard ? p : 1 - p);
+            max = Math.max(max, logPosterior[i]);
+        }
+        for (int i = 0; i < logPosterior.length; i++) {
+            logPosterior[i] -= max;
+        }
+        updateMoments();
+
+        if ((presentations >= minPresentations && sd <= stopSdDb) || presentations >= maxPresentations) {
+            finished = true;
+            boolean atCeiling = mean >= maxLevelDb - 2 * spreadDb;
+            thresholdDb = hits == 0 && atCeiling ? Audiogram.NO_RESPONSE : mean;
+        }
+    }
+
+    @Override
+    public boolean isFinished() {
+        return finished;
+    }
+
+    @Override
+    public double getThresholdDb() {
+        return thresholdDb;
+    }
+
+    @Override
+    public int getPresentationCount() {
+        return presentations;
+    }
+
+    /** Current posterior standard deviation of the threshold, in dB. */
+    public double getPosteriorSdDb() {
+        return sd;
+    }
+
+    private void updateMoments() {
+        double total = 0;
+        double sum = 0;
+        double sumSquares = 0;
+        for (int i = 0; i < logPosterior.length; i++) {
+            double w = Math.exp(logPosterior[i]);
+            double level = levelAt(i);
+            total += w;
+            sum += w * level;
+            sumSquares += w * level * level;
+        }
+        mean = sum / total;
+        sd = Math.sqrt(Math.max(0, sumSquares / total - mean * mean));
+    }
+
+    private double levelAt(int index) {
+        return minLevelDb + index * gridStepDb;
+    }
+
+    private int indexOf(double level) {
+        int index = (int) Math.round((level - minLevelDb) / gridStepDb);
+        return Math.max(0, Math.min(logPosterior.length - 1, index));
+    }
+}
@@ -0,0 +1,117 @@
+package com.commo.hearingtest.core;
+
+import java.util.Arrays;
+
+/**
+ * Reaction time of each trial of a test, in milliseconds from the acoustic onset of the tone to
+ * the listener's touch, in trial order. A trial without a tone to time against (the answer came
+ * before any tone reached the output) is NaN.
+ *
+ * <p>Each time also records whether the onset came from the output's presentation timestamps,
+ * which are accurate to a few milliseconds, or was estimated from the buffer size. Times below
+ * {@link #ANTICIPATION_MS}, including negative ones, are faster than anyone can react to a tone
+ * and suggest guessing.
+ */
+public final class ReactionTimes {
+
+    /** Reactions faster than this are anticipations rather than responses to the tone. */
+    public static final double ANTICIPATION_MS = 100;
+
+    private float[] latencyMs;
+    private boolean[] timestamped;
+    private int count;
+
+    public ReactionTimes() {
+        this(new float[16], new boolean[16], 0);
+    }
+
+    /** Times read back from storage; the arrays are not copied. */
+    public ReactionTimes(float[] latencyMs, boolean[] timestamped) {
+        this(latencyMs, timestamped, latencyMs.length);
+        if (timestamped.length != latencyMs.length) {
+            throw new IllegalArgumentException("One flag per time required");
+        }
+    }
+
+    private ReactionTimes(float[] latencyMs, boolean[] timestamped, int count) {
+        this.latencyMs = latencyMs;
+        this.timestamped = timestamped;
+        this.count = count;
+    }
+
+    /** Appends a trial; {@code latencyMs} is NaN if it could not be timed. */
+    public void add(double latencyMs, boolean timestamped) {
+        if (count == this.latencyMs.length) {
+            int capacity = Math.max(16, count * 2);
+            this.latencyMs = Arrays.copyOf(this.latencyMs, capacity);
+            this.timestamped = Arrays.copyOf(this.timestamped, capacity);
+        }
+        this.latencyMs[count] = (float) latencyMs;
+        this.timestamped[count] = timestamped && !Double.isNaN(latencyMs);
+        count++;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public float getLatencyMs(int trial) {
+        checkTrial(trial);
+        return latencyMs[trial];
+    }
+
+    /** Whether the trial's onset came from presentation timestamps rather than an estimate. */
+    public boolean isTimestamped(int trial) {
+        checkTrial(trial);
+        return timestamped[trial];
+    }
+
+    /** Trials that were timed at all. */
+    public int getMeasuredCount() {
+        int measured = 0;
+        for (int i = 0; i < count; i++) {
+            if (!Float.isNaN(latencyMs[i])) measured++;
+        }
+        return measured;
+    }
+
+    public int getTimestampedCount() {
+        int timed = 0;
+        for (int i = 0; i < count; i++) {
+            if (timestamped[i]) timed++;
+        }
+        return timed;
+    }
+
+    /** Timed trials answered faster than {@link #ANTICIPATION_MS}. */
+    public int getAnticipationCount() {
+        int anticipations = 0;
+        for (int i = 0; i < count; i++) {
+            if (latencyMs[i] < ANTICIPATION_MS) anticipations++;
+        }
+        return anticipations;
+    }
+
+    /** Median of the timed trials, or NaN if none was timed. */
+    public double getMedianMs() {
+        float[] measured = new float[count];
+        int n = 0;
+        for (int i = 0; i < count; i++) {
+            if (!Float.isNaN(latencyMs[i])) measured[n++] = latencyMs[i];
+        }
+        if (n == 0) return Double.NaN;
+        Arrays.sort(measured, 0, n);
+        return n % 2 == 1 ? measured[n / 2] : (measured[n / 2 - 1] + measured[n / 2]) / 2.0;
+    }
+
+    private void checkTrial(int trial) {
+        if (trial < 0 || trial >= count) {
+            throw new IndexOutOfBoundsException("Trial " + trial + " of " + count);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return count + " trials, median " + getMedianMs() + " ms, " + getAnticipationCount() + " anticipations";
+    }
+}
@@ -0,0 +1,32 @@
+package com.commo.hearingtest.core;
+
+/**
+ * Adaptive search for the level at which one tone (one frequency, one ear) is just heard.
+ *
+ * <p>The caller presents a tone at {@link #getNextLevelDb()}, reports whether the listener heard
+ * it with {@link #record(boolean)}, and repeats until {@link #isFinished()}. Levels are in dB on
+ * whatever scale the caller uses consistently.
+ */
+public interface ThresholdProcedure {
+
+    /** Creates a procedure for the next tone, starting from a level expected to be audible. */
+    interface Factory {
+        ThresholdProcedure create(double startLevelDb);
+    }
+
+    /** Level of the next presentation. Undefined once finished. */
+    double getNextLevelDb();
+
+    /** Records the response to the presentation at {@link #getNextLevelDb()}. */
+    void record(boolean heard);
+
+    boolean isFinished();
+
+    /**
+     * Threshold in dB once finished: {@link Audiogram#NO_RESPONSE} if the listener never heard
+     * the maximum level, NaN if the procedure gave up without a reliable estimate.
+     */
+    double getThresholdDb();
+
+    int getPresentationCount();
+}
@@ -0,0 +1,139 @@
+package com.commo.hearingtest.core;
+
+import java.util.Arrays;
+
+/**
+ * Runs a {@link ThresholdProcedure} for every frequency of every ear and collects an
+ * {@link Audiogram}.
+ *
+ * <p>Ears are tested one after the other, and within an ear the frequencies in the given order.
+ * Each new procedure starts {@link #START_MARGIN_DB} above the last threshold measured in the
+ * same ear, which is usually audible but close. That saves the long descent from the initial
+ * start level for every frequency after the first.
+ */
+public final class ThresholdSearch {
+
+    /** Clinical order: 1 kHz first, then up, then down. */
+    public static final int[] DEFAULT_FREQUENCIES = {1000, 2000, 4000, 6000, 8000, 500, 250, 125};
+    public static final Ear[] DEFAULT_EARS = {Ear.LEFT, Ear.RIGHT};
+    public static final double START_MARGIN_DB = 10;
+
+    private final int[] frequencies;
+    private final Ear[] ears;
+    private final double startLevelDb;
+    private final ThresholdProcedure.Factory factory;
+    private final int[] sortedFrequencies;
+    private final double[] leftThresholds;
+    private final double[] rightThresholds;
+
+    private boolean running;
+    private int step;
+    private int presentations;
+    private double lastThresholdDb;
+    private ThresholdProcedure procedure;
+
+    public ThresholdSearch(double startLevelDb, ThresholdProcedure.Factory factory) {
+        this(DEFAULT_FREQUENCIES, DEFAULT_EARS, startLevelDb, factory);
+    }
+
+    public ThresholdSearch(int[] frequencies, Ear[] ears, double startLevelDb,
+                           ThresholdProcedure.Factory factory) {
+        if (frequencies.length == 0 || ears.length == 0) {
+            throw new IllegalArgumentException("Nothing to test");
+        }
+        this.frequencies = frequencies.clone();
+        this.ears = ears.clone();
+        this.startLevelDb = startLevelDb;
+        this.factory = factory;
+        this.sortedFrequencies = frequencies.clone();
+        Arrays.sort(sortedFrequencies);
+        this.leftThresholds = new double[frequencies.length];
+        this.rightThresholds = new double[frequencies.length];
+    }
+
+    /** Starts (or restarts) with the first frequency of the first ear. */
+    public void start() {
+        Arrays.fill(leftThresholds, Double.NaN);
+        Arrays.fill(rightThresholds, Double.NaN);
+        running = true;
+        step = 0;
+        presentations = 0;
+        beginStep();
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    public boolean isFinished() {
+        return step >= getStepCount();
+    }
+
+    /** Zero-based index of the current frequency/ear pair. */
+    public int getStepIndex() {
+        return step;
+    }
+
+    public int getStepCount() {
+        return frequencies.length * ears.length;
+    }
+
+    public int getCurrentFrequency() {
+        return isFinished() ? -1 : frequencies[step % frequencies.length];
+    }
+
+    public Ear getCurrentEar() {
+        return isFinished() ? null : ears[step / frequencies.length];
+    }
+
+    /** Level at which to present the current tone. */
+    public double getCurrentLevelDb() {
+        return procedure.getNextLevelDb();
+    }
+
+    /** Presentations so far over the whole search. */
+    public int getPresentationCount() {
+        return presentations;
+    }
+
+    /**
+     * Records the response to the current tone, moving to the next frequency or ear once its
+     * threshold is known. Ignored unless the search is running.
+     *
+     * @return true if the whole search has finished with this response
+     */
+    public boolean record(boolean heard) {
+        if (!running) return isFinished();
+
+        procedure.record(heard);
+        presentations++;
+        if (procedure.isFinished()) {
+            double threshold = procedure.getThresholdDb();
+            int index = Arrays.binarySearch(sortedFrequencies, getCurrentFrequency());
+            (getCurrentEar() == Ear.LEFT ? leftThresholds : rightThresholds)[index] = threshold;
+            if (!Double.isNaN(threshold) && !Double.isInfinite(threshold)) {
+                lastThresholdDb = threshold;
+            }
+            step++;
+            if (isFinished()) {
+                running = false;
+            } else {
+                beginStep();
+            }
+        }
+        return isFinished();
+    }
+
+    public Audiogram getAudiogram() {
+        return new Audiogram(sortedFrequencies, leftThresholds, rightThresholds);
+    }
+
+    private void beginStep() {
+        boolean firstOfEar = step % frequencies.length == 0;
+        double start = firstOfEar ? startLevelDb : lastThresholdDb + START_MARGIN_DB;
+        if (firstOfEar) {
+            lastThresholdDb = startLevelDb - START_MARGIN_DB;
+        }
+        procedure = factory.create(start);
+    }
+}
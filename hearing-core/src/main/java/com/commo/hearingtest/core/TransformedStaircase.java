@@ -0,0 +1,107 @@
+package com.commo.hearingtest.core;
+
+/**
+ * Two-down one-up adaptive staircase on a ratio scale (Levitt 1971): two correct answers in a
+ * row make the next trial harder, one wrong answer makes it easier, so the track settles where
+ * 70.7% of answers are correct. The value is multiplied or divided by a large factor until the
+ * second reversal, to get near the threshold quickly, and by a small one after that.
+ *
+ * <p>The threshold is the geometric mean of the values at the reversals after the first
+ * {@code discardedReversals}. Values stay within {@code min..max}.
+ */
+public final class TransformedStaircase {
+
+    private final double min;
+    private final double max;
+    private final double initialFactor;
+    private final double finalFactor;
+    private final int reversalsToFinish;
+    private final int discardedReversals;
+    private final int maxTrials;
+
+    private double value;
+    private int correctInARow;
+    /** +1 after a step up (easier), -1 after a step down, 0 before any step. */
+    private int lastDirection;
+    private int reversals;
+    private double logReversalSum;
+    private int trials;
+    private int correctAnswers;
+
+    public TransformedStaircase(double start, double min, double max, double initialFactor, double finalFactor,
+                                int reversalsToFinish, int discardedReversals, int maxTrials) {
+        if (min <= 0 || min > max || start < min || start > max) {
+            throw new IllegalArgumentException("Need 0 < min <= start <= max");
+        }
+        if (initialFactor <= 1 || finalFactor <= 1) {
+            throw new IllegalArgumentException("Step factors must be above 1");
+        }
+        if (discardedReversals >= reversalsToFinish) {
+            throw new IllegalArgumentException("No reversals left to average");
+        }
+        this.min = min;
+        this.max = max;
+        this.initialFactor = initialFactor;
+        this.finalFactor = finalFactor;
+        this.reversalsToFinish = reversalsToFinish;
+        this.discardedReversals = discardedReversals;
+        this.maxTrials = maxTrials;
+        this.value = start;
+    }
+
+    /** Value for the next trial. Undefined once finished. */
+    public double getValue() {
+        return value;
+    }
+
+    public void record(boolean correct) {
+        if (isFinished()) return;
+        trials++;
+        int direction = 0;
+        if (correct) {
+            correctAnswers++;
+            if (++correctInARow == 2) {
+                correctInARow = 0;
+                direction = -1;
+            }
+        } else {
+            correctInARow = 0;
+            direction = 1;
+        }
+        if (direction == 0) return;
+        if (lastDirection != 0 && direction != lastDirection) {
+            reversals++;
+            if (reversals > discardedReversals) {
+                logReversalSum += Math.log(value);
+            }
+        }
+        lastDirection = direction;
+        double factor = reversals < 2 ? initialFactor : finalFactor;
+        value = Math.max(min, Math.min(max, direction > 0 ? value * factor : value / factor));
+    }
+
+    public boolean isFinished() {
+        return reversals >= reversalsToFinish || trials >= maxTrials;
+    }
+
+    public int getTrialCount() {
+        return trials;
+    }
+
+    public int getCorrectAnswers() {
+        return correctAnswers;
+    }
+
+    public int getReversalCount() {
+        return reversals;
+    }
+
+    /**
+     * Geometric mean of the averaged reversals; NaN until at least two of them (a full cycle of
+     * the track) have been recorded, e.g. if the trial limit was reached first.
+     */
+    public double getThreshold() {
+        int counted = reversals - discardedReversals;
+        return counted >= 2 ? Math.exp(logReversalSum / counted) : Double.NaN;
+    }
+}
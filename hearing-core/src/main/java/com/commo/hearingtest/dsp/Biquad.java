@@ -0,0 +1,75 @@
+package com.commo.hearingtest.dsp;
+
+/**
+ * Second-order IIR section in transposed direct form II, with coefficients from the RBJ audio
+ * EQ cookbook. State is kept in doubles: narrow low-frequency bands at 48 kHz put the poles close
+ * enough to the unit circle that float state drifts audibly. {@link #process} does not allocate.
+ */
+public final class Biquad {
+
+    private final int sampleRate;
+    private final double b0;
+    private final double b1;
+    private final double b2;
+    private final double a1;
+    private final double a2;
+    private double z1;
+    private double z2;
+
+    private Biquad(int sampleRate, double b0, double b1, double b2, double a0, double a1, double a2) {
+        this.sampleRate = sampleRate;
+        this.b0 = b0 / a0;
+        this.b1 = b1 / a0;
+        this.b2 = b2 / a0;
+        this.a1 = a1 / a0;
+        this.a2 = a2 / a0;
+    }
+
+    /** Band-pass with 0 dB gain at {@code centerHz}. */
+    public static Biquad bandPass(double centerHz, double q, int sampleRate) {
+        if (centerHz <= 0 || centerHz >= sampleRate / 2.0 || q <= 0) {
+            throw new IllegalArgumentException("Invalid band-pass: " + centerHz + " Hz, Q " + q);
+        }
+        double w0 = 2 * Math.PI * centerHz / sampleRate;
+        double alpha = Math.sin(w0) / (2 * q);
+        return new Biquad(sampleRate, alpha, 0, -alpha, 1 + alpha, -2 * Math.cos(w0), 1 - alpha);
+    }
+
+    /** Q of a band-pass whose -3 dB points are {@code octaves} apart. */
+    public static double qForBandwidth(double octaves) {
+        double ratio = Math.pow(2, octaves);
+        return Math.sqrt(ratio) / (ratio - 1);
+    }
+
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    public double process(double x) {
+        double y = b0 * x + z1;
+        z1 = b1 * x - a1 * y + z2;
+        z2 = b2 * x - a2 * y;
+        return y;
+    }
+
+    public void reset() {
+        z1 = 0;
+        z2 = 0;
+    }
+
+    /** Complex response at {@code frequency}, written to {@code out} as {re, im}. */
+    public void responseAt(double frequency, double[] out) {
+        double w = 2 * Math.PI * frequency / sampleRate;
+        double c1 = Math.cos(w);
+        double s1 = -Math.sin(w);
+        double c2 = Math.cos(2 * w);
+        double s2 = -Math.sin(2 * w);
+        double numRe = b0 + b1 * c1 + b2 * c2;
+        double numIm = b1 * s1 + b2 * s2;
+        double denRe = 1 + a1 * c1 + a2 * c2;
+        double denIm = a1 * s1 + a2 * s2;
+        double den = denRe * denRe + denIm * denIm;
+        out[0] = (numRe * denRe + numIm * denIm) / den;
+        out[1] = (numIm * denRe - numRe * denIm) / den;
+    }
+}
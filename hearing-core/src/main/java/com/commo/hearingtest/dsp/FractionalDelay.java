@@ -0,0 +1,73 @@
+package com.commo.hearingtest.dsp;
+
+/**
+ * Delays a signal by a fractional number of samples with a bank of precomputed windowed-sinc
+ * kernels, one for each 1/{@link #PHASES} of a sample. A delay is split into whole samples, which
+ * only shift the read position, and the nearest kernel for the remainder, so rendering does no
+ * trigonometry and does not allocate. With {@link #TAPS} Blackman-windowed taps the response is
+ * flat to within 0.01 dB up to a quarter of the sample rate, which covers every tone the tests
+ * play, and the delay is off by at most half a kernel step: under 0.1 us at 48 kHz.
+ */
+public final class FractionalDelay {
+
+    public static final int TAPS = 32;
+    public static final int PHASES = 128;
+    /** Latency of the kernels themselves: a requested delay of 0 comes out this many samples late. */
+    public static final int GROUP_DELAY = TAPS / 2 - 1;
+
+    // Kernel p delays by GROUP_DELAY + p / PHASES samples, taps in order of increasing delay.
+    private static final float[] KERNELS = new float[PHASES * TAPS];
+
+    static {
+        for (int p = 0; p < PHASES; p++) {
+            double fraction = (double) p / PHASES;
+            double sum = 0;
+            for (int k = 0; k < TAPS; k++) {
+                double t = k - GROUP_DELAY - fraction;
+                double sinc = t == 0 ? 1 : Math.sin(Math.PI * t) / (Math.PI * t);
+                double x = (t + TAPS / 2.0) / TAPS;
+                double window = 0.42 - 0.5 * Math.cos(2 * Math.PI * x) + 0.08 * Math.cos(4 * Math.PI * x);
+                KERNELS[p * TAPS + k] = (float) (sinc * window);
+                sum += sinc * window;
+            }
+            // Unity gain at DC.
+            for (int k = 0; k < TAPS; k++) {
+                KERNELS[p * TAPS + k] /= (float) sum;
+            }
+        }
+    }
+
+    private FractionalDelay() {
+    }
+
+    /**
+     * Writes {@code frames} samples of {@code in} (zero outside {@code [0, inLength)}), delayed by
+     * {@code GROUP_DELAY + delaySamples} and scaled by {@code gain} (of full scale), into one
+     * channel of the interleaved stereo {@code out}.
+     */
+    public static void render(float[] in, int inLength, double delaySamples, float gain,
+                              short[] out, int channel, int frames) {
+        if (delaySamples < 0) {
+            throw new IllegalArgumentException("Delay must not be negative: " + delaySamples);
+        }
+        if (out.length < frames * 2) {
+            throw new IllegalArgumentException("Buffer too small for " + frames + " frames");
+        }
+        long steps = Math.round(delaySamples * PHASES);
+        int whole = (int) (steps / PHASES);
+        int kernel = (int) (steps % PHASES) * TAPS;
+        float scale = gain * Short.MAX_VALUE;
+        for (int n = 0; n < frames; n++) {
+            // Tap k reads in[n - whole - k].
+            int newest = n - whole;
+            int firstTap = Math.max(0, newest - inLength + 1);
+            int lastTap = Math.min(TAPS - 1, newest);
+            float sum = 0;
+            for (int k = firstTap; k <= lastTap; k++) {
+                sum += KERNELS[kernel + k] * in[newest - k];
+            }
+            out[n * 2 + channel] = (short) Math.max(Short.MIN_VALUE,
+                    Math.min(Short.MAX_VALUE, Math.round(sum * scale)));
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.commo.hearingtest.dsp;
+
+/**
+ * Renders a tone burst lateralized by an interaural time difference (ITD) and per-ear levels,
+ * for the lateralization test.
+ *
+ * <p>The ramped mono burst is synthesized once in the constructor. Each trial then only runs it
+ * through {@link FractionalDelay} twice: the leading ear is delayed less and the lagging ear more,
+ * by half the ITD each, so the onset envelope and the ongoing phase both carry the difference and
+ * the image moves symmetrically about the centre. Interaural level differences are given as the
+ * two ears' levels, which lets the caller fold in each ear's calibration. Rendering a trial
+ * allocates nothing but the buffer it may be asked to create, and takes a few milliseconds, so a
+ * trial can be built when it is needed.
+ */
+public final class Lateralizer {
+
+    /** Largest ITD a head produces, about 700 us, with some room to spare. */
+    public static final double MAX_ITD_MICROS = 1000;
+
+    private final double frequency;
+    private final int sampleRate;
+    private final float[] burst;
+    private final double centerDelay;
+    private final int frameCount;
+
+    public Lateralizer(double frequency, int durationMs, int sampleRate) {
+        ToneSpec spec = ToneSpec.of(frequency, durationMs, 1f, ToneSpec.CHANNEL_LEFT, sampleRate);
+        this.frequency = frequency;
+        this.sampleRate = sampleRate;
+        short[] pcm = ToneSynthesizer.render(spec);
+        this.burst = new float[spec.getFrameCount()];
+        for (int i = 0; i < burst.length; i++) {
+            burst[i] = pcm[i * 2] / (float) Short.MAX_VALUE;
+        }
+        this.centerDelay = MAX_ITD_MICROS / 2 * sampleRate / 1e6;
+        // Room for the lagging ear and the kernels' tails.
+        this.frameCount = burst.length + (int) Math.ceil(2 * centerDelay) + FractionalDelay.TAPS;
+    }
+
+    public double getFrequency() {
+        return frequency;
+    }
+
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    /** Frames of every rendered trial. */
+    public int getFrameCount() {
+        return frameCount;
+    }
+
+    /** {@link #render(double, float, float, short[])} into a new buffer. */
+    public short[] render(double itdMicros, float leftLevel, float rightLevel) {
+        short[] out = new short[frameCount * 2];
+        render(itdMicros, leftLevel, rightLevel, out);
+        return out;
+    }
+
+    /**
+     * Renders one trial as interleaved stereo into the first {@link #getFrameCount()} frames of
+     * {@code out}.
+     *
+     * @param itdMicros  positive when the right ear leads, i.e. the sound is to the right
+     * @param leftLevel  peak amplitude in the left ear, 0..1 of full scale
+     * @param rightLevel peak amplitude in the right ear
+     */
+    public void render(double itdMicros, float leftLevel, float rightLevel, short[] out) {
+        if (Math.abs(itdMicros) > MAX_ITD_MICROS) {
+            throw new IllegalArgumentException("ITD out of range: " + itdMicros);
+        }
+        double halfItd = itdMicros / 2 * sampleRate / 1e6;
+        FractionalDelay.render(burst, burst.length, centerDelay + halfItd, leftLevel, out, 0, frameCount);
+        FractionalDelay.render(burst, burst.length, centerDelay - halfItd, rightLevel, out, 1, frameCount);
+    }
+}
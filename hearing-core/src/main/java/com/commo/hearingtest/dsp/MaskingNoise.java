@@ -0,0 +1,204 @@
+package com.commo.hearingtest.dsp;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Masking noise for the non-test ear, synthesized one sample at a time: uniform white noise from
+ * an {@link XorShiftRandom} shaped by a bank of {@link Biquad} band-passes.
+ *
+ * <ul>
+ *   <li>{@link Type#NARROW_BAND}: two half-octave sections in cascade around the probe
+ *   frequency, about a third of an octave wide at -3 dB and falling 12 dB per octave further
+ *   out, within the ANSI S3.6 limits for narrow-band masking noise.</li>
+ *   <li>{@link Type#SPEECH_SHAPED}: a bank of octave-wide band-passes from 125 Hz to 8 kHz in
+ *   parallel, weighted so the octave-band levels follow the long-term average speech spectrum
+ *   (Byrne et al. 1994, summed into octaves).</li>
+ * </ul>
+ *
+ * <p>The output is scaled to an RMS of 1 from the filters' exact frequency response, so a
+ * caller sets the level by a single gain. Fitting the speech bank to its spectrum takes tens of
+ * milliseconds, so its gains are computed once per sample rate. Everything is allocated in the
+ * factories; {@link #next} does not allocate. Not thread-safe: one render thread owns a noise.
+ */
+public final class MaskingNoise {
+
+    public enum Type {
+        NARROW_BAND,
+        SPEECH_SHAPED
+    }
+
+    static final double NARROW_BAND_SECTION_OCTAVES = 0.5;
+    /** Two sections of this width in cascade make a branch about an octave wide. */
+    static final double SPEECH_SECTION_OCTAVES = 1.5;
+    static final int[] SPEECH_BAND_CENTERS = {125, 250, 500, 1000, 2000, 4000, 8000};
+    /** Octave-band levels of average speech relative to the 250 Hz band. */
+    static final double[] SPEECH_BAND_LEVELS_DB = {-3, 0, -1, -8, -12.5, -15.5, -18};
+
+    // Points on the integration grid for the output power; the bands are smooth at this resolution.
+    private static final int RESPONSE_POINTS = 8192;
+    // Rounds of refining the speech branch weights; each one cuts the band error several-fold.
+    private static final int WEIGHT_ITERATIONS = 12;
+    // Variance of uniform noise on [-1, 1).
+    private static final double WHITE_POWER = 1.0 / 3;
+
+    // Guarded by itself.
+    private static final Map<Integer, double[]> SPEECH_GAINS = new HashMap<Integer, double[]>();
+
+    private final Type type;
+    private final int sampleRate;
+    private final XorShiftRandom random;
+    /** Branch b is sections[b * sectionsPerBranch] onwards, in series. */
+    private final Biquad[] sections;
+    private final int sectionsPerBranch;
+    private final double[] branchGains;
+
+    private MaskingNoise(Type type, int sampleRate, long seed, Biquad[] sections, int sectionsPerBranch,
+                         double[] branchGains) {
+        this.type = type;
+        this.sampleRate = sampleRate;
+        this.random = new XorShiftRandom(seed);
+        this.sections = sections;
+        this.sectionsPerBranch = sectionsPerBranch;
+        this.branchGains = branchGains;
+    }
+
+    public static MaskingNoise of(Type type, double centerHz, int sampleRate, long seed) {
+        return type == Type.NARROW_BAND
+                ? narrowBand(centerHz, sampleRate, seed)
+                : speechShaped(sampleRate, seed);
+    }
+
+    public static MaskingNoise narrowBand(double centerHz, int sampleRate, long seed) {
+        double q = Biquad.qForBandwidth(NARROW_BAND_SECTION_OCTAVES);
+        Biquad[] sections = {
+                Biquad.bandPass(centerHz, q, sampleRate),
+                Biquad.bandPass(centerHz, q, sampleRate)};
+        return new MaskingNoise(Type.NARROW_BAND, sampleRate, seed, sections, 2,
+                normalized(sections, 2, new double[]{1}, sampleRate));
+    }
+
+    public static MaskingNoise speechShaped(int sampleRate, long seed) {
+        double q = Biquad.qForBandwidth(SPEECH_SECTION_OCTAVES);
+        int bands = 0;
+        while (bands < SPEECH_BAND_CENTERS.length && SPEECH_BAND_CENTERS[bands] * Math.sqrt(2) < sampleRate / 2.0) {
+            bands++;
+        }
+        Biquad[] sections = new Biquad[bands * 2];
+        for (int b = 0; b < bands; b++) {
+            sections[b * 2] = Biquad.bandPass(SPEECH_BAND_CENTERS[b], q, sampleRate);
+            sections[b * 2 + 1] = Biquad.bandPass(SPEECH_BAND_CENTERS[b], q, sampleRate);
+        }
+        double[] gains;
+        synchronized (SPEECH_GAINS) {
+            gains = SPEECH_GAINS.get(sampleRate);
+            if (gains == null) {
+                double[] target = new double[bands];
+                for (int b = 0; b < bands; b++) {
+                    target[b] = Math.pow(10, SPEECH_BAND_LEVELS_DB[b] / 10);
+                }
+                gains = normalized(sections, 2, speechWeights(sections, sampleRate, target), sampleRate);
+                SPEECH_GAINS.put(sampleRate, gains);
+            }
+        }
+        return new MaskingNoise(Type.SPEECH_SHAPED, sampleRate, seed, sections, 2, gains);
+    }
+
+    /**
+     * Branch weights that put {@code target} power into each octave band. Neighbouring branches
+     * overlap, and white noise carries more power in each octave up, so the weights are refined
+     * against the exact response until each band holds its share.
+     */
+    private static double[] speechWeights(Biquad[] sections, int sampleRate, double[] target) {
+        int bands = target.length;
+        double[] weights = new double[bands];
+        for (int b = 0; b < bands; b++) {
+            // First guess: each branch alone, with power proportional to its bandwidth.
+            weights[b] = Math.sqrt(target[b] * SPEECH_BAND_CENTERS[0] / SPEECH_BAND_CENTERS[b]);
+            // Neighbouring branches are about half a cycle apart where they cross; flipping every
+            // other one makes them add there instead of cancelling into a notch.
+            if (b % 2 == 1) {
+                weights[b] = -weights[b];
+            }
+        }
+        double[] response = new double[2];
+        double[] power = new double[bands];
+        for (int iteration = 0; iteration < WEIGHT_ITERATIONS; iteration++) {
+            Arrays.fill(power, 0);
+            for (int i = 0; i < RESPONSE_POINTS; i++) {
+                double frequency = gridFrequency(i, sampleRate);
+                int band = (int) Math.round(Math.log(frequency / SPEECH_BAND_CENTERS[0]) / Math.log(2));
+                if (band < 0 || band >= bands) continue;
+                power[band] += powerGain(sections, 2, weights, frequency, response);
+            }
+            for (int b = 0; b < bands; b++) {
+                weights[b] *= Math.sqrt(target[b] / power[b] * power[0] / target[0]);
+            }
+        }
+        return weights;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    /** Next sample; the long-run RMS is 1. */
+    public float next() {
+        double white = random.nextSignedFloat();
+        double sum = 0;
+        int s = 0;
+        for (int b = 0; b < branchGains.length; b++) {
+            double y = white;
+            for (int k = 0; k < sectionsPerBranch; k++, s++) {
+                y = sections[s].process(y);
+            }
+            sum += y * branchGains[b];
+        }
+        return (float) sum;
+    }
+
+    /** {@code weights} scaled so the output has unit RMS. */
+    private static double[] normalized(Biquad[] sections, int sectionsPerBranch, double[] weights, int sampleRate) {
+        double[] response = new double[2];
+        double sum = 0;
+        for (int i = 0; i < RESPONSE_POINTS; i++) {
+            sum += powerGain(sections, sectionsPerBranch, weights, gridFrequency(i, sampleRate), response);
+        }
+        double scale = 1 / Math.sqrt(WHITE_POWER * sum / RESPONSE_POINTS);
+        double[] gains = new double[weights.length];
+        for (int b = 0; b < weights.length; b++) {
+            gains[b] = weights[b] * scale;
+        }
+        return gains;
+    }
+
+    private static double gridFrequency(int point, int sampleRate) {
+        return (point + 0.5) * sampleRate / 2.0 / RESPONSE_POINTS;
+    }
+
+    /** |H|^2 of the weighted bank at {@code frequency}; {@code response} is scratch. */
+    private static double powerGain(Biquad[] sections, int sectionsPerBranch, double[] weights,
+                                    double frequency, double[] response) {
+        double re = 0;
+        double im = 0;
+        int s = 0;
+        for (int b = 0; b < weights.length; b++) {
+            double branchRe = weights[b];
+            double branchIm = 0;
+            for (int k = 0; k < sectionsPerBranch; k++, s++) {
+                sections[s].responseAt(frequency, response);
+                double nextRe = branchRe * response[0] - branchIm * response[1];
+                branchIm = branchRe * response[1] + branchIm * response[0];
+                branchRe = nextRe;
+            }
+            re += branchRe;
+            im += branchIm;
+        }
+        return re * re + im * im;
+    }
+}
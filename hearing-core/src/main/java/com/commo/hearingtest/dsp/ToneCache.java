@@ -0,0 +1,112 @@
+package com.commo.hearingtest.dsp;
+
+import com.commo.hearingtest.metrics.AudioMetrics;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded LRU cache of rendered tones keyed by {@link ToneSpec}.
+ *
+ * <p>Buffers handed out by {@link #get(ToneSpec)} are shared between callers and must be treated
+ * as read-only. A hit returns the very same array, so replaying a tone allocates nothing.
+ */
+public final class ToneCache {
+
+    /** Room for every protocol tone at 48 kHz with plenty to spare (about 8 MB of PCM). */
+    private static final int DEFAULT_MAX_ENTRIES = 64;
+    private static final long DEFAULT_MAX_SAMPLES = 4L * 1024 * 1024;
+
+    private static ToneCache shared;
+
+    private final int maxEntries;
+    private final long maxSamples;
+    private final LinkedHashMap<ToneSpec, short[]> entries =
+            new LinkedHashMap<ToneSpec, short[]>(16, 0.75f, true);
+    private long cachedSamples;
+    private long hits;
+    private long misses;
+
+    public ToneCache(int maxEntries, long maxSamples) {
+        if (maxEntries <= 0 || maxSamples <= 0) {
+            throw new IllegalArgumentException("Cache bounds must be positive");
+        }
+        this.maxEntries = maxEntries;
+        this.maxSamples = maxSamples;
+    }
+
+    /** Process-wide cache used by the test screens. */
+    public static synchronized ToneCache shared() {
+        if (shared == null) {
+            shared = new ToneCache(DEFAULT_MAX_ENTRIES, DEFAULT_MAX_SAMPLES);
+        }
+        return shared;
+    }
+
+    /** Returns the rendered tone for {@code spec}, rendering and caching it on a miss. */
+    public short[] get(ToneSpec spec) {
+        synchronized (this) {
+            short[] cached = entries.get(spec);
+            if (cached != null) {
+                hits++;
+                return cached;
+            }
+            misses++;
+        }
+        // Render outside the lock so a long tone does not stall lookups of other tones.
+        AudioMetrics metrics = AudioMetrics.get();
+        long start = metrics.isEnabled() ? System.nanoTime() : 0;
+        short[] rendered = ToneSynthesizer.render(spec);
+        if (start != 0) {
+            metrics.getToneSynthesisNanos().record(System.nanoTime() - start);
+        }
+        synchronized (this) {
+            short[] raced = entries.get(spec);
+            if (raced != null) {
+                return raced;
+            }
+            if (rendered.length <= maxSamples) {
+                entries.put(spec, rendered);
+                cachedSamples += rendered.length;
+                evict();
+            }
+            return rendered;
+        }
+    }
+
+    /** Returns the cached tone without rendering, or null. Does not count as a hit or miss. */
+    public synchronized short[] peek(ToneSpec spec) {
+        return entries.get(spec);
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        cachedSamples = 0;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long getCachedSamples() {
+        return cachedSamples;
+    }
+
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    public synchronized long getMissCount() {
+        return misses;
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<ToneSpec, short[]>> it = entries.entrySet().iterator();
+        while ((entries.size() > maxEntries || cachedSamples > maxSamples) && it.hasNext()) {
+            Map.Entry<ToneSpec, short[]> eldest = it.next();
+            cachedSamples -= eldest.getValue().length;
+            it.remove();
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.commo.hearingtest.dsp;
+
+/**
+ * Immutable description of a stereo test tone. Two specs that compare equal always render to
+ * the same samples, which is what makes them usable as {@link ToneCache} keys.
+ */
+public final class ToneSpec {
+
+    public static final int CHANNEL_LEFT = 1;
+    public static final int CHANNEL_RIGHT = 2;
+    public static final int CHANNEL_BOTH = CHANNEL_LEFT | CHANNEL_RIGHT;
+
+    public static final int DEFAULT_RAMP_MS = 10;
+
+    private final double frequency;
+    private final int durationMs;
+    private final int sampleRate;
+    private final float leftLevel;
+    private final float rightLevel;
+    private final int rampMs;
+
+    private ToneSpec(double frequency, int durationMs, int sampleRate,
+                     float leftLevel, float rightLevel, int rampMs) {
+        if (frequency <= 0 || frequency >= sampleRate / 2.0) {
+            throw new IllegalArgumentException("Frequency out of range: " + frequency);
+        }
+        if (durationMs <= 0) {
+            throw new IllegalArgumentException("Duration must be positive: " + durationMs);
+        }
+        if (!isValidLevel(leftLevel) || !isValidLevel(rightLevel)) {
+            throw new IllegalArgumentException("Level must be within [0, 1]");
+        }
+        if (rampMs < 0 || rampMs * 2 > durationMs) {
+            throw new IllegalArgumentException("Ramp does not fit the tone: " + rampMs);
+        }
+        this.frequency = frequency;
+        this.durationMs = durationMs;
+        this.sampleRate = sampleRate;
+        this.leftLevel = leftLevel;
+        this.rightLevel = rightLevel;
+        this.rampMs = rampMs;
+    }
+
+    /**
+     * Tone at {@code level} (0..1 of full scale) on the channels in {@code channelMask},
+     * silent on the others, with the default onset/offset ramp.
+     */
+    public static ToneSpec of(double frequency, int durationMs, float level, int channelMask, int sampleRate) {
+        return of(frequency, durationMs, level, channelMask, sampleRate, DEFAULT_RAMP_MS);
+    }
+
+    public static ToneSpec of(double frequency, int durationMs, float level, int channelMask,
+                              int sampleRate, int rampMs) {
+        if ((channelMask & ~CHANNEL_BOTH) != 0 || channelMask == 0) {
+            throw new IllegalArgumentException("Invalid channel mask: " + channelMask);
+        }
+        float left = (channelMask & CHANNEL_LEFT) != 0 ? level : 0f;
+        float right = (channelMask & CHANNEL_RIGHT) != 0 ? level : 0f;
+        return new ToneSpec(frequency, durationMs, sampleRate, left, right, rampMs);
+    }
+
+    /** Linear level (0..1 of full scale) for {@code dbFs} decibels relative to full scale. */
+    public static float levelForDbFs(double dbFs) {
+        return (float) Math.min(1.0, Math.pow(10, dbFs / 20));
+    }
+
+    private static boolean isValidLevel(float level) {
+        return level >= 0f && level <= 1f;
+    }
+
+    public double getFrequency() {
+        return frequency;
+    }
+
+    public int getDurationMs() {
+        return durationMs;
+    }
+
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    public float getLeftLevel() {
+        return leftLevel;
+    }
+
+    public float getRightLevel() {
+        return rightLevel;
+    }
+
+    public int getRampMs() {
+        return rampMs;
+    }
+
+    /** Number of stereo frames; the rendered buffer holds twice as many shorts. */
+    public int getFrameCount() {
+        return (int) ((long) durationMs * sampleRate / 1000);
+    }
+
+    public int getRampFrames() {
+        return (int) ((long) rampMs * sampleRate / 1000);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof ToneSpec)) return false;
+        ToneSpec other = (ToneSpec) o;
+        return Double.compare(frequency, other.frequency) == 0
+                && durationMs == other.durationMs
+                && sampleRate == other.sampleRate
+                && Float.compare(leftLevel, other.leftLevel) == 0
+                && Float.compare(rightLevel, other.rightLevel) == 0
+                && rampMs == other.rampMs;
+    }
+
+    @Override
+    public int hashCode() {
+        long bits = Double.doubleToLongBits(frequency);
+        int result = (int) (bits ^ (bits >>> 32));
+        result = 31 * result + durationMs;
+        result = 31 * result + sampleRate;
+        result = 31 * result + Float.floatToIntBits(leftLevel);
+        result = 31 * result + Float.floatToIntBits(rightLevel);
+        result = 31 * result + rampMs;
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "ToneSpec{" + frequency + "Hz, " + durationMs + "ms, L=" + leftLevel
+                + ", R=" + rightLevel + ", " + sampleRate + "Hz}";
+    }
+}
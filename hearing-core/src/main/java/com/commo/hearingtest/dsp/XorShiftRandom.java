@@ -0,0 +1,37 @@
+package com.commo.hearingtest.dsp;
+
+/**
+ * xorshift64* generator for noise synthesis on the render thread: a few shifts and one multiply
+ * per value, no locking and no allocation, unlike {@link java.util.Random}. Its lowest bits are
+ * the weakest, so {@link #nextSignedFloat} uses the top ones. A given seed always produces the
+ * same sequence.
+ */
+public final class XorShiftRandom {
+
+    private static final float FLOAT_SCALE = 0x1p-23f;
+
+    private long state;
+
+    public XorShiftRandom(long seed) {
+        // SplitMix64 finalizer, so nearby seeds start far apart and the state is never zero.
+        long z = seed + 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        z ^= z >>> 31;
+        state = z != 0 ? z : 0x9E3779B97F4A7C15L;
+    }
+
+    public long nextLong() {
+        long x = state;
+        x ^= x >>> 12;
+        x ^= x << 25;
+        x ^= x >>> 27;
+        state = x;
+        return x * 0x2545F4914F6CDD1DL;
+    }
+
+    /** Uniform in [-1, 1), from the top 24 bits. */
+    public float nextSignedFloat() {
+        return (int) (nextLong() >> 40) * FLOAT_SCALE;
+    }
+}
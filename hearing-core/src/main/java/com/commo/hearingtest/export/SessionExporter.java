@@ -0,0 +1,280 @@
+package com.commo.hearingtest.export;
+
+import com.commo.hearingtest.core.Audiogram;
+import com.commo.hearingtest.core.Ear;
+import com.commo.hearingtest.core.LeftRightTestResult;
+import com.commo.hearingtest.core.ReactionTimes;
+import com.commo.hearingtest.store.SessionRecord;
+import com.commo.hearingtest.store.SessionStore;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Streams every session in a {@link SessionStore} to an output stream as CSV or JSON, optionally
+ * gzip-compressed, one record at a time: memory use is a {@link #BUFFER_CHARS} buffer and the
+ * record being written, however long the history.
+ *
+ * <p>CSV has one row per frequency of a frequency test and one row per left/right test, with
+ * the columns in {@link #CSV_HEADER}. JSON is an array with one object per session. Times are UTC
+ * ISO 8601; thresholds are dB HL, empty (CSV) or {@code null} (JSON) where a frequency was not
+ * tested, and {@code NR} where the listener never responded.
+ *
+ * <p>An exporter is single-use. {@link #cancel()} may be called from any thread; the export then
+ * stops at the next record and fails with an {@link InterruptedIOException}, leaving the output
+ * incomplete.
+ */
+public final class SessionExporter {
+
+    public enum Format {
+        CSV("text/csv", ".csv"),
+        JSON("application/json", ".json");
+
+        private final String mimeType;
+        private final String extension;
+
+        Format(String mimeType, String extension) {
+            this.mimeType = mimeType;
+            this.extension = extension;
+        }
+
+        public String getMimeType() {
+            return mimeType;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+    }
+
+    /** Told how far the export has got, on the exporting thread. */
+    public interface ProgressListener {
+        void onProgress(int exported, int total);
+    }
+
+    public static final String CSV_HEADER = "session,user_id,time_utc,test,presentations,correct,total,"
+            + "reaction_median_ms,frequency_hz,left_db_hl,right_db_hl";
+    /** Sessions between progress reports. */
+    public static final int PROGRESS_INTERVAL = 1000;
+    static final int BUFFER_CHARS = 64 * 1024;
+
+    private static final String NO_RESPONSE = "NR";
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final SessionStore store;
+    private final Format format;
+    private final boolean gzip;
+    private final SimpleDateFormat timeFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'", Locale.US);
+    private volatile boolean cancelled;
+
+    public SessionExporter(SessionStore store, Format format, boolean gzip) {
+        this.store = store;
+        this.format = format;
+        this.gzip = gzip;
+        timeFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+    }
+
+    /** MIME type of an export, for a document picker. */
+    public static String mimeType(Format format, boolean gzip) {
+        return gzip ? "application/gzip" : format.getMimeType();
+    }
+
+    /** {@code baseName} with the extension of an export, e.g. {@code sessions.csv.gz}. */
+    public static String fileName(String baseName, Format format, boolean gzip) {
+        return baseName + format.getExtension() + (gzip ? ".gz" : "");
+    }
+
+    /** Stops the export at the next record. */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Writes every session stored when the export starts to {@code out}, and closes it.
+     *
+     * @param listener told after every {@link #PROGRESS_INTERVAL} sessions and at the end; may be null
+     * @return the number of sessions exported
+     * @throws InterruptedIOException if the export was cancelled
+     */
+    public int exportTo(OutputStream out, ProgressListener listener) throws IOException {
+        int total = store.size();
+        Writer writer = null;
+        try {
+            OutputStream target = gzip ? new GZIPOutputStream(out, 8192) : out;
+            writer = new BufferedWriter(new OutputStreamWriter(target, UTF_8), BUFFER_CHARS);
+            writer.write(format == Format.CSV ? CSV_HEADER + "\n" : "[");
+            for (int sequence = 0; sequence < total; sequence++) {
+                if (cancelled) {
+                    throw new InterruptedIOException("Export cancelled after " + sequence + " of " + total);
+                }
+                SessionRecord record = store.read(store.getEntry(sequence));
+                if (format == Format.CSV) {
+                    writeCsv(writer, sequence, record);
+                } else {
+                    writer.write(sequence == 0 ? "\n" : ",\n");
+                    writeJson(writer, sequence, record);
+                }
+                if (listener != null && (sequence + 1) % PROGRESS_INTERVAL == 0) {
+                    listener.onProgress(sequence + 1, total);
+                }
+            }
+            if (format == Format.JSON) {
+                writer.write("\n]\n");
+            }
+            writer.close();
+            writer = null;
+            if (listener != null && total % PROGRESS_INTERVAL != 0) {
+                listener.onProgress(total, total);
+            }
+            return total;
+        } finally {
+            if (writer != null) {
+                closeQuietly(writer);
+            } else {
+                closeQuietly(out);
+            }
+        }
+    }
+
+    /** Writes the export to {@code file}, deleting the partial file if it fails or is cancelled. */
+    public int exportTo(File file, ProgressListener listener) throws IOException {
+        boolean done = false;
+        try {
+            int exported = exportTo(new FileOutputStream(file), listener);
+            done = true;
+            return exported;
+        } finally {
+            if (!done) {
+                file.delete();
+            }
+        }
+    }
+
+    private void writeCsv(Writer writer, int sequence, SessionRecord record) throws IOException {
+        String prefix = sequence + "," + csvField(record.getUserId()) + ","
+                + timeFormat.format(new Date(record.getTimestampMillis())) + "," + testName(record) + ",";
+        if (record.getType() == SessionRecord.Type.FREQUENCY) {
+            prefix += record.getPresentationCount() + ",,," + reactionMedian(record) + ",";
+            Audiogram audiogram = record.getAudiogram();
+            for (int i = 0; i < audiogram.getFrequencyCount(); i++) {
+                writer.write(prefix);
+                writer.write(Integer.toString(audiogram.getFrequency(i)));
+                writer.write(',');
+                writer.write(threshold(audiogram.getThresholdDb(Ear.LEFT, i), ""));
+                writer.write(',');
+                writer.write(threshold(audiogram.getThresholdDb(Ear.RIGHT, i), ""));
+                writer.write('\n');
+            }
+        } else {
+            LeftRightTestResult result = record.getLeftRightResult();
+            writer.write(prefix);
+            writer.write("," + result.getCorrectAnswers() + "," + result.getTotalTests() + ","
+                    + reactionMedian(record) + ",,,\n");
+        }
+    }
+
+    private void writeJson(Writer writer, int sequence, SessionRecord record) throws IOException {
+        writer.write("{\"session\":" + sequence + ",\"user_id\":");
+        writeJsonString(writer, record.getUserId());
+        writer.write(",\"time_utc\":\"" + timeFormat.format(new Date(record.getTimestampMillis()))
+                + "\",\"test\":\"" + testName(record) + "\"");
+        if (record.getType() == SessionRecord.Type.FREQUENCY) {
+            writer.write(",\"presentations\":" + record.getPresentationCount() + ",\"thresholds\":[");
+            Audiogram audiogram = record.getAudiogram();
+            for (int i = 0; i < audiogram.getFrequencyCount(); i++) {
+                writer.write((i == 0 ? "" : ",") + "{\"frequency_hz\":" + audiogram.getFrequency(i)
+                        + ",\"left_db_hl\":" + jsonThreshold(audiogram.getThresholdDb(Ear.LEFT, i))
+                        + ",\"right_db_hl\":" + jsonThreshold(audiogram.getThresholdDb(Ear.RIGHT, i)) + "}");
+            }
+            writer.write(']');
+        } else {
+            LeftRightTestResult result = record.getLeftRightResult();
+            writer.write(",\"correct\":" + result.getCorrectAnswers() + ",\"total\":" + result.getTotalTests());
+        }
+        ReactionTimes times = record.getReactionTimes();
+        if (times != null) {
+            writer.write(",\"reaction_times_ms\":[");
+            for (int i = 0; i < times.size(); i++) {
+                float latency = times.getLatencyMs(i);
+                writer.write((i == 0 ? "" : ",") + (Float.isNaN(latency) ? "null" : Float.toString(latency)));
+            }
+            writer.write(']');
+        }
+        writer.write('}');
+    }
+
+    private static String testName(SessionRecord record) {
+        return record.getType() == SessionRecord.Type.FREQUENCY ? "frequency" : "left_right";
+    }
+
+    private static String reactionMedian(SessionRecord record) {
+        ReactionTimes times = record.getReactionTimes();
+        if (times == null) return "";
+        double median = times.getMedianMs();
+        return Double.isNaN(median) ? "" : number(median);
+    }
+
+    private static String threshold(double db, String untested) {
+        if (Double.isNaN(db)) return untested;
+        if (Double.isInfinite(db)) return NO_RESPONSE;
+        return number(db);
+    }
+
+    private static String jsonThreshold(double db) {
+        return Double.isInfinite(db) ? "\"" + NO_RESPONSE + "\"" : threshold(db, "null");
+    }
+
+    /** Whole numbers without a trailing ".0"; others as stored. */
+    private static String number(double value) {
+        return value == Math.rint(value) && Math.abs(value) < 1e15
+                ? Long.toString((long) value) : Double.toString(value);
+    }
+
+    static String csvField(String value) {
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        return quote ? "\"" + value.replace("\"", "\"\"") + "\"" : value;
+    }
+
+    static void writeJsonString(Writer writer, String value) throws IOException {
+        writer.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                writer.write('\\');
+                writer.write(c);
+            } else if (c < 0x20) {
+                writer.write(String.format(Locale.US, "\\u%04x", (int) c));
+            } else {
+                writer.write(c);
+            }
+        }
+        writer.write('"');
+    }
+
+    private static void closeQuietly(java.io.Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException ignored) {
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package com.commo.hearingtest.kiosk;
+
+import com.commo.hearingtest.metrics.Histogram;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * The participants waiting to be tested on a shared screening device, in arrival order, and the
+ * one being tested now, with how long the device takes to move from one to the next.
+ *
+ * <p>For each participant the caller reports {@link #begin} when the operator starts them,
+ * {@link #started} when their first tone is playing and {@link #finish} when their results are
+ * shown. Two times are kept from those:
+ * <ul>
+ * <li><em>reset</em>: {@code begin} to {@code started}, the device's own share of a changeover;
+ * <li><em>turnover</em>: the previous participant's {@code finish} to this one's {@code started},
+ * the whole gap between two tests, including reading the results and changing seats.
+ * </ul>
+ *
+ * <p>Times are {@link System#nanoTime()} values passed in by the caller. Not thread-safe; the
+ * owner synchronizes.
+ */
+public final class ParticipantQueue {
+
+    private static final String NUMBERED_PREFIX = "P";
+
+    private final ArrayDeque<String> waiting = new ArrayDeque<String>();
+    private final Histogram resetNanos = new Histogram("kiosk.reset");
+    private final Histogram turnoverNanos = new Histogram("kiosk.turnover");
+    private String current;
+    private long beginNanos;
+    private boolean currentStarted;
+    private long lastFinishNanos = -1;
+    private int nextNumber = 1;
+    private int completed;
+    private int abandoned;
+
+    /**
+     * Adds a participant at the end of the queue.
+     *
+     * @param participantId the id their results are saved under; surrounding blanks are dropped
+     * @return the id as queued
+     * @throws IllegalArgumentException if the id is blank, or already queued or being tested
+     */
+    public String add(String participantId) {
+        String id = participantId == null ? "" : participantId.trim();
+        if (id.isEmpty()) {
+            throw new IllegalArgumentException("Participant id is blank");
+        }
+        if (id.equals(current) || waiting.contains(id)) {
+            throw new IllegalArgumentException("Participant " + id + " is already queued");
+        }
+        waiting.addLast(id);
+        return id;
+    }
+
+    /** Adds a participant with the next free number, e.g. {@code P007}, for drives without ids. */
+    public String addNumbered() {
+        String id;
+        do {
+            id = String.format(Locale.US, "%s%03d", NUMBERED_PREFIX, nextNumber++);
+        } while (id.equals(current) || waiting.contains(id));
+        return add(id);
+    }
+
+    /** The number {@link #addNumbered()} tries next. */
+    public int getNextNumber() {
+        return nextNumber;
+    }
+
+    /**
+     * Never hands out a number below {@code number} again; pass the {@link #getNextNumber()} an
+     * earlier process saved, so numbered participants are not given an id already in the results.
+     */
+    public void continueNumberingFrom(int number) {
+        nextNumber = Math.max(nextNumber, number);
+    }
+
+    /** Removes a participant who left before their turn; returns whether they were waiting. */
+    public boolean remove(String participantId) {
+        return waiting.remove(participantId);
+    }
+
+    /** The waiting participants, next first. */
+    public List<String> getWaiting() {
+        return Collections.unmodifiableList(new ArrayList<String>(waiting));
+    }
+
+    public int getWaitingCount() {
+        return waiting.size();
+    }
+
+    /** The next participant to be tested, or null if nobody is waiting. */
+    public String peekNext() {
+        return waiting.peekFirst();
+    }
+
+    /** The participant being tested, or null between participants. */
+    public String getCurrent() {
+        return current;
+    }
+
+    /**
+     * Takes the next participant off the queue as the one being tested.
+     *
+     * @return their id, or null if nobody is waiting
+     * @throws IllegalStateException if the previous participant was neither finished nor abandoned
+     */
+    public String begin(long nowNanos) {
+        if (current != null) {
+            throw new IllegalStateException("Participant " + current + " is still being tested");
+        }
+        current = waiting.pollFirst();
+        beginNanos = nowNanos;
+        currentStarted = false;
+        return current;
+    }
+
+    /** The current participant's first tone is playing. Only the first call per participant counts. */
+    public void started(long nowNanos) {
+        if (current == null || currentStarted) return;
+        currentStarted = true;
+        resetNanos.record(nowNanos - beginNanos);
+        if (lastFinishNanos >= 0) {
+            turnoverNanos.record(nowNanos - lastFinishNanos);
+        }
+    }
+
+    /** The current participant's results are shown; the device is free for the next one. */
+    public void finish(long nowNanos) {
+        if (current == null) return;
+        current = null;
+        completed++;
+        lastFinishNanos = nowNanos;
+    }
+
+    /**
+     * The current participant stopped before their results, e.g. they left. The next turnover is
+     * measured from now, as if they had finished.
+     */
+    public void abandon(long nowNanos) {
+        if (current == null) return;
+        current = null;
+        abandoned++;
+        lastFinishNanos = nowNanos;
+    }
+
+    public int getCompletedCount() {
+        return completed;
+    }
+
+    public int getAbandonedCount() {
+        return abandoned;
+    }
+
+    /** Start of a participant to their first tone, in nanoseconds. */
+    public Histogram getResetNanos() {
+        return resetNanos;
+    }
+
+    /** Results shown for one participant to the next one's first tone, in nanoseconds. */
+    public Histogram getTurnoverNanos() {
+        return turnoverNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "%d waiting, %d completed, %d abandoned; reset p50 %.0f ms max %.0f ms;"
+                        + " turnover p50 %.1f s p95 %.1f s",
+                waiting.size(), completed, abandoned,
+                resetNanos.getPercentile(0.5) / 1e6, resetNanos.getMax() / 1e6,
+                turnoverNanos.getPercentile(0.5) / 1e9, turnoverNanos.getPercentile(0.95) / 1e9);
+    }
+}
@@ -0,0 +1,108 @@
+package com.commo.hearingtest.metrics;
+
+/**
+ * Process-wide counters and histograms for the audio path and the test screens, so a stutter
+ * reported from the field comes with numbers.
+ *
+ * <p>Recording is off by default. Every recording site checks {@link #isEnabled()} first, a
+ * single volatile read, and skips even its clock reads when recording is off. When it is on,
+ * each record is a few atomic adds and never allocates. All times are in nanoseconds.
+ */
+public final class AudioMetrics {
+
+    private static final AudioMetrics INSTANCE = new AudioMetrics();
+
+    private volatile boolean enabled;
+
+    private final Histogram renderChunkNanos = new Histogram("render.chunk_ns");
+    private final Histogram toneSynthesisNanos = new Histogram("tone.synthesis_ns");
+    private final Histogram writeBlockedNanos = new Histogram("sink.write_blocked_ns");
+    private final Counter underruns = new Counter("sink.underruns");
+    private final Histogram timestampDriftNanos = new Histogram("timestamp.drift_abs_ns");
+    private final Counter lastTimestampDriftNanos = new Counter("timestamp.drift_last_ns");
+    private final Histogram frameIntervalNanos = new Histogram("ui.frame_interval_ns");
+    private final Counter droppedFrames = new Counter("ui.dropped_frames");
+
+    AudioMetrics() {
+    }
+
+    public static AudioMetrics get() {
+        return INSTANCE;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /** Time the render thread spends producing one chunk, synthesis of streamed stimuli included. */
+    public Histogram getRenderChunkNanos() {
+        return renderChunkNanos;
+    }
+
+    /** Time to synthesize a whole tone on a {@code ToneCache} miss. */
+    public Histogram getToneSynthesisNanos() {
+        return toneSynthesisNanos;
+    }
+
+    /** Time the output thread is blocked in each sink write. */
+    public Histogram getWriteBlockedNanos() {
+        return writeBlockedNanos;
+    }
+
+    /** Underruns the output track has reported since it was opened. */
+    public Counter getUnderruns() {
+        return underruns;
+    }
+
+    /**
+     * How far the sink's presentation timestamps have wandered from the nominal sample rate since
+     * output last started streaming.
+     */
+    public Histogram getTimestampDriftNanos() {
+        return timestampDriftNanos;
+    }
+
+    /** The latest drift, signed: positive when output runs slower than its nominal rate. */
+    public Counter getLastTimestampDriftNanos() {
+        return lastTimestampDriftNanos;
+    }
+
+    /** Interval between consecutive UI frames on the monitored screens. */
+    public Histogram getFrameIntervalNanos() {
+        return frameIntervalNanos;
+    }
+
+    public Counter getDroppedFrames() {
+        return droppedFrames;
+    }
+
+    /** One line per metric. */
+    public String report() {
+        StringBuilder report = new StringBuilder();
+        report.append("enabled=").append(enabled).append('\n');
+        report.append(renderChunkNanos).append('\n');
+        report.append(toneSynthesisNanos).append('\n');
+        report.append(writeBlockedNanos).append('\n');
+        report.append(underruns).append('\n');
+        report.append(timestampDriftNanos).append('\n');
+        report.append(lastTimestampDriftNanos).append('\n');
+        report.append(frameIntervalNanos).append('\n');
+        report.append(droppedFrames).append('\n');
+        return report.toString();
+    }
+
+    public void reset() {
+        renderChunkNanos.reset();
+        toneSynthesisNanos.reset();
+        writeBlockedNanos.reset();
+        underruns.reset();
+        timestampDriftNanos.reset();
+        lastTimestampDriftNanos.reset();
+        frameIntervalNanos.reset();
+        droppedFrames.reset();
+    }
+}
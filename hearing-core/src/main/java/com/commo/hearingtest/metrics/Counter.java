@@ -0,0 +1,40 @@
+package com.commo.hearingtest.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/** Lock-free count or last-seen value, safe to update from the audio threads. */
+public final class Counter {
+
+    private final String name;
+    private final AtomicLong value = new AtomicLong();
+
+    public Counter(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void add(long delta) {
+        value.addAndGet(delta);
+    }
+
+    /** For values read from elsewhere, e.g. a running total the platform keeps. */
+    public void set(long newValue) {
+        value.set(newValue);
+    }
+
+    public long get() {
+        return value.get();
+    }
+
+    public void reset() {
+        value.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return name + "=" + value.get();
+    }
+}
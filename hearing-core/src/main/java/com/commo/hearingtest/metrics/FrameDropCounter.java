@@ -0,0 +1,39 @@
+package com.commo.hearingtest.metrics;
+
+/**
+ * Counts the frames a UI thread missed, from the vsync times of the frames it did draw: an
+ * interval of n frame periods means n - 1 were dropped. Intervals are rounded to whole periods,
+ * which absorbs vsync jitter. Call from the UI thread only.
+ */
+public final class FrameDropCounter {
+
+    private final long framePeriodNanos;
+    private final AudioMetrics metrics;
+    private long lastFrameNanos = -1;
+
+    public FrameDropCounter(long framePeriodNanos, AudioMetrics metrics) {
+        if (framePeriodNanos <= 0) {
+            throw new IllegalArgumentException("Frame period must be positive");
+        }
+        this.framePeriodNanos = framePeriodNanos;
+        this.metrics = metrics;
+    }
+
+    /** Records the frame drawn at {@code frameTimeNanos}. */
+    public void onFrame(long frameTimeNanos) {
+        if (lastFrameNanos >= 0 && frameTimeNanos > lastFrameNanos) {
+            long interval = frameTimeNanos - lastFrameNanos;
+            metrics.getFrameIntervalNanos().record(interval);
+            long periods = (interval + framePeriodNanos / 2) / framePeriodNanos;
+            if (periods > 1) {
+                metrics.getDroppedFrames().add(periods - 1);
+            }
+        }
+        lastFrameNanos = frameTimeNanos;
+    }
+
+    /** Forgets the last frame, e.g. when the screen pauses, so the pause is not counted as drops. */
+    public void reset() {
+        lastFrameNanos = -1;
+    }
+}
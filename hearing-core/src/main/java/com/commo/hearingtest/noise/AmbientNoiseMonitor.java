@@ -0,0 +1,159 @@
+package com.commo.hearingtest.noise;
+
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Watches the room while a test runs and says when background noise could mask a tone.
+ *
+ * <p>A monitor thread reads the microphone in {@link OctaveBandAnalyzer#HOP_SIZE} blocks and feeds
+ * the analyzer; after each frame it publishes the band levels, converted to dB SPL, together
+ * with their peak since the last {@link #resetPeaks()}. A test resets the peaks when a tone
+ * starts and asks {@link #isMasking} when the answer comes in.
+ *
+ * <p>The limits are the maximum permissible ambient noise levels of ANSI S3.1 for ears covered
+ * by supra-aural earphones, in octave bands, for testing down to 0 dB HL. As in the standard, the
+ * limit rises one for one with the level actually being tested.
+ */
+public final class AmbientNoiseMonitor {
+
+    /** Permissible noise per {@link OctaveBandAnalyzer#BAND_CENTERS} band, in dB SPL. */
+    public static final double[] MAX_PERMISSIBLE_DB_SPL = {39, 25, 21, 26, 34, 37, 37};
+    /**
+     * dB SPL of a 0 dBFS reading on an uncalibrated Android microphone: the CDD requires 90 dB
+     * SPL at 1 kHz to give an RMS of 2500 on the voice recognition source.
+     */
+    public static final double DEFAULT_MIC_OFFSET_DB = 90 - 20 * Math.log10(2500 * Math.sqrt(2) / 32768);
+
+    private final NoiseInput input;
+    private final OctaveBandAnalyzer analyzer;
+    private final double micOffsetDb;
+    private final Thread thread;
+    private final int bands = OctaveBandAnalyzer.BAND_CENTERS.length;
+    // Published under the monitor's lock; the lock is only held to copy a handful of doubles.
+    private final double[] levelsDbSpl = new double[bands];
+    private final double[] peaksDbSpl = new double[bands];
+    private long publishedFrames;
+    private long lastFrameNanos;
+    private volatile boolean running;
+    private boolean started;
+
+    public AmbientNoiseMonitor(NoiseInput input, ThreadFactory threadFactory) {
+        this(input, DEFAULT_MIC_OFFSET_DB, threadFactory);
+    }
+
+    public AmbientNoiseMonitor(NoiseInput input, double micOffsetDb, ThreadFactory threadFactory) {
+        this.input = input;
+        this.analyzer = new OctaveBandAnalyzer(input.getSampleRate());
+        this.micOffsetDb = micOffsetDb;
+        this.thread = threadFactory.newThread(new Runnable() {
+            @Override
+            public void run() {
+                monitorLoop();
+            }
+        });
+        thread.setName("noise-monitor");
+        resetLevels();
+    }
+
+    public synchronized void start() {
+        if (started) return;
+        started = true;
+        running = true;
+        input.start();
+        thread.start();
+    }
+
+    /** Stops the monitor thread, which releases the input on its way out. */
+    public synchronized void release() {
+        if (!started) {
+            input.release();
+            return;
+        }
+        running = false;
+    }
+
+    /** Starts a new peak window, e.g. at the onset of a tone. */
+    public synchronized void resetPeaks() {
+        for (int band = 0; band < bands; band++) {
+            peaksDbSpl[band] = levelsDbSpl[band];
+        }
+    }
+
+    /** Smoothed level of the octave band containing {@code frequency}, in dB SPL; NaN until measured. */
+    public synchronized double getLevelDbSpl(double frequency) {
+        return levelsDbSpl[OctaveBandAnalyzer.bandFor(frequency)];
+    }
+
+    /** Highest level of the band containing {@code frequency} since {@link #resetPeaks()}. */
+    public synchronized double getPeakDbSpl(double frequency) {
+        return peaksDbSpl[OctaveBandAnalyzer.bandFor(frequency)];
+    }
+
+    /** Noise limit for a tone at {@code frequency} presented at {@code levelDbHl}, in dB SPL. */
+    public static double limitDbSpl(double frequency, double levelDbHl) {
+        return MAX_PERMISSIBLE_DB_SPL[OctaveBandAnalyzer.bandFor(frequency)] + Math.max(0, levelDbHl);
+    }
+
+    /**
+     * Whether noise around {@code frequency} has exceeded the limit for {@code levelDbHl} since
+     * the peaks were reset. False while nothing has been measured.
+     */
+    public synchronized boolean isMasking(double frequency, double levelDbHl) {
+        double peak = peaksDbSpl[OctaveBandAnalyzer.bandFor(frequency)];
+        return !Double.isNaN(peak) && peak > limitDbSpl(frequency, levelDbHl);
+    }
+
+    /** Frames analysed since the monitor started. */
+    public synchronized long getFrameCount() {
+        return publishedFrames;
+    }
+
+    /** Time the last frame's analysis took. */
+    public synchronized long getLastFrameNanos() {
+        return lastFrameNanos;
+    }
+
+    Thread getThread() {
+        return thread;
+    }
+
+    private void resetLevels() {
+        for (int band = 0; band < bands; band++) {
+            levelsDbSpl[band] = Double.NaN;
+            peaksDbSpl[band] = Double.NaN;
+        }
+    }
+
+    private void monitorLoop() {
+        short[] block = new short[OctaveBandAnalyzer.HOP_SIZE];
+        try {
+            while (running) {
+                int read = input.read(block, 0, block.length);
+                if (read < 0) {
+                    break;
+                }
+                long start = System.nanoTime();
+                if (analyzer.process(block, 0, read) > 0) {
+                    publish(System.nanoTime() - start);
+                }
+            }
+        } finally {
+            running = false;
+            input.stop();
+            input.release();
+        }
+    }
+
+    private synchronized void publish(long frameNanos) {
+        for (int band = 0; band < bands; band++) {
+            // Peaks of the fast-weighted level, like a sound level meter's max hold.
+            double level = analyzer.getBandLevelDb(band) + micOffsetDb;
+            levelsDbSpl[band] = level;
+            if (Double.isNaN(peaksDbSpl[band]) || level > peaksDbSpl[band]) {
+                peaksDbSpl[band] = level;
+            }
+        }
+        publishedFrames = analyzer.getFrameCount();
+        lastFrameNanos = frameNanos;
+    }
+}
@@ -0,0 +1,22 @@
+package com.commo.hearingtest.noise;
+
+/**
+ * Source of mono 16-bit PCM from a microphone. Only the monitor thread reads from an input.
+ */
+public interface NoiseInput {
+
+    int getSampleRate();
+
+    void start();
+
+    /**
+     * Blocks until {@code length} samples have been read, or the input fails.
+     *
+     * @return the number of samples read, or a negative error code
+     */
+    int read(short[] data, int offset, int length);
+
+    void stop();
+
+    void release();
+}
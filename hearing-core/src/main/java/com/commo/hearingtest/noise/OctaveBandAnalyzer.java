@@ -0,0 +1,139 @@
+package com.commo.hearingtest.noise;
+
+import com.commo.hearingtest.dsp.Fft;
+
+/**
+ * Streaming octave-band levels of mono PCM.
+ *
+ * <p>Samples are collected into a window of {@link #FFT_SIZE}; every {@link #HOP_SIZE} new samples
+ * the window is Hann-weighted, transformed, and the power in each octave band (edges at
+ * {@code fc / sqrt 2} and {@code fc * sqrt 2}) is summed. Band powers are smoothed with the
+ * 125 ms "fast" time constant of a sound level meter. Levels are in dBFS, where a full-scale
+ * sine is 0 dB.
+ *
+ * <p>All buffers are allocated in the constructor; {@link #process} does not allocate. Not
+ * thread-safe: one thread feeds samples and reads levels.
+ */
+public final class OctaveBandAnalyzer {
+
+    /** Octave band centre frequencies. */
+    public static final int[] BAND_CENTERS = {125, 250, 500, 1000, 2000, 4000, 8000};
+    public static final int FFT_SIZE = 2048;
+    public static final int HOP_SIZE = FFT_SIZE / 2;
+    static final double TIME_CONSTANT_SECONDS = 0.125;
+    private static final double SILENCE_DB = -200;
+
+    private final int sampleRate;
+    private final Fft fft = new Fft(FFT_SIZE);
+    private final double[] window = new double[FFT_SIZE];
+    private final double powerScale;
+    private final double smoothing;
+    private final int[] firstBin = new int[BAND_CENTERS.length];
+    private final int[] endBin = new int[BAND_CENTERS.length];
+    private final double[] history = new double[FFT_SIZE];
+    private final double[] re = new double[FFT_SIZE];
+    private final double[] im = new double[FFT_SIZE];
+    private final double[] bandPower = new double[BAND_CENTERS.length];
+    private final double[] smoothedPower = new double[BAND_CENTERS.length];
+    private int next;
+    private int buffered;
+    private int sinceLastFrame;
+    private long frames;
+
+    public OctaveBandAnalyzer(int sampleRate) {
+        this.sampleRate = sampleRate;
+        double windowEnergy = 0;
+        for (int i = 0; i < FFT_SIZE; i++) {
+            window[i] = 0.5 - 0.5 * Math.cos(2 * Math.PI * i / FFT_SIZE);
+            windowEnergy += window[i] * window[i];
+        }
+        // One-sided bin power to mean square of the unwindowed signal, then x2 so a sine of
+        // amplitude 1 reads 0 dB.
+        powerScale = 2 * 2 / (FFT_SIZE * windowEnergy);
+        smoothing = 1 - Math.exp(-(double) HOP_SIZE / sampleRate / TIME_CONSTANT_SECONDS);
+        double binHz = (double) sampleRate / FFT_SIZE;
+        for (int band = 0; band < BAND_CENTERS.length; band++) {
+            double low = BAND_CENTERS[band] / Math.sqrt(2);
+            double high = Math.min(BAND_CENTERS[band] * Math.sqrt(2), sampleRate / 2.0);
+            firstBin[band] = Math.max(1, (int) Math.ceil(low / binHz));
+            endBin[band] = Math.min(FFT_SIZE / 2, (int) Math.ceil(high / binHz));
+        }
+    }
+
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    /** Feeds {@code length} samples; returns the number of analysis frames they completed. */
+    public int process(short[] pcm, int offset, int length) {
+        int completed = 0;
+        for (int i = 0; i < length; i++) {
+            history[next] = pcm[offset + i] / 32768.0;
+            if (++next == FFT_SIZE) {
+                next = 0;
+            }
+            if (buffered < FFT_SIZE) {
+                buffered++;
+            }
+            if (++sinceLastFrame >= HOP_SIZE && buffered == FFT_SIZE) {
+                sinceLastFrame = 0;
+                analyze();
+                completed++;
+            }
+        }
+        return completed;
+    }
+
+    private void analyze() {
+        // history is circular; next is the oldest sample.
+        for (int i = 0; i < FFT_SIZE; i++) {
+            int j = next + i;
+            re[i] = history[j < FFT_SIZE ? j : j - FFT_SIZE] * window[i];
+            im[i] = 0;
+        }
+        fft.transform(re, im);
+        for (int band = 0; band < BAND_CENTERS.length; band++) {
+            double sum = 0;
+            for (int k = firstBin[band]; k < endBin[band]; k++) {
+                sum += re[k] * re[k] + im[k] * im[k];
+            }
+            bandPower[band] = sum * powerScale;
+            smoothedPower[band] = frames == 0
+                    ? bandPower[band]
+                    : smoothedPower[band] + smoothing * (bandPower[band] - smoothedPower[band]);
+        }
+        frames++;
+    }
+
+    /** Frames analysed so far. */
+    public long getFrameCount() {
+        return frames;
+    }
+
+    /** Whether {@code band} lies below the Nyquist frequency at this sample rate. */
+    public boolean isBandAvailable(int band) {
+        return endBin[band] > firstBin[band];
+    }
+
+    /** Smoothed level of {@code band} in dBFS; NaN before the first frame or if unavailable. */
+    public double getBandLevelDb(int band) {
+        if (frames == 0 || !isBandAvailable(band)) return Double.NaN;
+        return toDb(smoothedPower[band]);
+    }
+
+    /** Level of {@code band} in the last frame alone, in dBFS. */
+    public double getInstantBandLevelDb(int band) {
+        if (frames == 0 || !isBandAvailable(band)) return Double.NaN;
+        return toDb(bandPower[band]);
+    }
+
+    /** Index of the octave band containing {@code frequency}, clamped to the outer bands. */
+    public static int bandFor(double frequency) {
+        int band = (int) Math.round(Math.log(frequency / BAND_CENTERS[0]) / Math.log(2));
+        return Math.max(0, Math.min(BAND_CENTERS.length - 1, band));
+    }
+
+    private static double toDb(double power) {
+        return power > 0 ? 10 * Math.log10(power) : SILENCE_DB;
+    }
+}
@@ -0,0 +1,115 @@
+package com.commo.hearingtest.protocol;
+
+import com.commo.hearingtest.audio.Stimulus;
+import com.commo.hearingtest.calibration.CalibrationProfile;
+import com.commo.hearingtest.calibration.GainTable;
+import com.commo.hearingtest.core.Ear;
+import com.commo.hearingtest.core.LateralizationTest;
+import com.commo.hearingtest.core.LeftRightTest;
+import com.commo.hearingtest.core.ThresholdSearch;
+import com.commo.hearingtest.dsp.Lateralizer;
+import com.commo.hearingtest.dsp.MaskingNoise;
+import com.commo.hearingtest.dsp.ToneCache;
+import com.commo.hearingtest.dsp.ToneSpec;
+
+/**
+ * The stimuli the app presents, in one place, so that the test screens and offline renders of a
+ * session play exactly the same tones.
+ *
+ * <p>Levels are in dB HL and become amplitudes through the headphones' {@link GainTable}. The
+ * frequency test's ceiling is lowered to whatever the headphones can reach at every test
+ * frequency.
+ *
+ * <p>The values here make up {@link TestProtocol#standard()}; the frequency and left/right
+ * stimuli are built by that protocol, so a protocol read from a file plays them the same way.
+ */
+public final class StandardProtocol {
+
+    public static final int TONE_DURATION_MS = 1000;
+    /** Gap before an automatically presented tone, randomized so the onset cannot be anticipated. */
+    public static final int AUTO_PLAY_GAP_MS = 500;
+    public static final int AUTO_PLAY_JITTER_MS = 1000;
+
+    public static final double MIN_LEVEL_DB_HL = -10;
+    public static final double MAX_LEVEL_DB_HL = 90;
+    public static final double START_LEVEL_DB_HL = 40;
+    /** Comfortably above threshold; about the 30% of full scale it used to be on uncalibrated output. */
+    public static final double LEFT_RIGHT_LEVEL_DB_HL = 70;
+    /**
+     * Masker in the ear opposite the left/right tone. Supra-aural headphones attenuate sound
+     * crossing the head by at least 40 dB, so the tone reaches the other ear at up to 30 dB HL;
+     * the masker sits 10 dB above that.
+     */
+    public static final double LEFT_RIGHT_MASKING_LEVEL_DB_HL = LEFT_RIGHT_LEVEL_DB_HL - 40 + 10;
+    public static final MaskingNoise.Type LEFT_RIGHT_MASKING = MaskingNoise.Type.NARROW_BAND;
+    /** Lateralization bursts are short enough to keep trials quick, long enough to lateralize well. */
+    public static final int LATERALIZATION_TONE_MS = 500;
+    public static final double LATERALIZATION_LEVEL_DB_HL = 60;
+    /**
+     * The fixed walk played every tone at 40% of full scale on uncalibrated output; its result is
+     * derived at that level.
+     */
+    public static final double LEGACY_LEVEL_DB_HL =
+            20 * Math.log10(0.4) - CalibrationProfile.NOMINAL_REFERENCE_DBFS;
+
+    private StandardProtocol() {
+    }
+
+    /** Highest frequency-test level the headphones can play at every test frequency. */
+    public static double maxLevelDbHl(GainTable gainTable) {
+        return TestProtocol.standard().maxLevelDbHl(gainTable);
+    }
+
+    /** Threshold search over the default frequencies and ears, up to {@code maxLevelDbHl}. */
+    public static ThresholdSearch newThresholdSearch(double maxLevelDbHl) {
+        return TestProtocol.standard().newThresholdSearch(maxLevelDbHl);
+    }
+
+    /** Tone for the search's current frequency, ear and level. */
+    public static ToneSpec frequencyTone(ThresholdSearch search, GainTable gainTable, int sampleRate) {
+        return TestProtocol.standard().frequencyTone(search, gainTable, sampleRate);
+    }
+
+    /** Tone for the left/right test's current trial. */
+    public static ToneSpec leftRightTone(LeftRightTest test, GainTable gainTable, int sampleRate) {
+        return TestProtocol.standard().leftRightTone(test, gainTable, sampleRate);
+    }
+
+    /**
+     * The left/right trial as played: the cached tone with {@link #LEFT_RIGHT_MASKING} noise in the
+     * other ear. The noise is set to the power of a tone at {@link #LEFT_RIGHT_MASKING_LEVEL_DB_HL}
+     * at the probe frequency, and {@code noiseSeed} fixes its samples.
+     */
+    public static Stimulus leftRightStimulus(LeftRightTest test, GainTable gainTable, ToneCache tones,
+                                             int sampleRate, long noiseSeed) {
+        return TestProtocol.standard().leftRightStimulus(test, gainTable, tones, sampleRate, noiseSeed);
+    }
+
+    /** Burst renderer for a lateralization test of {@code cue}; build once per test. */
+    public static Lateralizer lateralizer(LateralizationTest.Cue cue, int sampleRate) {
+        return new Lateralizer(LateralizationTest.frequencyFor(cue), LATERALIZATION_TONE_MS, sampleRate);
+    }
+
+    /**
+     * The lateralization test's current trial, rendered into a new buffer. An ILD is split evenly
+     * between the ears around {@link #LATERALIZATION_LEVEL_DB_HL}, and each ear's level goes through
+     * its own calibration, so mismatched earphones do not add an ILD of their own.
+     */
+    public static short[] lateralizationTrial(LateralizationTest test, Lateralizer lateralizer, GainTable gainTable) {
+        double itd = 0;
+        double ild = 0;
+        if (test.getCue() == LateralizationTest.Cue.ITD) {
+            itd = test.getSignedDifference();
+        } else {
+            ild = test.getSignedDifference();
+        }
+        double frequency = lateralizer.getFrequency();
+        float left = gainTable.amplitudeFor(Ear.LEFT, frequency, LATERALIZATION_LEVEL_DB_HL - ild / 2);
+        float right = gainTable.amplitudeFor(Ear.RIGHT, frequency, LATERALIZATION_LEVEL_DB_HL + ild / 2);
+        return lateralizer.render(itd, left, right);
+    }
+
+    public static int channelFor(Ear ear) {
+        return ear == Ear.LEFT ? ToneSpec.CHANNEL_LEFT : ToneSpec.CHANNEL_RIGHT;
+    }
+}
@@ -0,0 +1,426 @@
+package com.commo.hearingtest.protocol;
+
+import com.commo.hearingtest.audio.MaskedToneSource;
+import com.commo.hearingtest.audio.Stimulus;
+import com.commo.hearingtest.calibration.GainTable;
+import com.commo.hearingtest.core.Ear;
+import com.commo.hearingtest.core.HughsonWestlake;
+import com.commo.hearingtest.core.LeftRightTest;
+import com.commo.hearingtest.core.QuestProcedure;
+import com.commo.hearingtest.core.ThresholdProcedure;
+import com.commo.hearingtest.core.ThresholdSearch;
+import com.commo.hearingtest.dsp.MaskingNoise;
+import com.commo.hearingtest.dsp.ToneCache;
+import com.commo.hearingtest.dsp.ToneSpec;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * One test protocol in compiled form: which frequencies and ears the frequency test visits, how
+ * tones are timed and levelled, when a threshold search stops, and how many left/right trials
+ * are run. Immutable once built, so a protocol may be shared across threads and screens.
+ *
+ * <p>Protocols are plain text so they can be shipped and swapped without a new build:
+ *
+ * <pre>
+ * # comment
+ * name=선별 검사
+ * frequencies=1000 2000 4000 500
+ * ears=left right
+ * procedure=quest
+ * max_presentations=12
+ * </pre>
+ *
+ * Keys left out keep the {@link #standard() standard} protocol's value; unknown keys and invalid
+ * values are rejected when the file is parsed, not when a test reaches them. Levels are in dB HL.
+ */
+public final class TestProtocol {
+
+    /** Threshold procedure run at each frequency. */
+    public enum Procedure {
+        QUEST("quest"),
+        HUGHSON_WESTLAKE("hughson-westlake");
+
+        private final String key;
+
+        Procedure(String key) {
+            this.key = key;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        static Procedure forKey(String key) {
+            for (Procedure procedure : values()) {
+                if (procedure.key.equals(key)) {
+                    return procedure;
+                }
+            }
+            throw new IllegalArgumentException("Unknown procedure: " + key);
+        }
+    }
+
+    public static final String STANDARD_ID = "standard";
+
+    /**
+     * Lowest output rate tones are synthesized at; every frequency must lie below its Nyquist
+     * frequency, so a protocol plays on any output the app opens.
+     */
+    public static final int MIN_SAMPLE_RATE = 44100;
+
+    private static final TestProtocol STANDARD = new TestProtocol(STANDARD_ID, "기본 검사",
+            ThresholdSearch.DEFAULT_FREQUENCIES, ThresholdSearch.DEFAULT_EARS,
+            StandardProtocol.TONE_DURATION_MS, StandardProtocol.AUTO_PLAY_GAP_MS, StandardProtocol.AUTO_PLAY_JITTER_MS,
+            StandardProtocol.MIN_LEVEL_DB_HL, StandardProtocol.MAX_LEVEL_DB_HL, StandardProtocol.START_LEVEL_DB_HL,
+            Procedure.QUEST, QuestProcedure.DEFAULT_MAX_PRESENTATIONS,
+            LeftRightTest.DEFAULT_TRIALS, StandardProtocol.LEFT_RIGHT_LEVEL_DB_HL);
+
+    private final String id;
+    private final String name;
+    private final int[] frequencies;
+    private final Ear[] ears;
+    private final int toneDurationMs;
+    private final int autoPlayGapMs;
+    private final int autoPlayJitterMs;
+    private final double minLevelDbHl;
+    private final double maxLevelDbHl;
+    private final double startLevelDbHl;
+    private final Procedure procedure;
+    private final int maxPresentations;
+    private final int leftRightTrials;
+    private final double leftRightLevelDbHl;
+
+    public TestProtocol(String id, String name, int[] frequencies, Ear[] ears,
+                        int toneDurationMs, int autoPlayGapMs, int autoPlayJitterMs,
+                        double minLevelDbHl, double maxLevelDbHl, double startLevelDbHl,
+                        Procedure procedure, int maxPresentations,
+                        int leftRightTrials, double leftRightLevelDbHl) {
+        if (frequencies.length == 0 || ears.length == 0) {
+            throw new IllegalArgumentException("Nothing to test");
+        }
+        int[] sorted = frequencies.clone();
+        Arrays.sort(sorted);
+        for (int i = 0; i < sorted.length; i++) {
+            if (sorted[i] <= 0 || (i > 0 && sorted[i] == sorted[i - 1])) {
+                throw new IllegalArgumentException("Frequencies must be positive and distinct");
+            }
+        }
+        if (sorted[sorted.length - 1] >= MIN_SAMPLE_RATE / 2) {
+            throw new IllegalArgumentException("Frequencies must be below " + MIN_SAMPLE_RATE / 2 + " Hz");
+        }
+        if (ears.length > 2 || (ears.length == 2 && ears[0] == ears[1])) {
+            throw new IllegalArgumentException("Each ear may be tested once");
+        }
+        // Room for both ramps of ToneSpec.
+        if (toneDurationMs < 2 * ToneSpec.DEFAULT_RAMP_MS || autoPlayGapMs < 0 || autoPlayJitterMs < 0) {
+            throw new IllegalArgumentException("Invalid tone timing");
+        }
+        if (!Double.isFinite(minLevelDbHl) || !Double.isFinite(maxLevelDbHl) || !Double.isFinite(startLevelDbHl)
+                || !Double.isFinite(leftRightLevelDbHl)) {
+            throw new IllegalArgumentException("Levels must be finite");
+        }
+        if (!(minLevelDbHl < maxLevelDbHl) || startLevelDbHl < minLevelDbHl || startLevelDbHl > maxLevelDbHl) {
+            throw new IllegalArgumentException("Levels must satisfy min <= start <= max");
+        }
+        if (leftRightLevelDbHl < minLevelDbHl || leftRightLevelDbHl > maxLevelDbHl) {
+            throw new IllegalArgumentException("Left/right level must lie between min and max");
+        }
+        if (maxPresentations <= 0 || leftRightTrials <= 0) {
+            throw new IllegalArgumentException("Trial counts must be positive");
+        }
+        this.id = id;
+        this.name = name;
+        this.frequencies = frequencies.clone();
+        this.ears = ears.clone();
+        this.toneDurationMs = toneDurationMs;
+        this.autoPlayGapMs = autoPlayGapMs;
+        this.autoPlayJitterMs = autoPlayJitterMs;
+        this.minLevelDbHl = minLevelDbHl;
+        this.maxLevelDbHl = maxLevelDbHl;
+        this.startLevelDbHl = startLevelDbHl;
+        this.procedure = procedure;
+        this.maxPresentations = maxPresentations;
+        this.leftRightTrials = leftRightTrials;
+        this.leftRightLevelDbHl = leftRightLevelDbHl;
+    }
+
+    /** The protocol the app has always run, with the values in {@link StandardProtocol}. */
+    public static TestProtocol standard() {
+        return STANDARD;
+    }
+
+    /** Reads a protocol in the text format above; {@code id} names it, e.g. after its file. */
+    public static TestProtocol parse(Reader reader, String id) throws IOException {
+        BufferedReader lines = new BufferedReader(reader);
+        TestProtocol base = STANDARD;
+        String name = id;
+        int[] frequencies = base.frequencies;
+        Ear[] ears = base.ears;
+        int toneDurationMs = base.toneDurationMs;
+        int autoPlayGapMs = base.autoPlayGapMs;
+        int autoPlayJitterMs = base.autoPlayJitterMs;
+        double minLevelDbHl = base.minLevelDbHl;
+        double maxLevelDbHl = base.maxLevelDbHl;
+        double startLevelDbHl = base.startLevelDbHl;
+        Procedure procedure = base.procedure;
+        int maxPresentations = base.maxPresentations;
+        int leftRightTrials = base.leftRightTrials;
+        double leftRightLevelDbHl = base.leftRightLevelDbHl;
+        String line;
+        int lineNumber = 0;
+        while ((line = lines.readLine()) != null) {
+            lineNumber++;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) continue;
+            int equals = line.indexOf('=');
+            if (equals <= 0) {
+                throw new IOException("Line " + lineNumber + ": expected key=value");
+            }
+            String key = line.substring(0, equals).trim();
+            String value = line.substring(equals + 1).trim();
+            try {
+                if ("name".equals(key)) {
+                    name = value;
+                } else if ("frequencies".equals(key)) {
+                    frequencies = parseInts(value);
+                } else if ("ears".equals(key)) {
+                    ears = parseEars(value);
+                } else if ("tone_ms".equals(key)) {
+                    toneDurationMs = Integer.parseInt(value);
+                } else if ("gap_ms".equals(key)) {
+                    autoPlayGapMs = Integer.parseInt(value);
+                } else if ("jitter_ms".equals(key)) {
+                    autoPlayJitterMs = Integer.parseInt(value);
+                } else if ("min_level".equals(key)) {
+                    minLevelDbHl = Double.parseDouble(value);
+                } else if ("max_level".equals(key)) {
+                    maxLevelDbHl = Double.parseDouble(value);
+                } else if ("start_level".equals(key)) {
+                    startLevelDbHl = Double.parseDouble(value);
+                } else if ("procedure".equals(key)) {
+                    procedure = Procedure.forKey(value);
+                } else if ("max_presentations".equals(key)) {
+                    maxPresentations = Integer.parseInt(value);
+                } else if ("left_right_trials".equals(key)) {
+                    leftRightTrials = Integer.parseInt(value);
+                } else if ("left_right_level".equals(key)) {
+                    leftRightLevelDbHl = Double.parseDouble(value);
+                } else {
+                    throw new IOException("Line " + lineNumber + ": unknown key " + key);
+                }
+            } catch (IllegalArgumentException e) {
+                // NumberFormatException included.
+                throw new IOException("Line " + lineNumber + ": " + e.getMessage());
+            }
+        }
+        try {
+            return new TestProtocol(id, name, frequencies, ears, toneDurationMs, autoPlayGapMs, autoPlayJitterMs,
+                    minLevelDbHl, maxLevelDbHl, startLevelDbHl, procedure, maxPresentations,
+                    leftRightTrials, leftRightLevelDbHl);
+        } catch (IllegalArgumentException e) {
+            throw new IOException(id + ": " + e.getMessage());
+        }
+    }
+
+    private static int[] parseInts(String value) {
+        String[] fields = value.split("[\\s,]+");
+        int[] values = new int[fields.length];
+        for (int i = 0; i < fields.length; i++) {
+            values[i] = Integer.parseInt(fields[i]);
+        }
+        return values;
+    }
+
+    private static Ear[] parseEars(String value) {
+        String[] fields = value.split("[\\s,]+");
+        Ear[] ears = new Ear[fields.length];
+        for (int i = 0; i < fields.length; i++) {
+            if ("left".equals(fields[i])) {
+                ears[i] = Ear.LEFT;
+            } else if ("right".equals(fields[i])) {
+                ears[i] = Ear.RIGHT;
+            } else {
+                throw new IllegalArgumentException("Unknown ear: " + fields[i]);
+            }
+        }
+        return ears;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /** Frequencies in the order they are tested. */
+    public int[] getFrequencies() {
+        return frequencies.clone();
+    }
+
+    public Ear[] getEars() {
+        return ears.clone();
+    }
+
+    public int getToneDurationMs() {
+        return toneDurationMs;
+    }
+
+    /** Gap before an automatically presented tone. */
+    public int getAutoPlayGapMs() {
+        return autoPlayGapMs;
+    }
+
+    /** Random extra gap, up to this much, so the onset cannot be anticipated. */
+    public int getAutoPlayJitterMs() {
+        return autoPlayJitterMs;
+    }
+
+    public double getMinLevelDbHl() {
+        return minLevelDbHl;
+    }
+
+    /** Ceiling before the headphones are taken into account; see {@link #maxLevelDbHl(GainTable)}. */
+    public double getMaxLevelDbHl() {
+        return maxLevelDbHl;
+    }
+
+    public double getStartLevelDbHl() {
+        return startLevelDbHl;
+    }
+
+    public Procedure getProcedure() {
+        return procedure;
+    }
+
+    /** Presentations after which a frequency's search gives up. */
+    public int getMaxPresentations() {
+        return maxPresentations;
+    }
+
+    public int getLeftRightTrials() {
+        return leftRightTrials;
+    }
+
+    public double getLeftRightLevelDbHl() {
+        return leftRightLevelDbHl;
+    }
+
+    /** Highest frequency-test level the headphones can play at every frequency of this protocol. */
+    public double maxLevelDbHl(GainTable gainTable) {
+        return Math.min(maxLevelDbHl, gainTable.getMaxLevelDbHl(frequencies));
+    }
+
+    /** Threshold search over this protocol's frequencies and ears, up to {@code maxLevelDbHl}. */
+    public ThresholdSearch newThresholdSearch(double maxLevelDbHl) {
+        return newThresholdSearch(ears, maxLevelDbHl);
+    }
+
+    private ThresholdSearch newThresholdSearch(Ear[] ears, double maxLevelDbHl) {
+        return new ThresholdSearch(frequencies, ears, Math.min(startLevelDbHl, maxLevelDbHl),
+                procedureFactory(maxLevelDbHl));
+    }
+
+    private ThresholdProcedure.Factory procedureFactory(final double maxLevelDbHl) {
+        final double min = minLevelDbHl;
+        final int max = maxPresentations;
+        if (procedure == Procedure.HUGHSON_WESTLAKE) {
+            return new ThresholdProcedure.Factory() {
+                @Override
+                public ThresholdProcedure create(double startLevelDb) {
+                    return new HughsonWestlake(startLevelDb, min, maxLevelDbHl, HughsonWestlake.DEFAULT_STEP_DOWN_DB,
+                            HughsonWestlake.DEFAULT_STEP_UP_DB, HughsonWestlake.DEFAULT_REQUIRED_HITS, max);
+                }
+            };
+        }
+        final int minPresentations = Math.min(QuestProcedure.DEFAULT_MIN_PRESENTATIONS, max);
+        return new ThresholdProcedure.Factory() {
+            @Override
+            public ThresholdProcedure create(double startLevelDb) {
+                return new QuestProcedure(startLevelDb, QuestProcedure.DEFAULT_PRIOR_SD_DB, min, maxLevelDbHl,
+                        QuestProcedure.DEFAULT_GRID_STEP_DB, QuestProcedure.DEFAULT_SPREAD_DB,
+                        QuestProcedure.DEFAULT_GUESS_RATE, QuestProcedure.DEFAULT_LAPSE_RATE,
+                        QuestProcedure.DEFAULT_STOP_SD_DB, minPresentations, max);
+            }
+        };
+    }
+
+    /** Tone for the search's current frequency, ear and level. */
+    public ToneSpec frequencyTone(ThresholdSearch search, GainTable gainTable, int sampleRate) {
+        Ear ear = search.getCurrentEar();
+        int frequency = search.getCurrentFrequency();
+        float level = gainTable.amplitudeFor(ear, frequency, search.getCurrentLevelDb());
+        return ToneSpec.of(frequency, toneDurationMs, level, StandardProtocol.channelFor(ear), sampleRate);
+    }
+
+    public LeftRightTest newLeftRightTest() {
+        return new LeftRightTest(leftRightTrials, new Random());
+    }
+
+    /** Tone for the left/right test's current trial. */
+    public ToneSpec leftRightTone(LeftRightTest test, GainTable gainTable, int sampleRate) {
+        return leftRightTone(test.isCurrentSoundLeft() ? Ear.LEFT : Ear.RIGHT, gainTable, sampleRate);
+    }
+
+    private ToneSpec leftRightTone(Ear ear, GainTable gainTable, int sampleRate) {
+        float level = gainTable.amplitudeFor(ear, LeftRightTest.TONE_FREQUENCY, leftRightLevelDbHl);
+        return ToneSpec.of(LeftRightTest.TONE_FREQUENCY, toneDurationMs, level,
+                StandardProtocol.channelFor(ear), sampleRate);
+    }
+
+    /**
+     * The left/right trial as played: the cached tone with
+     * {@link StandardProtocol#LEFT_RIGHT_MASKING} noise in the other ear, 30 dB below the tone
+     * (see {@link StandardProtocol#LEFT_RIGHT_MASKING_LEVEL_DB_HL}). {@code noiseSeed} fixes its
+     * samples.
+     */
+    public Stimulus leftRightStimulus(LeftRightTest test, GainTable gainTable, ToneCache tones,
+                                      int sampleRate, long noiseSeed) {
+        ToneSpec tone = leftRightTone(test, gainTable, sampleRate);
+        Ear maskedEar = test.isCurrentSoundLeft() ? Ear.RIGHT : Ear.LEFT;
+        double maskingLevel = leftRightLevelDbHl
+                - (StandardProtocol.LEFT_RIGHT_LEVEL_DB_HL - StandardProtocol.LEFT_RIGHT_MASKING_LEVEL_DB_HL);
+        float noiseRms = gainTable.amplitudeFor(maskedEar, LeftRightTest.TONE_FREQUENCY, maskingLevel)
+                / (float) Math.sqrt(2);
+        MaskingNoise noise = MaskingNoise.of(StandardProtocol.LEFT_RIGHT_MASKING, LeftRightTest.TONE_FREQUENCY,
+                sampleRate, noiseSeed);
+        return new Stimulus(new MaskedToneSource(tones.get(tone), noise, maskedEar, noiseRms, tone.getRampFrames()));
+    }
+
+    /**
+     * Renders into {@code tones} every tone whose level is known before the listener answers:
+     * the first frequency-test tone of each ear and both left/right tones. A test started with
+     * the same headphones and sample rate then begins on cache hits.
+     *
+     * @return the number of tones that were not cached yet
+     */
+    public int prerender(ToneCache tones, GainTable gainTable, int sampleRate) {
+        int rendered = 0;
+        double maxLevel = maxLevelDbHl(gainTable);
+        for (Ear ear : ears) {
+            ThresholdSearch search = newThresholdSearch(new Ear[]{ear}, maxLevel);
+            search.start();
+            rendered += prerender(tones, frequencyTone(search, gainTable, sampleRate));
+        }
+        rendered += prerender(tones, leftRightTone(Ear.LEFT, gainTable, sampleRate));
+        rendered += prerender(tones, leftRightTone(Ear.RIGHT, gainTable, sampleRate));
+        return rendered;
+    }
+
+    private static int prerender(ToneCache tones, ToneSpec spec) {
+        if (tones.peek(spec) != null) return 0;
+        tones.get(spec);
+        return 1;
+    }
+
+    @Override
+    public String toString() {
+        return name + " (" + id + ")";
+    }
+}
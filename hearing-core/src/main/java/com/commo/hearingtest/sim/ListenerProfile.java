@@ -0,0 +1,114 @@
+package com.commo.hearingtest.sim;
+
+import java.util.Arrays;
+
+/**
+ * A synthetic listener: an audiogram per ear plus the two classic psychometric nuisance rates.
+ *
+ * <p>Thresholds are in dB relative to the same reference as the presentation levels passed to
+ * {@link VirtualListener}; between audiogram points they are interpolated linearly over
+ * log-frequency and held constant beyond the ends.
+ *
+ * <ul>
+ *   <li>{@code guessRate}: chance of reporting a tone that was not heard (false alarm).</li>
+ *   <li>{@code lapseRate}: chance of missing a tone that was clearly audible (inattention).</li>
+ * </ul>
+ */
+public final class ListenerProfile {
+
+    /** Spread of the psychometric function in dB; 2 dB takes detection from 27% to 73%. */
+    public static final double DEFAULT_SPREAD_DB = 2.0;
+
+    private final String name;
+    private final int[] frequencies;
+    private final double[] leftThresholdsDb;
+    private final double[] rightThresholdsDb;
+    private final double guessRate;
+    private final double lapseRate;
+    private final double spreadDb;
+
+    public ListenerProfile(String name, int[] frequencies, double[] leftThresholdsDb,
+                           double[] rightThresholdsDb, double guessRate, double lapseRate,
+                           double spreadDb) {
+        if (frequencies.length == 0
+                || leftThresholdsDb.length != frequencies.length
+                || rightThresholdsDb.length != frequencies.length) {
+            throw new IllegalArgumentException("Audiogram needs one threshold per frequency and ear");
+        }
+        for (int i = 1; i < frequencies.length; i++) {
+            if (frequencies[i] <= frequencies[i - 1]) {
+                throw new IllegalArgumentException("Audiogram frequencies must be ascending");
+            }
+        }
+        if (guessRate < 0 || lapseRate < 0 || guessRate + lapseRate >= 1) {
+            throw new IllegalArgumentException("Need 0 <= guessRate + lapseRate < 1");
+        }
+        if (spreadDb <= 0) {
+            throw new IllegalArgumentException("spreadDb must be positive");
+        }
+        this.name = name;
+        this.frequencies = frequencies.clone();
+        this.leftThresholdsDb = leftThresholdsDb.clone();
+        this.rightThresholdsDb = rightThresholdsDb.clone();
+        this.guessRate = guessRate;
+        this.lapseRate = lapseRate;
+        this.spreadDb = spreadDb;
+    }
+
+    /** Same audiogram in both ears, default psychometric spread. */
+    public static ListenerProfile symmetric(String name, int[] frequencies, double[] thresholdsDb,
+                                            double guessRate, double lapseRate) {
+        return new ListenerProfile(name, frequencies, thresholdsDb, thresholdsDb,
+                guessRate, lapseRate, DEFAULT_SPREAD_DB);
+    }
+
+    /** Flat audiogram: the same threshold at every frequency in both ears. */
+    public static ListenerProfile flat(String name, double thresholdDb, double guessRate, double lapseRate) {
+        return symmetric(name, new int[]{1000}, new double[]{thresholdDb}, guessRate, lapseRate);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public double getGuessRate() {
+        return guessRate;
+    }
+
+    public double getLapseRate() {
+        return lapseRate;
+    }
+
+    public double getSpreadDb() {
+        return spreadDb;
+    }
+
+    public double getThresholdDb(int frequency, boolean left) {
+        return interpolate(left ? leftThresholdsDb : rightThresholdsDb, frequency);
+    }
+
+    /** Threshold of the better ear, which is what a binaural presentation is heard with. */
+    public double getBinauralThresholdDb(int frequency) {
+        return Math.min(getThresholdDb(frequency, true), getThresholdDb(frequency, false));
+    }
+
+    private double interpolate(double[] thresholds, int frequency) {
+        int last = frequencies.length - 1;
+        if (frequency <= frequencies[0]) return thresholds[0];
+        if (frequency >= frequencies[last]) return thresholds[last];
+        int i = 1;
+        while (frequencies[i] < frequency) {
+            i++;
+        }
+        double x0 = Math.log(frequencies[i - 1]);
+        double t = (Math.log(frequency) - x0) / (Math.log(frequencies[i]) - x0);
+        return thresholds[i - 1] + (thresholds[i] - thresholds[i - 1]) * t;
+    }
+
+    @Override
+    public String toString() {
+        return name + " " + Arrays.toString(frequencies) + " L" + Arrays.toString(leftThresholdsDb)
+                + " R" + Arrays.toString(rightThresholdsDb)
+                + " guess " + guessRate + " lapse " + lapseRate;
+    }
+}
@@ -0,0 +1,80 @@
+package com.commo.hearingtest.sim;
+
+import com.commo.hearingtest.core.FrequencyTestResult;
+import com.commo.hearingtest.core.LeftRightTestResult;
+
+import java.util.Locale;
+
+/** How the app's result analysis classified one {@link ListenerProfile} over many runs. */
+public final class ProfileReport {
+
+    private final ListenerProfile profile;
+    private final int[] frequencies;
+    private final Tally tally;
+
+    ProfileReport(ListenerProfile profile, int[] frequencies, Tally tally) {
+        this.profile = profile;
+        this.frequencies = frequencies;
+        this.tally = tally;
+    }
+
+    public ListenerProfile getProfile() {
+        return profile;
+    }
+
+    public long getRuns() {
+        return tally.runs;
+    }
+
+    public long getFrequencyCategoryCount(FrequencyTestResult.Category category) {
+        return tally.frequencyCategories[category.ordinal()];
+    }
+
+    public double getFrequencyCategoryRate(FrequencyTestResult.Category category) {
+        return rate(getFrequencyCategoryCount(category));
+    }
+
+    public long getLeftRightCategoryCount(LeftRightTestResult.Category category) {
+        return tally.leftRightCategories[category.ordinal()];
+    }
+
+    public double getLeftRightCategoryRate(LeftRightTestResult.Category category) {
+        return rate(getLeftRightCategoryCount(category));
+    }
+
+    /** Mean left/right accuracy over all runs, 0 to 100. */
+    public double getMeanAccuracy() {
+        return tally.leftRightTrials == 0 ? 0 : 100.0 * tally.correctAnswers / tally.leftRightTrials;
+    }
+
+    /** Runs whose reported lowest detected frequency was {@code frequency}; -1 for none heard. */
+    public long getLowestHeardCount(int frequency) {
+        if (frequency == -1) {
+            return tally.lowestHeard[frequencies.length];
+        }
+        for (int i = 0; i < frequencies.length; i++) {
+            if (frequencies[i] == frequency) {
+                return tally.lowestHeard[i];
+            }
+        }
+        return 0;
+    }
+
+    private double rate(long count) {
+        return tally.runs == 0 ? 0 : (double) count / tally.runs;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(profile.getName()).append(" (").append(tally.runs).append(" runs)\n  frequency:");
+        for (FrequencyTestResult.Category category : FrequencyTestResult.Category.values()) {
+            sb.append(String.format(Locale.ROOT, " %s %.1f%%", category, 100 * getFrequencyCategoryRate(category)));
+        }
+        sb.append("\n  left/right:");
+        for (LeftRightTestResult.Category category : LeftRightTestResult.Category.values()) {
+            sb.append(String.format(Locale.ROOT, " %s %.1f%%", category, 100 * getLeftRightCategoryRate(category)));
+        }
+        sb.append(String.format(Locale.ROOT, " (mean accuracy %.1f%%)", getMeanAccuracy()));
+        return sb.toString();
+    }
+}
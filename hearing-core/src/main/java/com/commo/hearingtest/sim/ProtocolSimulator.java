@@ -0,0 +1,170 @@
+package com.commo.hearingtest.sim;
+
+import com.commo.hearingtest.core.FrequencyTest;
+import com.commo.hearingtest.core.FrequencyTestResult;
+import com.commo.hearingtest.core.LeftRightTest;
+import com.commo.hearingtest.core.LeftRightTestResult;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Runs the real {@link FrequencyTest} and {@link LeftRightTest} state machines against many
+ * {@link VirtualListener}s in parallel and tallies how their result analysis classifies each
+ * {@link ListenerProfile}.
+ *
+ * <p>Each profile's runs are split in halves down to {@link #LEAF_RUNS}, and each leaf draws
+ * from its own {@link Random} seeded from the run seed, the profile index and the leaf's first
+ * run. The split does not depend on the pool, so a given seed yields the same report on any
+ * number of threads.
+ */
+public final class ProtocolSimulator {
+
+    /** Runs per leaf task: large enough to amortize forking, small enough to balance. */
+    static final int LEAF_RUNS = 512;
+
+    /**
+     * Presentation levels of the app's tones on the simulator's dB scale. The frequency test
+     * plays at 0.4 of full scale; the left/right test plays at 0.3, i.e. 2.5 dB lower.
+     */
+    public static final double DEFAULT_FREQUENCY_LEVEL_DB = 40;
+    public static final double DEFAULT_LEFT_RIGHT_LEVEL_DB = DEFAULT_FREQUENCY_LEVEL_DB + 20 * Math.log10(0.3 / 0.4);
+
+    private final ForkJoinPool pool;
+    private final int[] frequencies;
+    private final int leftRightTrials;
+    private final double frequencyLevelDb;
+    private final double leftRightLevelDb;
+
+    /** Simulates the protocol as the app ships it. */
+    public ProtocolSimulator(ForkJoinPool pool) {
+        this(pool, FrequencyTest.DEFAULT_FREQUENCIES, LeftRightTest.DEFAULT_TRIALS,
+                DEFAULT_FREQUENCY_LEVEL_DB, DEFAULT_LEFT_RIGHT_LEVEL_DB);
+    }
+
+    public ProtocolSimulator(ForkJoinPool pool, int[] frequencies, int leftRightTrials,
+                             double frequencyLevelDb, double leftRightLevelDb) {
+        this.pool = pool;
+        this.frequencies = frequencies.clone();
+        this.leftRightTrials = leftRightTrials;
+        this.frequencyLevelDb = frequencyLevelDb;
+        this.leftRightLevelDb = leftRightLevelDb;
+    }
+
+    /** Simulates {@code runsPerProfile} complete sessions of both tests for every profile. */
+    public SimulationReport run(List<ListenerProfile> profiles, int runsPerProfile, long seed) {
+        if (runsPerProfile <= 0) {
+            throw new IllegalArgumentException("runsPerProfile must be positive");
+        }
+        long start = System.nanoTime();
+        List<RunTask> tasks = new ArrayList<RunTask>(profiles.size());
+        for (int i = 0; i < profiles.size(); i++) {
+            tasks.add(new RunTask(profiles.get(i), i, 0, runsPerProfile, seed));
+        }
+        pool.invoke(new BatchTask(tasks));
+
+        List<ProfileReport> reports = new ArrayList<ProfileReport>(profiles.size());
+        for (RunTask task : tasks) {
+            reports.add(new ProfileReport(task.profile, frequencies, task.join()));
+        }
+        return new SimulationReport(reports, System.nanoTime() - start, pool.getParallelism());
+    }
+
+    /** SplitMix64 finalizer; spreads nearby seeds over the whole Random state. */
+    static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    private final class BatchTask extends RecursiveTask<Void> {
+        private static final long serialVersionUID = 1L;
+
+        private final List<RunTask> tasks;
+
+        BatchTask(List<RunTask> tasks) {
+            this.tasks = tasks;
+        }
+
+        @Override
+        protected Void compute() {
+            invokeAll(tasks);
+            return null;
+        }
+    }
+
+    private final class RunTask extends RecursiveTask<Tally> {
+        private static final long serialVersionUID = 1L;
+
+        private final ListenerProfile profile;
+        private final int profileIndex;
+        private final int from;
+        private final int to;
+        private final long seed;
+
+        RunTask(ListenerProfile profile, int profileIndex, int from, int to, long seed) {
+            this.profile = profile;
+            this.profileIndex = profileIndex;
+            this.from = from;
+            this.to = to;
+            this.seed = seed;
+        }
+
+        @Override
+        protected Tally compute() {
+            if (to - from <= LEAF_RUNS) {
+                return simulate();
+            }
+            int mid = (from + to) >>> 1;
+            RunTask left = new RunTask(profile, profileIndex, from, mid, seed);
+            RunTask right = new RunTask(profile, profileIndex, mid, to, seed);
+            left.fork();
+            Tally tally = right.compute();
+            tally.merge(left.join());
+            return tally;
+        }
+
+        private Tally simulate() {
+            Random random = new Random(mix(seed ^ mix(((long) profileIndex << 32) | from)));
+            VirtualListener listener = new VirtualListener(profile, random);
+            FrequencyTest frequencyTest = new FrequencyTest(frequencies);
+            LeftRightTest leftRightTest = new LeftRightTest(leftRightTrials, random);
+            Tally tally = new Tally(frequencies.length);
+
+            for (int run = from; run < to; run++) {
+                frequencyTest.start();
+                while (!frequencyTest.isFinished()) {
+                    frequencyTest.respond(listener.respondToTone(
+                            frequencyTest.getCurrentFrequency(), frequencyLevelDb));
+                }
+                FrequencyTestResult frequencyResult = frequencyTest.getResult();
+                tally.frequencyCategories[frequencyResult.getCategory().ordinal()]++;
+                tally.lowestHeard[indexOf(frequencyResult.getLowestHeardFrequency())]++;
+
+                leftRightTest.start();
+                while (leftRightTest.isRunning()) {
+                    leftRightTest.answer(listener.answerSide(leftRightTest.isCurrentSoundLeft(),
+                            LeftRightTest.TONE_FREQUENCY, leftRightLevelDb));
+                }
+                LeftRightTestResult leftRightResult = leftRightTest.getResult();
+                tally.leftRightCategories[leftRightResult.getCategory().ordinal()]++;
+                tally.correctAnswers += leftRightResult.getCorrectAnswers();
+                tally.leftRightTrials += leftRightResult.getTotalTests();
+                tally.runs++;
+            }
+            return tally;
+        }
+
+        private int indexOf(int frequency) {
+            for (int i = 0; i < frequencies.length; i++) {
+                if (frequencies[i] == frequency) {
+                    return i;
+                }
+            }
+            return frequencies.length;
+        }
+    }
+}
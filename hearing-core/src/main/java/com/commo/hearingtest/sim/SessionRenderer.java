@@ -0,0 +1,88 @@
+package com.commo.hearingtest.sim;
+
+import com.commo.hearingtest.audio.OfflineRenderer;
+import com.commo.hearingtest.audio.Stimulus;
+import com.commo.hearingtest.calibration.GainTable;
+import com.commo.hearingtest.core.Ear;
+import com.commo.hearingtest.core.LeftRightTest;
+import com.commo.hearingtest.core.ThresholdSearch;
+import com.commo.hearingtest.dsp.ToneCache;
+import com.commo.hearingtest.dsp.ToneSpec;
+import com.commo.hearingtest.protocol.TestProtocol;
+
+import java.io.IOException;
+
+/**
+ * Plays a {@link VirtualListener} through whole test sessions and renders every sound they hear
+ * into an {@link OfflineRenderer}, for audits and for checking exact sample output without an
+ * audio device.
+ *
+ * <p>Each trial follows the test screens: the stimulus from the session's {@link TestProtocol} is
+ * presented after the protocol's auto-play gap and jitter, plays to the end, and the listener answers
+ * {@code responseMs} later; the answer then starts the next trial. The jitter is drawn from the
+ * renderer's seeded {@code Random}, so a fixed seed and listener seed reproduce a session
+ * sample for sample.
+ */
+public final class SessionRenderer {
+
+    // A session repeats a few dozen distinct tones; keep them all.
+    private static final int CACHE_ENTRIES = 64;
+    private static final long CACHE_SAMPLES = 16L * 1024 * 1024;
+
+    private final OfflineRenderer output;
+    private final GainTable gainTable;
+    private final TestProtocol protocol;
+    private final int responseMs;
+    private final ToneCache tones = new ToneCache(CACHE_ENTRIES, CACHE_SAMPLES);
+
+    /** Renders sessions of the {@link TestProtocol#standard() standard} protocol. */
+    public SessionRenderer(OfflineRenderer output, GainTable gainTable, int responseMs) {
+        this(output, gainTable, TestProtocol.standard(), responseMs);
+    }
+
+    public SessionRenderer(OfflineRenderer output, GainTable gainTable, TestProtocol protocol, int responseMs) {
+        if (responseMs < 0) {
+            throw new IllegalArgumentException("responseMs must not be negative");
+        }
+        this.output = output;
+        this.gainTable = gainTable;
+        this.protocol = protocol;
+        this.responseMs = responseMs;
+    }
+
+    /** Renders a frequency test with the search the screen would build for this gain table. */
+    public ThresholdSearch renderFrequencyTest(VirtualListener listener) throws IOException {
+        ThresholdSearch search = protocol.newThresholdSearch(protocol.maxLevelDbHl(gainTable));
+        renderFrequencyTest(search, listener);
+        return search;
+    }
+
+    /** Starts {@code search} and renders trials until it finishes. */
+    public void renderFrequencyTest(ThresholdSearch search, VirtualListener listener) throws IOException {
+        search.start();
+        while (search.isRunning()) {
+            ToneSpec tone = protocol.frequencyTone(search, gainTable, output.getSampleRate());
+            present(Stimulus.of(tones.get(tone)));
+            search.record(listener.detects(search.getCurrentFrequency(),
+                    search.getCurrentEar() == Ear.LEFT, search.getCurrentLevelDb()));
+        }
+    }
+
+    /** Starts {@code test} and renders trials until it finishes. */
+    public void renderLeftRightTest(LeftRightTest test, VirtualListener listener) throws IOException {
+        test.start();
+        while (test.isRunning()) {
+            // The trial number seeds the masking noise, so sessions stay reproducible.
+            present(protocol.leftRightStimulus(test, gainTable, tones, output.getSampleRate(),
+                    test.getCurrentTestNumber()));
+            test.answer(listener.answerSide(test.isCurrentSoundLeft(), LeftRightTest.TONE_FREQUENCY,
+                    protocol.getLeftRightLevelDbHl()));
+        }
+    }
+
+    private void present(Stimulus stimulus) throws IOException {
+        output.replace(stimulus, protocol.getAutoPlayGapMs(), protocol.getAutoPlayJitterMs());
+        output.drain();
+        output.advance(responseMs);
+    }
+}
@@ -0,0 +1,55 @@
+package com.commo.hearingtest.sim;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/** Results of one {@link ProtocolSimulator#run} call, in profile order. */
+public final class SimulationReport {
+
+    private final List<ProfileReport> profiles;
+    private final long elapsedNanos;
+    private final int parallelism;
+
+    SimulationReport(List<ProfileReport> profiles, long elapsedNanos, int parallelism) {
+        this.profiles = Collections.unmodifiableList(profiles);
+        this.elapsedNanos = elapsedNanos;
+        this.parallelism = parallelism;
+    }
+
+    public List<ProfileReport> getProfiles() {
+        return profiles;
+    }
+
+    public ProfileReport getProfile(int index) {
+        return profiles.get(index);
+    }
+
+    public long getTotalRuns() {
+        long runs = 0;
+        for (ProfileReport profile : profiles) {
+            runs += profile.getRuns();
+        }
+        return runs;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /** Complete listener sessions (both tests) simulated per second of wall time. */
+    public double getRunsPerSecond() {
+        return elapsedNanos == 0 ? 0 : getTotalRuns() * 1e9 / elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(String.format(Locale.ROOT,
+                "%d runs in %.1f ms on %d threads (%.0f runs/s)", getTotalRuns(),
+                elapsedNanos / 1e6, parallelism, getRunsPerSecond()));
+        for (ProfileReport profile : profiles) {
+            sb.append('\n').append(profile);
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,35 @@
+package com.commo.hearingtest.sim;
+
+import com.commo.hearingtest.core.FrequencyTestResult;
+import com.commo.hearingtest.core.LeftRightTestResult;
+
+/** Mutable per-task counts; merged up the fork-join tree, so never shared between threads. */
+final class Tally {
+
+    final long[] frequencyCategories = new long[FrequencyTestResult.Category.values().length];
+    final long[] leftRightCategories = new long[LeftRightTestResult.Category.values().length];
+    /** One slot per test frequency, plus a last slot for "nothing heard". */
+    final long[] lowestHeard;
+    long runs;
+    long correctAnswers;
+    long leftRightTrials;
+
+    Tally(int frequencyCount) {
+        lowestHeard = new long[frequencyCount + 1];
+    }
+
+    void merge(Tally other) {
+        add(frequencyCategories, other.frequencyCategories);
+        add(leftRightCategories, other.leftRightCategories);
+        add(lowestHeard, other.lowestHeard);
+        runs += other.runs;
+        correctAnswers += other.correctAnswers;
+        leftRightTrials += other.leftRightTrials;
+    }
+
+    private static void add(long[] into, long[] from) {
+        for (int i = 0; i < into.length; i++) {
+            into[i] += from[i];
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.commo.hearingtest.sim;
+
+import com.commo.hearingtest.core.FrequencyResponse;
+import com.commo.hearingtest.core.FrequencyTestResult;
+
+import java.util.Random;
+
+/**
+ * Answers test trials the way a {@link ListenerProfile} would.
+ *
+ * <p>The chance of reporting a tone follows
+ * {@code guess + (1 - guess - lapse) / (1 + exp(-(level - threshold) / spread))}. A reported
+ * tone at least {@link FrequencyTestResult#CLEAR_MARGIN_DB} above threshold is "heard
+ * clearly"; anything else reported is "heard faintly". In the left/right test an unheard tone is
+ * answered by a coin flip, since the listener has to press one of the two buttons.
+ */
+public final class VirtualListener {
+
+    private final ListenerProfile profile;
+    private final Random random;
+
+    public VirtualListener(ListenerProfile profile, Random random) {
+        this.profile = profile;
+        this.random = random;
+    }
+
+    public ListenerProfile getProfile() {
+        return profile;
+    }
+
+    /** Response to a tone presented to both ears at {@code levelDb}. */
+    public FrequencyResponse respondToTone(int frequency, double levelDb) {
+        double sensationLevel = levelDb - profile.getBinauralThresholdDb(frequency);
+        if (!reportsTone(sensationLevel)) {
+            return FrequencyResponse.CANNOT_HEAR;
+        }
+        return sensationLevel >= FrequencyTestResult.CLEAR_MARGIN_DB
+                ? FrequencyResponse.HEAR_CLEARLY
+                : FrequencyResponse.HEAR_FAINTLY;
+    }
+
+    /** Whether a tone presented to one ear at {@code levelDb} is reported as heard. */
+    public boolean detects(int frequency, boolean left, double levelDb) {
+        return reportsTone(levelDb - profile.getThresholdDb(frequency, left));
+    }
+
+    /** Side named for a tone presented to one ear at {@code levelDb}; true for left. */
+    public boolean answerSide(boolean toneIsLeft, int frequency, double levelDb) {
+        double sensationLevel = levelDb - profile.getThresholdDb(frequency, toneIsLeft);
+        if (reportsTone(sensationLevel)) {
+            return toneIsLeft;
+        }
+        return random.nextBoolean();
+    }
+
+    private boolean reportsTone(double sensationLevel) {
+        double detection = 1 / (1 + Math.exp(-sensationLevel / profile.getSpreadDb()));
+        double guess = profile.getGuessRate();
+        double p = guess + (1 - guess - profile.getLapseRate()) * detection;
+        return random.nextDouble() < p;
+    }
+}
@@ -0,0 +1,171 @@
+package com.commo.hearingtest.store;
+
+import com.commo.hearingtest.calibration.CalibrationProfile;
+import com.commo.hearingtest.core.Audiogram;
+import com.commo.hearingtest.core.Ear;
+import com.commo.hearingtest.core.LeftRightTestResult;
+import com.commo.hearingtest.core.ReactionTimes;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * Binary layout of a record payload (big-endian):
+ *
+ * <pre>
+ * byte   type, with {@link #LEVELS_DB_HL} set on frequency records that store dB HL and
+ *        {@link #REACTION_TIMES} set on records that end with reaction times
+ * long   timestampMillis
+ * short  userId length, then UTF-8 bytes
+ * FREQUENCY:  int presentations, byte n, n x (int frequency, float left dB, float right dB)
+ * LEFT_RIGHT: short correct, short total
+ * REACTION_TIMES: short n, n x (float ms, byte 1 if timestamped)
+ * </pre>
+ *
+ * The fixed prefix lets the index be rebuilt from a payload without decoding the result.
+ * Frequency records written before calibration hold dBFS; they are read back as dB HL through
+ * the nominal profile, which is what those sessions were effectively played with.
+ */
+final class SessionCodec {
+
+    static final Charset UTF_8 = Charset.forName("UTF-8");
+    static final int MAX_USER_BYTES = Short.MAX_VALUE;
+    static final int LEVELS_DB_HL = 0x40;
+    static final int REACTION_TIMES = 0x20;
+    private static final int TYPE_MASK = 0x1f;
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private SessionCodec() {
+    }
+
+    static byte[] encode(SessionRecord record) {
+        byte[] user = record.getUserId().getBytes(UTF_8);
+        if (user.length > MAX_USER_BYTES) {
+            throw new IllegalArgumentException("userId too long");
+        }
+        int size = 1 + 8 + 2 + user.length;
+        Audiogram audiogram = record.getAudiogram();
+        if (record.getType() == SessionRecord.Type.FREQUENCY) {
+            size += 4 + 1 + audiogram.getFrequencyCount() * 12;
+        } else {
+            size += 4;
+        }
+        ReactionTimes times = record.getReactionTimes();
+        if (times != null) {
+            if (times.size() > Short.MAX_VALUE) {
+                throw new IllegalArgumentException("Too many reaction times");
+            }
+            size += 2 + times.size() * 5;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        int type = record.getType().ordinal();
+        if (record.getType() == SessionRecord.Type.FREQUENCY) {
+            type |= LEVELS_DB_HL;
+        }
+        if (times != null) {
+            type |= REACTION_TIMES;
+        }
+        buffer.put((byte) type);
+        buffer.putLong(record.getTimestampMillis());
+        buffer.putShort((short) user.length);
+        buffer.put(user);
+        if (record.getType() == SessionRecord.Type.FREQUENCY) {
+            if (audiogram.getFrequencyCount() > 255) {
+                throw new IllegalArgumentException("Too many frequencies");
+            }
+            buffer.putInt(record.getPresentationCount());
+            buffer.put((byte) audiogram.getFrequencyCount());
+            for (int i = 0; i < audiogram.getFrequencyCount(); i++) {
+                buffer.putInt(audiogram.getFrequency(i));
+                buffer.putFloat((float) audiogram.getThresholdDb(Ear.LEFT, i));
+                buffer.putFloat((float) audiogram.getThresholdDb(Ear.RIGHT, i));
+            }
+        } else {
+            LeftRightTestResult result = record.getLeftRightResult();
+            buffer.putShort((short) result.getCorrectAnswers());
+            buffer.putShort((short) result.getTotalTests());
+        }
+        if (times != null) {
+            buffer.putShort((short) times.size());
+            for (int i = 0; i < times.size(); i++) {
+                buffer.putFloat(times.getLatencyMs(i));
+                buffer.put((byte) (times.isTimestamped(i) ? 1 : 0));
+            }
+        }
+        return buffer.array();
+    }
+
+    static SessionRecord decode(ByteBuffer buffer) {
+        byte typeByte = buffer.get();
+        SessionRecord.Type type = typeOf(typeByte);
+        long timestamp = buffer.getLong();
+        byte[] user = new byte[buffer.getShort() & 0xffff];
+        buffer.get(user);
+        String userId = new String(user, UTF_8);
+        if (type == SessionRecord.Type.FREQUENCY) {
+            int presentations = buffer.getInt();
+            int count = buffer.get() & 0xff;
+            int[] frequencies = new int[count];
+            double[] left = new double[count];
+            double[] right = new double[count];
+            double offset = (typeByte & LEVELS_DB_HL) != 0 ? 0 : -CalibrationProfile.NOMINAL_REFERENCE_DBFS;
+            for (int i = 0; i < count; i++) {
+                frequencies[i] = buffer.getInt();
+                left[i] = buffer.getFloat() + offset;
+                right[i] = buffer.getFloat() + offset;
+            }
+            return SessionRecord.ofFrequencyTest(userId, timestamp,
+                    new Audiogram(frequencies, left, right), presentations, decodeReactionTimes(typeByte, buffer));
+        }
+        int correct = buffer.getShort();
+        int total = buffer.getShort();
+        return SessionRecord.ofLeftRightTest(userId, timestamp, new LeftRightTestResult(correct, total),
+                decodeReactionTimes(typeByte, buffer));
+    }
+
+    private static ReactionTimes decodeReactionTimes(byte typeByte, ByteBuffer buffer) {
+        if ((typeByte & REACTION_TIMES) == 0) {
+            return null;
+        }
+        int count = buffer.getShort() & 0xffff;
+        float[] latencyMs = new float[count];
+        boolean[] timestamped = new boolean[count];
+        for (int i = 0; i < count; i++) {
+            latencyMs[i] = buffer.getFloat();
+            timestamped[i] = buffer.get() != 0;
+        }
+        return new ReactionTimes(latencyMs, timestamped);
+    }
+
+    /** Reads type and timestamp from the payload prefix and hashes the user id in place. */
+    static SessionEntry indexEntry(int sequence, long offset, ByteBuffer payload) {
+        int start = payload.position();
+        SessionRecord.Type type = typeOf(payload.get(start));
+        long timestamp = payload.getLong(start + 1);
+        int userLength = payload.getShort(start + 9) & 0xffff;
+        long hash = FNV_OFFSET;
+        for (int i = 0; i < userLength; i++) {
+            hash = (hash ^ (payload.get(start + 11 + i) & 0xff)) * FNV_PRIME;
+        }
+        return new SessionEntry(sequence, offset, payload.remaining(), timestamp, hash, type);
+    }
+
+    /** 64-bit FNV-1a of the UTF-8 user id; the index stores this instead of the id. */
+    static long userHash(String userId) {
+        long hash = FNV_OFFSET;
+        for (byte b : userId.getBytes(UTF_8)) {
+            hash = (hash ^ (b & 0xff)) * FNV_PRIME;
+        }
+        return hash;
+    }
+
+    static SessionRecord.Type typeOf(byte typeByte) {
+        int ordinal = typeByte & TYPE_MASK;
+        SessionRecord.Type[] types = SessionRecord.Type.values();
+        if (typeByte < 0 || ordinal >= types.length) {
+            throw new IllegalArgumentException("Unknown record type " + ordinal);
+        }
+        return types[ordinal];
+    }
+}
@@ -0,0 +1,50 @@
+package com.commo.hearingtest.store;
+
+/**
+ * Index entry for one stored session: enough to filter by user and date without touching the
+ * log. Read the full record with {@link SessionStore#read(SessionEntry)}.
+ */
+public final class SessionEntry {
+
+    private final int sequence;
+    private final long offset;
+    private final int length;
+    private final long timestampMillis;
+    private final long userHash;
+    private final SessionRecord.Type type;
+
+    SessionEntry(int sequence, long offset, int length, long timestampMillis, long userHash,
+                 SessionRecord.Type type) {
+        this.sequence = sequence;
+        this.offset = offset;
+        this.length = length;
+        this.timestampMillis = timestampMillis;
+        this.userHash = userHash;
+        this.type = type;
+    }
+
+    /** Position in append order, starting at 0. */
+    public int getSequence() {
+        return sequence;
+    }
+
+    public long getTimestampMillis() {
+        return timestampMillis;
+    }
+
+    public SessionRecord.Type getType() {
+        return type;
+    }
+
+    long getOffset() {
+        return offset;
+    }
+
+    int getLength() {
+        return length;
+    }
+
+    long getUserHash() {
+        return userHash;
+    }
+}
@@ -0,0 +1,102 @@
+package com.commo.hearingtest.store;
+
+import com.commo.hearingtest.core.Audiogram;
+import com.commo.hearingtest.core.LeftRightTestResult;
+import com.commo.hearingtest.core.ReactionTimes;
+
+/**
+ * One finished test session as it is kept in the {@link SessionStore}: who, when, which test,
+ * and its result. Exactly one of {@link #getAudiogram()} and {@link #getLeftRightResult()} is
+ * non-null, depending on {@link #getType()}. Sessions recorded with reaction timing also keep
+ * the time of each answer.
+ */
+public final class SessionRecord {
+
+    /** User id for a device without user accounts. */
+    public static final String DEFAULT_USER = "local";
+
+    public enum Type {
+        FREQUENCY,
+        LEFT_RIGHT
+    }
+
+    private final Type type;
+    private final String userId;
+    private final long timestampMillis;
+    private final Audiogram audiogram;
+    private final int presentationCount;
+    private final LeftRightTestResult leftRightResult;
+    private final ReactionTimes reactionTimes;
+
+    private SessionRecord(Type type, String userId, long timestampMillis, Audiogram audiogram,
+                          int presentationCount, LeftRightTestResult leftRightResult,
+                          ReactionTimes reactionTimes) {
+        if (userId == null) {
+            throw new IllegalArgumentException("userId is required");
+        }
+        this.type = type;
+        this.userId = userId;
+        this.timestampMillis = timestampMillis;
+        this.audiogram = audiogram;
+        this.presentationCount = presentationCount;
+        this.leftRightResult = leftRightResult;
+        this.reactionTimes = reactionTimes;
+    }
+
+    public static SessionRecord ofFrequencyTest(String userId, long timestampMillis, Audiogram audiogram,
+                                                int presentationCount) {
+        return ofFrequencyTest(userId, timestampMillis, audiogram, presentationCount, null);
+    }
+
+    public static SessionRecord ofFrequencyTest(String userId, long timestampMillis, Audiogram audiogram,
+                                                int presentationCount, ReactionTimes reactionTimes) {
+        return new SessionRecord(Type.FREQUENCY, userId, timestampMillis, audiogram, presentationCount, null,
+                reactionTimes);
+    }
+
+    public static SessionRecord ofLeftRightTest(String userId, long timestampMillis, LeftRightTestResult result) {
+        return ofLeftRightTest(userId, timestampMillis, result, null);
+    }
+
+    public static SessionRecord ofLeftRightTest(String userId, long timestampMillis, LeftRightTestResult result,
+                                                ReactionTimes reactionTimes) {
+        return new SessionRecord(Type.LEFT_RIGHT, userId, timestampMillis, null, 0, result, reactionTimes);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    /** Wall-clock time the session finished, in milliseconds since the epoch. */
+    public long getTimestampMillis() {
+        return timestampMillis;
+    }
+
+    public Audiogram getAudiogram() {
+        return audiogram;
+    }
+
+    /** Tones presented during a frequency test; 0 for other tests. */
+    public int getPresentationCount() {
+        return presentationCount;
+    }
+
+    public LeftRightTestResult getLeftRightResult() {
+        return leftRightResult;
+    }
+
+    /** Reaction time of each answer, or null if the session was not timed. */
+    public ReactionTimes getReactionTimes() {
+        return reactionTimes;
+    }
+
+    @Override
+    public String toString() {
+        return type + " " + userId + " @" + timestampMillis + " "
+                + (audiogram != null ? audiogram : leftRightResult.getCorrectAnswers() + "/" + leftRightResult.getTotalTests());
+    }
+}
@@ -0,0 +1,560 @@
+package com.commo.hearingtest.store;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only session history on local storage.
+ *
+ * <p>Two files live in the store directory:
+ * <ul>
+ *   <li>{@code sessions.log}: a header, then records framed as {@code int length, int crc32,
+ *       payload} (see {@link SessionCodec}). Bytes are only ever appended.</li>
+ *   <li>{@code sessions.idx}: a memory-mapped array of fixed 32-byte entries (offset,
+ *       timestamp, user hash, length, type), one per record, so lookups by user or date never
+ *       touch the log.</li>
+ * </ul>
+ *
+ * <p>Each user's sequence numbers are kept in memory, built once when the index is loaded and
+ * extended as entries are published, so {@link #findByUser} reads only that user's entries.
+ * Timestamps are normally in append order, and {@link #findBetween} binary-searches them; once
+ * a clock change puts one out of order, date lookups fall back to scanning the mapping.
+ *
+ * <p>{@link #append(SessionRecord)} hands the record to a writer thread and returns at once.
+ * The writer drains everything pending, appends it to the log, forces the log to disk once per
+ * batch, and only then publishes the index entries.
+ *
+ * <p>Opening recovers from a crash at any point. Log records are contiguous, so index entries
+ * that do not chain exactly, or that point past the log, are dropped. The last indexed record's
+ * checksum is verified. Log records after the last index entry are re-indexed, and a torn or
+ * corrupt record at the tail is cut off. Opening reads the index and the unindexed tail only,
+ * never the whole log.
+ */
+public final class SessionStore implements Closeable {
+
+    /** Told about every record once it is durable and indexed, on the store's writer thread. */
+    public interface Listener {
+        void onAppended(SessionEntry entry, SessionRecord record);
+    }
+
+    static final String LOG_FILE = "sessions.log";
+    static final String INDEX_FILE = "sessions.idx";
+
+    private static final int LOG_MAGIC = 0x48544c47; // "HTLG"
+    private static final int INDEX_MAGIC = 0x48544958; // "HTIX"
+    private static final int VERSION = 1;
+    static final int LOG_HEADER_BYTES = 8;
+    static final int FRAME_HEADER_BYTES = 8;
+    private static final int INDEX_HEADER_BYTES = 16;
+    static final int ENTRY_BYTES = 32;
+    private static final int INDEX_GROWTH_ENTRIES = 2048;
+    private static final int MAX_RECORD_BYTES = 1 << 20;
+
+    private final RandomAccessFile logFile;
+    private final FileChannel log;
+    private final RandomAccessFile indexFile;
+    private final FileChannel indexChannel;
+    private final boolean syncWrites;
+    private final LinkedBlockingQueue<PendingAppend> queue = new LinkedBlockingQueue<PendingAppend>();
+    private final Thread writer;
+    private final CopyOnWriteArrayList<Listener> listeners = new CopyOnWriteArrayList<Listener>();
+
+    private MappedByteBuffer index;
+    private int count;
+    /** Sequence numbers by user hash, guarded by {@code this} like the index. */
+    private final Map<Long, Sequences> byUser = new HashMap<Long, Sequences>();
+    private boolean timestampsOrdered = true;
+    private long lastTimestamp = Long.MIN_VALUE;
+    private long logEnd;
+    private long discardedBytes;
+    private int reindexedRecords;
+    private volatile boolean closed;
+
+    private SessionStore(File directory, ThreadFactory threadFactory, boolean syncWrites) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create " + directory);
+        }
+        this.syncWrites = syncWrites;
+        this.logFile = new RandomAccessFile(new File(directory, LOG_FILE), "rw");
+        this.log = logFile.getChannel();
+        this.indexFile = new RandomAccessFile(new File(directory, INDEX_FILE), "rw");
+        this.indexChannel = indexFile.getChannel();
+        try {
+            recover();
+        } catch (IOException | RuntimeException e) {
+            closeFiles();
+            throw e;
+        }
+        this.writer = threadFactory.newThread(new Runnable() {
+            @Override
+            public void run() {
+                writeLoop();
+            }
+        });
+        writer.setName("session-store");
+        writer.start();
+    }
+
+    /** Opens (creating if needed) the store in {@code directory}, forcing each batch to disk. */
+    public static SessionStore open(File directory, ThreadFactory threadFactory) throws IOException {
+        return new SessionStore(directory, threadFactory, true);
+    }
+
+    /**
+     * Opens the store; with {@code syncWrites} false, batches are left to the OS to flush, which
+     * survives a process crash but not a power loss.
+     */
+    public static SessionStore open(File directory, ThreadFactory threadFactory, boolean syncWrites)
+            throws IOException {
+        return new SessionStore(directory, threadFactory, syncWrites);
+    }
+
+    /**
+     * Queues {@code record} for appending. Never blocks on I/O.
+     *
+     * @return completes with the record's sequence number once it is durable and indexed
+     */
+    public Future<Integer> append(SessionRecord record) {
+        PendingAppend pending = new PendingAppend(record, SessionCodec.encode(record));
+        synchronized (queue) {
+            if (closed) {
+                pending.result.completeExceptionally(new IOException("Store is closed"));
+            } else {
+                queue.add(pending);
+            }
+        }
+        return pending.result;
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /** Number of indexed (durable) sessions. */
+    public synchronized int size() {
+        return count;
+    }
+
+    public synchronized SessionEntry getEntry(int sequence) {
+        if (sequence < 0 || sequence >= count) {
+            throw new IndexOutOfBoundsException("No session " + sequence);
+        }
+        return entryAt(sequence);
+    }
+
+    /** Sessions of {@code userId}, in append order. */
+    public synchronized List<SessionEntry> findByUser(String userId) {
+        Sequences sequences = byUser.get(SessionCodec.userHash(userId));
+        if (sequences == null) {
+            return new ArrayList<SessionEntry>();
+        }
+        List<SessionEntry> result = new ArrayList<SessionEntry>(sequences.size);
+        for (int i = 0; i < sequences.size; i++) {
+            result.add(entryAt(sequences.values[i]));
+        }
+        return result;
+    }
+
+    /** Sessions with {@code fromMillis <= timestamp < toMillis}, in append order. */
+    public synchronized List<SessionEntry> findBetween(long fromMillis, long toMillis) {
+        List<SessionEntry> result = new ArrayList<SessionEntry>();
+        if (!timestampsOrdered) {
+            for (int i = 0; i < count; i++) {
+                long timestamp = timestampAt(i);
+                if (timestamp >= fromMillis && timestamp < toMillis) {
+                    result.add(entryAt(i));
+                }
+            }
+            return result;
+        }
+        for (int i = firstAtOrAfter(fromMillis); i < count && timestampAt(i) < toMillis; i++) {
+            result.add(entryAt(i));
+        }
+        return result;
+    }
+
+    /**
+     * Reads the full record behind {@code entry}. Entries only carry a hash of the user id, so
+     * callers filtering by user should still compare {@link SessionRecord#getUserId()}.
+     */
+    public SessionRecord read(SessionEntry entry) throws IOException {
+        return SessionCodec.decode(ByteBuffer.wrap(readPayload(entry)));
+    }
+
+    /**
+     * The record behind {@code entry} in its stored binary layout (see {@link SessionCodec}),
+     * for sending it elsewhere without decoding; {@link #decodePayload} reads it back.
+     */
+    public byte[] readPayload(SessionEntry entry) throws IOException {
+        ByteBuffer payload = ByteBuffer.allocate(entry.getLength());
+        readFully(payload, entry.getOffset() + FRAME_HEADER_BYTES);
+        return payload.array();
+    }
+
+    /** Decodes a payload from {@link #readPayload}, e.g. one received from another device. */
+    public static SessionRecord decodePayload(byte[] payload) {
+        return SessionCodec.decode(ByteBuffer.wrap(payload));
+    }
+
+    /** Bytes cut from the end of the log by recovery when this store was opened. */
+    public long getDiscardedBytes() {
+        return discardedBytes;
+    }
+
+    /** Records found in the log but missing from the index when this store was opened. */
+    public int getReindexedRecords() {
+        return reindexedRecords;
+    }
+
+    /** Blocks until everything appended so far is durable and indexed. */
+    public void flush() throws InterruptedException {
+        PendingAppend marker = new PendingAppend(null, null);
+        synchronized (queue) {
+            if (closed) return;
+            queue.add(marker);
+        }
+        try {
+            marker.result.get();
+        } catch (ExecutionException e) {
+            // The marker itself never fails.
+        }
+    }
+
+    /** Writes everything still queued, then closes the files. */
+    @Override
+    public void close() throws IOException {
+        synchronized (queue) {
+            if (closed) return;
+            closed = true;
+            queue.add(PendingAppend.STOP);
+        }
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        closeFiles();
+    }
+
+    private void writeLoop() {
+        List<PendingAppend> batch = new ArrayList<PendingAppend>();
+        CRC32 crc = new CRC32();
+        boolean stopping = false;
+        while (!stopping) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                continue;
+            }
+            queue.drainTo(batch);
+            stopping = batch.remove(PendingAppend.STOP);
+            try {
+                writeBatch(batch, crc);
+            } catch (IOException | RuntimeException e) {
+                for (PendingAppend pending : batch) {
+                    pending.result.completeExceptionally(e);
+                }
+            }
+            batch.clear();
+        }
+    }
+
+    private void writeBatch(List<PendingAppend> batch, CRC32 crc) throws IOException {
+        long start = logEnd;
+        long position = start;
+        for (PendingAppend pending : batch) {
+            if (pending.payload == null) continue;
+            ByteBuffer frame = ByteBuffer.allocate(FRAME_HEADER_BYTES + pending.payload.length);
+            crc.reset();
+            crc.update(pending.payload, 0, pending.payload.length);
+            frame.putInt(pending.payload.length).putInt((int) crc.getValue()).put(pending.payload);
+            frame.flip();
+            pending.offset = position;
+            while (frame.hasRemaining()) {
+                position += log.write(frame, position);
+            }
+        }
+        if (position != start && syncWrites) {
+            log.force(false);
+        }
+        synchronized (this) {
+            for (PendingAppend pending : batch) {
+                if (pending.payload == null) continue;
+                pending.entry = SessionCodec.indexEntry(count, pending.offset, ByteBuffer.wrap(pending.payload));
+                putEntry(pending.entry);
+                pending.sequence = count - 1;
+            }
+            logEnd = position;
+        }
+        for (PendingAppend pending : batch) {
+            if (pending.entry != null) {
+                for (Listener listener : listeners) {
+                    try {
+                        listener.onAppended(pending.entry, pending.record);
+                    } catch (RuntimeException e) {
+                        // The record is already durable; a failing listener must not fail the append.
+                    }
+                }
+            }
+            pending.result.complete(pending.sequence);
+        }
+    }
+
+    // --- Recovery -------------------------------------------------------------------------
+
+    private void recover() throws IOException {
+        long logSize = log.size();
+        if (logSize < LOG_HEADER_BYTES) {
+            // New, or torn before the header was complete: nothing can have been stored.
+            discardedBytes = logSize;
+            log.truncate(0);
+            ByteBuffer header = ByteBuffer.allocate(LOG_HEADER_BYTES).putInt(LOG_MAGIC).putInt(VERSION);
+            header.flip();
+            log.write(header, 0);
+            logSize = LOG_HEADER_BYTES;
+        } else {
+            ByteBuffer header = ByteBuffer.allocate(LOG_HEADER_BYTES);
+            readFully(header, 0);
+            if (header.getInt(0) != LOG_MAGIC || header.getInt(4) != VERSION) {
+                throw new IOException("Not a session log: " + LOG_FILE);
+            }
+        }
+
+        openIndex();
+        validateIndex(logSize);
+        for (int i = 0; i < count; i++) {
+            track(i, index.getLong(entryPosition(i) + 16), timestampAt(i));
+        }
+
+        long position = count == 0 ? LOG_HEADER_BYTES : endOf(count - 1);
+        CRC32 crc = new CRC32();
+        ByteBuffer frameHeader = ByteBuffer.allocate(FRAME_HEADER_BYTES);
+        while (position < logSize) {
+            ByteBuffer payload = readFrame(position, logSize, frameHeader, crc);
+            if (payload == null) break;
+            putEntry(SessionCodec.indexEntry(count, position, payload));
+            reindexedRecords++;
+            position += FRAME_HEADER_BYTES + payload.remaining();
+        }
+        if (position < logSize) {
+            discardedBytes += logSize - position;
+            log.truncate(position);
+        }
+        logEnd = position;
+        if (discardedBytes > 0 || reindexedRecords > 0) {
+            log.force(false);
+        }
+    }
+
+    private void openIndex() throws IOException {
+        long size = indexChannel.size();
+        boolean valid = size >= INDEX_HEADER_BYTES;
+        if (valid) {
+            map(size);
+            valid = index.getInt(0) == INDEX_MAGIC && index.getInt(4) == VERSION;
+        }
+        if (!valid) {
+            // The index is derived data; rebuild it from the log.
+            indexChannel.truncate(0);
+            map(INDEX_HEADER_BYTES + (long) INDEX_GROWTH_ENTRIES * ENTRY_BYTES);
+            index.putInt(0, INDEX_MAGIC);
+            index.putInt(4, VERSION);
+            index.putInt(8, 0);
+        }
+        long capacity = (index.capacity() - INDEX_HEADER_BYTES) / ENTRY_BYTES;
+        count = (int) Math.max(0, Math.min(index.getInt(8), capacity));
+    }
+
+    private void validateIndex(long logSize) throws IOException {
+        long expected = LOG_HEADER_BYTES;
+        for (int i = 0; i < count; i++) {
+            int p = entryPosition(i);
+            long offset = index.getLong(p);
+            int length = index.getInt(p + 24);
+            if (offset != expected || length <= 0 || length > MAX_RECORD_BYTES
+                    || offset + FRAME_HEADER_BYTES + length > logSize) {
+                setCount(i);
+                break;
+            }
+            expected = offset + FRAME_HEADER_BYTES + length;
+        }
+        // The index page may have reached disk before the log data it describes.
+        CRC32 crc = new CRC32();
+        ByteBuffer frameHeader = ByteBuffer.allocate(FRAME_HEADER_BYTES);
+        while (count > 0) {
+            long offset = index.getLong(entryPosition(count - 1));
+            if (readFrame(offset, logSize, frameHeader, crc) != null) break;
+            setCount(count - 1);
+        }
+    }
+
+    /** Reads and checks the frame at {@code position}; null if torn or corrupt. */
+    private ByteBuffer readFrame(long position, long logSize, ByteBuffer frameHeader, CRC32 crc) throws IOException {
+        if (position + FRAME_HEADER_BYTES > logSize) return null;
+        frameHeader.clear();
+        readFully(frameHeader, position);
+        int length = frameHeader.getInt(0);
+        int checksum = frameHeader.getInt(4);
+        if (length <= 0 || length > MAX_RECORD_BYTES || position + FRAME_HEADER_BYTES + length > logSize) {
+            return null;
+        }
+        ByteBuffer payload = ByteBuffer.allocate(length);
+        readFully(payload, position + FRAME_HEADER_BYTES);
+        crc.reset();
+        crc.update(payload.array(), 0, length);
+        if ((int) crc.getValue() != checksum) return null;
+        payload.flip();
+        try {
+            SessionCodec.typeOf(payload.get(0));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        return payload;
+    }
+
+    // --- Index ----------------------------------------------------------------------------
+
+    private void putEntry(SessionEntry entry) throws IOException {
+        if (entryPosition(count + 1) > index.capacity()) {
+            map(index.capacity() + (long) INDEX_GROWTH_ENTRIES * ENTRY_BYTES);
+        }
+        int p = entryPosition(count);
+        index.putLong(p, entry.getOffset());
+        index.putLong(p + 8, entry.getTimestampMillis());
+        index.putLong(p + 16, entry.getUserHash());
+        index.putInt(p + 24, entry.getLength());
+        index.put(p + 28, (byte) entry.getType().ordinal());
+        // The count is bumped only after the entry is complete.
+        setCount(count + 1);
+        track(count - 1, entry.getUserHash(), entry.getTimestampMillis());
+    }
+
+    /** Adds entry {@code i} to the in-memory lookups; entries arrive in sequence order. */
+    private void track(int i, long userHash, long timestamp) {
+        Sequences sequences = byUser.get(userHash);
+        if (sequences == null) {
+            sequences = new Sequences();
+            byUser.put(userHash, sequences);
+        }
+        sequences.add(i);
+        if (timestamp < lastTimestamp) {
+            timestampsOrdered = false;
+        }
+        lastTimestamp = timestamp;
+    }
+
+    /** First sequence whose timestamp is at least {@code millis}; only valid while ordered. */
+    private int firstAtOrAfter(long millis) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (timestampAt(mid) < millis) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private long timestampAt(int i) {
+        return index.getLong(entryPosition(i) + 8);
+    }
+
+    private SessionEntry entryAt(int i) {
+        int p = entryPosition(i);
+        return new SessionEntry(i, index.getLong(p), index.getInt(p + 24), index.getLong(p + 8),
+                index.getLong(p + 16), SessionCodec.typeOf(index.get(p + 28)));
+    }
+
+    private long endOf(int i) {
+        int p = entryPosition(i);
+        return index.getLong(p) + FRAME_HEADER_BYTES + index.getInt(p + 24);
+    }
+
+    private void setCount(int newCount) {
+        count = newCount;
+        index.putInt(8, newCount);
+    }
+
+    private void map(long size) throws IOException {
+        index = indexChannel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+    }
+
+    private static int entryPosition(int i) {
+        return INDEX_HEADER_BYTES + i * ENTRY_BYTES;
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int n = log.read(buffer, position);
+            if (n < 0) throw new EOFException();
+            position += n;
+        }
+    }
+
+    private void closeFiles() throws IOException {
+        try {
+            if (index != null) {
+                index.force();
+            }
+            log.close();
+            indexChannel.close();
+        } finally {
+            logFile.close();
+            indexFile.close();
+        }
+    }
+
+    /** A growable list of sequence numbers, without boxing each one. */
+    private static final class Sequences {
+        int[] values = new int[4];
+        int size;
+
+        void add(int sequence) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = sequence;
+        }
+    }
+
+    private static final class PendingAppend {
+        static final PendingAppend STOP = new PendingAppend(null, null);
+
+        final SessionRecord record;
+        final byte[] payload;
+        final CompletableFuture<Integer> result = new CompletableFuture<Integer>();
+        long offset;
+        SessionEntry entry;
+        int sequence = -1;
+
+        PendingAppend(SessionRecord record, byte[] payload) {
+            this.record = record;
+            this.payload = payload;
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.commo.hearingtest.sync;
+
+import java.io.IOException;
+
+/**
+ * The server permanently refused sessions it was sent, e.g. with 400 or 422 because a record
+ * is malformed. Sending them again cannot succeed, so they are not retried: {@link SessionSync}
+ * moves its cursor past them, lists them in its rejection log and uploads the rest.
+ */
+public class BatchRejectedException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int statusCode;
+    private final int rejectedSessions;
+
+    public BatchRejectedException(int statusCode, int rejectedSessions, String message) {
+        super(message);
+        this.statusCode = statusCode;
+        this.rejectedSessions = rejectedSessions;
+    }
+
+    /** The HTTP status of the last rejection. */
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    /** Sessions skipped because of it. */
+    public int getRejectedSessions() {
+        return rejectedSessions;
+    }
+}
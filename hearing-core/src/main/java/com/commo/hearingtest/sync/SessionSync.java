@@ -0,0 +1,445 @@
+package com.commo.hearingtest.sync;
+
+import com.commo.hearingtest.store.SessionStore;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Uploads the sessions of a {@link SessionStore} to a server, in order, each exactly once as far
+ * as the server can tell.
+ *
+ * <p>Pending sessions are sent in batches of up to {@code batchSessions} (and about
+ * {@link #MAX_BATCH_BYTES} of payload) as one {@code POST} each, the {@link SyncBatch} streamed
+ * through gzip into a chunked request body. A 2xx response acknowledges the whole batch; 408,
+ * 429 and 5xx responses and I/O errors are retried with exponential backoff and jitter, honouring
+ * {@code Retry-After}. 401, 403, 404, 405 and 407 say the endpoint or the device's access is
+ * wrong rather than the sessions, and stop the run with them still pending.
+ *
+ * <p>Any other 4xx is a permanent rejection of the sessions themselves, e.g. a record the server
+ * cannot parse. Sending them again would fail forever and hold back every later session, so a
+ * rejected batch is split in halves and sent again until the sessions the server refuses on
+ * their own are found. Those are skipped: their sequences and the status are appended to the
+ * rejection log next to the cursor ({@code <cursorFile>.rejected}) for someone to look at, and
+ * the run goes on. It then ends with a {@link BatchRejectedException} so the caller hears of it.
+ *
+ * <p>The sequence of the first unacknowledged session is kept in {@code cursorFile}, replaced
+ * atomically after every acknowledged batch, so a new process picks up where the last one was
+ * killed. A batch sent but not acknowledged before the process died is sent again; the server
+ * drops the sessions it already has by device id and sequence.
+ *
+ * <p>{@link #requestSync()} runs on the sync's own thread and never blocks the caller;
+ * {@link #syncNow()} runs on the calling thread and must not be called on the main thread.
+ */
+public final class SessionSync implements Closeable {
+
+    public static final int DEFAULT_BATCH_SESSIONS = 100;
+    public static final int MAX_BATCH_BYTES = 256 * 1024;
+    public static final int DEFAULT_MAX_ATTEMPTS = 6;
+    public static final long DEFAULT_INITIAL_BACKOFF_MILLIS = 1000;
+    public static final long DEFAULT_MAX_BACKOFF_MILLIS = 60_000;
+
+    private static final int CONNECT_TIMEOUT_MILLIS = 15_000;
+    private static final int READ_TIMEOUT_MILLIS = 30_000;
+    private static final int MAGIC = 0x48545343; // "HTSC"
+    private static final int VERSION = 1;
+
+    private final SessionStore store;
+    private final File cursorFile;
+    private final URL endpoint;
+    private final String deviceId;
+    private final int batchSessions;
+    private final int maxAttempts;
+    private final long initialBackoffMillis;
+    private final long maxBackoffMillis;
+    private final Random jitter;
+    private final ExecutorService executor;
+
+    private final Object syncLock = new Object();
+    private final AtomicLong uploadedSessions = new AtomicLong();
+    private final AtomicLong uploadedBytes = new AtomicLong();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong failedRequests = new AtomicLong();
+    private final AtomicLong rejectedSessions = new AtomicLong();
+    private volatile int nextSequence;
+    private Future<Integer> queuedSync;
+    private boolean syncQueued;
+
+    public SessionSync(SessionStore store, File cursorFile, URL endpoint, String deviceId,
+                       ThreadFactory threadFactory, int batchSessions, int maxAttempts,
+                       long initialBackoffMillis, long maxBackoffMillis, Random jitter) {
+        if (batchSessions <= 0 || maxAttempts <= 0 || initialBackoffMillis < 0
+                || maxBackoffMillis < initialBackoffMillis) {
+            throw new IllegalArgumentException("Invalid sync settings");
+        }
+        this.store = store;
+        this.cursorFile = cursorFile;
+        this.endpoint = endpoint;
+        this.deviceId = deviceId;
+        this.batchSessions = batchSessions;
+        this.maxAttempts = maxAttempts;
+        this.initialBackoffMillis = initialBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+        this.jitter = jitter;
+        this.executor = Executors.newSingleThreadExecutor(threadFactory);
+        this.nextSequence = loadCursor();
+    }
+
+    /** A sync with the default batch size, attempts and backoff. */
+    public static SessionSync open(SessionStore store, File cursorFile, URL endpoint, String deviceId,
+                                   ThreadFactory threadFactory) {
+        return new SessionSync(store, cursorFile, endpoint, deviceId, threadFactory, DEFAULT_BATCH_SESSIONS,
+                DEFAULT_MAX_ATTEMPTS, DEFAULT_INITIAL_BACKOFF_MILLIS, DEFAULT_MAX_BACKOFF_MILLIS, new Random());
+    }
+
+    /**
+     * Uploads everything pending on the sync thread. A request made while another is still
+     * queued joins it; one made while a run is in progress queues a new run, so sessions saved
+     * meanwhile are never left behind.
+     *
+     * @return the number of sessions uploaded; fails with the run's {@link IOException}
+     */
+    public synchronized Future<Integer> requestSync() {
+        if (!syncQueued) {
+            syncQueued = true;
+            queuedSync = executor.submit(new Callable<Integer>() {
+                @Override
+                public Integer call() throws IOException {
+                    synchronized (SessionSync.this) {
+                        syncQueued = false;
+                    }
+                    return syncNow();
+                }
+            });
+        }
+        return queuedSync;
+    }
+
+    /**
+     * Uploads everything pending on the calling thread, including sessions saved while it runs.
+     *
+     * @return the number of sessions uploaded
+     * @throws BatchRejectedException if the server refused some sessions for good; they were
+     *                                skipped and everything else was uploaded
+     * @throws IOException            if a batch still failed after the last attempt, or the
+     *                                server refused the device; the sessions acknowledged before
+     *                                it stay acknowledged
+     */
+    public int syncNow() throws IOException {
+        synchronized (syncLock) {
+            int uploaded = 0;
+            int rejected = 0;
+            int lastStatus = 0;
+            int size;
+            while (nextSequence < (size = store.size())) {
+                SyncBatch batch = nextBatch(size);
+                Rejections rejections = new Rejections();
+                sendOrSkip(batch, rejections);
+                nextSequence += batch.size();
+                saveCursor(nextSequence);
+                uploadedSessions.addAndGet(batch.size() - rejections.count);
+                uploaded += batch.size() - rejections.count;
+                if (rejections.count > 0) {
+                    rejected += rejections.count;
+                    lastStatus = rejections.lastStatus;
+                }
+            }
+            if (nextSequence > size) {
+                // The store lost records in crash recovery; what is left was all sent.
+                nextSequence = size;
+                saveCursor(size);
+            }
+            if (rejected > 0) {
+                throw new BatchRejectedException(lastStatus, rejected, "Server answered " + lastStatus
+                        + " to " + rejected + " sessions; they are listed in " + rejectionLog() + " and were skipped");
+            }
+            return uploaded;
+        }
+    }
+
+    /** Sessions saved but not yet acknowledged by the server. */
+    public int getPendingSessions() {
+        return Math.max(0, store.size() - nextSequence);
+    }
+
+    public long getUploadedSessions() {
+        return uploadedSessions.get();
+    }
+
+    /** Compressed request body bytes sent, including batches that had to be sent again. */
+    public long getUploadedBytes() {
+        return uploadedBytes.get();
+    }
+
+    public long getRequestCount() {
+        return requests.get();
+    }
+
+    public long getFailedRequestCount() {
+        return failedRequests.get();
+    }
+
+    /** Sessions the server refused for good and this process skipped. */
+    public long getRejectedSessions() {
+        return rejectedSessions.get();
+    }
+
+    /** Where skipped sessions are listed, one {@code sequence<TAB>status<TAB>epoch millis} line each. */
+    public File rejectionLog() {
+        return new File(cursorFile.getPath() + ".rejected");
+    }
+
+    /** Stops the sync thread, interrupting a run in progress; acknowledged batches stay acknowledged. */
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    private SyncBatch nextBatch(int size) throws IOException {
+        List<byte[]> payloads = new ArrayList<byte[]>();
+        int bytes = 0;
+        for (int sequence = nextSequence; sequence < size && payloads.size() < batchSessions; sequence++) {
+            byte[] payload = store.readPayload(store.getEntry(sequence));
+            if (!payloads.isEmpty() && bytes + payload.length > MAX_BATCH_BYTES) break;
+            payloads.add(payload);
+            bytes += payload.length;
+        }
+        return new SyncBatch(deviceId, nextSequence, payloads);
+    }
+
+    /**
+     * Sends {@code batch}, halving it on a rejection until the refused sessions are isolated,
+     * and logs each of those in {@code rejections} and the rejection log.
+     */
+    private void sendOrSkip(SyncBatch batch, Rejections rejections) throws IOException {
+        try {
+            send(batch);
+        } catch (BatchRejectedException e) {
+            if (batch.size() == 1) {
+                logRejection(batch.getFirstSequence(), e.getStatusCode());
+                rejectedSessions.incrementAndGet();
+                rejections.count++;
+                rejections.lastStatus = e.getStatusCode();
+                return;
+            }
+            int half = batch.size() / 2;
+            sendOrSkip(slice(batch, 0, half), rejections);
+            sendOrSkip(slice(batch, half, batch.size()), rejections);
+        }
+    }
+
+    private static SyncBatch slice(SyncBatch batch, int from, int to) {
+        List<byte[]> payloads = new ArrayList<byte[]>(to - from);
+        for (int i = from; i < to; i++) {
+            payloads.add(batch.getPayload(i));
+        }
+        return new SyncBatch(batch.getDeviceId(), batch.getFirstSequence() + from, payloads);
+    }
+
+    private void logRejection(int sequence, int status) throws IOException {
+        FileOutputStream file = new FileOutputStream(rejectionLog(), true);
+        try {
+            String line = sequence + "\t" + status + "\t" + System.currentTimeMillis() + "\n";
+            file.write(line.getBytes("UTF-8"));
+            file.getFD().sync();
+        } finally {
+            file.close();
+        }
+    }
+
+    /** True for a 4xx that refuses the request itself rather than the endpoint or the device. */
+    private static boolean isRejection(int status) {
+        return status >= 400 && status < 500 && status != 401 && status != 403 && status != 404
+                && status != 405 && status != 407 && status != 408 && status != 429;
+    }
+
+    private void send(SyncBatch batch) throws IOException {
+        for (int attempt = 1; ; attempt++) {
+            requests.incrementAndGet();
+            Response response;
+            try {
+                response = post(batch);
+            } catch (IOException e) {
+                failedRequests.incrementAndGet();
+                if (attempt >= maxAttempts) throw e;
+                sleep(backoffMillis(attempt));
+                continue;
+            }
+            if (response.code >= 200 && response.code < 300) {
+                return;
+            }
+            failedRequests.incrementAndGet();
+            if (isRejection(response.code)) {
+                throw new BatchRejectedException(response.code, batch.size(),
+                        "Server answered " + response.code + " to " + batch);
+            }
+            boolean retryable = response.code == 408 || response.code == 429 || response.code >= 500;
+            if (!retryable || attempt >= maxAttempts) {
+                throw new IOException("Server answered " + response.code + " to " + batch);
+            }
+            sleep(Math.max(backoffMillis(attempt), Math.min(response.retryAfterMillis, maxBackoffMillis)));
+        }
+    }
+
+    /** Exponential backoff with equal jitter: half the delay fixed, half random. */
+    private long backoffMillis(int attempt) {
+        long delay = initialBackoffMillis << Math.min(attempt - 1, 30);
+        delay = Math.min(delay, maxBackoffMillis);
+        long half = delay / 2;
+        return half + (half > 0 ? (long) (jitter.nextDouble() * (delay - half)) : 0);
+    }
+
+    private static void sleep(long millis) throws IOException {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Sync interrupted", e);
+        }
+    }
+
+    private Response post(SyncBatch batch) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) endpoint.openConnection();
+        try {
+            connection.setRequestMethod("POST");
+            connection.setDoOutput(true);
+            connection.setConnectTimeout(CONNECT_TIMEOUT_MILLIS);
+            connection.setReadTimeout(READ_TIMEOUT_MILLIS);
+            connection.setRequestProperty("Content-Type", "application/octet-stream");
+            connection.setRequestProperty("Content-Encoding", "gzip");
+            connection.setChunkedStreamingMode(0);
+            CountingOutputStream body = new CountingOutputStream(connection.getOutputStream());
+            OutputStream gzip = new GZIPOutputStream(body, 8192);
+            try {
+                batch.writeTo(gzip);
+            } finally {
+                gzip.close();
+            }
+            uploadedBytes.addAndGet(body.count);
+
+            Response response = new Response();
+            response.code = connection.getResponseCode();
+            response.retryAfterMillis = parseRetryAfter(connection.getHeaderField("Retry-After"));
+            drain(response.code < 400 ? connection.getInputStream() : connection.getErrorStream());
+            return response;
+        } catch (IOException e) {
+            connection.disconnect();
+            throw e;
+        }
+    }
+
+    /** Reads the response to the end, so the connection can be reused for the next batch. */
+    private static void drain(InputStream in) throws IOException {
+        if (in == null) return;
+        try {
+            byte[] buffer = new byte[1024];
+            while (in.read(buffer) >= 0) {
+                // Discard.
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    private static long parseRetryAfter(String header) {
+        if (header == null) return 0;
+        try {
+            return Math.max(0, Long.parseLong(header.trim())) * 1000;
+        } catch (NumberFormatException e) {
+            return 0; // An HTTP date; the backoff alone will do.
+        }
+    }
+
+    private int loadCursor() {
+        DataInputStream in;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(cursorFile)));
+        } catch (FileNotFoundException e) {
+            return 0;
+        }
+        try {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) return 0;
+            return Math.max(0, in.readInt());
+        } catch (IOException e) {
+            // Unreadable cursor: send everything again and let the server drop the repeats.
+            return 0;
+        } finally {
+            try {
+                in.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private void saveCursor(int sequence) throws IOException {
+        File temp = new File(cursorFile.getPath() + ".tmp");
+        FileOutputStream file = new FileOutputStream(temp);
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(sequence);
+            out.flush();
+            file.getFD().sync();
+        } finally {
+            out.close();
+        }
+        if (!temp.renameTo(cursorFile)) {
+            throw new IOException("Cannot replace " + cursorFile);
+        }
+    }
+
+    /** The sessions of one batch that were skipped. */
+    private static final class Rejections {
+        int count;
+        int lastStatus;
+    }
+
+    private static final class Response {
+        int code;
+        long retryAfterMillis;
+    }
+
+    private static final class CountingOutputStream extends FilterOutputStream {
+        long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+}
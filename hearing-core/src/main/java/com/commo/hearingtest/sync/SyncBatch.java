@@ -0,0 +1,120 @@
+package com.commo.hearingtest.sync;
+
+import com.commo.hearingtest.store.SessionRecord;
+import com.commo.hearingtest.store.SessionStore;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One upload of consecutive sessions from a device's {@link SessionStore}. On the wire, inside
+ * the gzip stream of the request body (big-endian):
+ *
+ * <pre>
+ * int    magic "HTSY"
+ * short  version
+ * UTF    device id (modified UTF-8, as {@link DataOutputStream#writeUTF})
+ * int    store sequence of the first session
+ * int    session count n
+ * n x (int length, payload in the session store's record layout)
+ * </pre>
+ *
+ * Payloads are the store's own record bytes, so sessions are neither decoded nor re-encoded on
+ * the device. A session is identified by device id and sequence, which lets the server ignore
+ * the repeat when a batch whose acknowledgement was lost is sent again.
+ */
+public final class SyncBatch {
+
+    private static final int MAGIC = 0x48545359; // "HTSY"
+    private static final int VERSION = 1;
+    private static final int MAX_PAYLOAD_BYTES = 1 << 20;
+
+    private final String deviceId;
+    private final int firstSequence;
+    private final List<byte[]> payloads;
+
+    public SyncBatch(String deviceId, int firstSequence, List<byte[]> payloads) {
+        if (deviceId == null || firstSequence < 0) {
+            throw new IllegalArgumentException("Device id and sequence are required");
+        }
+        this.deviceId = deviceId;
+        this.firstSequence = firstSequence;
+        this.payloads = Collections.unmodifiableList(new ArrayList<byte[]>(payloads));
+    }
+
+    public String getDeviceId() {
+        return deviceId;
+    }
+
+    public int getFirstSequence() {
+        return firstSequence;
+    }
+
+    public int size() {
+        return payloads.size();
+    }
+
+    public byte[] getPayload(int index) {
+        return payloads.get(index);
+    }
+
+    /** Decodes the {@code index}th session; throws a runtime exception if its payload is malformed. */
+    public SessionRecord getRecord(int index) {
+        return SessionStore.decodePayload(payloads.get(index));
+    }
+
+    /** Writes the batch to {@code out}, uncompressed; the caller compresses and closes. */
+    public void writeTo(OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeShort(VERSION);
+        data.writeUTF(deviceId);
+        data.writeInt(firstSequence);
+        data.writeInt(payloads.size());
+        for (byte[] payload : payloads) {
+            data.writeInt(payload.length);
+            data.write(payload);
+        }
+        data.flush();
+    }
+
+    /** Reads a batch written by {@link #writeTo}, as the server does. */
+    public static SyncBatch readFrom(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        if (data.readInt() != MAGIC) {
+            throw new IOException("Not a session batch");
+        }
+        int version = data.readShort();
+        if (version != VERSION) {
+            throw new IOException("Unsupported batch version " + version);
+        }
+        String deviceId = data.readUTF();
+        int firstSequence = data.readInt();
+        int count = data.readInt();
+        if (firstSequence < 0 || count < 0) {
+            throw new IOException("Corrupt batch header");
+        }
+        List<byte[]> payloads = new ArrayList<byte[]>(Math.min(count, 1024));
+        for (int i = 0; i < count; i++) {
+            int length = data.readInt();
+            if (length <= 0 || length > MAX_PAYLOAD_BYTES) {
+                throw new IOException("Corrupt session length " + length);
+            }
+            byte[] payload = new byte[length];
+            data.readFully(payload);
+            payloads.add(payload);
+        }
+        return new SyncBatch(deviceId, firstSequence, payloads);
+    }
+
+    @Override
+    public String toString() {
+        return deviceId + " sessions " + firstSequence + ".." + (firstSequence + payloads.size() - 1);
+    }
+}
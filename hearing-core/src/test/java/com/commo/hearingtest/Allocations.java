@@ -0,0 +1,47 @@
+package com.commo.hearingtest;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Heap allocation checks for code that runs per chunk, per frame or per sample. Counts come from
+ * the JVM's per-thread allocation counter, so they include nothing another thread did.
+ */
+public final class Allocations {
+
+    /**
+     * Slack for one-off JVM bookkeeping, such as a lazily created lock or a profiling record;
+     * anything allocated per call over a long run would be far more.
+     */
+    public static final long SLACK_BYTES = 1024;
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private Allocations() {
+    }
+
+    /** Bytes {@code thread} has allocated since it started. */
+    public static long allocatedBytes(Thread thread) {
+        return THREADS.getThreadAllocatedBytes(thread.getId());
+    }
+
+    /** Bytes the calling thread allocates while running {@code work}. */
+    public static long allocatedBytes(Runnable work) {
+        Thread thread = Thread.currentThread();
+        long before = allocatedBytes(thread);
+        work.run();
+        return allocatedBytes(thread) - before;
+    }
+
+    /** Fails unless {@code work} allocates less than {@link #SLACK_BYTES} on the calling thread. */
+    public static void assertNoAllocation(Runnable work) {
+        assertAllocatedNothing("allocated", allocatedBytes(work));
+    }
+
+    /** Fails unless {@code allocated} is less than {@link #SLACK_BYTES}; {@code what} leads the message. */
+    public static void assertAllocatedNothing(String what, long allocated) {
+        assertTrue(what + " " + allocated + " bytes", allocated < SLACK_BYTES);
+    }
+}
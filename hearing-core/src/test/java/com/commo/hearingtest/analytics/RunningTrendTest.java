@@ -0,0 +1,61 @@
+package com.commo.hearingtest.analytics;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class RunningTrendTest {
+
+    @Test
+    public void matchesBatchStatistics() {
+        Random random = new Random(7);
+        int n = 200;
+        double[] x = new double[n];
+        double[] y = new double[n];
+        RunningTrend trend = new RunningTrend();
+        for (int i = 0; i < n; i++) {
+            x[i] = i * 0.05;
+            y[i] = -40 + 2.5 * x[i] + random.nextGaussian() * 3;
+            trend.add(x[i], y[i]);
+        }
+
+        double meanX = 0;
+        double meanY = 0;
+        for (int i = 0; i < n; i++) {
+            meanX += x[i] / n;
+            meanY += y[i] / n;
+        }
+        double sxx = 0;
+        double sxy = 0;
+        double syy = 0;
+        for (int i = 0; i < n; i++) {
+            sxx += (x[i] - meanX) * (x[i] - meanX);
+            sxy += (x[i] - meanX) * (y[i] - meanY);
+            syy += (y[i] - meanY) * (y[i] - meanY);
+        }
+
+        assertEquals(n, trend.getCount());
+        assertEquals(meanY, trend.getMean(), 1e-9);
+        assertEquals(syy / (n - 1), trend.getVariance(), 1e-9);
+        assertEquals(sxy / sxx, trend.getSlopePerYear(), 1e-9);
+        assertEquals(2.5, trend.getSlopePerYear(), 0.5);
+        assertEquals(y[0], trend.getBaseline(), 0);
+        assertEquals(y[n - 1] - y[0], trend.getShiftFromBaseline(), 0);
+    }
+
+    @Test
+    public void undefinedUntilEnoughMeasurements() {
+        RunningTrend trend = new RunningTrend();
+        assertTrue(Double.isNaN(trend.getMean()));
+        trend.add(0, -30);
+        assertEquals(-30, trend.getMean(), 0);
+        assertTrue(Double.isNaN(trend.getVariance()));
+        assertTrue(Double.isNaN(trend.getSlopePerYear()));
+        // Same day twice: spread but no time span.
+        trend.add(0, -20);
+        assertEquals(50, trend.getVariance(), 1e-9);
+        assertTrue(Double.isNaN(trend.getSlopePerYear()));
+    }
+}
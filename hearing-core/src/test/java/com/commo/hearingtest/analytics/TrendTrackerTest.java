@@ -0,0 +1,139 @@
+package com.commo.hearingtest.analytics;
+
+import com.commo.hearingtest.core.Audiogram;
+import com.commo.hearingtest.core.Ear;
+import com.commo.hearingtest.core.LeftRightTestResult;
+import com.commo.hearingtest.store.SessionRecord;
+import com.commo.hearingtest.store.SessionStore;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.concurrent.ThreadFactory;
+
+import static org.junit.Assert.*;
+
+public class TrendTrackerTest {
+
+    private static final ThreadFactory THREADS = new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r);
+            thread.setDaemon(true);
+            return thread;
+        }
+    };
+    private static final long DAY_MILLIS = 24L * 3600 * 1000;
+    private static final int[] FREQUENCIES = {1000, 2000, 3000, 4000};
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static SessionRecord session(String user, long time, double highFrequencyDb) {
+        Audiogram audiogram = new Audiogram(FREQUENCIES,
+                new double[]{-50, highFrequencyDb, highFrequencyDb, highFrequencyDb},
+                new double[]{-50, -50, Double.NaN, Audiogram.NO_RESPONSE});
+        return SessionRecord.ofFrequencyTest(user, time, audiogram, 30);
+    }
+
+    @Test
+    public void savedSessionsUpdateTrends() throws Exception {
+        File dir = folder.newFolder();
+        SessionStore store = SessionStore.open(dir, THREADS);
+        try {
+            TrendTracker tracker = TrendTracker.attach(store, new File(dir, "trends.bin"));
+            store.append(session("kim", 0, -50));
+            store.append(SessionRecord.ofLeftRightTest("kim", DAY_MILLIS, new LeftRightTestResult(5, 5)));
+            store.append(session("kim", 365 * DAY_MILLIS, -45));
+            store.append(session("lee", 0, -20));
+            store.flush();
+
+            AudiogramTrends kim = tracker.getTrends("kim");
+            assertEquals(2, kim.getSessionCount());
+            RunningTrend left2k = kim.getTrend(Ear.LEFT, 2000);
+            assertEquals(2, left2k.getCount());
+            assertEquals(-47.5, left2k.getMean(), 1e-9);
+            assertEquals(5, left2k.getShiftFromBaseline(), 1e-9);
+            assertEquals(5, left2k.getSlopePerYear(), 0.05);
+            // Untested and no-response thresholds are left out.
+            assertNull(kim.getTrend(Ear.RIGHT, 3000));
+            assertNull(kim.getTrend(Ear.RIGHT, 4000));
+            assertFalse(kim.hasSignificantShift(Ear.LEFT));
+
+            assertEquals(1, tracker.getTrends("lee").getSessionCount());
+            assertEquals(0, tracker.getTrends("park").getSessionCount());
+        } finally {
+            store.close();
+        }
+    }
+
+    @Test
+    public void reattachReplaysOnlySessionsAfterTheSnapshot() throws Exception {
+        File dir = folder.newFolder();
+        File snapshot = new File(dir, "trends.bin");
+        SessionStore store = SessionStore.open(dir, THREADS);
+        TrendTracker tracker = TrendTracker.attach(store, snapshot);
+        for (int i = 0; i < 10; i++) {
+            store.append(session("kim", i * DAY_MILLIS, -50));
+        }
+        store.flush();
+        tracker.saveSnapshot();
+        store.close();
+
+        // Saved while no tracker was listening.
+        store = SessionStore.open(dir, THREADS);
+        for (int i = 10; i < 13; i++) {
+            store.append(session("kim", i * DAY_MILLIS, -30));
+        }
+        store.close();
+
+        store = SessionStore.open(dir, THREADS);
+        try {
+            tracker = TrendTracker.attach(store, snapshot);
+            assertEquals(3, tracker.getReplayedSessions());
+            AudiogramTrends kim = tracker.getTrends("kim");
+            assertEquals(13, kim.getSessionCount());
+            assertEquals(20, kim.getTrend(Ear.LEFT, 4000).getShiftFromBaseline(), 1e-9);
+            assertTrue(kim.hasSignificantShift(Ear.LEFT));
+            assertFalse(kim.hasSignificantShift(Ear.RIGHT));
+        } finally {
+            store.close();
+        }
+
+        store = SessionStore.open(dir, THREADS);
+        try {
+            assertEquals(0, TrendTracker.attach(store, snapshot).getReplayedSessions());
+        } finally {
+            store.close();
+        }
+    }
+
+    @Test
+    public void snapshotAheadOfTheStoreIsDiscarded() throws Exception {
+        File dir = folder.newFolder();
+        File snapshot = new File(dir, "trends.bin");
+        SessionStore store = SessionStore.open(dir, THREADS);
+        TrendTracker tracker = TrendTracker.attach(store, snapshot);
+        store.append(session("kim", 0, -50));
+        store.append(session("kim", DAY_MILLIS, -50));
+        store.flush();
+        tracker.saveSnapshot();
+        store.close();
+
+        File other = folder.newFolder();
+        store = SessionStore.open(other, THREADS);
+        store.append(session("kim", 0, -40));
+        store.close();
+
+        store = SessionStore.open(other, THREADS);
+        try {
+            tracker = TrendTracker.attach(store, snapshot);
+            assertEquals(1, tracker.getReplayedSessions());
+            assertEquals(1, tracker.getTrends("kim").getSessionCount());
+        } finally {
+            store.close();
+        }
+    }
+}
@@ -0,0 +1,287 @@
+package com.commo.hearingtest.audio;
+
+import com.commo.hearingtest.Allocations;
+import com.commo.hearingtest.metrics.AudioMetrics;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+/**
+ * Stress tests for {@link AudioEngine}: callers must never block on output, and the audio
+ * threads must not allocate per chunk.
+ */
+public class AudioEngineTest {
+
+    private static final int SAMPLE_RATE = 44100;
+    private static final ThreadFactory PLAIN_THREADS = new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r);
+            thread.setDaemon(true);
+            return thread;
+        }
+    };
+
+    private AudioEngine engine;
+
+    @After
+    public void tearDown() {
+        if (engine != null) {
+            engine.release();
+        }
+    }
+
+    @Test
+    public void commandsReturnWhileSinkIsBlocked() throws Exception {
+        BlockingSink sink = new BlockingSink();
+        engine = new AudioEngine(sink, PLAIN_THREADS);
+        engine.start();
+        short[] tone = new short[SAMPLE_RATE * 2];
+        engine.play(tone);
+        assertTrue("output thread never reached the sink", sink.entered.await(2, TimeUnit.SECONDS));
+
+        // The output thread is now stuck inside write(); hammer the engine from this thread.
+        long[] callNanos = new long[20000];
+        for (int i = 0; i < callNanos.length; i++) {
+            long start = System.nanoTime();
+            if (i % 2 == 0) {
+                engine.play(tone);
+            } else {
+                engine.stop();
+            }
+            callNanos[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(callNanos);
+        long p999 = callNanos[(int) (callNanos.length * 0.999)];
+        assertTrue("99.9th percentile call took " + p999 + " ns", p999 < TimeUnit.MILLISECONDS.toNanos(1));
+        sink.release.countDown();
+    }
+
+    @Test
+    public void audioThreadsDoNotAllocatePerChunk() throws Exception {
+        CountingSink sink = new CountingSink();
+        engine = new AudioEngine(sink, PLAIN_THREADS);
+        engine.start();
+        engine.play(new SilenceSource());
+
+        waitForSamples(sink, 200_000);
+        long renderBefore = Allocations.allocatedBytes(engine.getRenderThread());
+        long outputBefore = Allocations.allocatedBytes(engine.getOutputThread());
+        long samplesBefore = sink.samples.get();
+
+        waitForSamples(sink, samplesBefore + 2_000_000);
+        long chunks = (sink.samples.get() - samplesBefore) / (AudioEngine.CHUNK_FRAMES * 2);
+        long rendered = Allocations.allocatedBytes(engine.getRenderThread()) - renderBefore;
+        long output = Allocations.allocatedBytes(engine.getOutputThread()) - outputBefore;
+
+        assertTrue(chunks > 1000);
+        // Anything per chunk would be megabytes.
+        Allocations.assertAllocatedNothing("render thread over " + chunks + " chunks allocated", rendered);
+        Allocations.assertAllocatedNothing("output thread over " + chunks + " chunks allocated", output);
+    }
+
+    @Test
+    public void metricsTimeTheAudioPathAndTrackTimestampDrift() throws Exception {
+        AudioMetrics metrics = AudioMetrics.get();
+        metrics.reset();
+        metrics.setEnabled(true);
+        try {
+            DriftingSink sink = new DriftingSink();
+            sink.nanosPerWrite = AudioEngine.CHUNK_FRAMES * 1_000_000_000L / SAMPLE_RATE;
+            engine = new AudioEngine(sink, PLAIN_THREADS);
+            engine.start();
+            engine.play(new SilenceSource());
+
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (metrics.getTimestampDriftNanos().getCount() < 2) {
+                assertTrue("no drift measured", System.nanoTime() < deadline);
+                Thread.sleep(10);
+            }
+            assertTrue(metrics.getRenderChunkNanos().getCount() > 0);
+            assertTrue(metrics.getWriteBlockedNanos().getCount() > 0);
+            // The fake device's clock runs 1% slow, so its frames arrive late relative to the reference.
+            assertTrue("drift " + metrics.getLastTimestampDriftNanos().get(),
+                    metrics.getLastTimestampDriftNanos().get() > 0);
+        } finally {
+            metrics.setEnabled(false);
+            metrics.reset();
+        }
+    }
+
+    @Test
+    public void stopDiscardsQueuedSamples() throws Exception {
+        CountingSink sink = new CountingSink();
+        sink.nanosPerWrite = TimeUnit.MILLISECONDS.toNanos(5);
+        engine = new AudioEngine(sink, PLAIN_THREADS);
+        engine.start();
+        engine.play(new short[SAMPLE_RATE * 2 * 10]); // ten seconds
+        waitForSamples(sink, 1);
+        engine.stop();
+        long atStop = sink.samples.get();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+        while (engine.isPlaying() && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertFalse(engine.isPlaying());
+        long afterStop = sink.samples.get() - atStop;
+        assertTrue("played " + afterStop + " samples after stop", afterStop < 8192);
+    }
+
+    @Test
+    public void rapidReplacementsStartWithinBoundedLatency() throws Exception {
+        CountingSink sink = new CountingSink();
+        // Pace the fake device at real time so the ring stays full, as it does on hardware.
+        sink.nanosPerWrite = AudioEngine.CHUNK_FRAMES * 1_000_000_000L / SAMPLE_RATE;
+        engine = new AudioEngine(sink, PLAIN_THREADS);
+        engine.start();
+        short[] tone = new short[SAMPLE_RATE * 2];
+        Arrays.fill(tone, (short) 1000);
+
+        int taps = 300;
+        Stimulus[] stimuli = new Stimulus[taps];
+        long[] requestedAt = new long[taps];
+        java.util.Random random = new java.util.Random(42);
+        for (int i = 0; i < taps; i++) {
+            requestedAt[i] = engine.getFramesWritten();
+            stimuli[i] = Stimulus.of(tone);
+            engine.replace(stimuli[i]);
+            Thread.sleep(random.nextInt(20));
+        }
+        Stimulus last = stimuli[taps - 1];
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+        while (!last.hasStarted() && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertTrue("last stimulus never started", last.hasStarted());
+
+        int started = 0;
+        for (int i = 0; i < taps; i++) {
+            if (!stimuli[i].hasStarted()) {
+                assertTrue(stimuli[i].isCancelled());
+                continue;
+            }
+            started++;
+            long latency = stimuli[i].getOnsetFrame() - requestedAt[i];
+            assertTrue("stimulus " + i + " started " + latency + " frames late",
+                    latency <= engine.getMaxOnsetLatencyFrames());
+        }
+        assertTrue(started > taps / 2);
+    }
+
+    @Test
+    public void queuedStimuliAreSeparatedByJitteredGaps() throws Exception {
+        CountingSink sink = new CountingSink();
+        engine = new AudioEngine(sink, PLAIN_THREADS, new java.util.Random(7));
+        engine.start();
+        int toneFrames = 4410;
+        Stimulus[] stimuli = new Stimulus[10];
+        for (int i = 0; i < stimuli.length; i++) {
+            stimuli[i] = Stimulus.of(new short[toneFrames * 2]);
+            engine.enqueue(stimuli[i], 100, 50);
+        }
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (engine.isPlaying() && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        int minGap = SAMPLE_RATE / 10;
+        int maxGap = SAMPLE_RATE * 150 / 1000;
+        for (int i = 1; i < stimuli.length; i++) {
+            long gap = stimuli[i].getOnsetFrame() - stimuli[i - 1].getOnsetFrame() - toneFrames;
+            assertTrue("gap " + gap, gap >= minGap && gap <= maxGap);
+            assertTrue(stimuli[i - 1].isFinished());
+        }
+    }
+
+    private static void waitForSamples(CountingSink sink, long samples) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (sink.samples.get() < samples) {
+            assertTrue("timed out waiting for output", System.nanoTime() < deadline);
+            Thread.sleep(1);
+        }
+    }
+
+    /** Endless source that writes silence, so the engine keeps streaming for the whole test. */
+    private static final class SilenceSource implements SampleSource {
+        @Override
+        public int read(short[] out, int offset, int frames) {
+            Arrays.fill(out, offset, offset + frames * 2, (short) 0);
+            return frames;
+        }
+    }
+
+    private static class CountingSink implements AudioSink {
+        final AtomicLong samples = new AtomicLong();
+        volatile long nanosPerWrite;
+
+        @Override
+        public int getSampleRate() {
+            return SAMPLE_RATE;
+        }
+
+        @Override
+        public int getBufferSizeFrames() {
+            return 0;
+        }
+
+        @Override
+        public void start() {
+        }
+
+        @Override
+        public int write(short[] data, int offset, int length) {
+            if (nanosPerWrite > 0) {
+                java.util.concurrent.locks.LockSupport.parkNanos(nanosPerWrite);
+            }
+            samples.addAndGet(length);
+            return length;
+        }
+
+        @Override
+        public boolean getTimestamp(FrameTimestamp out) {
+            return false;
+        }
+
+        @Override
+        public void stop() {
+        }
+
+        @Override
+        public void release() {
+        }
+    }
+
+    /** Sink whose timestamps put each frame 1% later than the nominal sample rate would. */
+    private static final class DriftingSink extends CountingSink {
+        @Override
+        public boolean getTimestamp(FrameTimestamp out) {
+            out.framePosition = samples.get() / 2;
+            out.nanoTime = out.framePosition * 1_010_000_000L / SAMPLE_RATE;
+            return true;
+        }
+    }
+
+    /** Sink whose first write blocks until the test lets it go, like a wedged audio HAL. */
+    private static final class BlockingSink extends CountingSink {
+        final CountDownLatch entered = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+
+        @Override
+        public int write(short[] data, int offset, int length) {
+            entered.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return super.write(data, offset, length);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.commo.hearingtest.audio;
+
+import com.commo.hearingtest.Allocations;
+import com.commo.hearingtest.core.Ear;
+import com.commo.hearingtest.dsp.MaskingNoise;
+import com.commo.hearingtest.dsp.ToneSpec;
+import com.commo.hearingtest.dsp.ToneSynthesizer;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class MaskedToneSourceTest {
+
+    private static final int SAMPLE_RATE = 48000;
+    private static final ToneSpec TONE = ToneSpec.of(1000, 1000, 0.3f, ToneSpec.CHANNEL_LEFT, SAMPLE_RATE);
+    private static final float NOISE_RMS = 0.01f;
+
+    @Test
+    public void toneIsUntouchedAndNoiseGoesToTheOtherEar() {
+        short[] tone = ToneSynthesizer.render(TONE);
+        short[] out = readAll(new MaskedToneSource(tone, noise(1), Ear.RIGHT, NOISE_RMS, TONE.getRampFrames()), 300);
+        assertEquals(tone.length, out.length);
+        double sum = 0;
+        int frames = 0;
+        for (int i = 0; i < out.length; i += 2) {
+            assertEquals(tone[i], out[i]);
+            assertEquals(0, tone[i + 1]);
+            // Past the ramps.
+            if (i / 2 >= TONE.getRampFrames() && i / 2 < tone.length / 2 - TONE.getRampFrames()) {
+                sum += (double) out[i + 1] * out[i + 1];
+                frames++;
+            }
+        }
+        assertEquals(NOISE_RMS * Short.MAX_VALUE, Math.sqrt(sum / frames), NOISE_RMS * Short.MAX_VALUE * 0.05);
+    }
+
+    @Test
+    public void noiseRampsWithTheTone() {
+        short[] tone = ToneSynthesizer.render(TONE);
+        short[] out = readAll(new MaskedToneSource(tone, noise(2), Ear.RIGHT, 0.5f, TONE.getRampFrames()), 4096);
+        assertTrue(Math.abs(out[1]) <= 1);
+        assertTrue(Math.abs(out[out.length - 1]) <= 1);
+        int quarter = TONE.getRampFrames() / 4;
+        assertTrue(peak(out, 0, quarter) < peak(out, out.length / 4, quarter));
+    }
+
+    @Test
+    public void chunkingDoesNotChangeTheOutput() {
+        short[] tone = ToneSynthesizer.render(TONE);
+        short[] whole = readAll(new MaskedToneSource(tone, noise(3), Ear.RIGHT, NOISE_RMS, 480), tone.length);
+        short[] chunked = readAll(new MaskedToneSource(tone, noise(3), Ear.RIGHT, NOISE_RMS, 480), 37);
+        assertArrayEquals(whole, chunked);
+    }
+
+    @Test
+    public void loudNoiseSaturatesInsteadOfWrapping() {
+        short[] tone = ToneSynthesizer.render(ToneSpec.of(1000, 100, 1f, ToneSpec.CHANNEL_BOTH, SAMPLE_RATE));
+        // A one-frame ramp only silences the first and last frame.
+        short[] out = readAll(new MaskedToneSource(tone, noise(4), Ear.LEFT, 1f, 1), 256);
+        MaskingNoise reference = noise(4);
+        reference.next();
+        int clipped = 0;
+        for (int i = 2; i < out.length - 2; i += 2) {
+            int sum = tone[i] + Math.round(reference.next() * Short.MAX_VALUE);
+            int expected = Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, sum));
+            assertEquals("sample " + i, expected, out[i]);
+            assertEquals(tone[i + 1], out[i + 1]);
+            if (expected != sum) clipped++;
+        }
+        assertTrue(clipped > 0);
+    }
+
+    @Test
+    public void readDoesNotAllocate() {
+        short[] tone = ToneSynthesizer.render(ToneSpec.of(1000, 60000, 0.3f, ToneSpec.CHANNEL_LEFT, SAMPLE_RATE));
+        final MaskedToneSource source = new MaskedToneSource(tone, MaskingNoise.speechShaped(SAMPLE_RATE, 5),
+                Ear.RIGHT, NOISE_RMS, 480);
+        final short[] out = new short[AudioEngine.CHUNK_FRAMES * 2];
+        source.read(out, 0, AudioEngine.CHUNK_FRAMES);
+        Allocations.assertNoAllocation(new Runnable() {
+            @Override
+            public void run() {
+                while (source.read(out, 0, AudioEngine.CHUNK_FRAMES) > 0) {
+                }
+            }
+        });
+    }
+
+    private static MaskingNoise noise(long seed) {
+        return MaskingNoise.narrowBand(1000, SAMPLE_RATE, seed);
+    }
+
+    private static short[] readAll(SampleSource source, int chunkFrames) {
+        short[] out = new short[SAMPLE_RATE * 4];
+        int frames = 0;
+        int n;
+        while ((n = source.read(out, frames * 2, Math.min(chunkFrames, out.length / 2 - frames))) > 0) {
+            frames += n;
+        }
+        short[] result = new short[frames * 2];
+        System.arraycopy(out, 0, result, 0, result.length);
+        return result;
+    }
+
+    private static int peak(short[] stereo, int fromFrame, int frames) {
+        int peak = 0;
+        for (int i = fromFrame; i < fromFrame + frames; i++) {
+            peak = Math.max(peak, Math.abs(stereo[i * 2 + 1]));
+        }
+        return peak;
+    }
+}
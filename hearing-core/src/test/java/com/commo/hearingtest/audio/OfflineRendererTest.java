@@ -0,0 +1,125 @@
+package com.commo.hearingtest.audio;
+
+import com.commo.hearingtest.Allocations;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class OfflineRendererTest {
+
+    private static final int SAMPLE_RATE = 48000;
+
+    @Test
+    public void gapsAndTrailingSilenceAreRendered() throws IOException {
+        CountingSink sink = new CountingSink();
+        OfflineRenderer renderer = new OfflineRenderer(sink, new Random(1));
+        Stimulus first = Stimulus.of(constant(1000, (short) 100));
+        Stimulus second = Stimulus.of(constant(500, (short) 200));
+        renderer.replace(first, 10, 0);
+        renderer.enqueue(second, 20, 0);
+
+        assertEquals(480 + 1000 + 960 + 500, renderer.drain());
+        assertEquals(480, first.getOnsetFrame());
+        assertEquals(480 + 1000 + 960, second.getOnsetFrame());
+        assertTrue(first.isFinished() && second.isFinished());
+        assertEquals(1500, sink.nonZeroFrames);
+
+        renderer.advance(100);
+        assertEquals(2940 + 4800, renderer.getFramesRendered());
+        assertEquals(renderer.getFramesRendered(), sink.frames);
+        assertEquals(1500, sink.nonZeroFrames);
+    }
+
+    @Test
+    public void advanceCutsIntoAStimulusAndTheRestFollows() throws IOException {
+        CountingSink sink = new CountingSink();
+        OfflineRenderer renderer = new OfflineRenderer(sink, new Random(1));
+        renderer.replace(Stimulus.of(constant(1000, (short) 1)));
+        renderer.advance(10);
+        assertEquals(480, sink.nonZeroFrames);
+        assertEquals(520, renderer.drain());
+        assertEquals(1000, sink.nonZeroFrames);
+    }
+
+    @Test
+    public void sameSeedRendersSameJitter() throws IOException {
+        long[] onsets = new long[2];
+        for (int run = 0; run < 2; run++) {
+            OfflineRenderer renderer = new OfflineRenderer(new CountingSink(), new Random(42));
+            Stimulus last = null;
+            for (int i = 0; i < 10; i++) {
+                last = Stimulus.of(constant(100, (short) 1));
+                renderer.replace(last, 500, 1000);
+                renderer.drain();
+                renderer.advance(300);
+            }
+            onsets[run] = last.getOnsetFrame();
+        }
+        assertEquals(onsets[0], onsets[1]);
+    }
+
+    @Test
+    public void longRendersDoNotAllocate() throws IOException {
+        OfflineRenderer renderer = new OfflineRenderer(new CountingSink(), new Random(1));
+        renderer.advance(1000);
+        Thread thread = Thread.currentThread();
+        long before = Allocations.allocatedBytes(thread);
+        // An hour of output.
+        renderer.advance(3600 * 1000);
+        Allocations.assertAllocatedNothing("allocated", Allocations.allocatedBytes(thread) - before);
+    }
+
+    private static short[] constant(int frames, short value) {
+        short[] pcm = new short[frames * 2];
+        Arrays.fill(pcm, value);
+        return pcm;
+    }
+
+    private static final class CountingSink implements AudioSink {
+        long frames;
+        long nonZeroFrames;
+
+        @Override
+        public int getSampleRate() {
+            return SAMPLE_RATE;
+        }
+
+        @Override
+        public int getBufferSizeFrames() {
+            return 0;
+        }
+
+        @Override
+        public void start() {
+        }
+
+        @Override
+        public int write(short[] data, int offset, int length) {
+            for (int i = offset; i < offset + length; i += 2) {
+                if (data[i] != 0) {
+                    nonZeroFrames++;
+                }
+            }
+            frames += length / 2;
+            return length;
+        }
+
+        @Override
+        public boolean getTimestamp(FrameTimestamp out) {
+            return false;
+        }
+
+        @Override
+        public void stop() {
+        }
+
+        @Override
+        public void release() {
+        }
+    }
+}
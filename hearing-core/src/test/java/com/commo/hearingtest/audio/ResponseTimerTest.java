@@ -0,0 +1,110 @@
+package com.commo.hearingtest.audio;
+
+import com.commo.hearingtest.core.ReactionTimes;
+
+import org.junit.Test;
+
+import java.util.concurrent.ThreadFactory;
+
+import static org.junit.Assert.*;
+
+public class ResponseTimerTest {
+
+    private static final int SAMPLE_RATE = 48000;
+    private static final int BUFFER_FRAMES = 960; // 20 ms
+    private static final ThreadFactory PLAIN_THREADS = new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+            return new Thread(r);
+        }
+    };
+
+    @Test
+    public void timesFromTheTimestampedAcousticOnset() {
+        // Frame 0 was heard at t = 1 s, so frame 48000 is heard at 2 s whatever the buffering.
+        ResponseTimer timer = new ResponseTimer(new AudioEngine(new FixedTimestampSink(true), PLAIN_THREADS));
+        Stimulus stimulus = started(SAMPLE_RATE, 1_900_000_000L);
+        timer.presented(stimulus);
+        assertEquals(350, timer.respond(2_350_000_000L), 1e-6);
+
+        ReactionTimes times = timer.getReactionTimes();
+        assertEquals(1, times.size());
+        assertTrue(times.isTimestamped(0));
+    }
+
+    @Test
+    public void withoutTimestampsTheBufferLatencyIsAddedToTheWriteTime() {
+        ResponseTimer timer = new ResponseTimer(new AudioEngine(new FixedTimestampSink(false), PLAIN_THREADS));
+        timer.presented(started(SAMPLE_RATE, 1_000_000_000L));
+        // Written at 1 s, heard 20 ms later.
+        assertEquals(280, timer.respond(1_300_000_000L), 1e-6);
+        assertFalse(timer.getReactionTimes().isTimestamped(0));
+    }
+
+    @Test
+    public void answerBeforeAReplayStartsIsTimedAgainstTheToneHeard() {
+        ResponseTimer timer = new ResponseTimer(new AudioEngine(new FixedTimestampSink(true), PLAIN_THREADS));
+        timer.presented(started(0, 0));
+        timer.presented(Stimulus.of(new short[2])); // Replay still in its gap.
+        assertEquals(400, timer.respond(1_400_000_000L), 1e-6);
+
+        timer.presented(Stimulus.of(new short[2]));
+        assertTrue("nothing of this trial was heard", Double.isNaN(timer.respond(2_000_000_000L)));
+        ReactionTimes times = timer.getReactionTimes();
+        assertEquals(2, times.size());
+        assertEquals(1, times.getMeasuredCount());
+
+        timer.reset();
+        assertEquals(0, timer.getReactionTimes().size());
+    }
+
+    private static Stimulus started(long onsetFrame, long writeNanos) {
+        Stimulus stimulus = Stimulus.of(new short[2]);
+        stimulus.markOnset(onsetFrame, writeNanos);
+        return stimulus;
+    }
+
+    /** Sink that reports frame 0 as presented at t = 1 s, or no timestamp at all. */
+    private static final class FixedTimestampSink implements AudioSink {
+        private final boolean hasTimestamp;
+
+        FixedTimestampSink(boolean hasTimestamp) {
+            this.hasTimestamp = hasTimestamp;
+        }
+
+        @Override
+        public int getSampleRate() {
+            return SAMPLE_RATE;
+        }
+
+        @Override
+        public int getBufferSizeFrames() {
+            return BUFFER_FRAMES;
+        }
+
+        @Override
+        public void start() {
+        }
+
+        @Override
+        public int write(short[] data, int offset, int length) {
+            return length;
+        }
+
+        @Override
+        public boolean getTimestamp(FrameTimestamp out) {
+            if (!hasTimestamp) return false;
+            out.framePosition = 0;
+            out.nanoTime = 1_000_000_000L;
+            return true;
+        }
+
+        @Override
+        public void stop() {
+        }
+
+        @Override
+        public void release() {
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.commo.hearingtest.audio;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class StimulusSchedulerTest {
+
+    private static final int SAMPLE_RATE = 1000; // one frame per millisecond keeps the arithmetic readable
+
+    private final RecordingListener listener = new RecordingListener();
+    private final short[] chunk = new short[64 * 2];
+
+    @Test
+    public void replaceFlushesAndStartsImmediately() {
+        StimulusScheduler scheduler = new StimulusScheduler(SAMPLE_RATE, new Random(1));
+        Stimulus first = Stimulus.of(constant(100, 1));
+        scheduler.replace(first);
+        assertEquals(64, scheduler.render(chunk, 0, 64, listener));
+        Stimulus second = Stimulus.of(constant(100, 2));
+        scheduler.replace(second);
+        assertEquals(64, scheduler.render(chunk, 0, 64, listener));
+
+        assertEquals(2, listener.flushes);
+        assertTrue(first.isCancelled());
+        assertFalse(second.isCancelled());
+        assertEquals(Arrays.asList(first, second), listener.onsets);
+        assertEquals(Arrays.asList(0, 0), listener.offsets);
+        assertEquals(2, chunk[0]);
+    }
+
+    @Test
+    public void enqueuedStimulusWaitsForGapAfterPrevious() {
+        StimulusScheduler scheduler = new StimulusScheduler(SAMPLE_RATE, new Random(1));
+        Stimulus a = Stimulus.of(constant(10, 1));
+        Stimulus b = Stimulus.of(constant(10, 2));
+        scheduler.enqueue(a, 0, 0);
+        scheduler.enqueue(b, 20, 0);
+        assertEquals(40, scheduler.render(chunk, 0, 64, listener));
+
+        assertEquals(Arrays.asList(0, 30), listener.offsets);
+        assertEquals(1, chunk[9 * 2]);
+        assertEquals(0, chunk[10 * 2]);
+        assertEquals(0, chunk[29 * 2]);
+        assertEquals(2, chunk[30 * 2]);
+        assertTrue(a.isFinished());
+        assertTrue(b.isFinished());
+        assertTrue(scheduler.isIdle());
+        assertEquals(0, listener.flushes);
+    }
+
+    @Test
+    public void jitterStaysWithinRange() {
+        StimulusScheduler scheduler = new StimulusScheduler(SAMPLE_RATE, new Random(3));
+        short[] big = new short[4096 * 2];
+        for (int i = 0; i < 50; i++) {
+            scheduler.enqueue(Stimulus.of(constant(1, 1)), 10, 20);
+        }
+        scheduler.render(big, 0, 4096, listener);
+        int previousEnd = 0;
+        boolean sawJitter = false;
+        for (int offset : listener.offsets) {
+            int gap = offset - previousEnd;
+            assertTrue("gap " + gap, gap >= 10 && gap <= 30);
+            sawJitter |= gap != 10;
+            previousEnd = offset + 1;
+        }
+        assertEquals(50, listener.offsets.size());
+        assertTrue(sawJitter);
+    }
+
+    @Test
+    public void cancelAllSilencesAndCancelsQueue() {
+        StimulusScheduler scheduler = new StimulusScheduler(SAMPLE_RATE, new Random(1));
+        Stimulus playing = Stimulus.of(constant(1000, 1));
+        Stimulus queued = Stimulus.of(constant(10, 1));
+        scheduler.replace(playing);
+        scheduler.enqueue(queued, 0, 0);
+        scheduler.render(chunk, 0, 64, listener);
+        scheduler.cancelAll();
+        assertEquals(0, scheduler.render(chunk, 0, 64, listener));
+        assertTrue(playing.isCancelled());
+        assertTrue(queued.isCancelled());
+        assertTrue(scheduler.isIdle());
+    }
+
+    @Test
+    public void cancelStopsOnlyThatStimulus() {
+        StimulusScheduler scheduler = new StimulusScheduler(SAMPLE_RATE, new Random(1));
+        Stimulus playing = Stimulus.of(constant(1000, 1));
+        Stimulus queued = Stimulus.of(constant(10, 2));
+        scheduler.replace(playing);
+        scheduler.enqueue(queued, 0, 0);
+        scheduler.render(chunk, 0, 64, listener);
+
+        scheduler.cancel(queued);
+        assertEquals(64, scheduler.render(chunk, 0, 64, listener));
+        assertTrue(queued.isCancelled());
+        assertFalse(playing.isCancelled());
+        assertEquals(1, listener.flushes);
+
+        scheduler.cancel(playing);
+        assertEquals(0, scheduler.render(chunk, 0, 64, listener));
+        assertTrue(playing.isCancelled());
+        assertEquals(2, listener.flushes);
+        assertTrue(scheduler.isIdle());
+    }
+
+    @Test
+    public void cancellingAReplacedStimulusLeavesItsSuccessorPlaying() {
+        StimulusScheduler scheduler = new StimulusScheduler(SAMPLE_RATE, new Random(1));
+        Stimulus old = Stimulus.of(constant(1000, 1));
+        Stimulus next = Stimulus.of(constant(1000, 2));
+        scheduler.replace(old);
+        scheduler.render(chunk, 0, 64, listener);
+        scheduler.replace(next);
+        scheduler.cancel(old);
+        assertEquals(64, scheduler.render(chunk, 0, 64, listener));
+
+        assertFalse(next.isCancelled());
+        assertEquals(2, chunk[0]);
+        assertEquals(2, listener.flushes);
+    }
+
+    private static short[] constant(int frames, int value) {
+        short[] pcm = new short[frames * 2];
+        Arrays.fill(pcm, (short) value);
+        return pcm;
+    }
+
+    private static final class RecordingListener implements StimulusScheduler.RenderListener {
+        int flushes;
+        final List<Stimulus> onsets = new ArrayList<Stimulus>();
+        final List<Integer> offsets = new ArrayList<Integer>();
+
+        @Override
+        public void onFlush() {
+            flushes++;
+        }
+
+        @Override
+        public void onOnset(Stimulus stimulus, int frameOffset) {
+            onsets.add(stimulus);
+            offsets.add(frameOffset);
+        }
+    }
+}
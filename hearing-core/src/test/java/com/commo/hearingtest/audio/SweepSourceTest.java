@@ -0,0 +1,137 @@
+package com.commo.hearingtest.audio;
+
+import com.commo.hearingtest.Allocations;
+import com.commo.hearingtest.calibration.CalibrationProfile;
+import com.commo.hearingtest.calibration.GainTable;
+import com.commo.hearingtest.core.BekesySweep;
+import com.commo.hearingtest.core.Ear;
+import com.commo.hearingtest.dsp.ToneSpec;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class SweepSourceTest {
+
+    private static final int SAMPLE_RATE = 48000;
+    private static final GainTable GAIN_TABLE = CalibrationProfile.nominal().createGainTable();
+
+    @Test
+    public void chunkSizeDoesNotChangeTheWaveform() {
+        // With the level pinned, how the engine slices its reads must not show in the output.
+        short[] whole = render(pinnedSweep(), new int[]{SAMPLE_RATE * 3});
+        Random random = new Random(3);
+        int[] sizes = new int[2000];
+        for (int i = 0; i < sizes.length; i++) {
+            sizes[i] = 1 + random.nextInt(700);
+        }
+        short[] chunked = render(pinnedSweep(), sizes);
+        int frames = Math.min(whole.length, chunked.length) / 2;
+        assertTrue(frames > SAMPLE_RATE * 2);
+        for (int i = 0; i < frames * 2; i++) {
+            assertEquals("sample " + i, whole[i], chunked[i], 2);
+        }
+    }
+
+    @Test
+    public void phaseIsContinuousAcrossReads() {
+        // A click between chunks would show as a jump larger than the steepest slope of the tone.
+        BekesySweep sweep = BekesySweep.chirp(SAMPLE_RATE, 90, 90, 90);
+        SweepSource source = new SweepSource(sweep, GAIN_TABLE, Ear.LEFT);
+        short[] out = new short[512 * 2];
+        short previous = 0;
+        while (!source.isDone()) {
+            int n = source.read(out, 0, 512);
+            double amplitude = GAIN_TABLE.amplitudeFor(Ear.LEFT, source.getCurrentFrequency(), 90) * Short.MAX_VALUE;
+            double maxStep = amplitude * 2 * Math.PI * source.getCurrentFrequency() / SAMPLE_RATE + 2;
+            for (int i = 0; i < n; i++) {
+                short sample = out[i * 2];
+                assertTrue("jump at " + sweep.getFramesElapsed(), Math.abs(sample - previous) <= maxStep);
+                previous = sample;
+            }
+        }
+    }
+
+    @Test
+    public void onlyTheTestedEarSounds() {
+        SweepSource source = new SweepSource(pinnedSweep(), GAIN_TABLE, Ear.RIGHT);
+        short[] out = new short[4096 * 2];
+        boolean sounded = false;
+        while (!source.isDone()) {
+            int n = source.read(out, 0, 4096);
+            for (int i = 0; i < n; i++) {
+                assertEquals(0, out[i * 2]);
+                sounded |= out[i * 2 + 1] != 0;
+            }
+        }
+        assertTrue(sounded);
+    }
+
+    @Test
+    public void finishFadesOutAndEndsTheSource() {
+        SweepSource source = new SweepSource(pinnedSweep(), GAIN_TABLE, Ear.LEFT);
+        short[] out = new short[SAMPLE_RATE * 2];
+        assertEquals(SAMPLE_RATE, source.read(out, 0, SAMPLE_RATE));
+        // Starts from silence.
+        assertTrue(Math.abs(out[0]) <= 1);
+        source.finish();
+        int rampFrames = ToneSpec.DEFAULT_RAMP_MS * SAMPLE_RATE / 1000;
+        assertEquals(rampFrames, source.read(out, 0, SAMPLE_RATE));
+        assertTrue(source.isDone());
+        assertTrue(Math.abs(out[(rampFrames - 1) * 2]) <= 1);
+        assertEquals(0, source.read(out, 0, SAMPLE_RATE));
+        assertFalse(source.getSweep().isFinished());
+    }
+
+    @Test
+    public void levelFollowsTheButtonOneReadBehind() {
+        BekesySweep sweep = BekesySweep.trackedTone(SAMPLE_RATE, 1000, 10, 40, -10, 90);
+        SweepSource source = new SweepSource(sweep, GAIN_TABLE, Ear.LEFT);
+        short[] out = new short[SAMPLE_RATE * 2];
+        source.setHeard(true);
+        source.read(out, 0, SAMPLE_RATE);
+        assertEquals(40 - BekesySweep.DEFAULT_RATE_DB_PER_SECOND, source.getCurrentLevelDb(), 1e-9);
+        source.setHeard(false);
+        source.read(out, 0, SAMPLE_RATE);
+        assertEquals(40, source.getCurrentLevelDb(), 1e-9);
+        // The first press and the release.
+        assertEquals(2, sweep.getReversalCount());
+        assertEquals(40 - BekesySweep.DEFAULT_RATE_DB_PER_SECOND, sweep.getReversalLevelDb(1), 1e-9);
+    }
+
+    @Test
+    public void streamingASweepDoesNotAllocate() {
+        BekesySweep sweep = BekesySweep.chirp(SAMPLE_RATE, 40, -10, 90);
+        final SweepSource source = new SweepSource(sweep, GAIN_TABLE, Ear.LEFT);
+        final short[] out = new short[AudioEngine.CHUNK_FRAMES * 2];
+        source.read(out, 0, AudioEngine.CHUNK_FRAMES);
+        Allocations.assertNoAllocation(new Runnable() {
+            @Override
+            public void run() {
+                int chunks = 0;
+                while (!source.isDone()) {
+                    if (chunks++ % 100 == 0) source.setHeard(chunks % 200 == 1);
+                    source.read(out, 0, AudioEngine.CHUNK_FRAMES);
+                }
+            }
+        });
+    }
+
+    private static BekesySweep pinnedSweep() {
+        return new BekesySweep(SAMPLE_RATE, 500, 4000, 3, 60, 60, 60, BekesySweep.DEFAULT_RATE_DB_PER_SECOND);
+    }
+
+    private static short[] render(BekesySweep sweep, int[] chunkSizes) {
+        SweepSource source = new SweepSource(sweep, GAIN_TABLE, Ear.LEFT);
+        short[] out = new short[(int) (sweep.getTotalFrames() + SAMPLE_RATE) * 2];
+        int frames = 0;
+        for (int i = 0; i < chunkSizes.length && !source.isDone(); i++) {
+            frames += source.read(out, frames * 2, Math.min(chunkSizes[i], out.length / 2 - frames));
+        }
+        short[] result = new short[frames * 2];
+        System.arraycopy(out, 0, result, 0, result.length);
+        return result;
+    }
+}
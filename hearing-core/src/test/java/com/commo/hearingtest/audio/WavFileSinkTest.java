@@ -0,0 +1,99 @@
+package com.commo.hearingtest.audio;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+public class WavFileSinkTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void writesCanonicalHeaderAndSamples() throws IOException {
+        File file = folder.newFile("out.wav");
+        WavFileSink sink = WavFileSink.create(file, 48000);
+        // Odd-sized writes that straddle the staging buffer.
+        short[] pcm = ramp(WavFileSink.BUFFER_FRAMES * 3 + 17);
+        int offset = 0;
+        int[] sizes = {6, WavFileSink.BUFFER_FRAMES * 2 - 2, 1000, pcm.length};
+        for (int size : sizes) {
+            int length = Math.min(size, pcm.length - offset);
+            assertEquals(length, sink.write(pcm, offset, length));
+            offset += length;
+        }
+        sink.release();
+        assertFalse(sink.hasFailed());
+
+        ByteBuffer wav = read(file);
+        assertEquals(WavFileSink.HEADER_BYTES + pcm.length * 2, wav.limit());
+        assertEquals("RIFF", tag(wav, 0));
+        assertEquals(wav.limit() - 8, wav.getInt(4));
+        assertEquals("WAVE", tag(wav, 8));
+        assertEquals("fmt ", tag(wav, 12));
+        assertEquals(1, wav.getShort(20));
+        assertEquals(2, wav.getShort(22));
+        assertEquals(48000, wav.getInt(24));
+        assertEquals(48000 * 4, wav.getInt(28));
+        assertEquals(4, wav.getShort(32));
+        assertEquals(16, wav.getShort(34));
+        assertEquals("data", tag(wav, 36));
+        assertEquals(pcm.length * 2, wav.getInt(40));
+        for (int i = 0; i < pcm.length; i++) {
+            assertEquals(pcm[i], wav.getShort(WavFileSink.HEADER_BYTES + i * 2));
+        }
+    }
+
+    @Test
+    public void fileIsCompleteAfterEachStop() throws IOException {
+        File file = folder.newFile("partial.wav");
+        WavFileSink sink = WavFileSink.create(file, 44100);
+        sink.write(ramp(100), 0, 200);
+        sink.stop();
+        ByteBuffer wav = read(file);
+        assertEquals(WavFileSink.HEADER_BYTES + 400, wav.limit());
+        assertEquals(400, wav.getInt(40));
+
+        sink.write(ramp(50), 0, 100);
+        sink.release();
+        wav = read(file);
+        assertEquals(600, wav.getInt(40));
+        assertEquals(150, sink.getFramesWritten());
+    }
+
+    @Test
+    public void rejectsWritesAfterRelease() throws IOException {
+        WavFileSink sink = WavFileSink.create(folder.newFile("closed.wav"), 44100);
+        sink.release();
+        assertEquals(WavFileSink.ERROR_IO, sink.write(new short[4], 0, 4));
+        assertFalse(sink.getTimestamp(new FrameTimestamp()));
+    }
+
+    static ByteBuffer read(File file) throws IOException {
+        return ByteBuffer.wrap(Files.readAllBytes(file.toPath())).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static String tag(ByteBuffer buffer, int offset) {
+        char[] chars = new char[4];
+        for (int i = 0; i < 4; i++) {
+            chars[i] = (char) buffer.get(offset + i);
+        }
+        return new String(chars);
+    }
+
+    private static short[] ramp(int frames) {
+        short[] pcm = new short[frames * 2];
+        for (int i = 0; i < pcm.length; i++) {
+            pcm[i] = (short) (i * 7 - 30000);
+        }
+        return pcm;
+    }
+}
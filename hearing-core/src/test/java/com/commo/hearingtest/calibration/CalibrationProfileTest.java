@@ -0,0 +1,61 @@
+package com.commo.hearingtest.calibration;
+
+import com.commo.hearingtest.core.Ear;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import static org.junit.Assert.*;
+
+public class CalibrationProfileTest {
+
+    private static final String PROFILE = "# measured with a type 1 meter\n"
+            + "name=HD 280\n"
+            + "device=HD 280 Pro\n"
+            + "250   -70.0  -71.0\n"
+            + "1000  -80.0  -82.0\n"
+            + "4000  -76.0  -74.0\n";
+
+    @Test
+    public void parsesTheTextFormat() throws IOException {
+        CalibrationProfile profile = CalibrationProfile.parse(new StringReader(PROFILE), "file");
+        assertEquals("HD 280", profile.getName());
+        assertTrue(profile.matchesDevice(" hd 280 pro"));
+        assertFalse(profile.matchesDevice("Galaxy Buds"));
+        assertArrayEquals(new int[]{250, 1000, 4000}, profile.getFrequencies());
+        assertEquals(-82, profile.getReferenceDbFs(Ear.RIGHT, 1000), 0);
+
+        StringWriter written = new StringWriter();
+        profile.write(written);
+        CalibrationProfile reread = CalibrationProfile.parse(new StringReader(written.toString()), "file");
+        assertEquals(-74, reread.getReferenceDbFs(Ear.RIGHT, 4000), 1e-9);
+        assertEquals("HD 280 Pro", reread.getDeviceName());
+    }
+
+    @Test
+    public void interpolatesInLogFrequencyAndHoldsTheEnds() throws IOException {
+        CalibrationProfile profile = CalibrationProfile.parse(new StringReader(PROFILE), "file");
+        // 500 Hz is halfway between 250 and 1000 in octaves.
+        assertEquals(-75, profile.getReferenceDbFs(Ear.LEFT, 500), 1e-9);
+        assertEquals(-78, profile.getReferenceDbFs(Ear.LEFT, 2000), 1e-9);
+        assertEquals(-70, profile.getReferenceDbFs(Ear.LEFT, 125), 0);
+        assertEquals(-76, profile.getReferenceDbFs(Ear.LEFT, 8000), 0);
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsMalformedRows() throws IOException {
+        CalibrationProfile.parse(new StringReader("1000 -80\n"), "broken");
+    }
+
+    @Test
+    public void nominalProfileIsFlat() {
+        CalibrationProfile nominal = CalibrationProfile.nominal();
+        assertNull(nominal.getDeviceName());
+        assertFalse(nominal.matchesDevice("anything"));
+        assertEquals(CalibrationProfile.NOMINAL_REFERENCE_DBFS, nominal.getReferenceDbFs(Ear.LEFT, 125), 0);
+        assertEquals(CalibrationProfile.NOMINAL_REFERENCE_DBFS, nominal.getReferenceDbFs(Ear.RIGHT, 8000), 0);
+    }
+}
@@ -0,0 +1,57 @@
+package com.commo.hearingtest.calibration;
+
+import com.commo.hearingtest.core.Ear;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class GainTableTest {
+
+    private static final CalibrationProfile PROFILE = new CalibrationProfile("test", null,
+            new int[]{125, 250, 500, 1000, 2000, 4000, 8000},
+            new double[]{-60, -68, -75, -80, -79, -74, -66},
+            new double[]{-61, -69, -77, -82, -80, -73, -64});
+
+    @Test
+    public void tableMatchesTheProfileCurve() {
+        // Between grid points the table cuts the curve's corners by well under the 1 dB audiometer step.
+        GainTable table = PROFILE.createGainTable();
+        for (double frequency = 100; frequency < 10000; frequency *= 1.07) {
+            for (Ear ear : Ear.values()) {
+                double expected = PROFILE.getReferenceDbFs(ear, frequency);
+                assertEquals("at " + frequency + " Hz", expected, table.getReferenceDbFs(ear, frequency), 0.1);
+                double gainDb = 20 * Math.log10(table.gainAt(ear, frequency));
+                assertEquals("at " + frequency + " Hz", expected, gainDb, 0.1);
+            }
+        }
+    }
+
+    @Test
+    public void audiometricFrequenciesAreExact() {
+        GainTable table = PROFILE.createGainTable();
+        for (int frequency : new int[]{125, 250, 500, 1000, 2000, 4000, 8000}) {
+            assertEquals(PROFILE.getReferenceDbFs(Ear.LEFT, frequency), table.getReferenceDbFs(Ear.LEFT, frequency), 1e-9);
+        }
+    }
+
+    @Test
+    public void levelsInHearingLevelMapToAmplitude() {
+        GainTable table = PROFILE.createGainTable();
+        // 40 dB HL at 1 kHz in the right ear is -82 + 40 = -42 dBFS.
+        assertEquals(Math.pow(10, -42 / 20.0), table.amplitudeFor(Ear.RIGHT, 1000, 40), 1e-6);
+        assertEquals(1f, table.amplitudeFor(Ear.LEFT, 125, 200), 0);
+        assertEquals(GainTable.CEILING_DBFS + 80, table.getMaxLevelDbHl(Ear.LEFT, 1000), 1e-9);
+        // 8 kHz in the right ear has the least headroom.
+        assertEquals(GainTable.CEILING_DBFS + 64, table.getMaxLevelDbHl(new int[]{1000, 8000}), 1e-9);
+    }
+
+    @Test
+    public void nominalTableKeepsTheLegacyScale() {
+        GainTable table = CalibrationProfile.nominal().createGainTable();
+        for (int frequency : new int[]{125, 1000, 8000}) {
+            assertEquals(Math.pow(10, (40 + CalibrationProfile.NOMINAL_REFERENCE_DBFS) / 20),
+                    table.amplitudeFor(Ear.LEFT, frequency, 40), 1e-6);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.commo.hearingtest.chart;
+
+import com.commo.hearingtest.Allocations;
+import com.commo.hearingtest.core.Audiogram;
+import com.commo.hearingtest.core.Ear;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class AudiogramChartTest {
+
+    private static AudiogramChart chart() {
+        AudiogramChart chart = new AudiogramChart(-10, 120);
+        chart.setBounds(0, 0, 600, 130);
+        return chart;
+    }
+
+    @Test
+    public void octavesAreEvenlySpacedAndLevelsIncreaseDownwards() {
+        AudiogramChart chart = chart();
+        assertEquals(0, chart.xForFrequency(125), 1e-3);
+        assertEquals(100, chart.xForFrequency(250), 1e-3);
+        assertEquals(300, chart.xForFrequency(1000), 1e-3);
+        assertEquals(600, chart.xForFrequency(8000), 1e-3);
+        assertEquals(0, chart.yForLevel(-10), 1e-3);
+        assertEquals(30, chart.yForLevel(20), 1e-3);
+        assertEquals(130, chart.yForLevel(500), 1e-3);
+
+        assertEquals(14, chart.getGridLevelCount());
+        assertEquals(-10, chart.getGridLevelDb(0), 0);
+        assertEquals(120, chart.getGridLevelDb(13), 0);
+        float[] grid = new float[chart.gridFloats()];
+        assertEquals(grid.length, chart.appendGrid(grid, 0));
+    }
+
+    @Test
+    public void linesBreakAtUntestedAndNoResponsePoints() {
+        AudiogramChart chart = chart();
+        Audiogram audiogram = new Audiogram(new int[]{250, 500, 1000, 2000, 4000},
+                new double[]{10, 20, Double.NaN, 30, 40},
+                new double[]{10, 15, 20, Audiogram.NO_RESPONSE, 25});
+
+        float[] out = new float[AudiogramChart.segmentFloats(audiogram)];
+        assertEquals(8, chart.appendSegments(audiogram, Ear.LEFT, out, 0));
+        assertArrayEquals(new float[]{100, 20, 200, 30}, Arrays.copyOf(out, 4), 1e-3f);
+        assertEquals(400, out[4], 1e-3);
+        assertEquals(8, chart.appendSegments(audiogram, Ear.RIGHT, out, 0));
+
+        float[] points = new float[AudiogramChart.pointFloats(audiogram)];
+        assertEquals(8, chart.appendPoints(audiogram, Ear.RIGHT, false, points, 0));
+        assertEquals(2, chart.appendPoints(audiogram, Ear.RIGHT, true, points, 0));
+        assertEquals(400, points[0], 1e-3);
+        assertEquals(130, points[1], 1e-3);
+    }
+
+    @Test
+    public void rebuildingHistoryDoesNotAllocate() {
+        final AudiogramChart chart = chart();
+        final Audiogram[] history = new Audiogram[300];
+        int floats = 0;
+        for (int i = 0; i < history.length; i++) {
+            double shift = i * 0.1;
+            history[i] = new Audiogram(new int[]{125, 250, 500, 1000, 2000, 4000, 8000},
+                    new double[]{5 + shift, 5, 10, 10, 15 + shift, 25 + shift, 30},
+                    new double[]{0, 5, 5, 10, 10 + shift, 20 + shift, Audiogram.NO_RESPONSE});
+            floats += AudiogramChart.segmentFloats(history[i]);
+        }
+        final float[] out = new float[floats];
+        for (Audiogram audiogram : history) {
+            chart.appendSegments(audiogram, Ear.LEFT, out, 0);
+        }
+
+        final int[] offset = new int[1];
+        Allocations.assertNoAllocation(new Runnable() {
+            @Override
+            public void run() {
+                for (Audiogram audiogram : history) {
+                    offset[0] = chart.appendSegments(audiogram, Ear.LEFT, out, offset[0]);
+                }
+            }
+        });
+
+        assertEquals(300 * 6 * 4, offset[0]);
+    }
+}
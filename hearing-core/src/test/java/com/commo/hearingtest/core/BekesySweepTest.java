@@ -0,0 +1,122 @@
+package com.commo.hearingtest.core;
+
+import com.commo.hearingtest.Allocations;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class BekesySweepTest {
+
+    private static final int SAMPLE_RATE = 48000;
+    private static final int CHUNK_FRAMES = 256;
+    // A listener takes this long to press or release after the tone crosses their threshold.
+    private static final double REACTION_SECONDS = 0.3;
+
+    private static double thresholdAt(double frequency) {
+        // Rises 10 dB per octave away from 1 kHz, like a sloping loss on both sides.
+        return 20 + 10 * Math.abs(Math.log(frequency / 1000) / Math.log(2));
+    }
+
+    @Test
+    public void chirpFollowsTheLogFrequencyScale() {
+        BekesySweep sweep = BekesySweep.chirp(SAMPLE_RATE, 40, -10, 90);
+        assertEquals(125, sweep.frequencyAt(0), 1e-9);
+        assertEquals(1000, sweep.frequencyAt(sweep.getTotalFrames() / 2), 1e-6);
+        assertEquals(8000, sweep.frequencyAt(sweep.getTotalFrames()), 1e-6);
+        assertEquals(180L * SAMPLE_RATE, sweep.getTotalFrames());
+        assertEquals(sweep.frequencyAt(1) / sweep.frequencyAt(0), sweep.getFrequencyRatioPerFrame(), 1e-15);
+    }
+
+    @Test
+    public void levelMovesAtTheTrackingRateWithinItsLimits() {
+        BekesySweep sweep = BekesySweep.trackedTone(SAMPLE_RATE, 1000, 60, 40, 30, 45);
+        sweep.advance(SAMPLE_RATE, false);
+        assertEquals(40 + BekesySweep.DEFAULT_RATE_DB_PER_SECOND, sweep.getLevelDb(), 1e-9);
+        sweep.advance(SAMPLE_RATE * 4, false);
+        assertEquals(45, sweep.getLevelDb(), 0);
+        sweep.advance(SAMPLE_RATE * 2, true);
+        assertEquals(40, sweep.getLevelDb(), 1e-9);
+        assertEquals(1, sweep.getReversalCount());
+        assertEquals(45, sweep.getReversalLevelDb(0), 0);
+    }
+
+    @Test
+    public void advanceStopsAtTheEnd() {
+        BekesySweep sweep = BekesySweep.trackedTone(SAMPLE_RATE, 1000, 1, 40, -10, 90);
+        assertEquals(SAMPLE_RATE - 100, sweep.advance(SAMPLE_RATE - 100, false));
+        assertEquals(100, sweep.advance(CHUNK_FRAMES, false));
+        assertTrue(sweep.isFinished());
+        assertEquals(0, sweep.advance(CHUNK_FRAMES, false));
+        assertEquals(1, sweep.getProgress(), 0);
+    }
+
+    @Test
+    public void sweepRecoversASlopingAudiogram() {
+        BekesySweep sweep = BekesySweep.chirp(SAMPLE_RATE, 40, -10, 90);
+        track(sweep);
+        // 180 s at a couple of reversals a second leaves several per third-octave band.
+        assertTrue(sweep.getReversalCount() > 200);
+        double[] thresholds = sweep.getThresholdsDb(BekesySweep.THIRD_OCTAVE_FREQUENCIES);
+        for (int i = 0; i < thresholds.length; i++) {
+            int frequency = BekesySweep.THIRD_OCTAVE_FREQUENCIES[i];
+            // Reaction time lags the level behind the sloping curve by about the rate times the delay.
+            assertEquals(frequency + " Hz", thresholdAt(frequency), thresholds[i], 3);
+        }
+    }
+
+    @Test
+    public void trackedToneConvergesOnItsThreshold() {
+        BekesySweep sweep = BekesySweep.trackedTone(SAMPLE_RATE, 4000, 30, 60, -10, 90);
+        track(sweep);
+        assertEquals(thresholdAt(4000), sweep.getThresholdDb(4000), 1);
+    }
+
+    @Test
+    public void unheardFrequenciesAtTheTopOfTheRangeAreInfinite() {
+        BekesySweep sweep = BekesySweep.chirp(SAMPLE_RATE, 90, -10, 90);
+        while (!sweep.isFinished()) {
+            sweep.advance(CHUNK_FRAMES, false);
+        }
+        assertEquals(0, sweep.getReversalCount());
+        assertEquals(Double.POSITIVE_INFINITY, sweep.getThresholdDb(1000), 0);
+        // Outside the sweep's range nothing was measured.
+        assertTrue(Double.isNaN(sweep.getThresholdDb(16000)));
+    }
+
+    @Test
+    public void advanceDoesNotAllocate() {
+        final BekesySweep sweep = BekesySweep.chirp(SAMPLE_RATE, 40, -10, 90);
+        sweep.advance(CHUNK_FRAMES, false);
+        Allocations.assertNoAllocation(new Runnable() {
+            @Override
+            public void run() {
+                boolean heard = false;
+                for (int i = 0; !sweep.isFinished(); i++) {
+                    // Toggle far faster than anyone could, to run into the reversal cap as well.
+                    if (i % 4 == 0) heard = !heard;
+                    sweep.advance(CHUNK_FRAMES, heard);
+                }
+            }
+        });
+        assertEquals(180 * BekesySweep.MAX_REVERSALS_PER_SECOND + 1, sweep.getReversalCount());
+    }
+
+    /** Runs the sweep with a listener who reacts to their threshold after {@link #REACTION_SECONDS}. */
+    private static void track(BekesySweep sweep) {
+        int delayChunks = (int) Math.round(REACTION_SECONDS * SAMPLE_RATE / CHUNK_FRAMES);
+        boolean[] pending = new boolean[delayChunks];
+        int chunk = 0;
+        boolean heard = false;
+        while (!sweep.isFinished()) {
+            boolean audible = sweep.getLevelDb() >= thresholdAt(sweep.getFrequency());
+            int slot = chunk % delayChunks;
+            if (chunk >= delayChunks) {
+                heard = pending[slot];
+            }
+            pending[slot] = audible;
+            sweep.advance(CHUNK_FRAMES, heard);
+            chunk++;
+        }
+    }
+}
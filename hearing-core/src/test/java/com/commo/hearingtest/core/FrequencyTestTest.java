@@ -0,0 +1,60 @@
+package com.commo.hearingtest.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class FrequencyTestTest {
+
+    @Test
+    public void sweepsFrequenciesHighToLow() {
+        FrequencyTest test = new FrequencyTest();
+        test.start();
+        assertTrue(test.isRunning());
+        for (int i = 0; i < FrequencyTest.DEFAULT_FREQUENCIES.length; i++) {
+            assertEquals(i, test.getCurrentIndex());
+            assertEquals(FrequencyTest.DEFAULT_FREQUENCIES[i], test.getCurrentFrequency());
+            assertEquals(i == FrequencyTest.DEFAULT_FREQUENCIES.length - 1,
+                    test.respond(FrequencyResponse.CANNOT_HEAR));
+        }
+        assertTrue(test.isFinished());
+        assertFalse(test.isRunning());
+        assertEquals(-1, test.getCurrentFrequency());
+    }
+
+    @Test
+    public void firstHeardAndFirstClearFrequenciesAreRecorded() {
+        FrequencyTest test = new FrequencyTest();
+        test.start();
+        test.respond(FrequencyResponse.CANNOT_HEAR);  // 8000
+        test.respond(FrequencyResponse.HEAR_FAINTLY); // 6000
+        test.respond(FrequencyResponse.HEAR_CLEARLY); // 4000
+        test.respond(FrequencyResponse.HEAR_CLEARLY); // 2000
+        FrequencyTestResult result = test.getResult();
+        assertEquals(4000, result.getOptimalFrequency());
+        assertEquals(6000, result.getLowestHeardFrequency());
+    }
+
+    @Test
+    public void analysisFollowsDetectedFrequency() {
+        assertTrue(new FrequencyTestResult(4000, 4000).getAnalysis().contains("젊은 연령대"));
+        assertTrue(new FrequencyTestResult(-1, 2000).getAnalysis().contains("성인 평균"));
+        assertTrue(new FrequencyTestResult(1000, 1000).getAnalysis().contains("고주파수"));
+        String none = new FrequencyTestResult(-1, -1).getAnalysis();
+        assertTrue(none.contains("감지되지 않음"));
+        assertTrue(none.contains("청력 검진"));
+    }
+
+    @Test
+    public void responsesAreIgnoredUntilStartedAndRestartClears() {
+        FrequencyTest test = new FrequencyTest(new int[]{1000, 500});
+        assertFalse(test.respond(FrequencyResponse.HEAR_CLEARLY));
+        assertEquals(0, test.getCurrentIndex());
+
+        test.start();
+        test.respond(FrequencyResponse.HEAR_CLEARLY);
+        test.start();
+        assertEquals(0, test.getCurrentIndex());
+        assertEquals(-1, test.getResult().getOptimalFrequency());
+    }
+}
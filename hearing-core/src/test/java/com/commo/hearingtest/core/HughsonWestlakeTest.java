@@ -0,0 +1,64 @@
+package com.commo.hearingtest.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class HughsonWestlakeTest {
+
+    /** Deterministic listener: hears everything at or above the threshold. */
+    private static double run(ThresholdProcedure procedure, double thresholdDb) {
+        while (!procedure.isFinished()) {
+            procedure.record(procedure.getNextLevelDb() >= thresholdDb);
+        }
+        return procedure.getThresholdDb();
+    }
+
+    @Test
+    public void downTenUpFive() {
+        HughsonWestlake procedure = new HughsonWestlake(40, -10, 100);
+        assertEquals(40, procedure.getNextLevelDb(), 0);
+        procedure.record(true);
+        assertEquals(30, procedure.getNextLevelDb(), 0);
+        procedure.record(false);
+        assertEquals(35, procedure.getNextLevelDb(), 0);
+    }
+
+    @Test
+    public void findsThresholdOnTheFiveDecibelGrid() {
+        assertEquals(25, run(new HughsonWestlake(40, -10, 100), 23), 0);
+        assertEquals(25, run(new HughsonWestlake(40, -10, 100), 25), 0);
+        assertEquals(70, run(new HughsonWestlake(40, -10, 100), 70), 0);
+    }
+
+    @Test
+    public void thresholdNeedsTwoAscendingHits() {
+        HughsonWestlake procedure = new HughsonWestlake(40, -10, 100);
+        run(procedure, 23);
+        // 40 hit, 30 hit, 20 miss, 25 hit (ascending), 15 miss, 20 miss, 25 hit (ascending).
+        assertEquals(7, procedure.getPresentationCount());
+    }
+
+    @Test
+    public void silenceAtMaximumIsNoResponse() {
+        HughsonWestlake procedure = new HughsonWestlake(40, -10, 50);
+        assertTrue(Double.isInfinite(run(procedure, 200)));
+    }
+
+    @Test
+    public void hearingAtMinimumEndsAtTheFloor() {
+        assertEquals(-10, run(new HughsonWestlake(0, -10, 100), -50), 0);
+    }
+
+    @Test
+    public void givesUpAfterMaxPresentations() {
+        HughsonWestlake procedure = new HughsonWestlake(40, -10, 100, 10, 5, 2, 6);
+        boolean heard = true;
+        while (!procedure.isFinished()) {
+            procedure.record(heard);
+            heard = !heard;
+        }
+        assertEquals(6, procedure.getPresentationCount());
+        assertTrue(Double.isNaN(procedure.getThresholdDb()));
+    }
+}
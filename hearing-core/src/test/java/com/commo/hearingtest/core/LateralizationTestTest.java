@@ -0,0 +1,66 @@
+package com.commo.hearingtest.core;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class LateralizationTestTest {
+
+    @Test
+    public void sidesAreSignedAndRandomized() {
+        LateralizationTest test = new LateralizationTest(LateralizationTest.Cue.ILD, new Random(1));
+        test.start();
+        assertEquals(1, test.getCurrentTrialNumber());
+        int left = 0;
+        for (int i = 0; i < 40 && test.isRunning(); i++) {
+            double signed = test.getSignedDifference();
+            assertEquals(test.getCurrentDifference(), Math.abs(signed), 0);
+            assertEquals(test.isCurrentSideLeft(), signed < 0);
+            if (test.isCurrentSideLeft()) left++;
+            test.answer(test.isCurrentSideLeft());
+        }
+        assertTrue(left > 5);
+    }
+
+    @Test
+    public void answersAreIgnoredUntilStarted() {
+        LateralizationTest test = new LateralizationTest(LateralizationTest.Cue.ITD, new Random(1));
+        assertFalse(test.answer(true));
+        assertEquals(0, test.getTrialCount());
+        assertTrue(Double.isNaN(test.getJnd()));
+    }
+
+    @Test
+    public void jndTracksTheListenersSeventyPercentPoint() {
+        // Weibull psychometric function for a two-alternative task with its 70.7% point at 20 us.
+        double jnd = 20;
+        double slope = 2;
+        double scale = jnd / Math.pow(-Math.log(2 * (1 - 0.707)), 1 / slope);
+        Random listener = new Random(5);
+        double[] estimates = new double[200];
+        int trials = 0;
+        for (int run = 0; run < estimates.length; run++) {
+            LateralizationTest test = new LateralizationTest(LateralizationTest.Cue.ITD, new Random(run));
+            test.start();
+            while (test.isRunning()) {
+                double pCorrect = 1 - 0.5 * Math.exp(-Math.pow(test.getCurrentDifference() / scale, slope));
+                boolean correct = listener.nextDouble() < pCorrect;
+                test.answer(correct == test.isCurrentSideLeft());
+            }
+            assertTrue(test.isFinished());
+            estimates[run] = test.getJnd();
+            trials += test.getTrialCount();
+        }
+        Arrays.sort(estimates);
+        double median = estimates[estimates.length / 2];
+        assertEquals(jnd, median, jnd * 0.25);
+        // The spread of single runs: most land within a factor of two.
+        assertTrue(estimates[estimates.length / 10] > jnd / 2);
+        assertTrue(estimates[estimates.length * 9 / 10] < jnd * 2);
+        // Around 40 trials, a couple of minutes per cue.
+        assertTrue(trials / estimates.length < 60);
+    }
+}
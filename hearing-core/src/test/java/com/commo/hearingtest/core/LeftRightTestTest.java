@@ -0,0 +1,48 @@
+package com.commo.hearingtest.core;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class LeftRightTestTest {
+
+    @Test
+    public void scoresEveryTrialAndFinishes() {
+        LeftRightTest test = new LeftRightTest(5, new Random(7));
+        test.start();
+        int expectedCorrect = 0;
+        for (int trial = 1; trial <= 5; trial++) {
+            assertTrue(test.isRunning());
+            assertEquals(trial, test.getCurrentTestNumber());
+            // Answer correctly on odd trials only.
+            boolean correct = trial % 2 == 1;
+            boolean answer = correct == test.isCurrentSoundLeft();
+            if (correct) expectedCorrect++;
+            assertEquals(trial == 5, test.answer(answer));
+        }
+        assertTrue(test.isFinished());
+        assertFalse(test.isRunning());
+        LeftRightTestResult result = test.getResult();
+        assertEquals(expectedCorrect, result.getCorrectAnswers());
+        assertEquals(60.0, result.getAccuracy(), 1e-9);
+    }
+
+    @Test
+    public void answersAfterFinishAreIgnored() {
+        LeftRightTest test = new LeftRightTest(1, new Random(1));
+        test.start();
+        test.answer(test.isCurrentSoundLeft());
+        test.answer(test.isCurrentSoundLeft());
+        assertEquals(1, test.getCorrectAnswers());
+    }
+
+    @Test
+    public void analysisThresholds() {
+        assertEquals(LeftRightTestResult.analysisFor(80), new LeftRightTestResult(4, 5).getAnalysis());
+        assertTrue(LeftRightTestResult.analysisFor(80).startsWith("우수한"));
+        assertTrue(LeftRightTestResult.analysisFor(60).startsWith("보통"));
+        assertTrue(LeftRightTestResult.analysisFor(59.9).startsWith("좌우 청력 분별에 어려움"));
+    }
+}
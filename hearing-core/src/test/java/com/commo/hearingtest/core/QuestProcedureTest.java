@@ -0,0 +1,52 @@
+package com.commo.hearingtest.core;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class QuestProcedureTest {
+
+    @Test
+    public void firstPresentationIsAtThePriorMean() {
+        assertEquals(40, new QuestProcedure(40, -10, 100).getNextLevelDb(), 0);
+    }
+
+    @Test
+    public void convergesOnADeterministicListener() {
+        for (double threshold = -5; threshold <= 90; threshold += 7.5) {
+            QuestProcedure procedure = new QuestProcedure(40, -10, 100);
+            while (!procedure.isFinished()) {
+                procedure.record(procedure.getNextLevelDb() >= threshold);
+            }
+            assertEquals("threshold " + threshold, threshold, procedure.getThresholdDb(), 3.0);
+            assertTrue(procedure.getPresentationCount() <= QuestProcedure.DEFAULT_MAX_PRESENTATIONS);
+        }
+    }
+
+    @Test
+    public void convergesOnANoisyListener() {
+        Random random = new Random(3);
+        double sumError = 0;
+        int runs = 200;
+        for (int run = 0; run < runs; run++) {
+            QuestProcedure procedure = new QuestProcedure(40, -10, 100);
+            while (!procedure.isFinished()) {
+                double p = 1 / (1 + Math.exp(-(procedure.getNextLevelDb() - 30) / 2.0));
+                procedure.record(random.nextDouble() < p);
+            }
+            sumError += procedure.getThresholdDb() - 30;
+        }
+        assertEquals(0, sumError / runs, 2.0);
+    }
+
+    @Test
+    public void silenceIsNoResponse() {
+        QuestProcedure procedure = new QuestProcedure(40, -10, 60);
+        while (!procedure.isFinished()) {
+            procedure.record(false);
+        }
+        assertTrue(Double.isInfinite(procedure.getThresholdDb()));
+    }
+}
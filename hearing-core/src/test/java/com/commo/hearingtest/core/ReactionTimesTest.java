@@ -0,0 +1,44 @@
+package com.commo.hearingtest.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ReactionTimesTest {
+
+    @Test
+    public void summarisesTimedTrialsOnly() {
+        ReactionTimes times = new ReactionTimes();
+        assertTrue(Double.isNaN(times.getMedianMs()));
+        times.add(300, true);
+        times.add(Double.NaN, true);
+        times.add(500, false);
+        times.add(40, true);
+        times.add(-15, true);
+        assertEquals(5, times.size());
+        assertEquals(4, times.getMeasuredCount());
+        assertEquals(3, times.getTimestampedCount());
+        assertFalse("an untimed trial is never timestamped", times.isTimestamped(1));
+        assertEquals(2, times.getAnticipationCount());
+        assertEquals((40 + 300) / 2.0, times.getMedianMs(), 1e-9);
+    }
+
+    @Test
+    public void growsPastItsInitialCapacity() {
+        ReactionTimes times = new ReactionTimes();
+        for (int i = 0; i < 100; i++) {
+            times.add(200 + i, i % 2 == 0);
+        }
+        assertEquals(100, times.size());
+        assertEquals(299f, times.getLatencyMs(99), 0);
+        assertEquals(50, times.getTimestampedCount());
+        assertEquals(249.5, times.getMedianMs(), 1e-9);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void rejectsTrialsNotRecorded() {
+        ReactionTimes times = new ReactionTimes();
+        times.add(300, true);
+        times.getLatencyMs(1);
+    }
+}
@@ -0,0 +1,70 @@
+package com.commo.hearingtest.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ThresholdSearchTest {
+
+    private static final int[] FREQUENCIES = {1000, 4000, 250};
+
+    private static double thresholdFor(Ear ear, int frequency) {
+        return (ear == Ear.LEFT ? 10 : 30) + frequency / 250;
+    }
+
+    @Test
+    public void measuresEveryFrequencyOfEveryEar() {
+        ThresholdSearch search = new ThresholdSearch(FREQUENCIES, ThresholdSearch.DEFAULT_EARS, 40,
+                HughsonWestlake.factory(-10, 100));
+        search.start();
+        assertEquals(6, search.getStepCount());
+        assertEquals(Ear.LEFT, search.getCurrentEar());
+        assertEquals(1000, search.getCurrentFrequency());
+        while (search.isRunning()) {
+            double threshold = thresholdFor(search.getCurrentEar(), search.getCurrentFrequency());
+            search.record(search.getCurrentLevelDb() >= threshold);
+        }
+        assertTrue(search.isFinished());
+
+        Audiogram audiogram = search.getAudiogram();
+        assertArrayEquals(new int[]{250, 1000, 4000}, audiogram.getFrequencies());
+        for (Ear ear : Ear.values()) {
+            for (int frequency : FREQUENCIES) {
+                double expected = Math.ceil(thresholdFor(ear, frequency) / 5) * 5;
+                assertEquals(ear + " " + frequency, expected,
+                        audiogram.getThresholdAtFrequency(ear, frequency), 0);
+            }
+        }
+    }
+
+    @Test
+    public void laterFrequenciesStartNearThePreviousThreshold() {
+        final double[] starts = new double[2];
+        ThresholdSearch search = new ThresholdSearch(new int[]{1000, 2000}, new Ear[]{Ear.LEFT}, 40,
+                new ThresholdProcedure.Factory() {
+                    int created;
+
+                    @Override
+                    public ThresholdProcedure create(double startLevelDb) {
+                        starts[created++] = startLevelDb;
+                        return new HughsonWestlake(startLevelDb, -10, 100);
+                    }
+                });
+        search.start();
+        while (search.isRunning()) {
+            search.record(search.getCurrentLevelDb() >= 0);
+        }
+        assertEquals(40, starts[0], 0);
+        assertEquals(0 + ThresholdSearch.START_MARGIN_DB, starts[1], 0);
+    }
+
+    @Test
+    public void audiogramMapsToTheFixedWalkResult() {
+        Audiogram audiogram = new Audiogram(new int[]{1000, 2000, 4000, 8000},
+                new double[]{-30, -25, -12, Audiogram.NO_RESPONSE},
+                new double[]{-35, -20, -10, -5});
+        FrequencyTestResult result = FrequencyTestResult.fromAudiogram(audiogram, -8);
+        assertEquals(4000, result.getLowestHeardFrequency());
+        assertEquals(2000, result.getOptimalFrequency());
+    }
+}
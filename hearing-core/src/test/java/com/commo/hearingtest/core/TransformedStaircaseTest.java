@@ -0,0 +1,64 @@
+package com.commo.hearingtest.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TransformedStaircaseTest {
+
+    @Test
+    public void twoCorrectStepDownAndOneWrongStepsUp() {
+        TransformedStaircase staircase = new TransformedStaircase(100, 1, 400, 2, 1.5, 10, 4, 100);
+        staircase.record(true);
+        assertEquals(100, staircase.getValue(), 0);
+        staircase.record(true);
+        assertEquals(50, staircase.getValue(), 1e-9);
+        staircase.record(false);
+        assertEquals(1, staircase.getReversalCount());
+        assertEquals(100, staircase.getValue(), 1e-9);
+        staircase.record(true);
+        staircase.record(true);
+        // Second reversal: from here on the small factor applies.
+        assertEquals(2, staircase.getReversalCount());
+        assertEquals(100 / 1.5, staircase.getValue(), 1e-9);
+        assertEquals(5, staircase.getTrialCount());
+        assertEquals(4, staircase.getCorrectAnswers());
+    }
+
+    @Test
+    public void valueStaysInRange() {
+        TransformedStaircase staircase = new TransformedStaircase(10, 5, 20, 4, 2, 10, 4, 100);
+        for (int i = 0; i < 5; i++) {
+            staircase.record(false);
+        }
+        assertEquals(20, staircase.getValue(), 0);
+        for (int i = 0; i < 10; i++) {
+            staircase.record(true);
+        }
+        assertEquals(5, staircase.getValue(), 0);
+    }
+
+    @Test
+    public void thresholdIsTheGeometricMeanOfLaterReversals() {
+        TransformedStaircase staircase = new TransformedStaircase(8, 1, 64, 2, 2, 6, 2, 100);
+        // Two right, one wrong, over and over: the track swings between 4 and 8.
+        boolean[] answers = {true, true, false, true, true, false, true, true, false, true, true, false, true, true};
+        for (boolean answer : answers) {
+            staircase.record(answer);
+        }
+        assertTrue(staircase.isFinished());
+        assertEquals(6, staircase.getReversalCount());
+        // Reversals at 4, 8, 4, 8 after the discarded two.
+        assertEquals(Math.sqrt(32), staircase.getThreshold(), 1e-9);
+    }
+
+    @Test
+    public void trialLimitEndsATrackThatNeverSettles() {
+        TransformedStaircase staircase = new TransformedStaircase(10, 1, 20, 2, 1.5, 10, 4, 30);
+        while (!staircase.isFinished()) {
+            staircase.record(false);
+        }
+        assertEquals(30, staircase.getTrialCount());
+        assertTrue(Double.isNaN(staircase.getThreshold()));
+    }
+}
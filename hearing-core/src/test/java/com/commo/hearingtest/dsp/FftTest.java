@@ -0,0 +1,41 @@
+package com.commo.hearingtest.dsp;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class FftTest {
+
+    @Test
+    public void matchesDirectDft() {
+        int n = 64;
+        Random random = new Random(3);
+        double[] re = new double[n];
+        double[] im = new double[n];
+        double[] inRe = new double[n];
+        double[] inIm = new double[n];
+        for (int i = 0; i < n; i++) {
+            inRe[i] = re[i] = random.nextGaussian();
+            inIm[i] = im[i] = random.nextGaussian();
+        }
+        new Fft(n).transform(re, im);
+        for (int k = 0; k < n; k++) {
+            double sumRe = 0;
+            double sumIm = 0;
+            for (int t = 0; t < n; t++) {
+                double angle = -2 * Math.PI * k * t / n;
+                sumRe += inRe[t] * Math.cos(angle) - inIm[t] * Math.sin(angle);
+                sumIm += inRe[t] * Math.sin(angle) + inIm[t] * Math.cos(angle);
+            }
+            assertEquals(sumRe, re[k], 1e-9);
+            assertEquals(sumIm, im[k], 1e-9);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsSizesThatAreNotPowersOfTwo() {
+        new Fft(1000);
+    }
+}
@@ -0,0 +1,100 @@
+package com.commo.hearingtest.dsp;
+
+import com.commo.hearingtest.Allocations;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class LateralizerTest {
+
+    private static final int SAMPLE_RATE = 48000;
+
+    @Test
+    public void itdShowsAsInterauralDelay() {
+        Lateralizer lateralizer = new Lateralizer(500, 500, SAMPLE_RATE);
+        for (double itd : new double[]{3, 10.3, 47, 250, -655}) {
+            short[] out = lateralizer.render(itd, 0.5f, 0.5f);
+            double leftPhase = phase(SpectralMeasurements.channel(out, 0), 500);
+            double rightPhase = phase(SpectralMeasurements.channel(out, 1), 500);
+            // The right ear leads by the ITD.
+            double measured = Math.IEEEremainder(rightPhase - leftPhase, 2 * Math.PI) / (2 * Math.PI * 500) * 1e6;
+            assertEquals("ITD " + itd, itd, measured, 0.5);
+        }
+    }
+
+    @Test
+    public void onsetIsDelayedAsWell() {
+        Lateralizer lateralizer = new Lateralizer(500, 500, SAMPLE_RATE);
+        short[] out = lateralizer.render(500, 0.5f, 0.5f);
+        int leftOnset = firstAbove(out, 0, 100);
+        int rightOnset = firstAbove(out, 1, 100);
+        assertEquals(500e-6 * SAMPLE_RATE, leftOnset - rightOnset, 2);
+    }
+
+    @Test
+    public void levelsAreAppliedPerEar() {
+        Lateralizer lateralizer = new Lateralizer(4000, 500, SAMPLE_RATE);
+        short[] out = lateralizer.render(0, 0.1f, 0.2f);
+        double left = SpectralMeasurements.rmsDbFs(SpectralMeasurements.channel(out, 0));
+        double right = SpectralMeasurements.rmsDbFs(SpectralMeasurements.channel(out, 1));
+        assertEquals(20 * Math.log10(2), right - left, 0.01);
+    }
+
+    @Test
+    public void centredTrialIsIdenticalInBothEarsAndMirrorsAreSymmetric() {
+        Lateralizer lateralizer = new Lateralizer(500, 500, SAMPLE_RATE);
+        short[] centre = lateralizer.render(0, 0.3f, 0.3f);
+        for (int i = 0; i < centre.length; i += 2) {
+            assertEquals(centre[i], centre[i + 1]);
+        }
+        short[] right = lateralizer.render(123.4, 0.3f, 0.3f);
+        short[] left = lateralizer.render(-123.4, 0.3f, 0.3f);
+        for (int i = 0; i < right.length; i += 2) {
+            assertEquals(right[i], left[i + 1]);
+            assertEquals(right[i + 1], left[i]);
+        }
+    }
+
+    @Test
+    public void trialsRenderWithoutAllocating() {
+        final Lateralizer lateralizer = new Lateralizer(500, 500, SAMPLE_RATE);
+        final short[] out = new short[lateralizer.getFrameCount() * 2];
+        lateralizer.render(10, 0.3f, 0.3f, out);
+        Allocations.assertNoAllocation(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < 20; i++) {
+                    lateralizer.render(i * 7.3 - 70, 0.3f, 0.25f, out);
+                }
+            }
+        });
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsItdsBeyondTheHead() {
+        new Lateralizer(500, 500, SAMPLE_RATE).render(Lateralizer.MAX_ITD_MICROS + 1, 0.3f, 0.3f);
+    }
+
+    /** Phase of {@code frequency} over the steady middle of the burst, by correlation. */
+    private static double phase(double[] samples, double frequency) {
+        double sin = 0;
+        double cos = 0;
+        int from = samples.length / 4;
+        // Whole cycles, so the correlation has no bias.
+        int length = (int) (Math.floor(samples.length / 2.0 * frequency / SAMPLE_RATE) * SAMPLE_RATE / frequency);
+        for (int n = from; n < from + length; n++) {
+            double w = 2 * Math.PI * frequency * n / SAMPLE_RATE;
+            sin += samples[n] * Math.sin(w);
+            cos += samples[n] * Math.cos(w);
+        }
+        return Math.atan2(cos, sin);
+    }
+
+    private static int firstAbove(short[] stereo, int channel, int threshold) {
+        for (int i = 0; i < stereo.length / 2; i++) {
+            if (Math.abs(stereo[i * 2 + channel]) > threshold) return i;
+        }
+        return -1;
+    }
+}
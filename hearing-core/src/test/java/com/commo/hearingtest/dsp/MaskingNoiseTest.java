@@ -0,0 +1,136 @@
+package com.commo.hearingtest.dsp;
+
+import com.commo.hearingtest.Allocations;
+import com.commo.hearingtest.noise.OctaveBandAnalyzer;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class MaskingNoiseTest {
+
+    private static final int[] SAMPLE_RATES = {44100, 48000};
+
+    @Test
+    public void outputHasUnitRms() {
+        for (int sampleRate : SAMPLE_RATES) {
+            for (MaskingNoise noise : new MaskingNoise[]{
+                    MaskingNoise.narrowBand(125, sampleRate, 1),
+                    MaskingNoise.narrowBand(1000, sampleRate, 2),
+                    MaskingNoise.narrowBand(8000, sampleRate, 3),
+                    MaskingNoise.speechShaped(sampleRate, 4)}) {
+                double[] samples = render(noise, sampleRate * 10);
+                double rms = Math.sqrt(meanSquare(samples));
+                assertEquals(noise.getType() + " at " + sampleRate, 1, rms, 0.05);
+            }
+        }
+    }
+
+    @Test
+    public void narrowBandEnergyStaysNearTheProbe() {
+        for (int frequency : new int[]{250, 1000, 4000}) {
+            double[] samples = render(MaskingNoise.narrowBand(frequency, 48000, frequency), 1 << 18);
+            // Nearly all of it within an octave either side, most of it within the third-octave.
+            assertTrue(frequency + " Hz", SpectralMeasurements.splatterDb(samples, frequency / 2.0, frequency * 2.0, 48000) < -15);
+            assertTrue(frequency + " Hz", SpectralMeasurements.splatterDb(samples,
+                    frequency / Math.pow(2, 1 / 6.0), frequency * Math.pow(2, 1 / 6.0), 48000) < -2);
+        }
+    }
+
+    @Test
+    public void speechShapedNoiseFollowsTheSpeechSpectrum() {
+        int sampleRate = 44100;
+        double[] samples = render(MaskingNoise.speechShaped(sampleRate, 9), sampleRate * 20);
+        short[] pcm = new short[samples.length];
+        for (int i = 0; i < samples.length; i++) {
+            pcm[i] = (short) Math.round(samples[i] * 2000);
+        }
+        double[] levels = bandLevels(pcm, sampleRate);
+        int reference = 1;
+        for (int band = 0; band < MaskingNoise.SPEECH_BAND_CENTERS.length; band++) {
+            double expected = MaskingNoise.SPEECH_BAND_LEVELS_DB[band] - MaskingNoise.SPEECH_BAND_LEVELS_DB[reference];
+            assertEquals(MaskingNoise.SPEECH_BAND_CENTERS[band] + " Hz", expected, levels[band] - levels[reference], 1);
+        }
+    }
+
+    @Test
+    public void seedFixesTheSamples() {
+        double[] a = render(MaskingNoise.speechShaped(48000, 5), 4800);
+        double[] b = render(MaskingNoise.speechShaped(48000, 5), 4800);
+        double[] c = render(MaskingNoise.speechShaped(48000, 6), 4800);
+        assertArrayEquals(a, b, 0);
+        assertFalse(a[4799] == c[4799]);
+    }
+
+    @Test
+    public void xorShiftIsUniformOnPlusMinusOne() {
+        XorShiftRandom random = new XorShiftRandom(0);
+        int[] histogram = new int[8];
+        int count = 800000;
+        for (int i = 0; i < count; i++) {
+            float value = random.nextSignedFloat();
+            assertTrue(value >= -1 && value < 1);
+            histogram[(int) ((value + 1) * 4)]++;
+        }
+        for (int bucket : histogram) {
+            assertEquals(count / 8, bucket, count / 8 / 50);
+        }
+    }
+
+    @Test
+    public void synthesisDoesNotAllocate() {
+        final MaskingNoise narrow = MaskingNoise.narrowBand(1000, 48000, 1);
+        final MaskingNoise speech = MaskingNoise.speechShaped(48000, 1);
+        narrow.next();
+        speech.next();
+        final float[] sum = new float[1];
+        Allocations.assertNoAllocation(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < 48000 * 10; i++) {
+                    sum[0] += narrow.next() + speech.next();
+                }
+            }
+        });
+        assertFalse(Float.isNaN(sum[0]));
+    }
+
+    private static double[] render(MaskingNoise noise, int count) {
+        // Let the filters settle first.
+        for (int i = 0; i < noise.getSampleRate() / 10; i++) {
+            noise.next();
+        }
+        double[] samples = new double[count];
+        for (int i = 0; i < count; i++) {
+            samples[i] = noise.next();
+        }
+        return samples;
+    }
+
+    private static double meanSquare(double[] samples) {
+        double sum = 0;
+        for (double sample : samples) {
+            sum += sample * sample;
+        }
+        return sum / samples.length;
+    }
+
+    private static double[] bandLevels(short[] pcm, int sampleRate) {
+        OctaveBandAnalyzer analyzer = new OctaveBandAnalyzer(sampleRate);
+        double[] power = new double[OctaveBandAnalyzer.BAND_CENTERS.length];
+        int frames = 0;
+        for (int offset = 0; offset + OctaveBandAnalyzer.HOP_SIZE <= pcm.length; offset += OctaveBandAnalyzer.HOP_SIZE) {
+            if (analyzer.process(pcm, offset, OctaveBandAnalyzer.HOP_SIZE) > 0) {
+                for (int band = 0; band < power.length; band++) {
+                    power[band] += Math.pow(10, analyzer.getInstantBandLevelDb(band) / 10);
+                }
+                frames++;
+            }
+        }
+        double[] levels = new double[power.length];
+        for (int band = 0; band < power.length; band++) {
+            levels[band] = 10 * Math.log10(power[band] / frames);
+        }
+        return levels;
+    }
+}
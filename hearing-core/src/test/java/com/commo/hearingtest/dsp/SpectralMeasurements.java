@@ -0,0 +1,120 @@
+package com.commo.hearingtest.dsp;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Spectral measurements of rendered interleaved stereo PCM, for the stimulus self-test.
+ *
+ * <p>Harmonic levels use a Goertzel filter at the exact harmonic frequency over a
+ * Blackman-Harris windowed span, whose -92 dB sidelobes keep a strong fundamental from leaking
+ * into the harmonics it is compared with. Splatter uses the FFT of the whole tone burst,
+ * ramps included, since that is where switching transients show up.
+ *
+ * <p>Windows and FFT tables are cached by length, since the self-test measures hundreds of
+ * tones of the same few lengths. Not thread-safe.
+ */
+final class SpectralMeasurements {
+
+    /** Highest harmonic included in THD. */
+    static final int MAX_HARMONIC = 10;
+
+    private static final Map<Integer, double[]> WINDOWS = new HashMap<Integer, double[]>();
+    private static final Map<Integer, Fft> FFTS = new HashMap<Integer, Fft>();
+
+    private SpectralMeasurements() {
+    }
+
+    /** Samples of {@code channel} (0 left, 1 right) as fractions of full scale. */
+    static double[] channel(short[] interleaved, int channel) {
+        double[] samples = new double[interleaved.length / 2];
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = interleaved[2 * i + channel] / 32768.0;
+        }
+        return samples;
+    }
+
+    /**
+     * Total harmonic distortion of {@code samples[from, from + length)} in dB relative to the
+     * fundamental, over harmonics 2 to {@link #MAX_HARMONIC} that lie below Nyquist. Returns
+     * negative infinity for a distortion-free tone or if no harmonic fits.
+     */
+    static double thdDb(double[] samples, int from, int length, double frequency, int sampleRate) {
+        double[] windowed = blackmanHarris(samples, from, length);
+        double fundamental = goertzelPower(windowed, frequency, sampleRate);
+        double harmonics = 0;
+        for (int h = 2; h <= MAX_HARMONIC && h * frequency < sampleRate / 2.0; h++) {
+            harmonics += goertzelPower(windowed, h * frequency, sampleRate);
+        }
+        return 10 * Math.log10(harmonics / fundamental);
+    }
+
+    /** Energy of the whole burst outside {@code lowHz .. highHz}, in dB relative to the total. */
+    static double splatterDb(double[] samples, double lowHz, double highHz, int sampleRate) {
+        int size = Integer.highestOneBit(samples.length - 1) << 1;
+        double[] re = new double[size];
+        double[] im = new double[size];
+        System.arraycopy(samples, 0, re, 0, samples.length);
+        Fft fft = FFTS.get(size);
+        if (fft == null) {
+            fft = new Fft(size);
+            FFTS.put(size, fft);
+        }
+        fft.transform(re, im);
+        double binHz = (double) sampleRate / size;
+        double inside = 0;
+        double outside = 0;
+        for (int k = 1; k < size / 2; k++) {
+            double power = re[k] * re[k] + im[k] * im[k];
+            double f = k * binHz;
+            if (f >= lowHz && f <= highHz) {
+                inside += power;
+            } else {
+                outside += power;
+            }
+        }
+        return 10 * Math.log10(outside / (inside + outside));
+    }
+
+    /**
+     * RMS level of {@code samples} in dBFS, where a full-scale sine is 0 dBFS; negative infinity
+     * for silence.
+     */
+    static double rmsDbFs(double[] samples) {
+        double sum = 0;
+        for (double sample : samples) {
+            sum += sample * sample;
+        }
+        return 10 * Math.log10(2 * sum / samples.length);
+    }
+
+    private static double[] blackmanHarris(double[] samples, int from, int length) {
+        double[] window = WINDOWS.get(length);
+        if (window == null) {
+            window = new double[length];
+            for (int i = 0; i < length; i++) {
+                double x = 2 * Math.PI * i / (length - 1);
+                window[i] = 0.35875 - 0.48829 * Math.cos(x) + 0.14128 * Math.cos(2 * x)
+                        - 0.01168 * Math.cos(3 * x);
+            }
+            WINDOWS.put(length, window);
+        }
+        double[] out = new double[length];
+        for (int i = 0; i < length; i++) {
+            out[i] = samples[from + i] * window[i];
+        }
+        return out;
+    }
+
+    private static double goertzelPower(double[] samples, double frequency, int sampleRate) {
+        double coefficient = 2 * Math.cos(2 * Math.PI * frequency / sampleRate);
+        double s1 = 0;
+        double s2 = 0;
+        for (double sample : samples) {
+            double s0 = sample + coefficient * s1 - s2;
+            s2 = s1;
+            s1 = s0;
+        }
+        return s1 * s1 + s2 * s2 - coefficient * s1 * s2;
+    }
+}
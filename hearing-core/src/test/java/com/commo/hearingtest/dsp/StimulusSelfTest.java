@@ -0,0 +1,309 @@
+package com.commo.hearingtest.dsp;
+
+import com.commo.hearingtest.audio.Stimulus;
+import com.commo.hearingtest.audio.StimulusScheduler;
+import com.commo.hearingtest.calibration.CalibrationProfile;
+import com.commo.hearingtest.calibration.GainTable;
+import com.commo.hearingtest.core.Ear;
+import com.commo.hearingtest.core.LateralizationTest;
+import com.commo.hearingtest.core.LeftRightTest;
+import com.commo.hearingtest.core.ThresholdSearch;
+import com.commo.hearingtest.protocol.StandardProtocol;
+import com.commo.hearingtest.protocol.TestProtocol;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * Renders every stimulus the tests can present and checks its spectrum, so a change to
+ * synthesis, ramps or the render path that makes tones dirty fails the build. Besides the
+ * standard values, the frequency and left/right stimuli of every protocol the app ships (read
+ * from the directory in the {@code hearingtest.protocols} system property) are checked, with the
+ * masking noise of the left/right test and the ITD and ILD bursts of the lateralization test.
+ *
+ * <p>Stimuli go through {@link StimulusScheduler} exactly as the engine would pull them. Each is
+ * checked for
+ * <ul>
+ *   <li>harmonic distortion over the steady part, at most {@link #MAX_THD_DB};</li>
+ *   <li>splatter: energy of the whole burst more than half an octave (and at least
+ *       {@link #MIN_BAND_HALF_WIDTH_HZ}) from the tone, at most {@link #MAX_SPLATTER_DB};</li>
+ *   <li>crosstalk: the other ear's channel must be exactly silent.</li>
+ * </ul>
+ * The masked ear of a left/right trial must carry the noise at its calibrated level, unclipped.
+ * A relative limit cannot hold for the softest tones, whose 16-bit quantization noise sits only
+ * a few dB below the signal, so distortion and splatter also pass when their absolute level is
+ * under {@link #NOISE_FLOOR_DBFS}, 8 dB above the quantization floor of a full-band 16-bit signal.
+ */
+public class StimulusSelfTest {
+
+    private static final int[] SAMPLE_RATES = {44100, 48000};
+    private static final double LEVEL_STEP_DB = 5;
+
+    private static final double MAX_THD_DB = -60;
+    private static final double MAX_SPLATTER_DB = -60;
+    private static final double MIN_BAND_HALF_WIDTH_HZ = 400;
+    private static final double NOISE_FLOOR_DBFS = -90;
+    private static final int RENDER_CHUNK_FRAMES = 256;
+    private static final double MASKING_LEVEL_TOLERANCE_DB = 1;
+
+    private static final StimulusScheduler.RenderListener NO_LISTENER = new StimulusScheduler.RenderListener() {
+        @Override
+        public void onFlush() {
+        }
+
+        @Override
+        public void onOnset(Stimulus stimulus, int frameOffset) {
+        }
+    };
+
+    @Test
+    public void frequencyTestStimuliAreClean() {
+        GainTable gainTable = CalibrationProfile.nominal().createGainTable();
+        int checked = 0;
+        for (int sampleRate : SAMPLE_RATES) {
+            for (int frequency : ThresholdSearch.DEFAULT_FREQUENCIES) {
+                for (Ear ear : Ear.values()) {
+                    double maxLevel = Math.min(StandardProtocol.MAX_LEVEL_DB_HL, gainTable.getMaxLevelDbHl(ear, frequency));
+                    for (double level = StandardProtocol.MIN_LEVEL_DB_HL; level <= maxLevel; level += LEVEL_STEP_DB) {
+                        checkStimulus(ToneSpec.of(frequency, StandardProtocol.TONE_DURATION_MS,
+                                gainTable.amplitudeFor(ear, frequency, level), StandardProtocol.channelFor(ear), sampleRate));
+                        checked++;
+                    }
+                    // The loudest tone the search can reach.
+                    checkStimulus(ToneSpec.of(frequency, StandardProtocol.TONE_DURATION_MS,
+                            gainTable.amplitudeFor(ear, frequency, maxLevel), StandardProtocol.channelFor(ear), sampleRate));
+                }
+            }
+        }
+        assertTrue(checked > 500);
+    }
+
+    @Test
+    public void leftRightTestStimuliAreClean() {
+        GainTable gainTable = CalibrationProfile.nominal().createGainTable();
+        for (int sampleRate : SAMPLE_RATES) {
+            for (Ear ear : Ear.values()) {
+                checkStimulus(ToneSpec.of(LeftRightTest.TONE_FREQUENCY, StandardProtocol.TONE_DURATION_MS,
+                        gainTable.amplitudeFor(ear, LeftRightTest.TONE_FREQUENCY, StandardProtocol.LEFT_RIGHT_LEVEL_DB_HL),
+                        StandardProtocol.channelFor(ear), sampleRate));
+            }
+        }
+    }
+
+    @Test
+    public void shippedProtocolStimuliAreClean() throws IOException {
+        GainTable gainTable = CalibrationProfile.nominal().createGainTable();
+        // Protocols share most tones; each distinct one is checked once.
+        Set<ToneSpec> checked = new HashSet<ToneSpec>();
+        Set<Integer> durations = new HashSet<Integer>();
+        for (TestProtocol protocol : shippedProtocols()) {
+            for (int sampleRate : SAMPLE_RATES) {
+                for (int frequency : protocol.getFrequencies()) {
+                    for (Ear ear : protocol.getEars()) {
+                        double maxLevel = Math.min(protocol.getMaxLevelDbHl(), gainTable.getMaxLevelDbHl(ear, frequency));
+                        for (double level = protocol.getMinLevelDbHl(); ; level += LEVEL_STEP_DB) {
+                            // The loudest tone the search can reach closes each run.
+                            ToneSpec spec = ToneSpec.of(frequency, protocol.getToneDurationMs(),
+                                    gainTable.amplitudeFor(ear, frequency, Math.min(level, maxLevel)),
+                                    StandardProtocol.channelFor(ear), sampleRate);
+                            if (checked.add(spec)) {
+                                checkStimulus(spec);
+                            }
+                            if (level >= maxLevel) break;
+                        }
+                    }
+                }
+                durations.add(protocol.getToneDurationMs());
+            }
+        }
+        assertTrue(durations.toString(), durations.size() > 1);
+        assertTrue(checked.size() > 500);
+    }
+
+    @Test
+    public void maskedLeftRightStimuliAreClean() throws IOException {
+        GainTable gainTable = CalibrationProfile.nominal().createGainTable();
+        ToneCache tones = new ToneCache(16, 1 << 22);
+        for (TestProtocol protocol : shippedProtocols()) {
+            for (int sampleRate : SAMPLE_RATES) {
+                LeftRightTest test = new LeftRightTest(protocol.getLeftRightTrials(), new Random(sampleRate));
+                test.start();
+                while (test.isRunning()) {
+                    Stimulus stimulus = protocol.leftRightStimulus(test, gainTable, tones, sampleRate,
+                            test.getCurrentTestNumber());
+                    ToneSpec tone = protocol.leftRightTone(test, gainTable, sampleRate);
+                    short[] pcm = renderThroughScheduler(stimulus, tone.getFrameCount(), sampleRate);
+                    boolean left = test.isCurrentSoundLeft();
+                    checkChannel(tone + " in " + protocol, SpectralMeasurements.channel(pcm, left ? 0 : 1),
+                            tone.getFrequency(), sampleRate, tone.getRampFrames());
+                    checkMaskingNoise(protocol, gainTable, left ? Ear.RIGHT : Ear.LEFT,
+                            SpectralMeasurements.channel(pcm, left ? 1 : 0));
+                    test.answer(left);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void lateralizationStimuliAreClean() {
+        GainTable gainTable = CalibrationProfile.nominal().createGainTable();
+        double[] itds = {-Lateralizer.MAX_ITD_MICROS, -100, 0, 20, Lateralizer.MAX_ITD_MICROS};
+        double[] ilds = {-10, -1, 0, 1, 10};
+        for (int sampleRate : SAMPLE_RATES) {
+            for (LateralizationTest.Cue cue : LateralizationTest.Cue.values()) {
+                Lateralizer lateralizer = StandardProtocol.lateralizer(cue, sampleRate);
+                double frequency = lateralizer.getFrequency();
+                int ramp = ToneSpec.of(frequency, StandardProtocol.LATERALIZATION_TONE_MS, 1f,
+                        ToneSpec.CHANNEL_LEFT, sampleRate).getRampFrames();
+                // The ears' bursts are delayed by up to the largest ITD, plus the kernel.
+                int margin = ramp + (int) Math.ceil(Lateralizer.MAX_ITD_MICROS * sampleRate / 1e6)
+                        + FractionalDelay.TAPS;
+                for (int i = 0; i < itds.length; i++) {
+                    double itd = cue == LateralizationTest.Cue.ITD ? itds[i] : 0;
+                    double ild = cue == LateralizationTest.Cue.ILD ? ilds[i] : 0;
+                    short[] burst = lateralizer.render(itd,
+                            gainTable.amplitudeFor(Ear.LEFT, frequency, StandardProtocol.LATERALIZATION_LEVEL_DB_HL - ild / 2),
+                            gainTable.amplitudeFor(Ear.RIGHT, frequency, StandardProtocol.LATERALIZATION_LEVEL_DB_HL + ild / 2));
+                    short[] pcm = renderThroughScheduler(Stimulus.of(burst), lateralizer.getFrameCount(), sampleRate);
+                    assertArrayEquals(burst, pcm);
+                    for (int channel = 0; channel < 2; channel++) {
+                        checkChannel(cue + " " + (cue == LateralizationTest.Cue.ITD ? itd + " us" : ild + " dB")
+                                        + " at " + sampleRate + " Hz, channel " + channel,
+                                SpectralMeasurements.channel(pcm, channel), frequency, sampleRate, margin);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void unrampedToneFailsSplatterLimit() {
+        // What a hard-switched tone looks like: the check must be able to tell.
+        ToneSpec spec = ToneSpec.of(1000, StandardProtocol.TONE_DURATION_MS, 0.5f, ToneSpec.CHANNEL_LEFT, 44100, 0);
+        double[] left = SpectralMeasurements.channel(renderThroughScheduler(spec), 0);
+        double splatter = SpectralMeasurements.splatterDb(left, 1000 - MIN_BAND_HALF_WIDTH_HZ,
+                1000 + MIN_BAND_HALF_WIDTH_HZ, 44100);
+        assertTrue("splatter " + splatter, splatter > MAX_SPLATTER_DB);
+    }
+
+    @Test
+    public void phaseDoesNotDriftOverLongTones() {
+        int sampleRate = 44100;
+        double frequency = 8000;
+        ToneSpec spec = ToneSpec.of(frequency, 60000, 0.5f, ToneSpec.CHANNEL_LEFT, sampleRate);
+        short[] pcm = ToneSynthesizer.render(spec);
+        int frames = spec.getFrameCount();
+        int rampFrames = spec.getRampFrames();
+        // A minute in, the steady part must still match an exactly computed sine.
+        for (int i = frames - rampFrames - 4096; i < frames - rampFrames; i++) {
+            double phase = 2 * Math.PI * ((frequency * i) % sampleRate) / sampleRate;
+            long expected = Math.round(Math.sin(phase) * 0.5f * Short.MAX_VALUE);
+            int error = (int) Math.abs(expected - pcm[2 * i]);
+            if (error > 1) {
+                fail("off by " + error + " LSB at frame " + i);
+            }
+        }
+    }
+
+    private static void checkStimulus(ToneSpec spec) {
+        short[] pcm = renderThroughScheduler(spec);
+        boolean left = spec.getLeftLevel() > 0;
+        double[] tone = SpectralMeasurements.channel(pcm, left ? 0 : 1);
+        double[] other = SpectralMeasurements.channel(pcm, left ? 1 : 0);
+
+        for (double sample : other) {
+            if (sample != 0) {
+                fail(spec + ": crosstalk at " + SpectralMeasurements.rmsDbFs(other) + " dBFS");
+            }
+        }
+        checkChannel(spec.toString(), tone, spec.getFrequency(), spec.getSampleRate(), spec.getRampFrames());
+    }
+
+    /** Distortion over the steady part, {@code ramp} frames in from either end, and splatter of the whole. */
+    private static void checkChannel(String label, double[] tone, double frequency, int sampleRate, int ramp) {
+        double levelDbFs = SpectralMeasurements.rmsDbFs(tone);
+        double thd = SpectralMeasurements.thdDb(tone, ramp, tone.length - 2 * ramp, frequency, sampleRate);
+        if (thd > MAX_THD_DB && levelDbFs + thd > NOISE_FLOOR_DBFS) {
+            fail(label + ": THD " + thd + " dB at " + levelDbFs + " dBFS");
+        }
+
+        double halfWidth = Math.max(frequency * (Math.sqrt(2) - 1), MIN_BAND_HALF_WIDTH_HZ);
+        double splatter = SpectralMeasurements.splatterDb(tone, frequency - halfWidth,
+                frequency + halfWidth, sampleRate);
+        if (splatter > MAX_SPLATTER_DB && levelDbFs + splatter > NOISE_FLOOR_DBFS) {
+            fail(label + ": splatter " + splatter + " dB at " + levelDbFs + " dBFS");
+        }
+    }
+
+    /** The masked ear holds the protocol's masking noise at its calibrated level, and never clips. */
+    private static void checkMaskingNoise(TestProtocol protocol, GainTable gainTable, Ear maskedEar, double[] noise) {
+        double maskingLevel = protocol.getLeftRightLevelDbHl()
+                - (StandardProtocol.LEFT_RIGHT_LEVEL_DB_HL - StandardProtocol.LEFT_RIGHT_MASKING_LEVEL_DB_HL);
+        // Noise with the RMS of a sine of this peak, so the same dBFS.
+        double peak = gainTable.amplitudeFor(maskedEar, LeftRightTest.TONE_FREQUENCY, maskingLevel);
+        double levelDb = SpectralMeasurements.rmsDbFs(noise) - 20 * Math.log10(peak);
+        assertEquals(protocol + " masking noise in " + maskedEar, 0, levelDb, MASKING_LEVEL_TOLERANCE_DB);
+        for (double sample : noise) {
+            if (Math.abs(sample) >= 1) {
+                fail(protocol + ": masking noise clips in " + maskedEar);
+            }
+        }
+    }
+
+    /** The standard protocol and every protocol the app ships. */
+    private static List<TestProtocol> shippedProtocols() throws IOException {
+        String directory = System.getProperty("hearingtest.protocols");
+        assertNotNull("hearingtest.protocols is not set", directory);
+        File[] files = new File(directory).listFiles();
+        assertNotNull("No protocols in " + directory, files);
+        Arrays.sort(files);
+        List<TestProtocol> protocols = new ArrayList<TestProtocol>();
+        protocols.add(TestProtocol.standard());
+        for (File file : files) {
+            String name = file.getName();
+            if (!name.endsWith(".protocol")) continue;
+            Reader reader = new InputStreamReader(new FileInputStream(file), "UTF-8");
+            try {
+                protocols.add(TestProtocol.parse(reader, name.substring(0, name.length() - ".protocol".length())));
+            } finally {
+                reader.close();
+            }
+        }
+        assertTrue("No protocols in " + directory, protocols.size() > 1);
+        return protocols;
+    }
+
+    /** Pulls the rendered tone through the scheduler in engine-sized chunks. */
+    private static short[] renderThroughScheduler(ToneSpec spec) {
+        short[] rendered = ToneSynthesizer.render(spec);
+        short[] pcm = renderThroughScheduler(Stimulus.of(rendered), spec.getFrameCount(), spec.getSampleRate());
+        assertArrayEquals(rendered, pcm);
+        return pcm;
+    }
+
+    private static short[] renderThroughScheduler(Stimulus stimulus, int frameCount, int sampleRate) {
+        StimulusScheduler scheduler = new StimulusScheduler(sampleRate, new Random(1));
+        scheduler.replace(stimulus);
+        short[] out = new short[2 * (frameCount + RENDER_CHUNK_FRAMES)];
+        int frames = 0;
+        int written;
+        while ((written = scheduler.render(out, 2 * frames, RENDER_CHUNK_FRAMES, NO_LISTENER)) > 0) {
+            frames += written;
+        }
+        assertEquals(frameCount, frames);
+        return Arrays.copyOf(out, 2 * frames);
+    }
+}
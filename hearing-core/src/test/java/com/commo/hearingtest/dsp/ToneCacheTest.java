@@ -0,0 +1,75 @@
+package com.commo.hearingtest.dsp;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ToneCacheTest {
+
+    @Test
+    public void hitReturnsSameBitIdenticalBuffer() {
+        ToneCache cache = new ToneCache(8, 1L << 20);
+        ToneSpec spec = ToneSpec.of(4000, 2000, 0.4f, ToneSpec.CHANNEL_BOTH, 44100);
+        short[] first = cache.get(spec);
+        short[] second = cache.get(ToneSpec.of(4000, 2000, 0.4f, ToneSpec.CHANNEL_BOTH, 44100));
+        assertSame(first, second);
+        assertArrayEquals(ToneSynthesizer.render(spec), second);
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    public void keyIncludesLevelAndChannel() {
+        ToneCache cache = new ToneCache(8, 1L << 20);
+        short[] left = cache.get(ToneSpec.of(1000, 100, 0.3f, ToneSpec.CHANNEL_LEFT, 44100));
+        short[] right = cache.get(ToneSpec.of(1000, 100, 0.3f, ToneSpec.CHANNEL_RIGHT, 44100));
+        short[] louder = cache.get(ToneSpec.of(1000, 100, 0.4f, ToneSpec.CHANNEL_LEFT, 44100));
+        assertNotSame(left, right);
+        assertNotSame(left, louder);
+        assertEquals(3, cache.size());
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedEntry() {
+        ToneCache cache = new ToneCache(2, 1L << 20);
+        ToneSpec a = ToneSpec.of(1000, 100, 0.3f, ToneSpec.CHANNEL_BOTH, 44100);
+        ToneSpec b = ToneSpec.of(2000, 100, 0.3f, ToneSpec.CHANNEL_BOTH, 44100);
+        ToneSpec c = ToneSpec.of(4000, 100, 0.3f, ToneSpec.CHANNEL_BOTH, 44100);
+        cache.get(a);
+        cache.get(b);
+        cache.get(a); // a is now most recently used
+        cache.get(c);
+        assertNotNull(cache.peek(a));
+        assertNull(cache.peek(b));
+        assertNotNull(cache.peek(c));
+    }
+
+    @Test
+    public void sampleBudgetBoundsMemory() {
+        ToneSpec spec = ToneSpec.of(1000, 100, 0.3f, ToneSpec.CHANNEL_BOTH, 44100);
+        int toneSamples = spec.getFrameCount() * 2;
+        ToneCache cache = new ToneCache(100, toneSamples * 2L);
+        for (int f = 100; f < 110; f++) {
+            cache.get(ToneSpec.of(f, 100, 0.3f, ToneSpec.CHANNEL_BOTH, 44100));
+        }
+        assertEquals(2, cache.size());
+        assertTrue(cache.getCachedSamples() <= toneSamples * 2L);
+    }
+
+    @Test
+    public void repeatedProtocolPresentationsDoNotAllocate() {
+        ToneCache cache = new ToneCache(16, 4L << 20);
+        int[] frequencies = {8000, 6000, 4000, 2000, 1000, 500, 250, 125};
+        for (int f : frequencies) {
+            cache.get(ToneSpec.of(f, 2000, 0.4f, ToneSpec.CHANNEL_BOTH, 44100));
+        }
+        long missesBefore = cache.getMissCount();
+        for (int round = 0; round < 10; round++) {
+            for (int f : frequencies) {
+                cache.get(ToneSpec.of(f, 2000, 0.4f, ToneSpec.CHANNEL_BOTH, 44100));
+            }
+        }
+        assertEquals(missesBefore, cache.getMissCount());
+        assertEquals(80, cache.getHitCount());
+    }
+}
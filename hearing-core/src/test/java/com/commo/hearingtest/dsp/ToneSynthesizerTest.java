@@ -0,0 +1,95 @@
+package com.commo.hearingtest.dsp;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the wavetable synthesizer against a straightforward {@code Math.sin} reference.
+ *
+ * <p>The stated bound is one 16-bit LSB: table interpolation and float rounding together stay
+ * below 0.03 LSB, so the only differences left are ties in the final rounding step.
+ */
+public class ToneSynthesizerTest {
+
+    private static final int[] TEST_FREQUENCIES = {8000, 6000, 4000, 2000, 1000, 500, 250, 125};
+    private static final int MAX_ERROR_LSB = 1;
+
+    @Test
+    public void matchesMathSinReferenceWithinOneLsb() {
+        for (int sampleRate : new int[]{44100, 48000}) {
+            for (int frequency : TEST_FREQUENCIES) {
+                ToneSpec spec = ToneSpec.of(frequency, 2000, 0.4f, ToneSpec.CHANNEL_BOTH, sampleRate);
+                short[] actual = ToneSynthesizer.render(spec);
+                short[] expected = reference(spec);
+                assertEquals(expected.length, actual.length);
+                for (int i = 0; i < expected.length; i++) {
+                    int error = Math.abs(expected[i] - actual[i]);
+                    if (error > MAX_ERROR_LSB) {
+                        fail(spec + " differs by " + error + " LSB at sample " + i);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void silentChannelIsExactlyZero() {
+        short[] left = ToneSynthesizer.render(ToneSpec.of(1000, 1000, 0.3f, ToneSpec.CHANNEL_LEFT, 44100));
+        for (int i = 1; i < left.length; i += 2) {
+            assertEquals(0, left[i]);
+        }
+        short[] right = ToneSynthesizer.render(ToneSpec.of(1000, 1000, 0.3f, ToneSpec.CHANNEL_RIGHT, 44100));
+        for (int i = 0; i < right.length; i += 2) {
+            assertEquals(0, right[i]);
+        }
+    }
+
+    @Test
+    public void rampsStartAndEndAtSilence() {
+        ToneSpec spec = ToneSpec.of(1000, 500, 1f, ToneSpec.CHANNEL_BOTH, 44100);
+        short[] buffer = ToneSynthesizer.render(spec);
+        assertEquals(0, buffer[0]);
+        assertEquals(0, buffer[buffer.length - 1]);
+        // The steady-state part must reach the requested level.
+        int peak = 0;
+        for (short s : buffer) {
+            peak = Math.max(peak, Math.abs(s));
+        }
+        assertTrue("peak " + peak, peak >= Short.MAX_VALUE - 2);
+    }
+
+    @Test
+    public void renderIntoWritesAtOffset() {
+        ToneSpec spec = ToneSpec.of(500, 100, 0.5f, ToneSpec.CHANNEL_BOTH, 48000);
+        short[] expected = ToneSynthesizer.render(spec);
+        short[] padded = new short[expected.length + 10];
+        ToneSynthesizer.renderInto(spec, padded, 10);
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], padded[i + 10]);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsFrequencyAboveNyquist() {
+        ToneSpec.of(30000, 100, 0.5f, ToneSpec.CHANNEL_BOTH, 44100);
+    }
+
+    /** Same tone and ramp computed directly with Math.sin/Math.cos in double precision. */
+    private static short[] reference(ToneSpec spec) {
+        int frames = spec.getFrameCount();
+        int rampFrames = spec.getRampFrames();
+        short[] out = new short[frames * 2];
+        for (int n = 0; n < frames; n++) {
+            double gain = 1.0;
+            int edge = Math.min(n, frames - 1 - n);
+            if (edge < rampFrames) {
+                gain = 0.5 - 0.5 * Math.cos(Math.PI * edge / rampFrames);
+            }
+            double s = Math.sin(2 * Math.PI * spec.getFrequency() * n / spec.getSampleRate()) * gain;
+            out[n * 2] = (short) Math.round(s * Short.MAX_VALUE * spec.getLeftLevel());
+            out[n * 2 + 1] = (short) Math.round(s * Short.MAX_VALUE * spec.getRightLevel());
+        }
+        return out;
+    }
+}
@@ -0,0 +1,212 @@
+package com.commo.hearingtest.export;
+
+import com.commo.hearingtest.core.Audiogram;
+import com.commo.hearingtest.core.LeftRightTestResult;
+import com.commo.hearingtest.core.ReactionTimes;
+import com.commo.hearingtest.store.SessionRecord;
+import com.commo.hearingtest.store.SessionStore;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadFactory;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.*;
+
+public class SessionExporterTest {
+
+    private static final ThreadFactory THREADS = new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r);
+            thread.setDaemon(true);
+            return thread;
+        }
+    };
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private SessionStore store;
+
+    @Before
+    public void setUp() throws IOException {
+        store = SessionStore.open(folder.newFolder(), THREADS, false);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        store.close();
+    }
+
+    private void appendSample() throws InterruptedException {
+        Audiogram audiogram = new Audiogram(new int[]{250, 1000, 4000},
+                new double[]{-40, -42.5, Audiogram.NO_RESPONSE}, new double[]{-38, Double.NaN, -20});
+        ReactionTimes times = new ReactionTimes();
+        times.add(300, true);
+        times.add(Double.NaN, false);
+        times.add(500, true);
+        store.append(SessionRecord.ofFrequencyTest("kim, \"jr\"", 0, audiogram, 37, times));
+        store.append(SessionRecord.ofLeftRightTest("lee", 86_400_000L, new LeftRightTestResult(4, 5)));
+        store.flush();
+    }
+
+    private String export(SessionExporter.Format format) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(store.size(), new SessionExporter(store, format, false).exportTo(out, null));
+        return out.toString("UTF-8");
+    }
+
+    @Test
+    public void csvHasOneRowPerFrequencyAndQuotesUserIds() throws Exception {
+        appendSample();
+        assertEquals(SessionExporter.CSV_HEADER + "\n"
+                + "0,\"kim, \"\"jr\"\"\",1970-01-01T00:00:00Z,frequency,37,,,400,250,-40,-38\n"
+                + "0,\"kim, \"\"jr\"\"\",1970-01-01T00:00:00Z,frequency,37,,,400,1000,-42.5,\n"
+                + "0,\"kim, \"\"jr\"\"\",1970-01-01T00:00:00Z,frequency,37,,,400,4000,NR,-20\n"
+                + "1,lee,1970-01-02T00:00:00Z,left_right,,4,5,,,,\n", export(SessionExporter.Format.CSV));
+    }
+
+    @Test
+    public void jsonIsOneObjectPerSession() throws Exception {
+        appendSample();
+        assertEquals("[\n"
+                + "{\"session\":0,\"user_id\":\"kim, \\\"jr\\\"\",\"time_utc\":\"1970-01-01T00:00:00Z\","
+                + "\"test\":\"frequency\",\"presentations\":37,\"thresholds\":["
+                + "{\"frequency_hz\":250,\"left_db_hl\":-40,\"right_db_hl\":-38},"
+                + "{\"frequency_hz\":1000,\"left_db_hl\":-42.5,\"right_db_hl\":null},"
+                + "{\"frequency_hz\":4000,\"left_db_hl\":\"NR\",\"right_db_hl\":-20}],"
+                + "\"reaction_times_ms\":[300.0,null,500.0]},\n"
+                + "{\"session\":1,\"user_id\":\"lee\",\"time_utc\":\"1970-01-02T00:00:00Z\","
+                + "\"test\":\"left_right\",\"correct\":4,\"total\":5}\n"
+                + "]\n", export(SessionExporter.Format.JSON));
+    }
+
+    @Test
+    public void emptyStoreExportsHeaderOrEmptyArray() throws Exception {
+        assertEquals(SessionExporter.CSV_HEADER + "\n", export(SessionExporter.Format.CSV));
+        assertEquals("[\n]\n", export(SessionExporter.Format.JSON));
+    }
+
+    @Test
+    public void gzipFileMatchesPlainExportAndReportsProgress() throws Exception {
+        appendLeftRight(2500);
+        String plain = export(SessionExporter.Format.CSV);
+
+        final List<Integer> progress = new ArrayList<Integer>();
+        SessionExporter exporter = new SessionExporter(store, SessionExporter.Format.CSV, true);
+        assertEquals("sessions.csv.gz", SessionExporter.fileName("sessions", SessionExporter.Format.CSV, true));
+        assertEquals("application/gzip", SessionExporter.mimeType(SessionExporter.Format.CSV, true));
+        File file = folder.newFile("sessions.csv.gz");
+        exporter.exportTo(file, new SessionExporter.ProgressListener() {
+            @Override
+            public void onProgress(int exported, int total) {
+                assertEquals(2500, total);
+                progress.add(exported);
+            }
+        });
+
+        assertEquals(plain, readGzip(file));
+        assertTrue(file.length() < plain.length() / 2);
+        assertEquals("[1000, 2000, 2500]", progress.toString());
+    }
+
+    @Test
+    public void cancelStopsTheExportAndDeletesThePartialFile() throws Exception {
+        appendLeftRight(3000);
+        final SessionExporter exporter = new SessionExporter(store, SessionExporter.Format.JSON, false);
+        File file = folder.newFile("sessions.json");
+        try {
+            exporter.exportTo(file, new SessionExporter.ProgressListener() {
+                @Override
+                public void onProgress(int exported, int total) {
+                    exporter.cancel();
+                }
+            });
+            fail("cancel not reported");
+        } catch (InterruptedIOException expected) {
+        }
+        assertTrue(exporter.isCancelled());
+        assertFalse(file.exists());
+    }
+
+    @Test
+    public void largeHistoryStreamsInBoundedMemory() throws Exception {
+        int sessions = 100_000;
+        appendLeftRight(sessions);
+        final CountingOutputStream out = new CountingOutputStream();
+        final long[] maxLagBytes = new long[1];
+        final int minRowBytes = "0,user0,1970-01-01T00:00:00Z,left_right,,0,5,,,,\n".length();
+
+        long start = System.nanoTime();
+        new SessionExporter(store, SessionExporter.Format.CSV, false).exportTo(out,
+                new SessionExporter.ProgressListener() {
+                    @Override
+                    public void onProgress(int exported, int total) {
+                        // Every row written so far has reached the stream except what is still buffered.
+                        maxLagBytes[0] = Math.max(maxLagBytes[0], (long) exported * minRowBytes - out.count);
+                    }
+                });
+        long elapsedNanos = System.nanoTime() - start;
+
+        assertTrue(out.closed);
+        assertTrue(out.count >= (long) sessions * minRowBytes);
+        assertTrue("lagged " + maxLagBytes[0] + " bytes", maxLagBytes[0] <= 4L * SessionExporter.BUFFER_CHARS);
+        assertTrue("took " + elapsedNanos / 1_000_000 + " ms", elapsedNanos < 30_000_000_000L);
+    }
+
+    private void appendLeftRight(int count) throws InterruptedException {
+        for (int i = 0; i < count; i++) {
+            store.append(SessionRecord.ofLeftRightTest("user" + i % 50, i * 1000L, new LeftRightTestResult(i % 6, 5)));
+        }
+        store.flush();
+    }
+
+    private static String readGzip(File file) throws IOException {
+        InputStream in = new GZIPInputStream(new FileInputStream(file));
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int n;
+            while ((n = in.read(buffer)) >= 0) {
+                out.write(buffer, 0, n);
+            }
+            return out.toString("UTF-8");
+        } finally {
+            in.close();
+        }
+    }
+
+    private static final class CountingOutputStream extends OutputStream {
+        long count;
+        boolean closed;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+}
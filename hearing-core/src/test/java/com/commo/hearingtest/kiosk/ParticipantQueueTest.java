@@ -0,0 +1,115 @@
+package com.commo.hearingtest.kiosk;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class ParticipantQueueTest {
+
+    private static final long MS = 1_000_000L;
+    private static final long S = 1_000_000_000L;
+
+    @Test
+    public void participantsAreTestedInArrivalOrder() {
+        ParticipantQueue queue = new ParticipantQueue();
+        queue.add(" kim ");
+        queue.add("lee");
+        assertEquals("P001", queue.addNumbered());
+        assertEquals(Arrays.asList("kim", "lee", "P001"), queue.getWaiting());
+
+        assertEquals("kim", queue.begin(0));
+        assertEquals("kim", queue.getCurrent());
+        assertEquals("lee", queue.peekNext());
+        queue.finish(1);
+        assertNull(queue.getCurrent());
+        assertEquals("lee", queue.begin(2));
+        queue.finish(3);
+        assertEquals("P001", queue.begin(4));
+        queue.finish(5);
+
+        assertNull(queue.begin(6));
+        assertEquals(3, queue.getCompletedCount());
+        assertEquals(0, queue.getWaitingCount());
+    }
+
+    @Test
+    public void rejectsBlankAndDuplicateIds() {
+        ParticipantQueue queue = new ParticipantQueue();
+        queue.add("kim");
+        queue.begin(0);
+        for (String id : new String[]{null, " ", "kim"}) {
+            try {
+                queue.add(id);
+                fail("accepted " + id);
+            } catch (IllegalArgumentException expected) {
+            }
+        }
+        queue.add("P001");
+        assertEquals("P002", queue.addNumbered());
+        assertTrue(queue.remove("P001"));
+        assertFalse(queue.remove("P001"));
+        assertEquals(Arrays.asList("P002"), queue.getWaiting());
+    }
+
+    @Test
+    public void numberingContinuesFromAnEarlierQueue() {
+        ParticipantQueue first = new ParticipantQueue();
+        first.addNumbered();
+        first.addNumbered();
+        assertEquals(3, first.getNextNumber());
+
+        ParticipantQueue next = new ParticipantQueue();
+        next.continueNumberingFrom(first.getNextNumber());
+        assertEquals("P003", next.addNumbered());
+        next.continueNumberingFrom(2);
+        assertEquals("P004", next.addNumbered());
+        assertEquals(5, next.getNextNumber());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void cannotBeginWhileSomeoneIsBeingTested() {
+        ParticipantQueue queue = new ParticipantQueue();
+        queue.add("kim");
+        queue.add("lee");
+        queue.begin(0);
+        queue.begin(1);
+    }
+
+    @Test
+    public void measuresResetAndTurnoverBetweenParticipants() {
+        ParticipantQueue queue = new ParticipantQueue();
+        for (int i = 0; i < 4; i++) {
+            queue.addNumbered();
+        }
+        long now = 0;
+        // The first participant has nobody before them: a reset but no turnover.
+        queue.begin(now);
+        queue.started(now += 200 * MS);
+        queue.started(now += 5 * S); // Later tones do not count.
+        queue.finish(now += 60 * S);
+        assertEquals(1, queue.getResetNanos().getCount());
+        assertEquals(0, queue.getTurnoverNanos().getCount());
+
+        // Results read for 20 s, then a 300 ms reset.
+        queue.begin(now += 20 * S);
+        queue.started(now += 300 * MS);
+        queue.finish(now += 60 * S);
+        assertEquals(20_300 * MS, queue.getTurnoverNanos().getMax());
+
+        // Someone who leaves part way still frees the device.
+        queue.begin(now += 10 * S);
+        queue.started(now += 100 * MS);
+        queue.abandon(now += 5 * S);
+        queue.begin(now += 15 * S);
+        queue.started(now += 100 * MS);
+
+        assertEquals(2, queue.getCompletedCount());
+        assertEquals(1, queue.getAbandonedCount());
+        assertEquals(4, queue.getResetNanos().getCount());
+        assertEquals(300 * MS, queue.getResetNanos().getMax());
+        assertEquals(3, queue.getTurnoverNanos().getCount());
+        assertTrue(queue.toString(), queue.toString().contains("2 completed, 1 abandoned"));
+    }
+}
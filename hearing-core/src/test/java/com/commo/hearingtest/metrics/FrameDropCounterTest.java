@@ -0,0 +1,46 @@
+package com.commo.hearingtest.metrics;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class FrameDropCounterTest {
+
+    private static final long PERIOD = 16_666_667; // 60 Hz
+
+    private final AudioMetrics metrics = new AudioMetrics();
+    private final FrameDropCounter counter = new FrameDropCounter(PERIOD, metrics);
+
+    @Test
+    public void steadyFramesWithJitterDropNothing() {
+        long time = 1_000_000_000L;
+        for (int i = 0; i < 600; i++) {
+            counter.onFrame(time + (i % 2 == 0 ? 2_000_000 : -2_000_000));
+            time += PERIOD;
+        }
+        assertEquals(0, metrics.getDroppedFrames().get());
+        assertEquals(599, metrics.getFrameIntervalNanos().getCount());
+    }
+
+    @Test
+    public void aLongFrameCountsTheFramesItSkipped() {
+        long time = 0;
+        counter.onFrame(time);
+        counter.onFrame(time += PERIOD);
+        counter.onFrame(time += 3 * PERIOD);
+        counter.onFrame(time += PERIOD);
+        assertEquals(2, metrics.getDroppedFrames().get());
+        assertTrue(metrics.getFrameIntervalNanos().getMax() >= 3 * PERIOD);
+    }
+
+    @Test
+    public void resetIgnoresThePause() {
+        counter.onFrame(0);
+        counter.onFrame(PERIOD);
+        counter.reset();
+        counter.onFrame(PERIOD * 100);
+        counter.onFrame(PERIOD * 101);
+        assertEquals(0, metrics.getDroppedFrames().get());
+        assertEquals(2, metrics.getFrameIntervalNanos().getCount());
+    }
+}
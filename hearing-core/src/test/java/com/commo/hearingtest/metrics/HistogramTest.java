@@ -0,0 +1,110 @@
+package com.commo.hearingtest.metrics;
+
+import com.commo.hearingtest.Allocations;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class HistogramTest {
+
+    @Test
+    public void smallValuesAreExact() {
+        Histogram histogram = new Histogram("small");
+        for (long value = 0; value < 4; value++) {
+            histogram.record(value);
+        }
+        assertEquals(4, histogram.getCount());
+        assertEquals(0, histogram.getPercentile(0.25));
+        assertEquals(1, histogram.getPercentile(0.5));
+        assertEquals(3, histogram.getPercentile(1));
+        assertEquals(1.5, histogram.getMean(), 1e-9);
+    }
+
+    @Test
+    public void bucketsCoverEveryValueWithinAQuarter() {
+        Random random = new Random(3);
+        for (int i = 0; i < 100_000; i++) {
+            long value = (random.nextLong() >>> 1) >>> random.nextInt(63);
+            int index = Histogram.indexOf(value);
+            long upper = Histogram.upperBound(index);
+            assertTrue(value + " above its bucket bound " + upper, value <= upper);
+            assertTrue(value + " far below its bucket bound " + upper, upper - value <= value / 4);
+            if (index > 0) {
+                assertTrue(value > Histogram.upperBound(index - 1));
+            }
+        }
+        assertEquals(Long.MAX_VALUE, Histogram.upperBound(Histogram.indexOf(Long.MAX_VALUE)));
+    }
+
+    @Test
+    public void percentilesAreWithinAQuarterOfTheTrueValue() {
+        Histogram histogram = new Histogram("uniform");
+        for (long value = 1; value <= 10_000; value++) {
+            histogram.record(value * 1000);
+        }
+        assertEquals(10_000_000, histogram.getMax());
+        long p50 = histogram.getPercentile(0.5);
+        long p99 = histogram.getPercentile(0.99);
+        assertTrue("p50 " + p50, p50 >= 5_000_000 && p50 <= 6_250_000);
+        assertTrue("p99 " + p99, p99 >= 9_900_000 && p99 <= 10_000_000);
+        assertEquals(10_000_000, histogram.getPercentile(1));
+    }
+
+    @Test
+    public void concurrentRecordsAreAllCounted() throws Exception {
+        final Histogram histogram = new Histogram("concurrent");
+        final int perThread = 200_000;
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            final int seed = t;
+            threads[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < perThread; i++) {
+                        histogram.record(seed * 1000 + i % 1000);
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(threads.length * perThread, histogram.getCount());
+        assertEquals(3999, histogram.getMax());
+        assertEquals(histogram.getMax(), histogram.getPercentile(1));
+    }
+
+    @Test
+    public void recordDoesNotAllocate() {
+        final Histogram histogram = new Histogram("allocation");
+        for (int i = 0; i < 100_000; i++) {
+            histogram.record(i);
+        }
+        Allocations.assertNoAllocation(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < 1_000_000; i++) {
+                    histogram.record(i * 31L);
+                }
+            }
+        });
+    }
+
+    @Test
+    public void resetForgetsEverything() {
+        Histogram histogram = new Histogram("reset");
+        histogram.record(12345);
+        histogram.record(-5);
+        assertEquals(2, histogram.getCount());
+        assertEquals(0, histogram.getPercentile(0.5));
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMax());
+        assertEquals(0, histogram.getPercentile(0.99));
+        assertEquals(0, histogram.getMean(), 0);
+    }
+}
@@ -0,0 +1,133 @@
+package com.commo.hearingtest.noise;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class AmbientNoiseMonitorTest {
+
+    private static final int SAMPLE_RATE = 48000;
+    private static final ThreadFactory PLAIN_THREADS = new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r);
+            thread.setDaemon(true);
+            return thread;
+        }
+    };
+
+    private AmbientNoiseMonitor monitor;
+
+    @After
+    public void tearDown() {
+        if (monitor != null) {
+            monitor.release();
+        }
+    }
+
+    /** A microphone hearing a steady tone, paced like a real one would be. */
+    private static final class ToneInput implements NoiseInput {
+        final double frequency;
+        volatile double amplitude;
+        final CountDownLatch released = new CountDownLatch(1);
+        long position;
+
+        ToneInput(double frequency, double amplitude) {
+            this.frequency = frequency;
+            this.amplitude = amplitude;
+        }
+
+        @Override
+        public int getSampleRate() {
+            return SAMPLE_RATE;
+        }
+
+        @Override
+        public void start() {
+        }
+
+        @Override
+        public int read(short[] data, int offset, int length) {
+            for (int i = 0; i < length; i++, position++) {
+                data[offset + i] = (short) (32767 * amplitude * Math.sin(2 * Math.PI * frequency * position / SAMPLE_RATE));
+            }
+            try {
+                Thread.sleep(1);
+            } catch (InterruptedException e) {
+                return -1;
+            }
+            return length;
+        }
+
+        @Override
+        public void stop() {
+        }
+
+        @Override
+        public void release() {
+            released.countDown();
+        }
+    }
+
+    private void waitForFrames(long frames) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (monitor.getFrameCount() < frames && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertTrue(monitor.getFrameCount() >= frames);
+    }
+
+    @Test
+    public void flagsNoiseThatWouldMaskTheTestLevel() throws Exception {
+        // 0.001 of full scale is -60 dBFS, about 49 dB SPL on an uncalibrated microphone.
+        ToneInput input = new ToneInput(1000, 0.001);
+        monitor = new AmbientNoiseMonitor(input, PLAIN_THREADS);
+        assertFalse(monitor.isMasking(1000, 0));
+        monitor.start();
+        waitForFrames(20);
+
+        double expected = -60 + AmbientNoiseMonitor.DEFAULT_MIC_OFFSET_DB;
+        assertEquals(expected, monitor.getLevelDbSpl(1000), 1);
+        monitor.resetPeaks();
+        assertTrue(monitor.isMasking(1000, 10));
+        assertFalse(monitor.isMasking(1000, 40));
+        // Other bands are quiet.
+        assertFalse(monitor.isMasking(4000, 0));
+        assertFalse(monitor.isMasking(3000, 0));
+    }
+
+    @Test
+    public void peaksHoldUntilReset() throws Exception {
+        ToneInput input = new ToneInput(500, 0.0001);
+        monitor = new AmbientNoiseMonitor(input, PLAIN_THREADS);
+        monitor.start();
+        waitForFrames(10);
+        monitor.resetPeaks();
+        assertFalse(monitor.isMasking(500, 20));
+
+        input.amplitude = 0.01;
+        waitForFrames(monitor.getFrameCount() + 20);
+        input.amplitude = 0.0001;
+        waitForFrames(monitor.getFrameCount() + 40);
+        assertTrue("burst is held", monitor.isMasking(500, 20));
+        monitor.resetPeaks();
+        assertFalse(monitor.isMasking(500, 20));
+    }
+
+    @Test
+    public void releaseStopsTheThreadAndReleasesTheInput() throws Exception {
+        ToneInput input = new ToneInput(1000, 0.1);
+        monitor = new AmbientNoiseMonitor(input, PLAIN_THREADS);
+        monitor.start();
+        waitForFrames(1);
+        monitor.release();
+        assertTrue(input.released.await(1, TimeUnit.SECONDS));
+        monitor.getThread().join(1000);
+        assertFalse(monitor.getThread().isAlive());
+    }
+}
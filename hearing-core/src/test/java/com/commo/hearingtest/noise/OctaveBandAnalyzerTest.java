@@ -0,0 +1,84 @@
+package com.commo.hearingtest.noise;
+
+import com.commo.hearingtest.Allocations;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Feeds synthetic PCM through {@link OctaveBandAnalyzer}: levels must be right, and a frame must
+ * not allocate, since it runs for the whole test. Its cost is measured by the benchmark module.
+ */
+public class OctaveBandAnalyzerTest {
+
+    private static final int SAMPLE_RATE = 48000;
+
+    private static short[] sine(double frequency, double amplitude, int samples) {
+        short[] pcm = new short[samples];
+        for (int i = 0; i < samples; i++) {
+            pcm[i] = (short) Math.round(32767 * amplitude * Math.sin(2 * Math.PI * frequency * i / SAMPLE_RATE));
+        }
+        return pcm;
+    }
+
+    @Test
+    public void sineLandsInItsBandAtItsLevel() {
+        OctaveBandAnalyzer analyzer = new OctaveBandAnalyzer(SAMPLE_RATE);
+        assertTrue(Double.isNaN(analyzer.getBandLevelDb(3)));
+        analyzer.process(sine(1000, 0.1, SAMPLE_RATE), 0, SAMPLE_RATE);
+
+        assertEquals(-20, analyzer.getBandLevelDb(OctaveBandAnalyzer.bandFor(1000)), 0.5);
+        assertTrue(analyzer.getBandLevelDb(OctaveBandAnalyzer.bandFor(250)) < -80);
+        assertTrue(analyzer.getBandLevelDb(OctaveBandAnalyzer.bandFor(4000)) < -80);
+    }
+
+    @Test
+    public void framesFollowTheHopWhateverTheBlockSize() {
+        OctaveBandAnalyzer whole = new OctaveBandAnalyzer(SAMPLE_RATE);
+        OctaveBandAnalyzer pieces = new OctaveBandAnalyzer(SAMPLE_RATE);
+        short[] pcm = sine(3000, 0.3, 20_000);
+        whole.process(pcm, 0, pcm.length);
+        for (int offset = 0; offset < pcm.length; offset += 333) {
+            pieces.process(pcm, offset, Math.min(333, pcm.length - offset));
+        }
+        int expected = 1 + (pcm.length - OctaveBandAnalyzer.FFT_SIZE) / OctaveBandAnalyzer.HOP_SIZE;
+        assertEquals(expected, whole.getFrameCount());
+        assertEquals(expected, pieces.getFrameCount());
+        assertEquals(whole.getBandLevelDb(5), pieces.getBandLevelDb(5), 1e-9);
+        assertEquals(-10.5, whole.getBandLevelDb(OctaveBandAnalyzer.bandFor(3000)), 0.5);
+    }
+
+    @Test
+    public void bandsAboveNyquistAreUnavailable() {
+        OctaveBandAnalyzer analyzer = new OctaveBandAnalyzer(8000);
+        analyzer.process(new short[8000], 0, 8000);
+        assertFalse(analyzer.isBandAvailable(6));
+        assertTrue(Double.isNaN(analyzer.getBandLevelDb(6)));
+        assertTrue(analyzer.isBandAvailable(4));
+    }
+
+    @Test
+    public void framesDoNotAllocate() {
+        final OctaveBandAnalyzer analyzer = new OctaveBandAnalyzer(SAMPLE_RATE);
+        final short[] noise = new short[OctaveBandAnalyzer.HOP_SIZE];
+        Random random = new Random(1);
+        for (int i = 0; i < noise.length; i++) {
+            noise[i] = (short) (random.nextGaussian() * 1000);
+        }
+        // Fill the window first, so every measured hop ends in a frame.
+        analyzer.process(noise, 0, noise.length);
+        analyzer.process(noise, 0, noise.length);
+
+        Allocations.assertNoAllocation(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < 2000; i++) {
+                    analyzer.process(noise, 0, noise.length);
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,130 @@
+package com.commo.hearingtest.protocol;
+
+import com.commo.hearingtest.calibration.CalibrationProfile;
+import com.commo.hearingtest.calibration.GainTable;
+import com.commo.hearingtest.core.Ear;
+import com.commo.hearingtest.core.LeftRightTest;
+import com.commo.hearingtest.core.ThresholdSearch;
+import com.commo.hearingtest.dsp.ToneCache;
+import com.commo.hearingtest.dsp.ToneSpec;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import static org.junit.Assert.*;
+
+public class TestProtocolTest {
+
+    private static final int SAMPLE_RATE = 48000;
+    private static final String SCREENING = "# quick check\n"
+            + "name=선별 검사\n"
+            + "frequencies=1000, 4000 500\n"
+            + "ears=right left\n"
+            + "tone_ms=800\n"
+            + "procedure=hughson-westlake\n"
+            + "max_presentations=6\n"
+            + "max_level=80\n"
+            + "left_right_trials=3\n";
+
+    private final GainTable gainTable = CalibrationProfile.nominal().createGainTable();
+
+    @Test
+    public void parsesTheTextFormatOverTheStandardValues() throws IOException {
+        TestProtocol protocol = TestProtocol.parse(new StringReader(SCREENING), "screening");
+        assertEquals("screening", protocol.getId());
+        assertEquals("선별 검사", protocol.getName());
+        assertArrayEquals(new int[]{1000, 4000, 500}, protocol.getFrequencies());
+        assertArrayEquals(new Ear[]{Ear.RIGHT, Ear.LEFT}, protocol.getEars());
+        assertEquals(800, protocol.getToneDurationMs());
+        assertEquals(TestProtocol.Procedure.HUGHSON_WESTLAKE, protocol.getProcedure());
+        assertEquals(80, protocol.getMaxLevelDbHl(), 0);
+        // Not in the file, so standard.
+        assertEquals(StandardProtocol.MIN_LEVEL_DB_HL, protocol.getMinLevelDbHl(), 0);
+        assertEquals(StandardProtocol.AUTO_PLAY_GAP_MS, protocol.getAutoPlayGapMs());
+        assertEquals(StandardProtocol.LEFT_RIGHT_LEVEL_DB_HL, protocol.getLeftRightLevelDbHl(), 0);
+    }
+
+    @Test
+    public void searchFollowsTheProtocol() throws IOException {
+        TestProtocol protocol = TestProtocol.parse(new StringReader(SCREENING), "screening");
+        ThresholdSearch search = protocol.newThresholdSearch(protocol.maxLevelDbHl(gainTable));
+        search.start();
+        assertEquals(6, search.getStepCount());
+        assertEquals(Ear.RIGHT, search.getCurrentEar());
+        assertEquals(1000, search.getCurrentFrequency());
+
+        // Never heard: every frequency gives up after max_presentations, or at the ceiling.
+        while (search.isRunning()) {
+            ToneSpec tone = protocol.frequencyTone(search, gainTable, SAMPLE_RATE);
+            assertEquals(800, tone.getDurationMs());
+            search.record(false);
+        }
+        assertTrue(search.getPresentationCount() <= 6 * 6);
+
+        LeftRightTest leftRight = protocol.newLeftRightTest();
+        assertEquals(3, leftRight.getTotalTests());
+    }
+
+    @Test
+    public void standardUsesTheStandardProtocolValues() {
+        TestProtocol standard = TestProtocol.standard();
+        assertArrayEquals(ThresholdSearch.DEFAULT_FREQUENCIES, standard.getFrequencies());
+        ThresholdSearch search = StandardProtocol.newThresholdSearch(StandardProtocol.maxLevelDbHl(gainTable));
+        search.start();
+        ToneSpec tone = StandardProtocol.frequencyTone(search, gainTable, SAMPLE_RATE);
+        assertEquals(StandardProtocol.TONE_DURATION_MS, tone.getDurationMs());
+        assertEquals(gainTable.amplitudeFor(Ear.LEFT, 1000, StandardProtocol.START_LEVEL_DB_HL),
+                tone.getLeftLevel(), 0);
+        assertEquals(0f, tone.getRightLevel(), 0);
+    }
+
+    @Test
+    public void prerenderedTonesAreHitsWhenTheTestStarts() throws IOException {
+        TestProtocol protocol = TestProtocol.parse(new StringReader(SCREENING), "screening");
+        ToneCache tones = new ToneCache(16, 1 << 22);
+        assertEquals(4, protocol.prerender(tones, gainTable, SAMPLE_RATE));
+        assertEquals("already cached", 0, protocol.prerender(tones, gainTable, SAMPLE_RATE));
+
+        ThresholdSearch search = protocol.newThresholdSearch(protocol.maxLevelDbHl(gainTable));
+        search.start();
+        LeftRightTest leftRight = protocol.newLeftRightTest();
+        leftRight.start();
+        long misses = tones.getMissCount();
+        tones.get(protocol.frequencyTone(search, gainTable, SAMPLE_RATE));
+        tones.get(protocol.leftRightTone(leftRight, gainTable, SAMPLE_RATE));
+        assertEquals(misses, tones.getMissCount());
+    }
+
+    @Test
+    public void rejectsInvalidProtocolsWhenParsed() {
+        String[] broken = {
+                "frequencies=1000 1000\n",
+                "frequencies=\n",
+                "ears=left middle\n",
+                "ears=left left\n",
+                "min_level=50\nmax_level=40\n",
+                "start_level=95\n",
+                "start_level=NaN\n",
+                "min_level=-Infinity\n",
+                "left_right_level=NaN\n",
+                "max_level=60\n",
+                "left_right_level=95\n",
+                "frequencies=1000 22050\n",
+                "procedure=random\n",
+                "max_presentations=0\n",
+                "tone_ms=10\n",
+                "tone_ms=long\n",
+                "repeat=3\n",
+                "1000 2000\n",
+        };
+        for (String text : broken) {
+            try {
+                TestProtocol.parse(new StringReader(text), "broken");
+                fail("accepted " + text.trim());
+            } catch (IOException expected) {
+            }
+        }
+    }
+}
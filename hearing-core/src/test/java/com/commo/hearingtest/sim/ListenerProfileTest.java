@@ -0,0 +1,23 @@
+package com.commo.hearingtest.sim;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ListenerProfileTest {
+
+    @Test
+    public void thresholdsInterpolateOverLogFrequency() {
+        ListenerProfile profile = new ListenerProfile("p", new int[]{1000, 4000},
+                new double[]{0, 40}, new double[]{20, 20}, 0, 0, 2);
+        assertEquals(20, profile.getThresholdDb(2000, true), 1e-9);
+        assertEquals(0, profile.getThresholdDb(125, true), 0);
+        assertEquals(40, profile.getThresholdDb(8000, true), 0);
+        assertEquals(20, profile.getBinauralThresholdDb(8000), 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsImpossibleRates() {
+        ListenerProfile.flat("p", 0, 0.6, 0.5);
+    }
+}
@@ -0,0 +1,90 @@
+package com.commo.hearingtest.sim;
+
+import com.commo.hearingtest.core.FrequencyTestResult;
+import com.commo.hearingtest.core.LeftRightTestResult;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+public class ProtocolSimulatorTest {
+
+    private static final int[] AUDIOGRAM_FREQUENCIES = {125, 250, 500, 1000, 2000, 4000, 8000};
+
+    private static final ListenerProfile NORMAL = ListenerProfile.flat("normal", 0, 0, 0);
+    private static final ListenerProfile DEAF = ListenerProfile.flat("deaf", 120, 0, 0);
+    private static final ListenerProfile HIGH_FREQUENCY_LOSS = ListenerProfile.symmetric("high-frequency loss",
+            AUDIOGRAM_FREQUENCIES, new double[]{5, 5, 5, 10, 15, 70, 80}, 0, 0);
+
+    @Test
+    public void audibleListenerIsClassifiedNormal() {
+        SimulationReport report = simulate(Arrays.asList(NORMAL), 2000, 1);
+        ProfileReport normal = report.getProfile(0);
+        assertEquals(2000, normal.getRuns());
+        assertEquals(2000, normal.getFrequencyCategoryCount(FrequencyTestResult.Category.YOUNG_NORMAL));
+        assertEquals(2000, normal.getLowestHeardCount(8000));
+        assertEquals(2000, normal.getLeftRightCategoryCount(LeftRightTestResult.Category.GOOD));
+        assertEquals(100.0, normal.getMeanAccuracy(), 1e-9);
+    }
+
+    @Test
+    public void deafListenerGuessesAtChance() {
+        ProfileReport deaf = simulate(Arrays.asList(DEAF), 20000, 2).getProfile(0);
+        assertEquals(1.0, deaf.getFrequencyCategoryRate(FrequencyTestResult.Category.CHECKUP_RECOMMENDED), 0);
+        assertEquals(20000, deaf.getLowestHeardCount(-1));
+        assertEquals(50.0, deaf.getMeanAccuracy(), 1.0);
+        // Binomial(5, 0.5): P(>= 4 correct) = 6/32, P(3 correct) = 10/32.
+        assertEquals(6 / 32.0, deaf.getLeftRightCategoryRate(LeftRightTestResult.Category.GOOD), 0.015);
+        assertEquals(10 / 32.0, deaf.getLeftRightCategoryRate(LeftRightTestResult.Category.AVERAGE), 0.015);
+    }
+
+    @Test
+    public void highFrequencyLossIsReportedAtTheFirstAudibleFrequency() {
+        ProfileReport loss = simulate(Arrays.asList(HIGH_FREQUENCY_LOSS), 5000, 3).getProfile(0);
+        assertTrue(loss.getLowestHeardCount(2000) > 4900);
+        assertTrue(loss.getFrequencyCategoryRate(FrequencyTestResult.Category.ADULT_AVERAGE) > 0.98);
+    }
+
+    @Test
+    public void lapsesAndGuessesBlurClassification() {
+        ListenerProfile careless = ListenerProfile.flat("careless", 0, 0.0, 0.3);
+        ProfileReport report = simulate(Arrays.asList(careless), 5000, 4).getProfile(0);
+        // With a 30% lapse rate the 8 kHz tone is missed roughly a third of the time.
+        assertEquals(0.7, report.getLowestHeardCount(8000) / 5000.0, 0.03);
+        assertTrue(report.getLeftRightCategoryRate(LeftRightTestResult.Category.GOOD) < 1.0);
+    }
+
+    @Test
+    public void reportIsIndependentOfParallelism() {
+        List<ListenerProfile> profiles = Arrays.asList(NORMAL, DEAF, HIGH_FREQUENCY_LOSS,
+                ListenerProfile.flat("noisy", 35, 0.1, 0.05));
+        ForkJoinPool single = new ForkJoinPool(1);
+        ForkJoinPool wide = new ForkJoinPool(4);
+        try {
+            SimulationReport a = new ProtocolSimulator(single).run(profiles, 3000, 42);
+            SimulationReport b = new ProtocolSimulator(wide).run(profiles, 3000, 42);
+            for (int i = 0; i < profiles.size(); i++) {
+                assertEquals(a.getProfile(i).toString(), b.getProfile(i).toString());
+            }
+        } finally {
+            single.shutdown();
+            wide.shutdown();
+        }
+    }
+
+    @Test
+    public void simulatesLargeBatchesOnTheCommonPool() {
+        List<ListenerProfile> profiles = Arrays.asList(NORMAL, DEAF, HIGH_FREQUENCY_LOSS,
+                ListenerProfile.flat("noisy", 35, 0.1, 0.05));
+        SimulationReport report = simulate(profiles, 50000, 5);
+        assertEquals(200000, report.getTotalRuns());
+    }
+
+    private static SimulationReport simulate(List<ListenerProfile> profiles, int runs, long seed) {
+        return new ProtocolSimulator(ForkJoinPool.commonPool()).run(profiles, runs, seed);
+    }
+}
@@ -0,0 +1,92 @@
+package com.commo.hearingtest.sim;
+
+import com.commo.hearingtest.audio.OfflineRenderer;
+import com.commo.hearingtest.audio.WavFileSink;
+import com.commo.hearingtest.calibration.CalibrationProfile;
+import com.commo.hearingtest.calibration.GainTable;
+import com.commo.hearingtest.core.LeftRightTest;
+import com.commo.hearingtest.core.ThresholdSearch;
+import com.commo.hearingtest.protocol.StandardProtocol;
+import com.commo.hearingtest.protocol.TestProtocol;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class SessionRendererTest {
+
+    private static final int SAMPLE_RATE = 44100;
+    private static final int RESPONSE_MS = 700;
+    private static final ListenerProfile MILD_LOSS = ListenerProfile.symmetric("mild loss",
+            new int[]{125, 1000, 8000}, new double[]{15, 20, 35}, 0.02, 0.02);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void sameSeedsRenderIdenticalFiles() throws IOException {
+        File first = folder.newFile("first.wav");
+        File second = folder.newFile("second.wav");
+        long frames = renderSession(first, 7);
+        assertEquals(frames, renderSession(second, 7));
+        byte[] expected = Files.readAllBytes(first.toPath());
+        assertEquals(WavFileSink.HEADER_BYTES + frames * 4, expected.length);
+        assertTrue(Arrays.equals(expected, Files.readAllBytes(second.toPath())));
+    }
+
+    @Test
+    public void sessionLengthAccountsForEveryTrial() throws IOException {
+        WavFileSink sink = WavFileSink.create(folder.newFile("session.wav"), SAMPLE_RATE);
+        OfflineRenderer output = new OfflineRenderer(sink, new Random(3));
+        SessionRenderer renderer = new SessionRenderer(output, nominal(), RESPONSE_MS);
+        ThresholdSearch search = renderer.renderFrequencyTest(new VirtualListener(MILD_LOSS, new Random(3)));
+        output.release();
+        assertTrue(search.isFinished());
+
+        int trials = search.getPresentationCount();
+        long perTrial = (StandardProtocol.TONE_DURATION_MS + StandardProtocol.AUTO_PLAY_GAP_MS + RESPONSE_MS)
+                * (long) SAMPLE_RATE / 1000;
+        long jitter = StandardProtocol.AUTO_PLAY_JITTER_MS * (long) SAMPLE_RATE / 1000;
+        assertTrue(sink.getFramesWritten() >= trials * perTrial);
+        assertTrue(sink.getFramesWritten() <= trials * (perTrial + jitter));
+    }
+
+    @Test
+    public void sessionFollowsTheGivenProtocol() throws IOException {
+        TestProtocol slow = TestProtocol.parse(new StringReader("frequencies=1000 4000\nears=left\n"
+                + "tone_ms=1500\ngap_ms=1000\njitter_ms=0\nmax_presentations=5\n"), "slow");
+        WavFileSink sink = WavFileSink.create(folder.newFile("slow.wav"), SAMPLE_RATE);
+        OfflineRenderer output = new OfflineRenderer(sink, new Random(5));
+        SessionRenderer renderer = new SessionRenderer(output, nominal(), slow, RESPONSE_MS);
+        ThresholdSearch search = renderer.renderFrequencyTest(new VirtualListener(MILD_LOSS, new Random(5)));
+        output.release();
+
+        assertEquals(2, search.getStepCount());
+        assertTrue(search.getPresentationCount() <= 2 * 5);
+        long perTrial = (1500 + 1000 + RESPONSE_MS) * (long) SAMPLE_RATE / 1000;
+        assertEquals(search.getPresentationCount() * perTrial, sink.getFramesWritten());
+    }
+
+    private long renderSession(File file, long seed) throws IOException {
+        OfflineRenderer output = new OfflineRenderer(WavFileSink.create(file, SAMPLE_RATE), new Random(seed));
+        SessionRenderer renderer = new SessionRenderer(output, nominal(), RESPONSE_MS);
+        VirtualListener listener = new VirtualListener(MILD_LOSS, new Random(seed));
+        renderer.renderFrequencyTest(listener);
+        renderer.renderLeftRightTest(new LeftRightTest(LeftRightTest.DEFAULT_TRIALS, new Random(seed)), listener);
+        output.release();
+        return output.getFramesRendered();
+    }
+
+    private static GainTable nominal() {
+        return CalibrationProfile.nominal().createGainTable();
+    }
+}
@@ -0,0 +1,53 @@
+package com.commo.hearingtest.sim;
+
+import com.commo.hearingtest.core.HughsonWestlake;
+import com.commo.hearingtest.core.QuestProcedure;
+import com.commo.hearingtest.core.ThresholdProcedure;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/** Accuracy and cost of the threshold procedures against noisy virtual listeners. */
+public class ThresholdProcedureSimulationTest {
+
+    private static final int RUNS = 2000;
+    private static final double START_DB = 40;
+
+    private static double[] evaluate(ThresholdProcedure.Factory factory, long seed) {
+        Random random = new Random(seed);
+        double sumError = 0;
+        double sumSquaredError = 0;
+        long presentations = 0;
+        for (int run = 0; run < RUNS; run++) {
+            double threshold = -5 + random.nextDouble() * 70;
+            VirtualListener listener = new VirtualListener(
+                    ListenerProfile.flat("listener", threshold, 0.02, 0.02), random);
+            ThresholdProcedure procedure = factory.create(START_DB);
+            while (!procedure.isFinished()) {
+                procedure.record(listener.detects(1000, true, procedure.getNextLevelDb()));
+            }
+            double error = procedure.getThresholdDb() - threshold;
+            if (Double.isNaN(error) || Double.isInfinite(error)) {
+                error = 20;
+            }
+            sumError += error;
+            sumSquaredError += error * error;
+            presentations += procedure.getPresentationCount();
+        }
+        return new double[]{sumError / RUNS, Math.sqrt(sumSquaredError / RUNS), (double) presentations / RUNS};
+    }
+
+    @Test
+    public void questNeedsFewerPresentationsThanHughsonWestlake() {
+        double[] hw = evaluate(HughsonWestlake.factory(-10, 100), 1);
+        double[] quest = evaluate(QuestProcedure.factory(-10, 100), 1);
+        // Hughson-Westlake reports the 5 dB grid level at or above threshold, hence its bias.
+        assertTrue(hw[1] < 6);
+        assertTrue(Math.abs(quest[0]) < 1.5);
+        assertTrue(quest[1] < 4);
+        assertTrue(quest[2] < hw[2]);
+    }
+}
@@ -0,0 +1,362 @@
+package com.commo.hearingtest.store;
+
+import com.commo.hearingtest.calibration.CalibrationProfile;
+import com.commo.hearingtest.core.Audiogram;
+import com.commo.hearingtest.core.Ear;
+import com.commo.hearingtest.core.LeftRightTestResult;
+import com.commo.hearingtest.core.ReactionTimes;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import static org.junit.Assert.*;
+
+public class SessionStoreTest {
+
+    private static final ThreadFactory THREADS = new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r);
+            thread.setDaemon(true);
+            return thread;
+        }
+    };
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static SessionRecord frequencyRecord(String user, long time) {
+        Audiogram audiogram = new Audiogram(new int[]{250, 1000, 4000},
+                new double[]{-40, -42.5, Audiogram.NO_RESPONSE}, new double[]{-38, Double.NaN, -20});
+        return SessionRecord.ofFrequencyTest(user, time, audiogram, 37);
+    }
+
+    private static SessionRecord leftRightRecord(String user, long time) {
+        return SessionRecord.ofLeftRightTest(user, time, new LeftRightTestResult(4, 5));
+    }
+
+    @Test
+    public void recordsSurviveReopen() throws Exception {
+        File dir = folder.newFolder();
+        SessionStore store = SessionStore.open(dir, THREADS);
+        Future<Integer> first = store.append(frequencyRecord("kim", 1000));
+        Future<Integer> second = store.append(leftRightRecord("lee", 2000));
+        assertEquals(0, (int) first.get());
+        assertEquals(1, (int) second.get());
+        store.close();
+
+        store = SessionStore.open(dir, THREADS);
+        try {
+            assertEquals(2, store.size());
+            assertEquals(0, store.getReindexedRecords());
+            assertEquals(0, store.getDiscardedBytes());
+
+            SessionRecord frequency = store.read(store.getEntry(0));
+            assertEquals(SessionRecord.Type.FREQUENCY, frequency.getType());
+            assertEquals("kim", frequency.getUserId());
+            assertEquals(1000, frequency.getTimestampMillis());
+            assertEquals(37, frequency.getPresentationCount());
+            Audiogram audiogram = frequency.getAudiogram();
+            assertArrayEquals(new int[]{250, 1000, 4000}, audiogram.getFrequencies());
+            assertEquals(-42.5, audiogram.getThresholdDb(Ear.LEFT, 1), 0);
+            assertTrue(Double.isInfinite(audiogram.getThresholdDb(Ear.LEFT, 2)));
+            assertTrue(Double.isNaN(audiogram.getThresholdDb(Ear.RIGHT, 1)));
+
+            SessionRecord leftRight = store.read(store.getEntry(1));
+            assertEquals("lee", leftRight.getUserId());
+            assertEquals(80.0, leftRight.getLeftRightResult().getAccuracy(), 1e-9);
+        } finally {
+            store.close();
+        }
+    }
+
+    @Test
+    public void legacyDbFsThresholdsReadAsHearingLevel() {
+        byte[] payload = SessionCodec.encode(frequencyRecord("kim", 1000));
+        // Written before calibration: same layout, levels in dBFS, no flag.
+        payload[0] &= ~SessionCodec.LEVELS_DB_HL;
+        SessionRecord legacy = SessionCodec.decode(ByteBuffer.wrap(payload));
+        double offset = -CalibrationProfile.NOMINAL_REFERENCE_DBFS;
+        assertEquals(-40 + offset, legacy.getAudiogram().getThresholdDb(Ear.LEFT, 0), 1e-6);
+        assertTrue(Double.isInfinite(legacy.getAudiogram().getThresholdDb(Ear.LEFT, 2)));
+        assertTrue(Double.isNaN(legacy.getAudiogram().getThresholdDb(Ear.RIGHT, 1)));
+        assertEquals(SessionRecord.Type.FREQUENCY, SessionCodec.indexEntry(0, 0, ByteBuffer.wrap(payload)).getType());
+
+        SessionRecord current = SessionCodec.decode(ByteBuffer.wrap(SessionCodec.encode(frequencyRecord("kim", 1000))));
+        assertEquals(-40, current.getAudiogram().getThresholdDb(Ear.LEFT, 0), 0);
+    }
+
+    @Test
+    public void reactionTimesRoundTripAndOlderRecordsHaveNone() {
+        ReactionTimes times = new ReactionTimes();
+        times.add(412.5, true);
+        times.add(Double.NaN, false);
+        times.add(-30, false);
+        Audiogram audiogram = frequencyRecord("kim", 1000).getAudiogram();
+        SessionRecord[] records = {
+                SessionRecord.ofFrequencyTest("kim", 1000, audiogram, 37, times),
+                SessionRecord.ofLeftRightTest("lee", 2000, new LeftRightTestResult(4, 5), times),
+        };
+        for (SessionRecord record : records) {
+            byte[] payload = SessionCodec.encode(record);
+            SessionRecord decoded = SessionCodec.decode(ByteBuffer.wrap(payload));
+            assertEquals(record.getType(), decoded.getType());
+            assertEquals(record.getType(), SessionCodec.indexEntry(0, 0, ByteBuffer.wrap(payload)).getType());
+            ReactionTimes read = decoded.getReactionTimes();
+            assertEquals(3, read.size());
+            assertEquals(412.5f, read.getLatencyMs(0), 0);
+            assertTrue(read.isTimestamped(0));
+            assertTrue(Float.isNaN(read.getLatencyMs(1)));
+            assertEquals(-30f, read.getLatencyMs(2), 0);
+            assertFalse(read.isTimestamped(2));
+        }
+        assertEquals(-42.5, SessionCodec.decode(ByteBuffer.wrap(SessionCodec.encode(records[0])))
+                .getAudiogram().getThresholdDb(Ear.LEFT, 1), 0);
+        assertNull(SessionCodec.decode(ByteBuffer.wrap(SessionCodec.encode(leftRightRecord("lee", 2000))))
+                .getReactionTimes());
+    }
+
+    @Test
+    public void indexFindsByUserAndDate() throws Exception {
+        SessionStore store = SessionStore.open(folder.newFolder(), THREADS);
+        try {
+            for (int i = 0; i < 100; i++) {
+                store.append(i % 3 == 0 ? frequencyRecord("kim", i * 1000L) : leftRightRecord("lee", i * 1000L));
+            }
+            store.flush();
+            List<SessionEntry> kim = store.findByUser("kim");
+            assertEquals(34, kim.size());
+            for (SessionEntry entry : kim) {
+                assertEquals(SessionRecord.Type.FREQUENCY, entry.getType());
+            }
+            List<SessionEntry> window = store.findBetween(10_000, 20_000);
+            assertEquals(10, window.size());
+            assertEquals(10, window.get(0).getSequence());
+            assertTrue(store.findByUser("park").isEmpty());
+        } finally {
+            store.close();
+        }
+    }
+
+    @Test
+    public void userLookupSurvivesReopenAndLaterAppends() throws Exception {
+        File dir = folder.newFolder();
+        SessionStore store = SessionStore.open(dir, THREADS);
+        for (int i = 0; i < 10; i++) {
+            store.append(leftRightRecord(i % 2 == 0 ? "kim" : "lee", i));
+        }
+        store.close();
+
+        store = SessionStore.open(dir, THREADS);
+        try {
+            store.append(leftRightRecord("kim", 10));
+            store.append(leftRightRecord("park", 11));
+            store.flush();
+            List<SessionEntry> kim = store.findByUser("kim");
+            assertEquals(6, kim.size());
+            for (int i = 0; i < kim.size(); i++) {
+                assertEquals(2 * i, kim.get(i).getSequence());
+            }
+            assertEquals(1, store.findByUser("park").size());
+            assertEquals(11, store.findByUser("park").get(0).getSequence());
+        } finally {
+            store.close();
+        }
+    }
+
+    @Test
+    public void dateLookupHandlesTimestampsOutOfOrder() throws Exception {
+        SessionStore store = SessionStore.open(folder.newFolder(), THREADS);
+        try {
+            // The clock was set back between the third and fourth session.
+            long[] times = {1000, 2000, 3000, 1500, 2500};
+            for (long time : times) {
+                store.append(leftRightRecord("kim", time));
+            }
+            store.flush();
+            List<SessionEntry> window = store.findBetween(1500, 2600);
+            assertEquals(3, window.size());
+            assertEquals(1, window.get(0).getSequence());
+            assertEquals(3, window.get(1).getSequence());
+            assertEquals(4, window.get(2).getSequence());
+        } finally {
+            store.close();
+        }
+    }
+
+    @Test
+    public void dateLookupFindsEdgesOfOrderedHistory() throws Exception {
+        SessionStore store = SessionStore.open(folder.newFolder(), THREADS);
+        try {
+            for (int i = 0; i < 50; i++) {
+                store.append(leftRightRecord("kim", 1000L * (i / 2)));
+            }
+            store.flush();
+            assertEquals(50, store.findBetween(Long.MIN_VALUE, Long.MAX_VALUE).size());
+            assertEquals(2, store.findBetween(0, 1000).size());
+            assertEquals(4, store.findBetween(23_000, 25_000).size());
+            assertEquals(46, store.findBetween(23_000, 25_000).get(0).getSequence());
+            assertTrue(store.findBetween(25_000, 30_000).isEmpty());
+            assertTrue(store.findBetween(500, 1000).isEmpty());
+        } finally {
+            store.close();
+        }
+    }
+
+    @Test
+    public void tornRecordIsCutOff() throws Exception {
+        File dir = folder.newFolder();
+        writeRecords(dir, 3);
+        File log = new File(dir, SessionStore.LOG_FILE);
+        long size = log.length();
+        truncate(log, size - 5);
+
+        SessionStore store = SessionStore.open(dir, THREADS);
+        try {
+            assertEquals(2, store.size());
+            assertEquals(size - 5 - store.getEntry(1).getOffset() - SessionStore.FRAME_HEADER_BYTES
+                    - store.getEntry(1).getLength(), store.getDiscardedBytes());
+            // Appending continues right after the last intact record.
+            assertEquals(2, (int) store.append(leftRightRecord("kim", 9)).get());
+        } finally {
+            store.close();
+        }
+        store = SessionStore.open(dir, THREADS);
+        try {
+            assertEquals(3, store.size());
+            assertEquals(9, store.read(store.getEntry(2)).getTimestampMillis());
+        } finally {
+            store.close();
+        }
+    }
+
+    @Test
+    public void corruptTailFailsChecksum() throws Exception {
+        File dir = folder.newFolder();
+        writeRecords(dir, 3);
+        File log = new File(dir, SessionStore.LOG_FILE);
+        RandomAccessFile file = new RandomAccessFile(log, "rw");
+        try {
+            file.seek(file.length() - 1);
+            int last = file.read();
+            file.seek(file.length() - 1);
+            file.write(last ^ 0xff);
+        } finally {
+            file.close();
+        }
+        SessionStore store = SessionStore.open(dir, THREADS);
+        try {
+            assertEquals(2, store.size());
+            assertTrue(store.getDiscardedBytes() > 0);
+        } finally {
+            store.close();
+        }
+    }
+
+    @Test
+    public void lostIndexIsRebuiltFromTheLog() throws Exception {
+        File dir = folder.newFolder();
+        writeRecords(dir, 5);
+        assertTrue(new File(dir, SessionStore.INDEX_FILE).delete());
+
+        SessionStore store = SessionStore.open(dir, THREADS);
+        try {
+            assertEquals(5, store.size());
+            assertEquals(5, store.getReindexedRecords());
+            assertEquals(4, store.read(store.getEntry(4)).getTimestampMillis());
+        } finally {
+            store.close();
+        }
+    }
+
+    @Test
+    public void unindexedTailIsReindexed() throws Exception {
+        File dir = folder.newFolder();
+        writeRecords(dir, 5);
+        // Index count written before the last two entries were published.
+        RandomAccessFile index = new RandomAccessFile(new File(dir, SessionStore.INDEX_FILE), "rw");
+        try {
+            index.seek(8);
+            index.writeInt(3);
+        } finally {
+            index.close();
+        }
+        SessionStore store = SessionStore.open(dir, THREADS);
+        try {
+            assertEquals(5, store.size());
+            assertEquals(2, store.getReindexedRecords());
+        } finally {
+            store.close();
+        }
+    }
+
+    @Test
+    public void indexEntriesPastTheLogAreDropped() throws Exception {
+        File dir = folder.newFolder();
+        writeRecords(dir, 4);
+        File log = new File(dir, SessionStore.LOG_FILE);
+        SessionStore store = SessionStore.open(dir, THREADS);
+        long secondEnd = store.getEntry(1).getOffset() + SessionStore.FRAME_HEADER_BYTES + store.getEntry(1).getLength();
+        store.close();
+        truncate(log, secondEnd);
+
+        store = SessionStore.open(dir, THREADS);
+        try {
+            assertEquals(2, store.size());
+            assertEquals(0, store.getReindexedRecords());
+        } finally {
+            store.close();
+        }
+    }
+
+    @Test
+    public void largeHistoryReopensWithEveryUsersSessions() throws Exception {
+        File dir = folder.newFolder();
+        int sessions = 50_000;
+        SessionStore store = SessionStore.open(dir, THREADS, false);
+        for (int i = 0; i < sessions; i++) {
+            String user = "user" + (i % 500);
+            store.append(i % 2 == 0 ? frequencyRecord(user, i) : leftRightRecord(user, i));
+        }
+        store.flush();
+        store.close();
+
+        store = SessionStore.open(dir, THREADS);
+        try {
+            List<SessionEntry> history = store.findByUser("user42");
+            for (int i = history.size() - 20; i < history.size(); i++) {
+                assertEquals("user42", store.read(history.get(i)).getUserId());
+            }
+            assertEquals(sessions, store.size());
+            assertEquals(100, history.size());
+        } finally {
+            store.close();
+        }
+    }
+
+    private static void writeRecords(File dir, int n) throws Exception {
+        SessionStore store = SessionStore.open(dir, THREADS);
+        for (int i = 0; i < n; i++) {
+            store.append(i % 2 == 0 ? frequencyRecord("kim", i) : leftRightRecord("kim", i));
+        }
+        store.close();
+    }
+
+    private static void truncate(File file, long size) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.setLength(size);
+        } finally {
+            raf.close();
+        }
+    }
+}
@@ -0,0 +1,268 @@
+package com.commo.hearingtest.sync;
+
+import com.commo.hearingtest.core.LeftRightTestResult;
+import com.commo.hearingtest.store.SessionRecord;
+import com.commo.hearingtest.store.SessionStore;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.*;
+
+/** End-to-end uploads from a real {@link SessionStore} to a stand-in clinic server on loopback. */
+public class SessionSyncTest {
+
+    private static final ThreadFactory THREADS = new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r);
+            thread.setDaemon(true);
+            return thread;
+        }
+    };
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private StandInServer server;
+    private SessionStore store;
+    private File cursorFile;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new StandInServer();
+        store = SessionStore.open(folder.newFolder(), THREADS, false);
+        cursorFile = new File(folder.getRoot(), "sync.cursor");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        store.close();
+        server.stop();
+    }
+
+    @Test
+    public void uploadsPendingSessionsInBatchesAndResumesFromTheCursor() throws Exception {
+        append(250);
+        SessionSync sync = newSync(100, 3);
+        assertEquals(250, sync.getPendingSessions());
+        assertEquals(250, sync.syncNow());
+        assertEquals(3, server.requests.get());
+        assertEquals(250, server.received.size());
+        assertEquals("user2", SessionStore.decodePayload(server.received.get(7)).getUserId());
+        assertEquals(0, sync.getPendingSessions());
+        assertTrue(sync.getUploadedBytes() > 0);
+        sync.close();
+
+        // A new process reads the cursor and has nothing to send until more sessions are saved.
+        sync = newSync(100, 3);
+        assertEquals(0, sync.syncNow());
+        assertEquals(3, server.requests.get());
+        append(5);
+        assertEquals(5, (int) sync.requestSync().get(5, TimeUnit.SECONDS));
+        assertEquals(255, server.received.size());
+        assertEquals(0, server.duplicates.get());
+        sync.close();
+    }
+
+    @Test
+    public void flakyLinkDeliversEverySessionOnce() throws Exception {
+        int sessions = 1000;
+        append(sessions);
+        server.flakiness = 0.3;
+        SessionSync sync = newSync(50, 30);
+        assertEquals(sessions, sync.syncNow());
+        assertEquals(sessions, server.received.size());
+        assertEquals(0, (int) server.received.firstKey());
+        assertEquals(sessions - 1, (int) server.received.lastKey());
+        assertTrue(sync.getFailedRequestCount() > 0);
+        // A pooled connection the server has already closed fails before reaching it.
+        assertTrue(sync.getRequestCount() >= server.requests.get());
+        sync.close();
+    }
+
+    @Test
+    public void rejectedSessionsAreSkippedAndTheRestUploaded() throws Exception {
+        append(10);
+        server.rejectedSequence = 3;
+        // A pooled connection the server has closed fails before reaching it, which would add a
+        // retry to the exact count below.
+        server.keepAlive = false;
+        SessionSync sync = newSync(100, 5);
+        try {
+            sync.syncNow();
+            fail("rejection not reported");
+        } catch (BatchRejectedException expected) {
+            assertEquals(422, expected.getStatusCode());
+            assertEquals(1, expected.getRejectedSessions());
+        }
+        assertEquals(0, sync.getPendingSessions());
+        assertEquals(9, server.received.size());
+        assertFalse(server.received.containsKey(3));
+        assertEquals(1, sync.getRejectedSessions());
+        assertEquals(9, sync.getUploadedSessions());
+        // 0-9, 0-4, 0-1, 2-4, 2, 3-4, 3, 4, 5-9: halving down to the refused one, nothing retried.
+        assertEquals(9, server.requests.get());
+        assertEquals(server.requests.get(), sync.getRequestCount());
+        String log = new String(Files.readAllBytes(sync.rejectionLog().toPath()), "UTF-8");
+        assertTrue(log, log.startsWith("3\t422\t"));
+        sync.close();
+
+        // The cursor moved past it, so a new process does not send it again.
+        sync = newSync(100, 5);
+        assertEquals(0, sync.getPendingSessions());
+        append(2);
+        assertEquals(2, sync.syncNow());
+        sync.close();
+    }
+
+    @Test
+    public void refusedDeviceIsNotSkippedOrAcknowledged() throws Exception {
+        append(10);
+        server.forcedStatus = 403;
+        SessionSync sync = newSync(100, 5);
+        try {
+            sync.syncNow();
+            fail("refusal not reported");
+        } catch (BatchRejectedException e) {
+            fail("device refusal skipped the sessions");
+        } catch (IOException expected) {
+        }
+        assertEquals(1, server.requests.get());
+        assertEquals(10, sync.getPendingSessions());
+        assertFalse(sync.rejectionLog().exists());
+
+        server.forcedStatus = 0;
+        assertEquals(10, sync.syncNow());
+        sync.close();
+    }
+
+    @Test
+    public void runThatGivesUpKeepsAcknowledgedBatchesForTheNextProcess() throws Exception {
+        append(30);
+        server.failAfterRequests = 2;
+        SessionSync sync = newSync(10, 3);
+        try {
+            sync.syncNow();
+            fail("outage not reported");
+        } catch (IOException expected) {
+        }
+        assertEquals(10, sync.getPendingSessions());
+        sync.close();
+
+        server.failAfterRequests = Integer.MAX_VALUE;
+        sync = newSync(10, 3);
+        assertEquals(10, sync.getPendingSessions());
+        assertEquals(10, sync.syncNow());
+        assertEquals(30, server.received.size());
+        sync.close();
+    }
+
+    private SessionSync newSync(int batchSessions, int maxAttempts) throws IOException {
+        return new SessionSync(store, cursorFile, server.url(), "device-1", THREADS, batchSessions, maxAttempts,
+                1, 20, new Random(1));
+    }
+
+    private void append(int count) throws InterruptedException {
+        int first = store.size();
+        for (int i = first; i < first + count; i++) {
+            store.append(SessionRecord.ofLeftRightTest("user" + i % 5, i * 1000L, new LeftRightTestResult(i % 6, 5)));
+        }
+        store.flush();
+    }
+
+    /**
+     * Loopback HTTP server that keeps each session once per sequence, like the clinic server.
+     * With {@code flakiness} p it answers 503 with probability p, and with probability p more
+     * it stores the batch but drops the connection before answering, as a lost acknowledgement.
+     */
+    private static final class StandInServer implements HttpHandler {
+        final ConcurrentSkipListMap<Integer, byte[]> received = new ConcurrentSkipListMap<Integer, byte[]>();
+        final AtomicInteger requests = new AtomicInteger();
+        final AtomicInteger duplicates = new AtomicInteger();
+        final Random random = new Random(7);
+        final HttpServer http;
+        volatile double flakiness;
+        volatile int forcedStatus;
+        volatile int rejectedSequence = -1;
+        volatile int failAfterRequests = Integer.MAX_VALUE;
+        volatile boolean keepAlive = true;
+
+        StandInServer() throws IOException {
+            http = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+            http.createContext("/sessions", this);
+            http.start();
+        }
+
+        URL url() throws IOException {
+            return new URL("http", InetAddress.getLoopbackAddress().getHostAddress(),
+                    http.getAddress().getPort(), "/sessions");
+        }
+
+        void stop() {
+            http.stop(0);
+        }
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            int request = requests.incrementAndGet();
+            if (!keepAlive) {
+                exchange.getResponseHeaders().set("Connection", "close");
+            }
+            try {
+                assertEquals("gzip", exchange.getRequestHeaders().getFirst("Content-Encoding"));
+                InputStream body = new GZIPInputStream(exchange.getRequestBody());
+                SyncBatch batch = SyncBatch.readFrom(body);
+                while (body.read() >= 0) {
+                    // Drain the gzip trailer.
+                }
+                double roll;
+                synchronized (random) {
+                    roll = random.nextDouble();
+                }
+                if (forcedStatus != 0 || request > failAfterRequests || roll < flakiness) {
+                    exchange.sendResponseHeaders(forcedStatus != 0 ? forcedStatus : 503, -1);
+                    return;
+                }
+                int rejected = rejectedSequence - batch.getFirstSequence();
+                if (rejected >= 0 && rejected < batch.size()) {
+                    exchange.sendResponseHeaders(422, -1);
+                    return;
+                }
+                assertEquals("device-1", batch.getDeviceId());
+                for (int i = 0; i < batch.size(); i++) {
+                    assertNotNull(batch.getRecord(i));
+                    if (received.putIfAbsent(batch.getFirstSequence() + i, batch.getPayload(i)) != null) {
+                        duplicates.incrementAndGet();
+                    }
+                }
+                if (roll < 2 * flakiness) {
+                    return; // Stored, but the acknowledgement never arrives.
+                }
+                exchange.sendResponseHeaders(204, -1);
+            } finally {
+                exchange.close();
+            }
+        }
+    }
+}